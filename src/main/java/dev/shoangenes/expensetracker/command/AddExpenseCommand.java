@@ -1,12 +1,14 @@
 package dev.shoangenes.expensetracker.command;
 
+import dev.shoangenes.expensetracker.model.Amounts;
+import dev.shoangenes.expensetracker.model.Expense;
 import dev.shoangenes.expensetracker.model.ExpenseCategory;
 import dev.shoangenes.expensetracker.service.ExpenseTracker;
 
 /**
  * Command to add a new expense to the ExpenseTracker.
  */
-public class AddExpenseCommand implements Command<Void> {
+public final class AddExpenseCommand implements MutationCommand<Integer> {
     /**
      * The ExpenseTracker instance where the expense will be added.
      */
@@ -42,12 +44,26 @@ public class AddExpenseCommand implements Command<Void> {
         this.category = category;
     }
 
+    @Override
+    public ExpenseTracker getExpenseTracker() {
+        return expenseTracker;
+    }
+
+    /**
+     * Checks that the description is not empty and the amount is positive.
+     */
+    @Override
+    public void validate() {
+        Expense.validate(description, Amounts.toMinor(amount));
+    }
+
     /**
      * Executes the command to add an expense to the ExpenseTracker.
+     *
+     * @return the ID of the new expense
      */
     @Override
-    public Void execute() {
-        expenseTracker.addExpense(description, amount, category);
-        return null;
+    public Integer execute() {
+        return expenseTracker.addExpense(description, amount, category);
     }
 }
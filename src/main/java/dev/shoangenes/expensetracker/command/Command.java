@@ -1,5 +1,9 @@
 package dev.shoangenes.expensetracker.command;
 
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Represents a command that can be executed.
  */
@@ -8,4 +12,15 @@ public interface Command<R> {
      * Executes the command.
      */
     R execute();
+
+    /**
+     * Executes the command on a virtual thread, so the caller does not block on I/O.
+     * Commands that change the ledger run through its single writer instead, in submission order,
+     * and complete once their changes are durable, see {@link ExpenseTracker#mutateAsync}.
+     *
+     * @return completes with the result of the command, or with its failure
+     */
+    default CompletableFuture<R> executeAsync() {
+        return ExpenseTracker.queryAsync(this::execute);
+    }
 }
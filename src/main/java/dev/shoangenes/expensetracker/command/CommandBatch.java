@@ -0,0 +1,114 @@
+package dev.shoangenes.expensetracker.command;
+
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Command to run a sequence of add, update and delete commands on one ledger as a unit.
+ * <p>
+ * The inputs of every command are validated before the ledger is touched. The commands are then applied in order
+ * in one transaction, holding the locks of the tracker and of the ledger file throughout, and persisted with
+ * a single write when it commits. If a command fails, e.g. because the expense it refers to doesn't exist,
+ * the whole batch is rolled back. Errors name the failing command by its position, starting at 1.
+ */
+public class CommandBatch implements Command<List<Object>> {
+    /** Expense tracker every command of the batch changes. */
+    private ExpenseTracker expenseTracker;
+    /** Commands in the order they run. */
+    private List<MutationCommand<?>> commands = new ArrayList<>();
+
+    /**
+     * Constructs an empty CommandBatch.
+     *
+     * @param expenseTracker the expense tracker instance the commands change
+     */
+    public CommandBatch(ExpenseTracker expenseTracker) {
+        this.expenseTracker = expenseTracker;
+    }
+
+    /**
+     * Appends a command to the batch.
+     *
+     * @param command the command to run after the ones already added
+     * @return this batch
+     * @throws IllegalArgumentException if the command changes another tracker
+     */
+    public CommandBatch add(MutationCommand<?> command) {
+        if (command.getExpenseTracker() != expenseTracker) {
+            throw new IllegalArgumentException("Command " + (commands.size() + 1) + " changes another ledger");
+        }
+        commands.add(command);
+        return this;
+    }
+
+    /**
+     * Gets the number of commands in the batch.
+     *
+     * @return the number of commands
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * Executes every command of the batch, or none of them.
+     *
+     * @return the result of each command, in order: the new ID for additions, null for updates and deletions
+     * @throws IllegalArgumentException if the inputs of a command break the business rules, then nothing is applied
+     * @throws NoSuchElementException if a command refers to an expense that doesn't exist, then nothing is applied
+     */
+    @Override
+    public List<Object> execute() {
+        for (int i = 0; i < commands.size(); i++) {
+            try {
+                commands.get(i).validate();
+            } catch (RuntimeException e) {
+                throw failure(i, e);
+            }
+        }
+
+        if (commands.isEmpty()) {
+            return List.of();
+        }
+        List<Object> results = new ArrayList<>(commands.size());
+        expenseTracker.inTransaction(() -> {
+            for (int i = 0; i < commands.size(); i++) {
+                try {
+                    results.add(commands.get(i).execute());
+                } catch (RuntimeException e) {
+                    throw failure(i, e);
+                }
+            }
+        });
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Queues the batch behind the other changes of the ledger, see {@link ExpenseTracker#mutateAsync}.
+     *
+     * @return completes with the result of each command once the batch is durable, or with its failure
+     */
+    @Override
+    public CompletableFuture<List<Object>> executeAsync() {
+        return expenseTracker.mutateAsync(this::execute);
+    }
+
+    /**
+     * Names the failing command in the message of an error, keeping its type for invalid inputs and missing expenses.
+     */
+    private static RuntimeException failure(int index, RuntimeException e) {
+        String message = "Command " + (index + 1) + ": " + e.getMessage();
+        if (e instanceof NoSuchElementException) {
+            return new NoSuchElementException(message, e);
+        }
+        if (e instanceof IllegalArgumentException) {
+            return new IllegalArgumentException(message, e);
+        }
+        return e;
+    }
+}
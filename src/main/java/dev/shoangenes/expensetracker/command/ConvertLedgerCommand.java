@@ -0,0 +1,36 @@
+package dev.shoangenes.expensetracker.command;
+
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+
+import java.nio.file.Path;
+
+/**
+ * Command to write the whole ledger to another file, converting it to the format of that file.
+ */
+public class ConvertLedgerCommand implements Command<Integer> {
+    /** Expense tracker whose ledger is converted. */
+    private ExpenseTracker expenseTracker;
+    /** File to write, its name decides the format. */
+    private Path target;
+
+    /**
+     * Constructs a ConvertLedgerCommand.
+     *
+     * @param expenseTracker the expense tracker instance
+     * @param target the file to write the ledger to
+     */
+    public ConvertLedgerCommand(ExpenseTracker expenseTracker, Path target) {
+        this.expenseTracker = expenseTracker;
+        this.target = target;
+    }
+
+    /**
+     * Executes the command to convert the ledger.
+     *
+     * @return the number of expenses written
+     */
+    @Override
+    public Integer execute() {
+        return expenseTracker.exportSnapshot(target);
+    }
+}
@@ -5,7 +5,7 @@ import dev.shoangenes.expensetracker.service.ExpenseTracker;
 /**
  * Command to delete an expense by its ID.
  */
-public class DeleteExpenseCommand implements Command<Void> {
+public final class DeleteExpenseCommand implements MutationCommand<Void> {
     /** Expense tracker instance to operate on. */
     private ExpenseTracker expenseTracker;
     /** ID of the expense to delete. */
@@ -22,6 +22,18 @@ public class DeleteExpenseCommand implements Command<Void> {
         this.id = id;
     }
 
+    @Override
+    public ExpenseTracker getExpenseTracker() {
+        return expenseTracker;
+    }
+
+    /**
+     * Nothing to check, whether the expense exists depends on the ledger.
+     */
+    @Override
+    public void validate() {
+    }
+
     /**
      * Executes the command to delete the expense.
      */
@@ -0,0 +1,48 @@
+package dev.shoangenes.expensetracker.command;
+
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.service.QueryPlan;
+
+/**
+ * Command to describe how a query would be answered.
+ */
+public class ExplainQueryCommand implements Command<QueryPlan> {
+    /** Expense tracker instance to operate on. */
+    private ExpenseTracker expenseTracker;
+    /** Query to plan. */
+    private ExpenseQuery expenseQuery;
+    /** Whether the total of the query is planned rather than its listing. */
+    private boolean summary;
+
+    /**
+     * Constructs an ExplainQueryCommand with the specified expense tracker and query.
+     *
+     * @param expenseTracker the expense tracker that would answer the query
+     * @param expenseQuery the query to plan
+     */
+    public ExplainQueryCommand(ExpenseTracker expenseTracker, ExpenseQuery expenseQuery) {
+        this(expenseTracker, expenseQuery, false);
+    }
+
+    /**
+     * Constructs an ExplainQueryCommand that plans either the listing or the total of a query.
+     *
+     * @param expenseTracker the expense tracker that would answer the query
+     * @param expenseQuery the query to plan
+     * @param summary true to plan the total of the query, false to plan its listing
+     */
+    public ExplainQueryCommand(ExpenseTracker expenseTracker, ExpenseQuery expenseQuery, boolean summary) {
+        this.expenseTracker = expenseTracker;
+        this.expenseQuery = expenseQuery;
+        this.summary = summary;
+    }
+
+    /**
+     * Executes the command to plan the query.
+     */
+    @Override
+    public QueryPlan execute() {
+        return summary ? expenseTracker.explainSummary(expenseQuery) : expenseTracker.explain(expenseQuery);
+    }
+}
@@ -0,0 +1,67 @@
+package dev.shoangenes.expensetracker.command;
+
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseExporter;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Command to write the expenses matching a query to a CSV, JSON Lines or binary file, or to a channel.
+ */
+public class ExportExpensesCommand implements Command<Long> {
+    /** Expense tracker holding the expenses. */
+    private ExpenseTracker expenseTracker;
+    /** Filters of the exported expenses. */
+    private ExpenseQuery query;
+    /** Layout of the output. */
+    private ExpenseExporter.Format format;
+    /** File to write, null when writing to the channel. */
+    private Path target;
+    /** Channel to write, null when writing to the file. */
+    private WritableByteChannel channel;
+
+    /**
+     * Constructs an ExportExpensesCommand writing to a file.
+     *
+     * @param expenseTracker the expense tracker instance
+     * @param query the filters of the exported expenses
+     * @param format the layout of the file
+     * @param target the file to write
+     */
+    public ExportExpensesCommand(ExpenseTracker expenseTracker, ExpenseQuery query, ExpenseExporter.Format format,
+                                 Path target) {
+        this.expenseTracker = expenseTracker;
+        this.query = query;
+        this.format = format;
+        this.target = target;
+    }
+
+    /**
+     * Constructs an ExportExpensesCommand writing to a channel, e.g. standard output.
+     *
+     * @param expenseTracker the expense tracker instance
+     * @param query the filters of the exported expenses
+     * @param format the layout of the output, CSV or JSON Lines
+     * @param channel the channel to write, left open
+     */
+    public ExportExpensesCommand(ExpenseTracker expenseTracker, ExpenseQuery query, ExpenseExporter.Format format,
+                                 WritableByteChannel channel) {
+        this.expenseTracker = expenseTracker;
+        this.query = query;
+        this.format = format;
+        this.channel = channel;
+    }
+
+    /**
+     * Executes the command to export the expenses.
+     *
+     * @return the number of expenses written
+     */
+    @Override
+    public Long execute() {
+        ExpenseExporter exporter = new ExpenseExporter(expenseTracker);
+        return target != null ? exporter.export(query, format, target) : exporter.export(query, format, channel);
+    }
+}
@@ -0,0 +1,38 @@
+package dev.shoangenes.expensetracker.command;
+
+import java.util.Set;
+
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+
+/**
+ * Command to summarize expenses per category, month and/or year.
+ */
+public class GroupedSummaryCommand implements Command<GroupedSummary> {
+    /** Expense tracker instance to perform the summary on. */
+    private ExpenseTracker expenseTracker;
+    /** Query defining the criteria for summarizing expenses. */
+    private ExpenseQuery expenseQuery;
+    /** Dimensions to group the expenses by. */
+    private Set<GroupedSummary.Dimension> dimensions;
+
+    /** Constructor to initialize the command with the expense tracker, query and dimensions.
+     * @param expenseTracker The expense tracker instance.
+     * @param expenseQuery The query defining the criteria for summarizing expenses.
+     * @param dimensions The dimensions to group the expenses by.
+     */
+    public GroupedSummaryCommand(ExpenseTracker expenseTracker, ExpenseQuery expenseQuery, Set<GroupedSummary.Dimension> dimensions) {
+        this.expenseTracker = expenseTracker;
+        this.expenseQuery = expenseQuery;
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * Executes the command to summarize expenses per group.
+     */
+    @Override
+    public GroupedSummary execute() {
+        return expenseTracker.summaryByGroup(expenseQuery, dimensions);
+    }
+}
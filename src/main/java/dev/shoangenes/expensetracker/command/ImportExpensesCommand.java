@@ -0,0 +1,61 @@
+package dev.shoangenes.expensetracker.command;
+
+import dev.shoangenes.expensetracker.service.ExpenseImporter;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Command to add every row of a CSV or JSON Lines file to the ledger.
+ */
+public class ImportExpensesCommand implements Command<ExpenseImporter.Result> {
+    /** Expense tracker receiving the expenses. */
+    private ExpenseTracker expenseTracker;
+    /** File to import. */
+    private Path source;
+    /** Layout of the rows of the file. */
+    private ExpenseImporter.Format format;
+    /** File receiving the rejected rows. */
+    private Path rejects;
+    /** Rows added between two commits, 0 to commit once at the end. */
+    private int checkpoint;
+
+    /**
+     * Constructs an ImportExpensesCommand.
+     *
+     * @param expenseTracker the expense tracker instance
+     * @param source the file to import
+     * @param format the layout of the rows of the file
+     * @param rejects the file receiving the rejected rows
+     * @param checkpoint the number of rows added between two commits, 0 to commit once at the end
+     */
+    public ImportExpensesCommand(ExpenseTracker expenseTracker, Path source, ExpenseImporter.Format format,
+                                 Path rejects, int checkpoint) {
+        this.expenseTracker = expenseTracker;
+        this.source = source;
+        this.format = format;
+        this.rejects = rejects;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Executes the command to import the file.
+     *
+     * @return the number of imported and rejected rows
+     */
+    @Override
+    public ExpenseImporter.Result execute() {
+        return new ExpenseImporter(expenseTracker).importFile(source, format, rejects, checkpoint);
+    }
+
+    /**
+     * Queues the import behind the other changes of the ledger, see {@link ExpenseTracker#mutateAsync}.
+     *
+     * @return completes with the number of imported and rejected rows once they are durable, or with the failure
+     */
+    @Override
+    public CompletableFuture<ExpenseImporter.Result> executeAsync() {
+        return expenseTracker.mutateAsync(this::execute);
+    }
+}
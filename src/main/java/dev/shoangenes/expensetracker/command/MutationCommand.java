@@ -0,0 +1,35 @@
+package dev.shoangenes.expensetracker.command;
+
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A command that changes the ledger and can be run as part of a {@link CommandBatch}.
+ */
+public sealed interface MutationCommand<R> extends Command<R>
+        permits AddExpenseCommand, UpdateExpenseCommand, DeleteExpenseCommand {
+    /**
+     * Gets the tracker the command changes.
+     *
+     * @return the expense tracker instance
+     */
+    ExpenseTracker getExpenseTracker();
+
+    /**
+     * Checks the inputs of the command without touching the ledger.
+     *
+     * @throws IllegalArgumentException if an input breaks the business rules
+     */
+    void validate();
+
+    /**
+     * Queues the command behind the other changes of its ledger, see {@link ExpenseTracker#mutateAsync}.
+     *
+     * @return completes with the result of the command once it is durable, or with its failure
+     */
+    @Override
+    default CompletableFuture<R> executeAsync() {
+        return getExpenseTracker().mutateAsync(this::execute);
+    }
+}
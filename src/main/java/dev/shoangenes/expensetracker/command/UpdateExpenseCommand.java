@@ -5,7 +5,7 @@ import dev.shoangenes.expensetracker.service.ExpenseTracker;
 /**
  * Command to update an existing expense's description in the ExpenseTracker.
  */
-public class UpdateExpenseCommand implements Command<Void> {
+public final class UpdateExpenseCommand implements MutationCommand<Void> {
     /** ExpenseTracker instance to operate on */
     private ExpenseTracker expenseTracker;
     /** ID of the expense to update */
@@ -26,6 +26,21 @@ public class UpdateExpenseCommand implements Command<Void> {
         this.description = description;
     }
 
+    @Override
+    public ExpenseTracker getExpenseTracker() {
+        return expenseTracker;
+    }
+
+    /**
+     * Checks that the new description is not empty.
+     */
+    @Override
+    public void validate() {
+        if (description == null || description.trim().isEmpty()) {
+            throw new IllegalArgumentException("Description cannot be empty");
+        }
+    }
+
     /**
      * Executes the command to update the expense's description.
      */
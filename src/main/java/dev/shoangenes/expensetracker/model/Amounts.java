@@ -0,0 +1,96 @@
+package dev.shoangenes.expensetracker.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between amounts in currency units and the minor units (cents) they are stored and added up in.
+ * <p>
+ * Amounts are kept as a {@code long} number of minor units, {@value #SCALE} decimal places below the
+ * currency unit, so totals are exact and do not depend on the order they are added in. Decimal amounts
+ * given as doubles are converted by their shortest decimal representation, e.g. 0.29 is 29 cents even
+ * though the double is slightly below it.
+ */
+public final class Amounts {
+    /** Decimal places of the minor unit. */
+    public static final int SCALE = 2;
+
+    /** Minor units in one currency unit. */
+    public static final long MINOR_PER_UNIT = 100;
+
+    /** Distance to a whole number of minor units below which a scaled double is taken as exact. */
+    private static final double TOLERANCE = 1e-6;
+
+    private Amounts() {}
+
+    /**
+     * Converts an amount to minor units, rounding half up amounts with more decimal places
+     *
+     * @param amount the amount in currency units
+     * @return the amount in minor units
+     */
+    public static long toMinor(double amount) {
+        double scaled = amount * MINOR_PER_UNIT;
+        long rounded = Math.round(scaled);
+        return Math.abs(scaled - rounded) < TOLERANCE ? rounded : toMinor(BigDecimal.valueOf(amount), RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Converts an exact decimal amount to minor units, rounding half up amounts with more decimal places
+     *
+     * @param amount the amount in currency units
+     * @return the amount in minor units
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long toMinor(BigDecimal amount) {
+        return toMinor(amount, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Converts a lower bound to minor units: the smallest whole number of minor units not below it
+     *
+     * @param amount the bound in currency units
+     * @return the bound in minor units
+     */
+    public static long ceilMinor(double amount) {
+        double scaled = amount * MINOR_PER_UNIT;
+        long rounded = Math.round(scaled);
+        return Math.abs(scaled - rounded) < TOLERANCE ? rounded : toMinor(BigDecimal.valueOf(amount), RoundingMode.CEILING);
+    }
+
+    /**
+     * Converts an upper bound to minor units: the largest whole number of minor units not above it
+     *
+     * @param amount the bound in currency units
+     * @return the bound in minor units
+     */
+    public static long floorMinor(double amount) {
+        double scaled = amount * MINOR_PER_UNIT;
+        long rounded = Math.round(scaled);
+        return Math.abs(scaled - rounded) < TOLERANCE ? rounded : toMinor(BigDecimal.valueOf(amount), RoundingMode.FLOOR);
+    }
+
+    private static long toMinor(BigDecimal amount, RoundingMode rounding) {
+        return amount.setScale(SCALE, rounding).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts minor units back to currency units
+     *
+     * @param minor the amount in minor units
+     * @return the nearest double to the amount in currency units
+     */
+    public static double toUnits(long minor) {
+        return (double) minor / MINOR_PER_UNIT;
+    }
+
+    /**
+     * Converts minor units to an exact decimal amount
+     *
+     * @param minor the amount in minor units
+     * @return the amount in currency units, with {@value #SCALE} decimal places
+     */
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+}
@@ -1,13 +1,16 @@
 package dev.shoangenes.expensetracker.model;
 
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
+import java.util.function.IntSupplier;
 
 public class Expense {
-    private static int lastIdSaved = 0;
+    private static final AtomicInteger lastIdSaved = new AtomicInteger();
     private int id;
     private String description;
-    private double amount;
+    /** Amount in minor units, see {@link Amounts}. */
+    private long amountMinor;
     private LocalDate creationDate;
     private ExpenseCategory category;
 
@@ -23,25 +26,88 @@ public class Expense {
      * This ID is automatically incremented from the last saved ID to ensure uniqueness
      *
      * @param description the description of the expense
-     * @param amount the amount of the expense
+     * @param amount the amount of the expense, rounded to minor units
      * @throws IllegalArgumentException if the business rules are violated (negative amount, empty description)
      */
     public Expense(String description, double amount, ExpenseCategory category) {
-        validateInputs(description, amount);
+        this(description, amount, category, lastIdSaved::incrementAndGet);
+    }
+
+    private Expense(String description, double amount, ExpenseCategory category, IntSupplier ids) {
+        long amountMinor = Amounts.toMinor(amount);
+        validate(description, amountMinor);
 
-        this.id = ++lastIdSaved;
+        this.id = ids.getAsInt();
         this.description = description.trim();
-        this.amount = amount;
+        this.amountMinor = amountMinor;
         creationDate = LocalDate.now();
         this.category = category;
     }
 
-    private void validateInputs(String description, double amount) {
-        if (description.trim().isEmpty()) {
+    /**
+     * Creates a new expense with an ID taken from the given allocator instead of the last saved ID,
+     * e.g. one owned by a ledger. The ID is only taken once the inputs are validated.
+     *
+     * @param description the description of the expense
+     * @param amount the amount of the expense, rounded to minor units
+     * @param category the category of the expense
+     * @param ids hands out the ID of the expense
+     * @return the new expense
+     * @throws IllegalArgumentException if the business rules are violated (negative amount, empty description)
+     */
+    public static Expense create(String description, double amount, ExpenseCategory category, IntSupplier ids) {
+        return new Expense(description, amount, category, ids);
+    }
+
+    /**
+     * Restores an expense that was already persisted, keeping its original ID and creation date.
+     * No validation is performed and the last saved ID is not modified.
+     *
+     * @param id the ID of the expense
+     * @param description the description of the expense
+     * @param amount the amount of the expense, rounded to minor units
+     * @param creationDate the date the expense was created
+     * @param category the category of the expense
+     * @return the restored expense
+     */
+    public static Expense restore(int id, String description, double amount, LocalDate creationDate, ExpenseCategory category) {
+        return restoreMinor(id, description, Amounts.toMinor(amount), creationDate, category);
+    }
+
+    /**
+     * Restores an expense that was already persisted with its amount in minor units.
+     * No validation is performed and the last saved ID is not modified.
+     *
+     * @param id the ID of the expense
+     * @param description the description of the expense
+     * @param amountMinor the amount of the expense in minor units
+     * @param creationDate the date the expense was created
+     * @param category the category of the expense
+     * @return the restored expense
+     */
+    public static Expense restoreMinor(int id, String description, long amountMinor, LocalDate creationDate, ExpenseCategory category) {
+        Expense expense = new Expense();
+        expense.id = id;
+        expense.description = description;
+        expense.amountMinor = amountMinor;
+        expense.creationDate = creationDate;
+        expense.category = category;
+        return expense;
+    }
+
+    /**
+     * Checks the business rules of a new expense
+     *
+     * @param description the description of the expense
+     * @param amountMinor the amount of the expense in minor units
+     * @throws IllegalArgumentException if the business rules are violated (negative amount, empty description)
+     */
+    public static void validate(String description, long amountMinor) {
+        if (description == null || description.trim().isEmpty()) {
             throw new IllegalArgumentException("Description cannot be empty");
         }
 
-        if (amount <= 0) {
+        if (amountMinor <= 0) {
             throw new IllegalArgumentException("Amount must be positive");
         }
     }
@@ -52,7 +118,7 @@ public class Expense {
      * @return the last id saved for all expenses
      */
     public static int getLastIdSaved() {
-        return lastIdSaved;
+        return lastIdSaved.get();
     }
 
     /**
@@ -61,7 +127,7 @@ public class Expense {
      * @param updatedLastId the up-to-date last saved id
      */
     public static void setLastIdSaved(int updatedLastId) {
-        lastIdSaved = updatedLastId;
+        lastIdSaved.set(updatedLastId);
     }
 
     /**
@@ -94,12 +160,35 @@ public class Expense {
     /**
      * Gets the amount of the expense
      *
-     * @return the amount of the expense
+     * @return the amount of the expense, as the nearest double
      */
     public double getAmount() {
-        return amount;
+        return Amounts.toUnits(amountMinor);
     }
 
+    /**
+     * Gets the exact amount of the expense in minor units, e.g. cents
+     *
+     * @return the amount of the expense in minor units
+     */
+    public long getAmountMinor() {
+        return amountMinor;
+    }
+
+    /**
+     * Gets the description of the expense
+     *
+     * @return the description of the expense
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Gets the category of the expense
+     *
+     * @return the category of the expense
+     */
     public ExpenseCategory getCategory() {
         return category;
     }
@@ -109,13 +198,14 @@ public class Expense {
      * If the string exceeds the given length, it appends "..." at the end.
      * <p>
      * Example for description = "I need food" the result is something like "I need fo..."
+     * A missing value, e.g. the category of an imported expense without one, is shown as "-".
      *
-     * @param obj the object whose string representation will be truncated
+     * @param obj the object whose string representation will be truncated, may be null
      * @param length the maximum length of the resulting string
      * @return the truncated string with "..." if it exceeds the specified length
      */
     private String truncate(Object obj, int length) {
-        String content = obj.toString();
+        String content = obj == null ? "-" : obj.toString();
         return content.length() > length ? content.substring(0, length - 3).trim() + "..." : content;
     };
 
@@ -132,7 +222,7 @@ public class Expense {
                     creationDate,
                     truncate(category, 10),
                     truncate(description, 12),
-                    amount
+                    Amounts.toDecimal(amountMinor)
         );
     }
 }
@@ -0,0 +1,73 @@
+package dev.shoangenes.expensetracker.model;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Encodes an {@link Expense} as a JSON object with its amount in minor units, e.g.
+ * {@code {"id":7,"description":"Coffee","amountMinor":450,"creationDate":"2025-08-14","category":"FOOD"}}.
+ * <p>
+ * Objects written before amounts were kept in minor units carry a decimal {@code "amount"} instead. It is
+ * read from its JSON text, not through a double, so such ledgers migrate without losing a cent.
+ */
+public class ExpenseAdapter extends TypeAdapter<Expense> {
+    @Override
+    public void write(JsonWriter out, Expense expense) throws IOException {
+        if (expense == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(expense.getId());
+        if (expense.getDescription() != null) {
+            out.name("description").value(expense.getDescription());
+        }
+        out.name("amountMinor").value(expense.getAmountMinor());
+        if (expense.getCreationDate() != null) {
+            out.name("creationDate").value(expense.getCreationDate().toString());
+        }
+        if (expense.getCategory() != null) {
+            out.name("category").value(expense.getCategory().name());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Expense read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        int id = 0;
+        String description = null;
+        long amountMinor = 0;
+        LocalDate creationDate = null;
+        ExpenseCategory category = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id" -> id = in.nextInt();
+                case "description" -> description = in.nextString();
+                case "amountMinor" -> amountMinor = in.nextLong();
+                case "amount" -> amountMinor = Amounts.toMinor(new BigDecimal(in.nextString()));
+                case "creationDate" -> creationDate = LocalDate.parse(in.nextString());
+                case "category" -> category = ExpenseCategory.valueOf(in.nextString());
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return Expense.restoreMinor(id, description, amountMinor, creationDate, category);
+    }
+}
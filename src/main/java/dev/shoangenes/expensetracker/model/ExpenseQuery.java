@@ -1,65 +1,379 @@
 package dev.shoangenes.expensetracker.model;
 
+import java.time.LocalDate;
 import java.time.Year;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
 
 /**
  * Provides a fluent API to build queries for filtering and sorting {@link Expense} objects.
- * Allows filtering by category, minimum amount, month, and year, as well as sorting by amount.
+ * Allows filtering by category, amount range, creation date range and text in the description,
+ * as well as sorting by amount.
+ * <p>
+ * The criteria are kept as plain values rather than compiled into lambdas, so the query can be inspected:
+ * stores push them down and the query planner picks an index from them. {@link #getFilter()} and
+ * {@link #getSorter()} derive the equivalent predicate and comparator.
+ * <p>
+ * Listings can be paged, either by skipping a number of results or by starting after a given expense
+ * (keyset pagination). Paging does not affect totals.
+ * <p>
+ * A query can ask to be run in parallel. The in-memory engines then split large scans across cores;
+ * results and totals are the same as in a sequential run.
  */
 public class ExpenseQuery {
     /**
-     * Predicate used to filter expenses by category.
-     * Initialized to null, meaning no category filter is applied by default.
+     * Keys expenses can be sorted by.
      */
-    private Predicate<Expense> categoryFilter = null;
+    public enum SortKey {
+        ID,
+        AMOUNT
+    }
 
     /**
-     * Predicate used to filter expenses.
+     * Normalized, immutable form of the criteria, ordering and paging of a query. Queries with equal
+     * keys return the same results from the same ledger, so keys can index cached results.
+     * Whether the query runs in parallel is left out, as it does not change the results.
+     *
+     * @param categories the categories to include, empty for every category
+     * @param minAmount the inclusive minimum amount in minor units, or null
+     * @param maxAmount the inclusive maximum amount in minor units, or null
+     * @param fromDate the inclusive first creation date, or null
+     * @param toDate the inclusive last creation date, or null
+     * @param text the normalized text the description contains, or null
+     * @param sortKey the key the results are sorted by
+     * @param ascending whether the results are in ascending order
+     * @param afterId the ID the results start after, or null
+     * @param offset the number of results to skip
+     * @param limit the maximum number of results, or null
      */
-    private Predicate<Expense> filter = e -> true;
+    public record Key(Set<ExpenseCategory> categories, Long minAmount, Long maxAmount,
+                      LocalDate fromDate, LocalDate toDate, String text, SortKey sortKey, boolean ascending,
+                      Integer afterId, int offset, Integer limit) {
+    }
 
-    /**
-     * Comparator used to sort expenses.
-     */
-    private Comparator<Expense> sorter = Comparator.comparingInt(Expense::getId);
+    /** Categories to include, empty meaning every category. */
+    private final Set<ExpenseCategory> categories = EnumSet.noneOf(ExpenseCategory.class);
+
+    /** Inclusive amount bounds in minor units, null when unbounded. */
+    private Long minAmount = null;
+    private Long maxAmount = null;
+
+    /** Inclusive creation date bounds, null when unbounded. */
+    private LocalDate fromDate = null;
+    private LocalDate toDate = null;
+
+    /** Text the description contains, normalized with {@link #normalizeText(String)}, null for any description. */
+    private String text = null;
+
+    /** Ordering of the results. */
+    private SortKey sortKey = SortKey.ID;
+    private boolean ascending = true;
+
+    /** ID of the expense the results start after, null to start from the first one. */
+    private Integer afterId = null;
+
+    /** Number of results to skip, and maximum number to return, null meaning all of them. */
+    private int offset = 0;
+    private Integer limit = null;
+
+    /** Whether large scans may be split across cores. */
+    private boolean parallel = false;
 
     /**
-     * Returns the current filter predicate.
+     * Returns the filter predicate equivalent to the criteria of the query.
      *
      * @return the filter predicate
      */
     public Predicate<Expense> getFilter() {
-        if (categoryFilter == null) {
-            return filter;
-        }
-        return categoryFilter.and(filter);
+        Set<ExpenseCategory> categories = this.categories.isEmpty() ? null : EnumSet.copyOf(this.categories);
+        Long minAmount = this.minAmount;
+        Long maxAmount = this.maxAmount;
+        LocalDate fromDate = this.fromDate;
+        LocalDate toDate = this.toDate;
+        String text = this.text;
+        return e -> (categories == null || categories.contains(e.getCategory()))
+                && (minAmount == null || e.getAmountMinor() >= minAmount)
+                && (maxAmount == null || e.getAmountMinor() <= maxAmount)
+                && (fromDate == null || !e.getCreationDate().isBefore(fromDate))
+                && (toDate == null || !e.getCreationDate().isAfter(toDate))
+                && (text == null || normalizeText(e.getDescription()).contains(text));
     }
 
     /**
-     * Returns the current comparator for sorting.
+     * Normalizes a description or a searched text, so searches ignore case
+     *
+     * @param text the text to normalize
+     * @return the text in lower case
+     */
+    public static String normalizeText(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the comparator for the requested ordering. Ties in amount are broken by ID.
      *
      * @return the comparator for sorting expenses
      */
     public Comparator<Expense> getSorter() {
-        return sorter;
+        Comparator<Expense> byId = Comparator.comparingInt(Expense::getId);
+        if (sortKey == SortKey.ID) {
+            return ascending ? byId : byId.reversed();
+        }
+        Comparator<Expense> byAmount = Comparator.comparingLong(Expense::getAmountMinor);
+        return (ascending ? byAmount : byAmount.reversed()).thenComparing(byId);
+    }
+
+    /**
+     * Builds the predicate that keeps the results after the cursor expense in the requested order.
+     * Ordered by ID, the cursor does not need to exist; ordered by amount, its amount is looked up.
+     *
+     * @param lookup finds an expense by its ID
+     * @return the cursor predicate, accepting every expense if the query has no cursor
+     * @throws NoSuchElementException if the results are ordered by amount and the cursor expense doesn't exist
+     */
+    public Predicate<Expense> getCursorFilter(IntFunction<Optional<Expense>> lookup) {
+        if (afterId == null) {
+            return e -> true;
+        }
+        int id = afterId;
+        if (sortKey == SortKey.ID) {
+            return ascending ? e -> e.getId() > id : e -> e.getId() < id;
+        }
+        Expense cursor = lookup.apply(id)
+                .orElseThrow(() -> new NoSuchElementException("No such expense with id: " + id));
+        Comparator<Expense> sorter = getSorter();
+        return e -> sorter.compare(e, cursor) > 0;
+    }
+
+    /**
+     * Applies the offset and limit of the query to its matching expenses.
+     * <p>
+     * Without a limit the matches are sorted in full. With one, only the first {@code offset + limit}
+     * matches in the requested order are kept, in a bounded heap, so selecting them costs O(n log k)
+     * and never holds more than k expenses. Matches already in the requested order are read only
+     * until the page is complete.
+     *
+     * @param matches the expenses that match the criteria and cursor of the query
+     * @param sorted true if the matches already come in the requested order
+     * @return the requested page of results, in order
+     */
+    public List<Expense> select(Stream<Expense> matches, boolean sorted) {
+        Comparator<Expense> sorter = getSorter();
+        if (sorted) {
+            Stream<Expense> page = matches.skip(offset);
+            return (limit == null ? page : page.limit(limit)).toList();
+        }
+        if (limit == null) {
+            return matches.sorted(sorter).skip(offset).toList();
+        }
+
+        int window = getWindow();
+        if (window == 0) {
+            return List.of();
+        }
+        // One heap per thread in a parallel stream, merged into the first; the order is total, so the
+        // kept expenses do not depend on how the stream was split
+        PriorityQueue<Expense> heap = matches.collect(Collector.of(
+                () -> new PriorityQueue<>(Math.min(window, 1024), sorter.reversed()),
+                (kept, expense) -> keep(kept, expense, window, sorter),
+                (kept, other) -> {
+                    other.forEach(expense -> keep(kept, expense, window, sorter));
+                    return kept;
+                }));
+        List<Expense> top = new ArrayList<>(heap);
+        top.sort(sorter);
+        return top.size() <= offset ? List.of() : List.copyOf(top.subList(offset, top.size()));
+    }
+
+    /**
+     * Adds an expense to a bounded heap whose head is the worst expense kept
+     */
+    private static void keep(PriorityQueue<Expense> heap, Expense expense, int window, Comparator<Expense> sorter) {
+        if (heap.size() < window) {
+            heap.add(expense);
+        } else if (sorter.compare(expense, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(expense);
+        }
+    }
+
+    /**
+     * Tells whether large scans may be split across cores.
+     *
+     * @return true if the query runs in parallel
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Returns the ID of the expense the results start after.
+     *
+     * @return the cursor ID, or null if the results start from the first expense
+     */
+    public Integer getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * Returns the number of results to skip.
+     *
+     * @return the offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the maximum number of results.
+     *
+     * @return the limit, or null if every result is returned
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of leading results needed to build the page, i.e. offset plus limit.
+     *
+     * @return the window size, or null if the query has no limit
+     */
+    public Integer getWindow() {
+        return limit == null ? null : (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+    }
+
+    /**
+     * Returns the categories to include.
+     *
+     * @return the requested categories, empty if every category matches
+     */
+    public Set<ExpenseCategory> getCategories() {
+        return Collections.unmodifiableSet(categories);
+    }
+
+    /**
+     * Returns the text the descriptions must contain.
+     *
+     * @return the normalized text, or null if any description matches
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the minimum amount to include.
+     *
+     * @return the inclusive minimum amount, or null if there is no lower bound
+     */
+    public Double getMinAmount() {
+        return minAmount == null ? null : Amounts.toUnits(minAmount);
+    }
+
+    /**
+     * Returns the minimum amount to include in minor units.
+     *
+     * @return the inclusive minimum amount in minor units, or null if there is no lower bound
+     */
+    public Long getMinAmountMinor() {
+        return minAmount;
+    }
+
+    /**
+     * Returns the maximum amount to include.
+     *
+     * @return the inclusive maximum amount, or null if there is no upper bound
+     */
+    public Double getMaxAmount() {
+        return maxAmount == null ? null : Amounts.toUnits(maxAmount);
+    }
+
+    /**
+     * Returns the maximum amount to include in minor units.
+     *
+     * @return the inclusive maximum amount in minor units, or null if there is no upper bound
+     */
+    public Long getMaxAmountMinor() {
+        return maxAmount;
     }
 
     /**
-     * Filters expenses by the specified category.
+     * Returns the first creation date to include.
      *
-     * @param category the category as a string
+     * @return the inclusive first date, or null if there is no lower bound
+     */
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    /**
+     * Returns the last creation date to include.
+     *
+     * @return the inclusive last date, or null if there is no upper bound
+     */
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    /**
+     * Returns the key the results are sorted by.
+     *
+     * @return the sort key
+     */
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    /**
+     * Returns the direction of the ordering.
+     *
+     * @return true for ascending, false for descending
+     */
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Returns the normalized key of the query, e.g. to cache its results.
+     *
+     * @return a key equal to that of every query with the same criteria, ordering and paging
+     */
+    public Key key() {
+        return new Key(Set.copyOf(categories), minAmount, maxAmount, fromDate, toDate, text,
+                sortKey, ascending, afterId, offset, limit);
+    }
+
+    /**
+     * Tells whether the criteria contradict each other, e.g. a month outside the requested year.
+     *
+     * @return true if no expense can match
+     */
+    public boolean matchesNothing() {
+        return (minAmount != null && maxAmount != null && minAmount > maxAmount)
+                || (fromDate != null && toDate != null && fromDate.isAfter(toDate));
+    }
+
+    /**
+     * Filters expenses by the specified category. Repeated categories are combined with OR.
+     *
+     * @param category the category to include
      * @return this query instance for chaining
      */
     private ExpenseQuery byCategory(ExpenseCategory category) {
-        if (categoryFilter == null) {
-            categoryFilter = e -> e.getCategory() == category;
-        } else {
-            categoryFilter = categoryFilter.or(e -> e.getCategory() == category);
-        }
+        categories.add(category);
         return this;
     }
 
@@ -70,8 +384,7 @@ public class ExpenseQuery {
      * @return this query instance for chaining
      */
     private ExpenseQuery byMinAmount(double amount) {
-        filter = filter.and(e -> e.getAmount() >= amount);
-        return this;
+        return amountBetween(amount, null);
     }
 
     /**
@@ -81,8 +394,7 @@ public class ExpenseQuery {
      * @return this query instance for chaining
      */
     private ExpenseQuery byMonth(YearMonth yearMonth) {
-        filter = filter.and(e -> YearMonth.from(e.getCreationDate()).equals(yearMonth));
-        return this;
+        return createdBetween(yearMonth.atDay(1), yearMonth.atEndOfMonth());
     }
 
     /**
@@ -92,8 +404,7 @@ public class ExpenseQuery {
      * @return this query instance for chaining
      */
     private ExpenseQuery byYear(Year year) {
-        filter = filter.and(e -> Year.from(e.getCreationDate()).equals(year));
-        return this;
+        return createdBetween(year.atDay(1), year.atMonth(12).atEndOfMonth());
     }
 
     /**
@@ -103,11 +414,161 @@ public class ExpenseQuery {
      * @return this query instance for chaining
      */
     private ExpenseQuery sortByAmount(boolean ascending) {
-        sorter = ascending ? Comparator.comparing(Expense::getAmount)
-                            : Comparator.comparing(Expense::getAmount).reversed();
+        return sortBy(SortKey.AMOUNT, ascending);
+    }
+
+    /**
+     * Limits the query to the given categories, in addition to any already requested.
+     *
+     * @param categories the categories to include
+     * @return this query instance for chaining
+     */
+    public ExpenseQuery inCategories(Collection<ExpenseCategory> categories) {
+        categories.forEach(this::byCategory);
+        return this;
+    }
+
+    /**
+     * Limits the query to an amount range, intersected with any range already requested.
+     * The bounds are narrowed to whole minor units, e.g. a minimum of 10.005 includes 10.01 but not 10.00.
+     *
+     * @param min the inclusive minimum amount, or null for no lower bound
+     * @param max the inclusive maximum amount, or null for no upper bound
+     * @return this query instance for chaining
+     */
+    public ExpenseQuery amountBetween(Double min, Double max) {
+        return amountBetweenMinor(min == null ? null : Amounts.ceilMinor(min), max == null ? null : Amounts.floorMinor(max));
+    }
+
+    /**
+     * Limits the query to an amount range in minor units, intersected with any range already requested.
+     *
+     * @param min the inclusive minimum amount in minor units, or null for no lower bound
+     * @param max the inclusive maximum amount in minor units, or null for no upper bound
+     * @return this query instance for chaining
+     */
+    public ExpenseQuery amountBetweenMinor(Long min, Long max) {
+        if (min != null) {
+            minAmount = minAmount == null ? min : Math.max(minAmount, min);
+        }
+        if (max != null) {
+            maxAmount = maxAmount == null ? max : Math.min(maxAmount, max);
+        }
         return this;
     }
 
+    /**
+     * Limits the query to a creation date range, intersected with any range already requested.
+     *
+     * @param from the inclusive first date, or null for no lower bound
+     * @param to the inclusive last date, or null for no upper bound
+     * @return this query instance for chaining
+     */
+    public ExpenseQuery createdBetween(LocalDate from, LocalDate to) {
+        if (from != null && (fromDate == null || from.isAfter(fromDate))) {
+            fromDate = from;
+        }
+        if (to != null && (toDate == null || to.isBefore(toDate))) {
+            toDate = to;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the ordering of the results.
+     *
+     * @param key the key to sort by
+     * @param ascending true for ascending order, false for descending
+     * @return this query instance for chaining
+     */
+    public ExpenseQuery sortBy(SortKey key, boolean ascending) {
+        this.sortKey = key;
+        this.ascending = ascending;
+        return this;
+    }
+
+    /**
+     * Starts the results after the given expense, in the requested order.
+     *
+     * @param id the ID of the last expense of the previous page, or null to start from the first one
+     * @return this query instance for chaining
+     */
+    public ExpenseQuery after(Integer id) {
+        this.afterId = id;
+        return this;
+    }
+
+    /**
+     * Filters expenses whose description contains the given text, ignoring case.
+     *
+     * @param text the text to search for; null or blank to match any description
+     * @return this query instance for chaining
+     */
+    public ExpenseQuery containing(String text) {
+        this.text = text == null || text.isBlank() ? null : normalizeText(text.strip());
+        return this;
+    }
+
+    /**
+     * Returns one page of the results.
+     *
+     * @param offset the number of results to skip
+     * @param limit the maximum number of results, or null for all of them
+     * @return this query instance for chaining
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public ExpenseQuery page(int offset, Integer limit) {
+        if (offset < 0 || (limit != null && limit < 0)) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        this.offset = offset;
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Lets large scans be split across cores. Results, their order and totals do not change.
+     *
+     * @param parallel true to run the query in parallel
+     * @return this query instance for chaining
+     */
+    public ExpenseQuery parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Renders the criteria of the query, e.g. {@code category IN (FOOD) AND amount >= 5.0 ORDER BY amount DESC LIMIT 20}
+     */
+    @Override
+    public String toString() {
+        List<String> conditions = new ArrayList<>();
+        if (!categories.isEmpty()) {
+            conditions.add("category IN (" + String.join(", ", categories.stream().map(Enum::name).toList()) + ")");
+        }
+        if (minAmount != null) {
+            conditions.add("amount >= " + getMinAmount());
+        }
+        if (maxAmount != null) {
+            conditions.add("amount <= " + getMaxAmount());
+        }
+        if (fromDate != null) {
+            conditions.add("date >= " + fromDate);
+        }
+        if (toDate != null) {
+            conditions.add("date <= " + toDate);
+        }
+        if (text != null) {
+            conditions.add("description CONTAINS '" + text + "'");
+        }
+        String where = conditions.isEmpty() ? "all" : String.join(" AND ", conditions);
+        return where + " ORDER BY " + sortKey.name().toLowerCase() + (ascending ? "" : " DESC")
+                + (afterId == null ? "" : " AFTER " + afterId)
+                + (limit == null ? "" : " LIMIT " + limit)
+                + (offset == 0 ? "" : " OFFSET " + offset)
+                + (parallel ? " PARALLEL" : "");
+    }
+
     public static ExpenseQuery makeQuery(
             List<ExpenseCategory> categoryList,
             Double minAmount,
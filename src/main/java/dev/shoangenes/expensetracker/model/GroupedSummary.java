@@ -0,0 +1,299 @@
+package dev.shoangenes.expensetracker.model;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Totals of the expenses matching a query, split into groups by category, month and/or year.
+ * <p>
+ * Each group has the number of expenses, their total and their smallest and largest amounts,
+ * all in minor units. Groups come ordered by period, then by category, expenses without a category
+ * last and expenses without a creation date after every dated group. Only groups with at least one
+ * expense are listed.
+ *
+ * @param dimensions the dimensions the expenses were grouped by
+ * @param groups the groups with at least one expense
+ */
+public record GroupedSummary(Set<Dimension> dimensions, List<Group> groups) {
+    /**
+     * What expenses can be grouped by
+     */
+    public enum Dimension {
+        CATEGORY, MONTH, YEAR
+    }
+
+    /**
+     * Totals of one group. Dimensions the expenses were not grouped by are null, as are the month
+     * and year of undated expenses and the category of expenses without one; the year of a group
+     * by month is always set.
+     *
+     * @param category the category of the group
+     * @param month the month of the group
+     * @param year the year of the group
+     * @param count the number of expenses in the group
+     * @param sumMinor the total amount in minor units
+     * @param minMinor the smallest amount in minor units
+     * @param maxMinor the largest amount in minor units
+     */
+    public record Group(ExpenseCategory category, YearMonth month, Year year,
+                        long count, long sumMinor, long minMinor, long maxMinor) {
+        /**
+         * Gets the total amount of the group
+         *
+         * @return the total amount, as the nearest double
+         */
+        public double sum() {
+            return Amounts.toUnits(sumMinor);
+        }
+
+        /**
+         * Gets the smallest amount of the group
+         *
+         * @return the smallest amount, as the nearest double
+         */
+        public double min() {
+            return Amounts.toUnits(minMinor);
+        }
+
+        /**
+         * Gets the largest amount of the group
+         *
+         * @return the largest amount, as the nearest double
+         */
+        public double max() {
+            return Amounts.toUnits(maxMinor);
+        }
+    }
+
+    public GroupedSummary {
+        dimensions = dimensions.isEmpty() ? Set.of() : Set.copyOf(EnumSet.copyOf(dimensions));
+        groups = List.copyOf(groups);
+    }
+
+    /**
+     * Single-pass accumulator of a grouped summary.
+     * <p>
+     * Totals are kept in dense arrays indexed by period and category ordinal, one slot per category
+     * plus one for expenses without a category, instead of a map per group. Periods are months or years
+     * counted from the earliest one seen; the arrays grow as expenses outside the covered periods are
+     * added. Accumulators of disjoint parts of a ledger can be merged, e.g. after a parallel scan.
+     */
+    public static final class Accumulator {
+        private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+        private static final int NO_CATEGORY = CATEGORIES.length;
+
+        private final Set<Dimension> dimensions;
+        private final boolean byCategory;
+        private final boolean byMonth;
+        private final boolean byYear;
+        private final int slots;
+
+        /** Period of the first row of the arrays, in months or years since year 0. */
+        private int firstPeriod;
+        private int periods;
+        private long[] counts = new long[0];
+        private long[] sums = new long[0];
+        private long[] mins = new long[0];
+        private long[] maxs = new long[0];
+
+        /** Totals of the expenses without a creation date when grouping by period, one row of slots. */
+        private final long[] undated;
+
+        /**
+         * Creates an empty accumulator
+         *
+         * @param dimensions the dimensions to group by, none for a single group
+         */
+        public Accumulator(Collection<Dimension> dimensions) {
+            this.dimensions = dimensions.isEmpty() ? EnumSet.noneOf(Dimension.class) : EnumSet.copyOf(dimensions);
+            byCategory = this.dimensions.contains(Dimension.CATEGORY);
+            byMonth = this.dimensions.contains(Dimension.MONTH);
+            byYear = this.dimensions.contains(Dimension.YEAR);
+            slots = byCategory ? NO_CATEGORY + 1 : 1;
+            if (!byMonth && !byYear) {
+                grow(0);
+            }
+            undated = new long[4 * slots];
+            for (int slot = 0; slot < slots; slot++) {
+                undated[4 * slot + 2] = Long.MAX_VALUE;
+                undated[4 * slot + 3] = Long.MIN_VALUE;
+            }
+        }
+
+        /**
+         * Adds an expense to its group
+         *
+         * @param expense the expense to add
+         */
+        public void add(Expense expense) {
+            add(expense.getCategory(), expense.getCreationDate(), expense.getAmountMinor());
+        }
+
+        /**
+         * Adds an expense to its group
+         *
+         * @param category the category of the expense, or null
+         * @param date the creation date of the expense, or null
+         * @param amountMinor the amount of the expense in minor units
+         */
+        public void add(ExpenseCategory category, LocalDate date, long amountMinor) {
+            add(category, date, 1, amountMinor, amountMinor, amountMinor);
+        }
+
+        /**
+         * Adds the totals of expenses that all fall in the same group, e.g. computed by a database
+         *
+         * @param category the category of the expenses, or null
+         * @param date any creation date in the period of the expenses, or null
+         * @param count the number of expenses
+         * @param sumMinor their total amount in minor units
+         * @param minMinor their smallest amount in minor units
+         * @param maxMinor their largest amount in minor units
+         */
+        public void add(ExpenseCategory category, LocalDate date, long count, long sumMinor, long minMinor, long maxMinor) {
+            if (count == 0) {
+                return;
+            }
+            int slot = !byCategory ? 0 : category == null ? NO_CATEGORY : category.ordinal();
+            if ((byMonth || byYear) && date == null) {
+                int cell = 4 * slot;
+                undated[cell] += count;
+                undated[cell + 1] += sumMinor;
+                undated[cell + 2] = Math.min(undated[cell + 2], minMinor);
+                undated[cell + 3] = Math.max(undated[cell + 3], maxMinor);
+                return;
+            }
+            int cell = cell(period(date), slot);
+            counts[cell] += count;
+            sums[cell] += sumMinor;
+            mins[cell] = Math.min(mins[cell], minMinor);
+            maxs[cell] = Math.max(maxs[cell], maxMinor);
+        }
+
+        private int period(LocalDate date) {
+            if (byMonth) {
+                return date.getYear() * 12 + date.getMonthValue() - 1;
+            }
+            return byYear ? date.getYear() : 0;
+        }
+
+        /**
+         * Finds the index of a group in the arrays, growing them to cover its period
+         */
+        private int cell(int period, int slot) {
+            if (periods == 0) {
+                firstPeriod = period;
+                grow(0);
+            } else if (period < firstPeriod) {
+                grow(firstPeriod - period);
+                firstPeriod = period;
+            } else if (period >= firstPeriod + periods) {
+                growBack(period - firstPeriod + 1);
+            }
+            return (period - firstPeriod) * slots + slot;
+        }
+
+        /**
+         * Adds empty periods before the covered ones, or the first period when none is covered
+         */
+        private void grow(int before) {
+            int added = periods == 0 ? 1 : before;
+            int length = (periods + added) * slots;
+            int offset = periods == 0 ? 0 : before * slots;
+            counts = shift(counts, length, offset, 0);
+            sums = shift(sums, length, offset, 0);
+            mins = shift(mins, length, offset, Long.MAX_VALUE);
+            maxs = shift(maxs, length, offset, Long.MIN_VALUE);
+            periods += added;
+        }
+
+        /**
+         * Adds empty periods after the covered ones, at least doubling the covered periods
+         */
+        private void growBack(int needed) {
+            int grown = Math.max(needed, periods * 2);
+            int length = grown * slots;
+            counts = shift(counts, length, 0, 0);
+            sums = shift(sums, length, 0, 0);
+            mins = shift(mins, length, 0, Long.MAX_VALUE);
+            maxs = shift(maxs, length, 0, Long.MIN_VALUE);
+            periods = grown;
+        }
+
+        private static long[] shift(long[] values, int length, int offset, long empty) {
+            long[] shifted = new long[length];
+            Arrays.fill(shifted, empty);
+            System.arraycopy(values, 0, shifted, offset, values.length);
+            return shifted;
+        }
+
+        /**
+         * Adds the groups of another accumulator with the same dimensions
+         *
+         * @param other the accumulator to merge into this one
+         * @return this accumulator
+         * @throws IllegalArgumentException if the accumulators group by different dimensions
+         */
+        public Accumulator merge(Accumulator other) {
+            if (!dimensions.equals(other.dimensions)) {
+                throw new IllegalArgumentException("Cannot merge summaries grouped by " + other.dimensions + " into " + dimensions);
+            }
+            for (int cell = 0; cell < other.counts.length; cell++) {
+                if (other.counts[cell] > 0) {
+                    int period = other.firstPeriod + cell / slots;
+                    int slot = cell % slots;
+                    int target = cell(period, slot);
+                    counts[target] += other.counts[cell];
+                    sums[target] += other.sums[cell];
+                    mins[target] = Math.min(mins[target], other.mins[cell]);
+                    maxs[target] = Math.max(maxs[target], other.maxs[cell]);
+                }
+            }
+            for (int cell = 0; cell < slots; cell++) {
+                int index = 4 * cell;
+                undated[index] += other.undated[index];
+                undated[index + 1] += other.undated[index + 1];
+                undated[index + 2] = Math.min(undated[index + 2], other.undated[index + 2]);
+                undated[index + 3] = Math.max(undated[index + 3], other.undated[index + 3]);
+            }
+            return this;
+        }
+
+        /**
+         * Lists the groups with at least one expense
+         *
+         * @return the grouped summary
+         */
+        public GroupedSummary result() {
+            List<Group> groups = new ArrayList<>();
+            for (int cell = 0; cell < counts.length; cell++) {
+                if (counts[cell] > 0) {
+                    int period = firstPeriod + cell / slots;
+                    YearMonth month = byMonth ? YearMonth.of(Math.floorDiv(period, 12), Math.floorMod(period, 12) + 1) : null;
+                    Year year = byMonth ? Year.of(month.getYear()) : byYear ? Year.of(period) : null;
+                    groups.add(new Group(category(cell % slots), month, year,
+                            counts[cell], sums[cell], mins[cell], maxs[cell]));
+                }
+            }
+            for (int slot = 0; slot < slots; slot++) {
+                int index = 4 * slot;
+                if (undated[index] > 0) {
+                    groups.add(new Group(category(slot), null, null,
+                            undated[index], undated[index + 1], undated[index + 2], undated[index + 3]));
+                }
+            }
+            return new GroupedSummary(dimensions, groups);
+        }
+
+        private ExpenseCategory category(int slot) {
+            return byCategory && slot != NO_CATEGORY ? CATEGORIES[slot] : null;
+        }
+    }
+}
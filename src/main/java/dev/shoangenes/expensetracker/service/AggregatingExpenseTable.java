@@ -0,0 +1,106 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+
+/**
+ * Table that keeps {@link ExpenseAggregates} in step with another table and answers sums from them
+ * when it can, falling back to the other table otherwise. Listing is always left to the other table.
+ */
+class AggregatingExpenseTable implements ExpenseTable {
+    private final ExpenseTable table;
+    private final ExpenseAggregates aggregates = new ExpenseAggregates();
+
+    /**
+     * Creates a table that adds running totals to the given one
+     *
+     * @param table the table holding the expenses
+     */
+    AggregatingExpenseTable(ExpenseTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public Expense get(int id) {
+        return table.get(id);
+    }
+
+    @Override
+    public Expense put(Expense expense) {
+        Expense previous = table.put(expense);
+        if (previous != null) {
+            aggregates.remove(previous);
+        }
+        aggregates.add(expense);
+        return previous;
+    }
+
+    @Override
+    public Expense remove(int id) {
+        Expense previous = table.remove(id);
+        if (previous != null) {
+            aggregates.remove(previous);
+        }
+        return previous;
+    }
+
+    @Override
+    public void reset(Map<Integer, Expense> expenses) {
+        table.reset(expenses);
+        aggregates.clear();
+        expenses.values().forEach(aggregates::add);
+    }
+
+    @Override
+    public Collection<Expense> values() {
+        return table.values();
+    }
+
+    @Override
+    public QueryPlan plan(ExpenseQuery query) {
+        return table.plan(query);
+    }
+
+    @Override
+    public List<Expense> list(ExpenseQuery query) {
+        return table.list(query);
+    }
+
+    @Override
+    public Stream<Expense> stream(ExpenseQuery query) {
+        return table.stream(query);
+    }
+
+    @Override
+    public QueryPlan planSum(ExpenseQuery query) {
+        if (aggregates.canAnswer(query)) {
+            return new QueryPlan(QueryPlan.AccessPath.AGGREGATES, aggregates.cells(query), table.size(), true, query);
+        }
+        return table.planSum(query);
+    }
+
+    @Override
+    public long sumMinor(ExpenseQuery query) {
+        if (aggregates.canAnswer(query)) {
+            return aggregates.sumMinor(query);
+        }
+        return table.sumMinor(query);
+    }
+
+    @Override
+    public GroupedSummary group(ExpenseQuery query, Set<GroupedSummary.Dimension> dimensions) {
+        return table.group(query, dimensions);
+    }
+}
@@ -0,0 +1,21 @@
+package dev.shoangenes.expensetracker.service;
+
+/**
+ * Counters of the query result cache of an {@link ExpenseTracker}, to size it.
+ *
+ * @param hits the number of queries answered from the cache
+ * @param misses the number of queries computed, because their result was missing or stale
+ * @param size the number of cached results
+ * @param capacity the maximum number of cached results
+ */
+public record CacheStats(long hits, long misses, int size, int capacity) {
+    /**
+     * Gets the share of queries answered from the cache
+     *
+     * @return the hit ratio between 0 and 1, 0 if no query was run
+     */
+    public double hitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
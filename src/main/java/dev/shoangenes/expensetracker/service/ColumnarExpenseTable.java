@@ -0,0 +1,521 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+
+/**
+ * Table that keeps the expenses in parallel primitive arrays, one per column.
+ * <p>
+ * Amounts are stored in cents, dates as epoch days and categories as ordinals, so a row takes
+ * about 21 bytes plus its description instead of several objects. Scans and sums are plain loops
+ * over the arrays: every row is tested with non-short-circuit comparisons, so the loops stay
+ * branch-free and bound by memory bandwidth. There are no secondary indexes: text searches check the
+ * descriptions of the rows that pass the other criteria.
+ * <p>
+ * Rows are unordered: removing an expense moves the last row into its place. A dense array maps
+ * ids to rows, which suits the sequential ids handed out by the tracker; ids far beyond the rows in the
+ * table, e.g. from a hand-edited ledger, go to a hash map instead, so one large id cannot blow up the
+ * array. Paged listings keep the row
+ * numbers of the best matches in a bounded heap and only turn the final page into expenses.
+ * <p>
+ * Parallel queries split the rows into ranges scanned as fork/join tasks. Matches are merged in row
+ * order and sums are added up in cents, so the answers are exactly those of a sequential scan.
+ */
+class ColumnarExpenseTable implements ExpenseTable {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NO_ROW = -1;
+    private static final byte NO_CATEGORY = -1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+
+    /** How many ids per row the dense id to row array may span before ids go to the sparse map. */
+    private static final int DENSE_IDS_PER_ROW = 4;
+
+    /** Rows a fork/join task scans itself instead of splitting further. */
+    private static final int LEAF_ROWS = 1 << 13;
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private long[] cents = new long[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private byte[] categories = new byte[INITIAL_CAPACITY];
+    private String[] descriptions = new String[INITIAL_CAPACITY];
+
+    /** Row of each id, {@value #NO_ROW} for ids not in the table or kept in {@link #sparseRows}. */
+    private int[] rowById = newRowById(INITIAL_CAPACITY);
+
+    /** Row of each id too large for {@link #rowById}. */
+    private final Map<Integer, Integer> sparseRows = new HashMap<>();
+
+    private static int[] newRowById(int length) {
+        int[] rows = new int[length];
+        Arrays.fill(rows, NO_ROW);
+        return rows;
+    }
+
+    private int rowOf(int id) {
+        if (id >= 0 && id < rowById.length) {
+            return rowById[id];
+        }
+        return sparseRows.isEmpty() ? NO_ROW : sparseRows.getOrDefault(id, NO_ROW);
+    }
+
+    /**
+     * Maps an id to a row, growing the dense array only while it stays proportional to the rows of the table.
+     * Ids below the length of the dense array are always kept in it.
+     */
+    private void setRow(int id, int row) {
+        if (id >= rowById.length) {
+            int length = Math.max(rowById.length * 2, DENSE_IDS_PER_ROW * size);
+            if (id >= length) {
+                sparseRows.put(id, row);
+                return;
+            }
+            int[] grown = newRowById(length);
+            System.arraycopy(rowById, 0, grown, 0, rowById.length);
+            sparseRows.entrySet().removeIf(entry -> {
+                if (entry.getKey() >= length) {
+                    return false;
+                }
+                grown[entry.getKey()] = entry.getValue();
+                return true;
+            });
+            rowById = grown;
+        }
+        rowById[id] = row;
+    }
+
+    private void clearRow(int id) {
+        if (id < rowById.length) {
+            rowById[id] = NO_ROW;
+        } else {
+            sparseRows.remove(id);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Expense get(int id) {
+        int row = rowOf(id);
+        return row == NO_ROW ? null : materialize(row);
+    }
+
+    private Expense materialize(int row) {
+        return Expense.restoreMinor(ids[row], descriptions[row], cents[row],
+                epochDays[row] == NO_DATE ? null : LocalDate.ofEpochDay(epochDays[row]),
+                categories[row] == NO_CATEGORY ? null : CATEGORIES[categories[row]]);
+    }
+
+    @Override
+    public Expense put(Expense expense) {
+        int id = expense.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative expense id: " + id);
+        }
+        int row = rowOf(id);
+        Expense previous = row == NO_ROW ? null : materialize(row);
+        if (row == NO_ROW) {
+            row = size++;
+            ensureCapacity(size);
+            setRow(id, row);
+        }
+        ids[row] = id;
+        cents[row] = expense.getAmountMinor();
+        epochDays[row] = expense.getCreationDate() == null ? NO_DATE : (int) expense.getCreationDate().toEpochDay();
+        categories[row] = expense.getCategory() == null ? NO_CATEGORY : (byte) expense.getCategory().ordinal();
+        descriptions[row] = expense.getDescription();
+        return previous;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int length = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, length);
+        cents = Arrays.copyOf(cents, length);
+        epochDays = Arrays.copyOf(epochDays, length);
+        categories = Arrays.copyOf(categories, length);
+        descriptions = Arrays.copyOf(descriptions, length);
+    }
+
+    @Override
+    public Expense remove(int id) {
+        int row = rowOf(id);
+        if (row == NO_ROW) {
+            return null;
+        }
+        Expense previous = materialize(row);
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            cents[row] = cents[last];
+            epochDays[row] = epochDays[last];
+            categories[row] = categories[last];
+            descriptions[row] = descriptions[last];
+            setRow(ids[row], row);
+        }
+        descriptions[last] = null;
+        clearRow(id);
+        return previous;
+    }
+
+    @Override
+    public void reset(Map<Integer, Expense> expenses) {
+        for (int row = 0; row < size; row++) {
+            clearRow(ids[row]);
+        }
+        Arrays.fill(descriptions, 0, size, null);
+        size = 0;
+        ensureCapacity(expenses.size());
+        expenses.values().forEach(this::put);
+    }
+
+    @Override
+    public Collection<Expense> values() {
+        List<Expense> expenses = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            expenses.add(materialize(row));
+        }
+        return expenses;
+    }
+
+    @Override
+    public QueryPlan plan(ExpenseQuery query) {
+        if (query.matchesNothing()) {
+            return new QueryPlan(QueryPlan.AccessPath.EMPTY, 0, size, true, query);
+        }
+        return new QueryPlan(QueryPlan.AccessPath.COLUMN_SCAN, size, size, false, query);
+    }
+
+    @Override
+    public List<Expense> list(ExpenseQuery query) {
+        if (query.matchesNothing()) {
+            return List.of();
+        }
+        Bounds bounds = new Bounds(query);
+        RowOrder order = new RowOrder(query);
+        int[] rows = isParallel(query)
+                ? ForkJoinPool.commonPool().invoke(new MatchTask(bounds, order, 0, size))
+                : matchRows(bounds, order, 0, size);
+
+        Integer window = query.getWindow();
+        List<Expense> matches = new ArrayList<>();
+        if (window == null) {
+            for (int row : rows) {
+                matches.add(materialize(row));
+            }
+        } else if (window > 0) {
+            PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(window, 1024) + 1, order.reversed());
+            for (int row : rows) {
+                if (heap.size() < window) {
+                    heap.add(row);
+                } else if (order.compare(row, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(row);
+                }
+            }
+            heap.forEach(row -> matches.add(materialize(row)));
+        }
+        matches.sort(query.getSorter());
+        return matches.size() <= query.getOffset() ? List.of() : matches.subList(query.getOffset(), matches.size());
+    }
+
+    @Override
+    public Stream<Expense> stream(ExpenseQuery query) {
+        if (query.matchesNothing()) {
+            return Stream.empty();
+        }
+        Bounds bounds = new Bounds(query);
+        return IntStream.range(0, size)
+                .filter(row -> bounds.matches(cents[row], epochDays[row], categories[row]) && bounds.matchesText(descriptions[row]))
+                .mapToObj(this::materialize);
+    }
+
+    @Override
+    public long sumMinor(ExpenseQuery query) {
+        if (query.matchesNothing()) {
+            return 0;
+        }
+        Bounds bounds = new Bounds(query);
+        return isParallel(query)
+                ? ForkJoinPool.commonPool().invoke(new SumTask(bounds, 0, size))
+                : sumRows(bounds, 0, size);
+    }
+
+    @Override
+    public GroupedSummary group(ExpenseQuery query, Set<GroupedSummary.Dimension> dimensions) {
+        if (query.matchesNothing()) {
+            return new GroupedSummary.Accumulator(dimensions).result();
+        }
+        Bounds bounds = new Bounds(query);
+        GroupedSummary.Accumulator totals = isParallel(query)
+                ? ForkJoinPool.commonPool().invoke(new GroupTask(bounds, dimensions, 0, size))
+                : groupRows(bounds, dimensions, 0, size);
+        return totals.result();
+    }
+
+    private boolean isParallel(ExpenseQuery query) {
+        return query.isParallel() && size >= PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * Finds the rows of a range that match the bounds and come after the cursor
+     *
+     * @return the matching rows, in row order
+     */
+    private int[] matchRows(Bounds bounds, RowOrder order, int from, int to) {
+        int[] rows = new int[16];
+        int count = 0;
+        for (int row = from; row < to; row++) {
+            if (bounds.matches(cents[row], epochDays[row], categories[row]) && order.isAfterCursor(row)
+                    && bounds.matchesText(descriptions[row])) {
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, count * 2);
+                }
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Adds up the amounts in cents of the rows of a range that match the bounds
+     */
+    private long sumRows(Bounds bounds, int from, int to) {
+        long minCents = bounds.minCents;
+        long maxCents = bounds.maxCents;
+        int fromDay = bounds.fromDay;
+        int toDay = bounds.toDay;
+        long categoryMask = bounds.categoryMask;
+
+        long total = 0;
+        for (int row = from; row < to; row++) {
+            long amount = cents[row];
+            int day = epochDays[row];
+            boolean match = amount >= minCents & amount <= maxCents
+                    & day >= fromDay & day <= toDay
+                    & (categoryMask >>> (categories[row] & 63) & 1) != 0;
+            if (match && bounds.text != null) {
+                match = bounds.matchesText(descriptions[row]);
+            }
+            total += match ? amount : 0;
+        }
+        return total;
+    }
+
+    /**
+     * Adds the rows of a range that match the bounds to the totals of their groups
+     */
+    private GroupedSummary.Accumulator groupRows(Bounds bounds, Set<GroupedSummary.Dimension> dimensions, int from, int to) {
+        GroupedSummary.Accumulator totals = new GroupedSummary.Accumulator(dimensions);
+        boolean dated = dimensions.contains(GroupedSummary.Dimension.MONTH) || dimensions.contains(GroupedSummary.Dimension.YEAR);
+        for (int row = from; row < to; row++) {
+            if (bounds.matches(cents[row], epochDays[row], categories[row]) && bounds.matchesText(descriptions[row])) {
+                int day = epochDays[row];
+                totals.add(categories[row] == NO_CATEGORY ? null : CATEGORIES[categories[row]],
+                        !dated || day == NO_DATE ? null : LocalDate.ofEpochDay(day), cents[row]);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Finds the matching rows of a range, splitting it in halves down to {@value #LEAF_ROWS} rows.
+     */
+    private final class MatchTask extends RecursiveTask<int[]> {
+        private final Bounds bounds;
+        private final RowOrder order;
+        private final int from;
+        private final int to;
+
+        MatchTask(Bounds bounds, RowOrder order, int from, int to) {
+            this.bounds = bounds;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= LEAF_ROWS) {
+                return matchRows(bounds, order, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            MatchTask left = new MatchTask(bounds, order, from, middle);
+            left.fork();
+            int[] right = new MatchTask(bounds, order, middle, to).compute();
+            int[] rows = left.join();
+            int[] merged = Arrays.copyOf(rows, rows.length + right.length);
+            System.arraycopy(right, 0, merged, rows.length, right.length);
+            return merged;
+        }
+    }
+
+    /**
+     * Adds up the matching amounts of a range, splitting it in halves down to {@value #LEAF_ROWS} rows.
+     */
+    private final class SumTask extends RecursiveTask<Long> {
+        private final Bounds bounds;
+        private final int from;
+        private final int to;
+
+        SumTask(Bounds bounds, int from, int to) {
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= LEAF_ROWS) {
+                return sumRows(bounds, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            SumTask left = new SumTask(bounds, from, middle);
+            left.fork();
+            long right = new SumTask(bounds, middle, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * Groups the matching rows of a range, splitting it in halves down to {@value #LEAF_ROWS} rows.
+     */
+    private final class GroupTask extends RecursiveTask<GroupedSummary.Accumulator> {
+        private final Bounds bounds;
+        private final Set<GroupedSummary.Dimension> dimensions;
+        private final int from;
+        private final int to;
+
+        GroupTask(Bounds bounds, Set<GroupedSummary.Dimension> dimensions, int from, int to) {
+            this.bounds = bounds;
+            this.dimensions = dimensions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GroupedSummary.Accumulator compute() {
+            if (to - from <= LEAF_ROWS) {
+                return groupRows(bounds, dimensions, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            GroupTask left = new GroupTask(bounds, dimensions, from, middle);
+            left.fork();
+            GroupedSummary.Accumulator right = new GroupTask(bounds, dimensions, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Ordering of a query over row numbers, compared on the columns, and its cursor.
+     */
+    private final class RowOrder implements Comparator<Integer> {
+        final boolean byAmount;
+        final boolean ascending;
+        final boolean hasCursor;
+        long afterCents;
+        int afterId;
+
+        RowOrder(ExpenseQuery query) {
+            byAmount = query.getSortKey() == ExpenseQuery.SortKey.AMOUNT;
+            ascending = query.isAscending();
+            hasCursor = query.getAfterId() != null;
+            if (hasCursor) {
+                afterId = query.getAfterId();
+                if (byAmount) {
+                    int row = rowOf(afterId);
+                    if (row == NO_ROW) {
+                        throw new NoSuchElementException("No such expense with id: " + afterId);
+                    }
+                    afterCents = cents[row];
+                }
+            }
+        }
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            return compareKeys(cents[a], ids[a], cents[b], ids[b]);
+        }
+
+        boolean isAfterCursor(int row) {
+            return !hasCursor || compareKeys(cents[row], ids[row], afterCents, afterId) > 0;
+        }
+
+        private int compareKeys(long centsA, int idA, long centsB, int idB) {
+            if (byAmount) {
+                int byCents = Long.compare(centsA, centsB);
+                if (byCents != 0) {
+                    return ascending ? byCents : -byCents;
+                }
+                return Integer.compare(idA, idB);
+            }
+            int byId = Integer.compare(idA, idB);
+            return ascending ? byId : -byId;
+        }
+    }
+
+    /**
+     * Criteria of a query translated to the units of the columns.
+     * Unbounded criteria become the widest bounds, so every row is tested the same way.
+     */
+    private static final class Bounds {
+        final long minCents;
+        final long maxCents;
+        final int fromDay;
+        final int toDay;
+
+        /** Bit per category ordinal to include; bit 63 stands for expenses without a category. */
+        final long categoryMask;
+
+        /** Normalized text the descriptions contain, null for any description. */
+        final String text;
+
+        Bounds(ExpenseQuery query) {
+            minCents = query.getMinAmountMinor() == null ? Long.MIN_VALUE : query.getMinAmountMinor();
+            maxCents = query.getMaxAmountMinor() == null ? Long.MAX_VALUE : query.getMaxAmountMinor();
+            fromDay = query.getFromDate() == null ? Integer.MIN_VALUE : (int) query.getFromDate().toEpochDay();
+            toDay = query.getToDate() == null ? Integer.MAX_VALUE : (int) query.getToDate().toEpochDay();
+
+            long mask = 0;
+            for (ExpenseCategory category : query.getCategories()) {
+                mask |= 1L << category.ordinal();
+            }
+            categoryMask = query.getCategories().isEmpty() ? -1L : mask;
+            text = query.getText();
+        }
+
+        boolean matches(long amount, int day, byte category) {
+            return amount >= minCents & amount <= maxCents
+                    & day >= fromDay & day <= toDay
+                    & (categoryMask >>> (category & 63) & 1) != 0;
+        }
+
+        boolean matchesText(String description) {
+            return text == null || ExpenseQuery.normalizeText(description).contains(text);
+        }
+    }
+}
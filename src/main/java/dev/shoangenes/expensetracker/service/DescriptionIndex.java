@@ -0,0 +1,147 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+
+/**
+ * Inverted index of expense descriptions, for searches of the expenses whose description contains a text.
+ * <p>
+ * Descriptions are normalized with {@link ExpenseQuery#normalizeText(String)} and indexed by gram, every run
+ * of one, two or three consecutive characters. Each gram maps to a posting list, the ascending IDs of the
+ * expenses that contain it. A text of up to three characters is a gram itself, so its posting list is the
+ * answer. A longer text can only be in the descriptions holding all of its trigrams, so the search intersects
+ * their posting lists, smallest first, and checks the few candidates left.
+ * <p>
+ * The indexed description of each expense is kept, so an expense whose description was changed in place
+ * can still be removed from the postings of its old description.
+ */
+class DescriptionIndex {
+    private static final int GRAM = 3;
+
+    private final Map<Integer, String> texts = new HashMap<>();
+    private final Map<String, PostingList> byGram = new HashMap<>();
+
+    /**
+     * Indexes the description of an expense, replacing its previous one
+     *
+     * @param id the ID of the expense
+     * @param description the description of the expense
+     */
+    void add(int id, String description) {
+        String text = ExpenseQuery.normalizeText(description == null ? "" : description);
+        String previous = texts.put(id, text);
+        if (text.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            unindex(id, previous);
+        }
+        grams(text, 1, GRAM).forEach(gram -> byGram.computeIfAbsent(gram, key -> new PostingList()).add(id));
+    }
+
+    /**
+     * Removes the description of an expense from the index
+     *
+     * @param id the ID of the expense
+     */
+    void remove(int id) {
+        String previous = texts.remove(id);
+        if (previous != null) {
+            unindex(id, previous);
+        }
+    }
+
+    private void unindex(int id, String text) {
+        for (String gram : grams(text, 1, GRAM)) {
+            PostingList ids = byGram.get(gram);
+            if (ids != null && ids.remove(id) && ids.size() == 0) {
+                byGram.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Removes every description from the index
+     */
+    void clear() {
+        texts.clear();
+        byGram.clear();
+    }
+
+    /**
+     * Estimates how many expenses a search reads: the posting list of a text of up to three characters,
+     * or the shortest one among the trigrams of a longer text
+     *
+     * @param text the normalized text to search for
+     * @param cap the count above which the exact value does not matter
+     * @return the estimated number of candidates, or a number above the cap
+     */
+    long count(String text, long cap) {
+        if (text.isEmpty()) {
+            return texts.size();
+        }
+        return gramLists(text).stream().mapToLong(PostingList::size).min().orElse(0);
+    }
+
+    /**
+     * Finds the expenses whose description contains a text
+     *
+     * @param text the normalized text to search for
+     * @return the IDs of the matching expenses, in ascending order
+     */
+    IntStream ids(String text) {
+        if (text.isEmpty()) {
+            return texts.keySet().stream().mapToInt(Integer::intValue).sorted();
+        }
+        List<PostingList> lists = gramLists(text);
+        if (text.length() <= GRAM) {
+            // The text is a gram, so every expense in its postings contains it
+            return lists.isEmpty() ? IntStream.empty() : Arrays.stream(lists.get(0).toArray());
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        int[] candidates = lists.isEmpty() ? new int[0] : lists.get(0).toArray();
+        for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+            candidates = lists.get(i).intersect(candidates);
+        }
+        return Arrays.stream(candidates).filter(id -> texts.get(id).contains(text));
+    }
+
+    /**
+     * Gets the posting list of a text of up to three characters, or those of the distinct trigrams of a longer
+     * one, an empty list if one of them is not indexed
+     */
+    private List<PostingList> gramLists(String text) {
+        List<PostingList> lists = new ArrayList<>();
+        int length = Math.min(text.length(), GRAM);
+        for (String gram : grams(text, length, length)) {
+            PostingList ids = byGram.get(gram);
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            lists.add(ids);
+        }
+        return lists;
+    }
+
+    /**
+     * Gets the distinct runs of consecutive characters of a text, of the given lengths
+     */
+    private static Set<String> grams(String text, int shortest, int longest) {
+        Set<String> grams = new HashSet<>();
+        for (int length = shortest; length <= longest; length++) {
+            for (int i = 0; i + length <= text.length(); i++) {
+                grams.add(text.substring(i, i + length));
+            }
+        }
+        return grams;
+    }
+}
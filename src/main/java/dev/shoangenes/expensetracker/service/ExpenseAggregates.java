@@ -0,0 +1,171 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+
+/**
+ * Running totals of the in-memory ledger, by category and month, by category and year, and overall.
+ * <p>
+ * Totals are kept in minor units, so adding and removing the same expense always restores the previous total.
+ * A query can be answered from them when it has no amount bounds nor text and its dates, if any, cover whole
+ * months: it then costs a handful of lookups whatever the size of the ledger. Expenses without a
+ * creation date only count in the overall totals, which no dated query reads.
+ */
+class ExpenseAggregates {
+    private static final int NO_CATEGORY = ExpenseCategory.values().length;
+
+    private final NavigableMap<YearMonth, Totals> byMonth = new TreeMap<>();
+    private final NavigableMap<Year, Totals> byYear = new TreeMap<>();
+    private final Totals overall = new Totals();
+
+    /**
+     * Adds an expense to the totals
+     *
+     * @param expense the expense to count
+     */
+    void add(Expense expense) {
+        apply(expense, 1);
+    }
+
+    /**
+     * Removes an expense from the totals
+     *
+     * @param expense the counted state of the expense
+     */
+    void remove(Expense expense) {
+        apply(expense, -1);
+    }
+
+    private void apply(Expense expense, int sign) {
+        int slot = expense.getCategory() == null ? NO_CATEGORY : expense.getCategory().ordinal();
+        long cents = expense.getAmountMinor();
+        overall.apply(slot, cents, sign);
+        LocalDate date = expense.getCreationDate();
+        if (date != null) {
+            apply(byMonth, YearMonth.from(date), slot, cents, sign);
+            apply(byYear, Year.from(date), slot, cents, sign);
+        }
+    }
+
+    private static <K> void apply(NavigableMap<K, Totals> totals, K key, int slot, long cents, int sign) {
+        Totals bucket = totals.computeIfAbsent(key, k -> new Totals());
+        if (bucket.apply(slot, cents, sign) == 0) {
+            totals.remove(key);
+        }
+    }
+
+    /**
+     * Removes every expense from the totals
+     */
+    void clear() {
+        byMonth.clear();
+        byYear.clear();
+        overall.clear();
+    }
+
+    /**
+     * Tells whether the totals can answer a query: no amount bounds nor text, and dates on month boundaries
+     *
+     * @param query the query to check
+     * @return true if {@link #sumMinor(ExpenseQuery)} gives the exact total of the query
+     */
+    boolean canAnswer(ExpenseQuery query) {
+        return query.getMinAmountMinor() == null && query.getMaxAmountMinor() == null && query.getText() == null
+                && !query.matchesNothing()
+                && (query.getFromDate() == null || query.getFromDate().getDayOfMonth() == 1)
+                && (query.getToDate() == null || query.getToDate().equals(YearMonth.from(query.getToDate()).atEndOfMonth()));
+    }
+
+    /**
+     * Counts the running totals read to answer a query
+     *
+     * @param query a query the totals can answer
+     * @return the number of totals read
+     */
+    long cells(ExpenseQuery query) {
+        int categories = query.getCategories().isEmpty() ? NO_CATEGORY + 1 : query.getCategories().size();
+        return (long) buckets(query).size() * categories;
+    }
+
+    /**
+     * Adds up the amounts of the expenses that match a query
+     *
+     * @param query a query the totals can answer
+     * @return the total amount in minor units
+     */
+    long sumMinor(ExpenseQuery query) {
+        Set<ExpenseCategory> categories = query.getCategories();
+        long total = 0;
+        for (Totals bucket : buckets(query)) {
+            if (categories.isEmpty()) {
+                total += bucket.sum;
+            } else {
+                for (ExpenseCategory category : categories) {
+                    total += bucket.cents[category.ordinal()];
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Picks the coarsest totals covering the dates of a query: overall, whole years or months
+     */
+    private Collection<Totals> buckets(ExpenseQuery query) {
+        LocalDate from = query.getFromDate();
+        LocalDate to = query.getToDate();
+        if (from == null && to == null) {
+            return Set.of(overall);
+        }
+        boolean wholeYears = (from == null || from.getDayOfYear() == 1)
+                && (to == null || to.getDayOfYear() == to.lengthOfYear());
+        if (wholeYears) {
+            return range(byYear, from == null ? null : Year.from(from), to == null ? null : Year.from(to));
+        }
+        return range(byMonth, from == null ? null : YearMonth.from(from), to == null ? null : YearMonth.from(to));
+    }
+
+    private static <K extends Comparable<? super K>> Collection<Totals> range(NavigableMap<K, Totals> totals, K from, K to) {
+        if (from != null && to != null) {
+            return totals.subMap(from, true, to, true).values();
+        }
+        return from != null ? totals.tailMap(from, true).values() : totals.headMap(to, true).values();
+    }
+
+    /**
+     * Amounts in cents per category, the last slot for expenses without one, and their number.
+     */
+    private static final class Totals {
+        final long[] cents = new long[NO_CATEGORY + 1];
+        long sum;
+        long count;
+
+        /**
+         * Adds or subtracts an expense
+         *
+         * @return the number of expenses left in the totals
+         */
+        long apply(int slot, long amount, int sign) {
+            cents[slot] += sign * amount;
+            sum += sign * amount;
+            count += sign;
+            return count;
+        }
+
+        void clear() {
+            Arrays.fill(cents, 0);
+            sum = 0;
+            count = 0;
+        }
+    }
+}
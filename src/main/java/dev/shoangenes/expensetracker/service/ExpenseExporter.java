@@ -0,0 +1,205 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import com.google.gson.stream.JsonWriter;
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Amounts;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseAdapter;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.storage.AtomicFiles;
+import dev.shoangenes.expensetracker.storage.BinarySnapshotFormat;
+
+/**
+ * Writes the expenses of a ledger that match a query to a CSV, JSON Lines or binary file.
+ * <p>
+ * Expenses are read with {@link ExpenseTracker#streamExpenses(ExpenseQuery)} and written one at a time
+ * through a {@value #BUFFER_SIZE}-byte buffer, so memory stays flat whatever the size of the ledger.
+ * Expenses come in storage order; ordering and paging of the query are ignored. Mutations of the ledger
+ * wait until the export is done.
+ * <p>
+ * CSV files have the header {@code id,date,category,description,amount}, with amounts as decimals in currency
+ * units and categories as enum names. JSON Lines files hold one object per expense, as stored in the journal.
+ * Both can be read back by {@link ExpenseImporter}. Binary files use the layout of {@link BinarySnapshotFormat}
+ * and can be opened as a ledger snapshot.
+ */
+public class ExpenseExporter {
+    /** Bytes buffered before they are written out. */
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Layouts of an export file.
+     */
+    public enum Format {
+        /** Comma-separated values with a header. */
+        CSV,
+        /** One JSON object per line. */
+        JSONL,
+        /** Columns of a binary snapshot. */
+        BINARY;
+
+        /**
+         * Picks the format from the file name: files ending in '.jsonl' or '.ndjson' are JSON Lines,
+         * files ending in '.bin' binary, others CSV
+         *
+         * @param path the file to export to
+         * @return the format of the file
+         */
+        public static Format forPath(Path path) {
+            String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+                return JSONL;
+            }
+            return name.endsWith(".bin") ? BINARY : CSV;
+        }
+    }
+
+    private static final ExpenseAdapter ADAPTER = new ExpenseAdapter();
+
+    private final ExpenseTracker tracker;
+
+    /**
+     * Creates an exporter
+     *
+     * @param tracker the ledger to read the expenses from
+     */
+    public ExpenseExporter(ExpenseTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    /**
+     * Exports the matching expenses to a file, replacing it atomically once it is complete
+     *
+     * @param query the filters to apply
+     * @param format the layout of the file
+     * @param target the file to write
+     * @return the number of expenses written
+     * @throws ExpenseStorageException if the ledger cannot be read or the file cannot be written
+     */
+    public long export(ExpenseQuery query, Format format, Path target) {
+        long[] written = {0};
+        AtomicFiles.replace(target, temp -> {
+            try (Stream<Expense> matches = tracker.streamExpenses(query)) {
+                if (format == Format.BINARY) {
+                    written[0] = new BinarySnapshotFormat().write(temp, matches);
+                    return;
+                }
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    written[0] = writeText(matches, format, channel);
+                } catch (IOException e) {
+                    throw new ExpenseStorageException("Error writing expenses to file: " + target, e);
+                }
+            }
+        });
+        return written[0];
+    }
+
+    /**
+     * Exports the matching expenses to a channel, e.g. standard output. The channel is left open.
+     *
+     * @param query the filters to apply
+     * @param format the layout of the output, CSV or JSON Lines
+     * @param channel where to write
+     * @return the number of expenses written
+     * @throws ExpenseStorageException if the ledger cannot be read or the channel cannot be written
+     * @throws IllegalArgumentException if the format is binary, which can only be written to a file
+     */
+    public long export(ExpenseQuery query, Format format, WritableByteChannel channel) {
+        if (format == Format.BINARY) {
+            throw new IllegalArgumentException("Binary exports must be written to a file");
+        }
+        try (Stream<Expense> matches = tracker.streamExpenses(query)) {
+            return writeText(matches, format, channel);
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error writing exported expenses", e);
+        }
+    }
+
+    private static long writeText(Stream<Expense> matches, Format format, WritableByteChannel channel) throws IOException {
+        BufferedWriter out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+        long written = 0;
+        if (format == Format.CSV) {
+            out.write("id,date,category,description,amount\n");
+        }
+        Iterator<Expense> iterator = matches.iterator();
+        while (iterator.hasNext()) {
+            Expense expense = iterator.next();
+            if (format == Format.CSV) {
+                writeCsv(out, expense);
+            } else {
+                writeJson(out, expense);
+            }
+            written++;
+        }
+        out.flush();
+        return written;
+    }
+
+    private static void writeCsv(Writer out, Expense expense) throws IOException {
+        out.write(Integer.toString(expense.getId()));
+        out.write(',');
+        out.write(expense.getCreationDate().toString());
+        out.write(',');
+        if (expense.getCategory() != null) {
+            out.write(expense.getCategory().name());
+        }
+        out.write(',');
+        writeCsvField(out, expense.getDescription());
+        out.write(',');
+        writeAmount(out, expense.getAmountMinor());
+        out.write('\n');
+    }
+
+    /**
+     * Writes a field, quoted if it holds a separator, a quote or a line break
+     */
+    private static void writeCsvField(Writer out, String field) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            char c = field.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(field);
+            return;
+        }
+        out.write('"');
+        out.write(field.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * Writes an amount in minor units as a decimal in currency units, e.g. 1250 as {@code 12.50}
+     */
+    private static void writeAmount(Writer out, long minor) throws IOException {
+        if (minor < 0) {
+            out.write('-');
+        }
+        long units = Math.abs(minor / Amounts.MINOR_PER_UNIT);
+        long cents = Math.abs(minor % Amounts.MINOR_PER_UNIT);
+        out.write(Long.toString(units));
+        out.write('.');
+        if (cents < 10) {
+            out.write('0');
+        }
+        out.write(Long.toString(cents));
+    }
+
+    private static void writeJson(Writer out, Expense expense) throws IOException {
+        // JsonWriter writes straight through to the buffer; flushing it would flush the buffer on every row
+        ADAPTER.write(new JsonWriter(out), expense);
+        out.write('\n');
+    }
+}
@@ -0,0 +1,386 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Amounts;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+
+/**
+ * Loads expenses from a CSV or JSON Lines file into a ledger.
+ * <p>
+ * The file is streamed through a bounded pipeline: a parser thread reads, parses and validates the rows
+ * into batches and hands them over through a small queue, so it runs ahead of the inserts by at most a few
+ * batches and memory stays flat whatever the size of the file. Each batch gets its IDs as one block and is
+ * added with {@link ExpenseTracker#addAll(List)} inside a transaction, committed with a single write at every
+ * checkpoint and at the end. If the import fails, the expenses added since the last checkpoint are rolled back.
+ * <p>
+ * Rows that cannot be parsed or break the rules of {@link Expense} do not stop the import. They are written
+ * to a reject file, one per line: the line number, the reason and the row, separated by tabs, with the line
+ * breaks of a row spanning lines written as {@code \n}.
+ * <p>
+ * CSV files start with a header naming the columns: {@code description} and {@code amount} are required,
+ * {@code category} and {@code date} optional, any other column is ignored. Fields may be quoted, with
+ * {@code ""} for a quote, and quoted fields may span lines, as {@link ExpenseExporter} writes descriptions
+ * holding line breaks; each line break in them is read as {@code \n}. JSON Lines files hold one object per line with the same
+ * fields, or the {@code amountMinor} and {@code creationDate} fields of exported expenses. Amounts are
+ * decimals in currency units, categories enum names or display names, dates ISO dates; rows without
+ * a date are created today.
+ */
+public class ExpenseImporter {
+    /** Rows parsed and inserted together. */
+    public static final int BATCH_SIZE = 4096;
+
+    /** Rows added between two commits, unless the import says otherwise. */
+    public static final int DEFAULT_CHECKPOINT = 100_000;
+
+    /** Batches the parser may run ahead of the inserts. */
+    private static final int QUEUE_CAPACITY = 4;
+
+    /**
+     * Layouts of the rows of an import file.
+     */
+    public enum Format {
+        /** Comma-separated values with a header. */
+        CSV,
+        /** One JSON object per line. */
+        JSONL;
+
+        /**
+         * Picks the format from the file name: files ending in '.jsonl' or '.ndjson' are JSON Lines, others CSV
+         *
+         * @param path the file to import
+         * @return the format of the file
+         */
+        public static Format forPath(Path path) {
+            String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") ? JSONL : CSV;
+        }
+    }
+
+    /**
+     * Outcome of an import.
+     *
+     * @param imported the number of expenses added
+     * @param rejected the number of rows written to the reject file
+     */
+    public record Result(long imported, long rejected) {
+    }
+
+    /** Rows parsed together; the last batch of a file is marked, a failed parse carries the failure. */
+    private record Batch(List<Expense> expenses, List<String> rejects, boolean last, Exception failure) {
+    }
+
+    private final ExpenseTracker tracker;
+
+    /**
+     * Creates an importer
+     *
+     * @param tracker the ledger to add the expenses to
+     */
+    public ExpenseImporter(ExpenseTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    /**
+     * Imports a file, committing every {@value #DEFAULT_CHECKPOINT} rows
+     *
+     * @param source the file to import
+     * @param format the layout of the rows
+     * @param rejects the file receiving the rejected rows, only created if a row is rejected
+     * @return the number of imported and rejected rows
+     * @throws ExpenseStorageException if a file cannot be read or written, or the ledger cannot be updated
+     * @throws IllegalArgumentException if a CSV file has no valid header
+     */
+    public Result importFile(Path source, Format format, Path rejects) {
+        return importFile(source, format, rejects, DEFAULT_CHECKPOINT);
+    }
+
+    /**
+     * Imports a file
+     *
+     * @param source the file to import
+     * @param format the layout of the rows
+     * @param rejects the file receiving the rejected rows, only created if a row is rejected
+     * @param checkpoint the number of rows added between two commits, 0 to commit once at the end
+     * @return the number of imported and rejected rows
+     * @throws ExpenseStorageException if a file cannot be read or written, or the ledger cannot be updated
+     * @throws IllegalArgumentException if the checkpoint is negative or a CSV file has no valid header
+     */
+    public Result importFile(Path source, Format format, Path rejects, int checkpoint) {
+        if (checkpoint < 0) {
+            throw new IllegalArgumentException("Checkpoint cannot be negative: " + checkpoint);
+        }
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Thread parser = new Thread(() -> parse(source, format, queue), "expense-import-" + source.getFileName());
+        parser.setDaemon(true);
+        parser.start();
+
+        long imported = 0;
+        long rejected = 0;
+        long sinceCheckpoint = 0;
+        BufferedWriter rejectsOut = null;
+        boolean open = false;
+        try {
+            tracker.begin();
+            open = true;
+            Batch batch;
+            do {
+                batch = take(queue, source);
+                if (batch.failure() instanceof RuntimeException e) {
+                    throw e;
+                } else if (batch.failure() != null) {
+                    throw new ExpenseStorageException("Error reading expenses to import from file: " + source, batch.failure());
+                }
+
+                if (!batch.rejects().isEmpty()) {
+                    if (rejectsOut == null) {
+                        rejectsOut = Files.newBufferedWriter(rejects, StandardCharsets.UTF_8);
+                    }
+                    for (String reject : batch.rejects()) {
+                        rejectsOut.write(reject);
+                        rejectsOut.newLine();
+                    }
+                    rejected += batch.rejects().size();
+                }
+
+                tracker.addAll(batch.expenses());
+                imported += batch.expenses().size();
+                sinceCheckpoint += batch.expenses().size();
+                if (checkpoint > 0 && sinceCheckpoint >= checkpoint) {
+                    open = false;
+                    tracker.commit();
+                    tracker.begin();
+                    open = true;
+                    sinceCheckpoint = 0;
+                }
+            } while (!batch.last());
+            open = false;
+            tracker.commit();
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error writing rejected rows to file: " + rejects, e);
+        } finally {
+            if (open) {
+                tracker.rollback();
+            }
+            parser.interrupt();
+            try {
+                if (rejectsOut != null) {
+                    rejectsOut.close();
+                }
+            } catch (IOException e) {
+                throw new ExpenseStorageException("Error writing rejected rows to file: " + rejects, e);
+            }
+        }
+        return new Result(imported, rejected);
+    }
+
+    private static Batch take(BlockingQueue<Batch> queue, Path source) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExpenseStorageException("Import interrupted: " + source, e);
+        }
+    }
+
+    /**
+     * Reads the file into batches until it ends, the import stops taking them, or a failure is handed over
+     */
+    private static void parse(Path source, Format format, BlockingQueue<Batch> queue) {
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            Map<String, Integer> columns = null;
+            List<Expense> expenses = new ArrayList<>(BATCH_SIZE);
+            List<String> rejects = new ArrayList<>();
+            long number = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                long first = number;
+                if (number == 1 && line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == Format.CSV && quotes(line) % 2 != 0) {
+                    // A quoted field goes on to the next lines, up to the line closing it
+                    StringBuilder record = new StringBuilder(line);
+                    long quotes = quotes(line);
+                    String next;
+                    while (quotes % 2 != 0 && (next = reader.readLine()) != null) {
+                        number++;
+                        quotes += quotes(next);
+                        record.append('\n').append(next);
+                    }
+                    line = record.toString();
+                }
+                if (format == Format.CSV && columns == null) {
+                    columns = header(line);
+                    continue;
+                }
+
+                try {
+                    Expense expense = format == Format.CSV ? csvRow(line, columns) : jsonRow(line);
+                    Expense.validate(expense.getDescription(), expense.getAmountMinor());
+                    expenses.add(expense);
+                } catch (RuntimeException | IOException e) {
+                    String reason = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+                    rejects.add(first + "\t" + reason.replaceAll("\\s+", " ") + "\t" + line.replace("\n", "\\n"));
+                }
+                if (expenses.size() + rejects.size() >= BATCH_SIZE) {
+                    queue.put(new Batch(expenses, rejects, false, null));
+                    expenses = new ArrayList<>(BATCH_SIZE);
+                    rejects = new ArrayList<>();
+                }
+            }
+            queue.put(new Batch(expenses, rejects, true, null));
+        } catch (InterruptedException e) {
+            // The import stopped taking batches
+        } catch (IOException | RuntimeException e) {
+            try {
+                queue.put(new Batch(List.of(), List.of(), true, e));
+            } catch (InterruptedException stopped) {
+                // The import already failed on its own
+            }
+        }
+    }
+
+    /**
+     * Maps the lowercase column names of a CSV header to their positions
+     *
+     * @throws IllegalArgumentException if the description or amount column is missing
+     */
+    private static Map<String, Integer> header(String line) {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = csvFields(line);
+        for (int i = 0; i < names.size(); i++) {
+            columns.putIfAbsent(names.get(i).strip().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("description") || !columns.containsKey("amount")) {
+            throw new IllegalArgumentException("CSV header must name the description and amount columns: " + line);
+        }
+        return columns;
+    }
+
+    private static Expense csvRow(String line, Map<String, Integer> columns) {
+        List<String> fields = csvFields(line);
+        String amount = field(fields, columns, "amount");
+        if (amount == null || amount.isBlank()) {
+            throw new IllegalArgumentException("Amount is missing");
+        }
+        String category = field(fields, columns, "category");
+        String date = field(fields, columns, "date");
+        return Expense.restoreMinor(0, field(fields, columns, "description"),
+                Amounts.toMinor(new BigDecimal(amount.strip())),
+                date == null || date.isBlank() ? null : LocalDate.parse(date.strip()),
+                category == null || category.isBlank() ? null : category(category));
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer column = columns.get(name);
+        return column == null || column >= fields.size() ? null : fields.get(column);
+    }
+
+    /**
+     * Counts the quotes of a CSV line. An escaped quote counts twice, so an odd count leaves a quoted field open.
+     */
+    private static long quotes(String line) {
+        return line.chars().filter(c -> c == '"').count();
+    }
+
+    /**
+     * Splits a CSV record into fields, unquoting quoted ones
+     *
+     * @throws IllegalArgumentException if a quoted field is not closed
+     */
+    private static List<String> csvFields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static Expense jsonRow(String line) throws IOException {
+        String description = null;
+        long amountMinor = 0;
+        LocalDate date = null;
+        ExpenseCategory category = null;
+        try (JsonReader reader = new JsonReader(new StringReader(line))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "description" -> description = reader.nextString();
+                    case "amount" -> amountMinor = Amounts.toMinor(new BigDecimal(reader.nextString()));
+                    case "amountMinor" -> amountMinor = reader.nextLong();
+                    case "date", "creationDate" -> date = LocalDate.parse(reader.nextString());
+                    case "category" -> category = category(reader.nextString());
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new IllegalArgumentException("Unexpected data after the JSON object");
+            }
+        }
+        return Expense.restoreMinor(0, description, amountMinor, date, category);
+    }
+
+    /**
+     * Parses a category from its enum name or display name, ignoring case
+     */
+    private static ExpenseCategory category(String text) {
+        try {
+            return ExpenseCategory.valueOf(text.strip().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ExpenseCategory.parseCategory(text);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+
+/**
+ * Secondary indexes over the in-memory ledger, by category, by creation date, by amount and by the text
+ * of the description, see {@link DescriptionIndex}.
+ * <p>
+ * Each index maps a key to the IDs of the expenses that have it, in a {@link PostingList}. They are kept
+ * in step with the ledger by {@link ExpenseTracker}, and {@link QueryPlanner} picks the one that lets a query
+ * start from the fewest expenses. The IDs of a key are in ascending order, so walking the amount index
+ * yields expenses already sorted by amount.
+ */
+class ExpenseIndexes {
+    private static final PostingList NONE = new PostingList();
+
+    private final Map<ExpenseCategory, PostingList> byCategory = new EnumMap<>(ExpenseCategory.class);
+    private final NavigableMap<LocalDate, PostingList> byDate = new TreeMap<>();
+    private final NavigableMap<Long, PostingList> byAmount = new TreeMap<>();
+    private final DescriptionIndex byText = new DescriptionIndex();
+
+    /**
+     * Adds an expense to the indexes
+     *
+     * @param expense the expense to index
+     */
+    void add(Expense expense) {
+        if (expense.getCategory() != null) {
+            byCategory.computeIfAbsent(expense.getCategory(), category -> new PostingList()).add(expense.getId());
+        }
+        if (expense.getCreationDate() != null) {
+            byDate.computeIfAbsent(expense.getCreationDate(), date -> new PostingList()).add(expense.getId());
+        }
+        byAmount.computeIfAbsent(expense.getAmountMinor(), amount -> new PostingList()).add(expense.getId());
+        byText.add(expense.getId(), expense.getDescription());
+    }
+
+    /**
+     * Removes an expense from the indexes
+     *
+     * @param expense the indexed state of the expense
+     */
+    void remove(Expense expense) {
+        removeId(byCategory, expense.getCategory(), expense.getId());
+        removeId(byDate, expense.getCreationDate(), expense.getId());
+        removeId(byAmount, expense.getAmountMinor(), expense.getId());
+        byText.remove(expense.getId());
+    }
+
+    private static <K> void removeId(Map<K, PostingList> index, K key, int id) {
+        if (key == null) {
+            return;
+        }
+        PostingList ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.size() == 0) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Removes every expense from the indexes
+     */
+    void clear() {
+        byCategory.clear();
+        byDate.clear();
+        byAmount.clear();
+        byText.clear();
+    }
+
+    /**
+     * Counts the expenses in the given categories
+     *
+     * @param categories the categories to count
+     * @return the number of expenses
+     */
+    long countCategories(Set<ExpenseCategory> categories) {
+        return categories.stream().mapToLong(category -> byCategory.getOrDefault(category, NONE).size()).sum();
+    }
+
+    /**
+     * Counts the expenses created in a date range, giving up once the count exceeds a cap
+     *
+     * @param from the inclusive first date, or null for no lower bound
+     * @param to the inclusive last date, or null for no upper bound
+     * @param cap the count above which the exact value does not matter
+     * @return the number of expenses, or a number above the cap
+     */
+    long countDates(LocalDate from, LocalDate to, long cap) {
+        return count(range(byDate, from, to).values(), cap);
+    }
+
+    /**
+     * Counts the expenses in an amount range, giving up once the count exceeds a cap
+     *
+     * @param min the inclusive minimum amount in minor units, or null for no lower bound
+     * @param max the inclusive maximum amount in minor units, or null for no upper bound
+     * @param cap the count above which the exact value does not matter
+     * @return the number of expenses, or a number above the cap
+     */
+    long countAmounts(Long min, Long max, long cap) {
+        return count(range(byAmount, min, max).values(), cap);
+    }
+
+    /**
+     * Estimates the number of expenses read to find the descriptions containing a text, giving up once
+     * the count exceeds a cap
+     *
+     * @param text the normalized text to search for
+     * @param cap the count above which the exact value does not matter
+     * @return the estimated number of expenses, or a number above the cap
+     */
+    long countText(String text, long cap) {
+        return byText.count(text, cap);
+    }
+
+    private static long count(Collection<PostingList> buckets, long cap) {
+        long count = 0;
+        for (PostingList ids : buckets) {
+            count += ids.size();
+            if (count > cap) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the IDs of the expenses in the given categories
+     */
+    Stream<Integer> categoryIds(Set<ExpenseCategory> categories) {
+        return categories.stream().flatMap(category -> byCategory.getOrDefault(category, NONE).stream().boxed());
+    }
+
+    /**
+     * Gets the IDs of the expenses created in a date range
+     */
+    Stream<Integer> dateIds(LocalDate from, LocalDate to) {
+        return range(byDate, from, to).values().stream().flatMap(ids -> ids.stream().boxed());
+    }
+
+    /**
+     * Gets the IDs of the expenses whose description contains a normalized text, in ascending order
+     */
+    IntStream textIds(String text) {
+        return byText.ids(text);
+    }
+
+    /**
+     * Gets the IDs of the expenses in an amount range in minor units, ordered by amount and then by ascending ID
+     */
+    Stream<Integer> amountIds(Long min, Long max, boolean ascending) {
+        NavigableMap<Long, PostingList> range = range(byAmount, min, max);
+        return (ascending ? range : range.descendingMap()).values().stream().flatMap(ids -> ids.stream().boxed());
+    }
+
+    private static <K extends Comparable<? super K>> NavigableMap<K, PostingList> range(
+            NavigableMap<K, PostingList> index, K from, K to) {
+        if (from != null && to != null) {
+            return from.compareTo(to) > 0 ? new TreeMap<>() : index.subMap(from, true, to, true);
+        }
+        if (from != null) {
+            return index.tailMap(from, true);
+        }
+        if (to != null) {
+            return index.headMap(to, true);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,122 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+
+/**
+ * In-memory copy of a ledger, as kept by {@link ExpenseTracker} for stores that do not answer queries.
+ * <p>
+ * Implementations differ in how they lay the expenses out in memory, see {@link ExpenseTracker.Engine}.
+ * Expenses returned by a table may be copies: changing one has no effect until it is put back.
+ * Totals are added up in minor units, so they do not depend on the order expenses are read in, and a
+ * {@link ExpenseQuery#isParallel() parallel} query gives the same answers as a sequential one.
+ */
+interface ExpenseTable {
+    /** Number of expenses a scan must read before a parallel query splits it across cores. */
+    int PARALLEL_THRESHOLD = 1 << 15;
+
+    /**
+     * Gets the number of expenses in the table
+     *
+     * @return the number of expenses
+     */
+    int size();
+
+    /**
+     * Looks up an expense
+     *
+     * @param id the ID of the expense
+     * @return the expense, or null if it is not in the table
+     */
+    Expense get(int id);
+
+    /**
+     * Adds an expense or replaces the one with the same id
+     *
+     * @param expense the new state of the expense
+     * @return the replaced state, or null if the expense is new
+     */
+    Expense put(Expense expense);
+
+    /**
+     * Removes an expense, if present
+     *
+     * @param id the ID of the expense
+     * @return the removed state, or null if the expense was not in the table
+     */
+    Expense remove(int id);
+
+    /**
+     * Replaces the whole content of the table
+     *
+     * @param expenses every expense of the ledger, keyed by id; the table may keep the map
+     */
+    void reset(Map<Integer, Expense> expenses);
+
+    /**
+     * Gets every expense of the table, in no particular order
+     *
+     * @return the expenses
+     */
+    Collection<Expense> values();
+
+    /**
+     * Describes how a query would be answered
+     *
+     * @param query the query to plan
+     * @return the chosen plan
+     */
+    QueryPlan plan(ExpenseQuery query);
+
+    /**
+     * Returns the expenses that match the query, in the order it requests
+     *
+     * @param query the filters and ordering to apply
+     * @return the matching expenses
+     */
+    List<Expense> list(ExpenseQuery query);
+
+    /**
+     * Streams the expenses that match the filters of the query, one at a time and in the order of the table,
+     * without collecting them first. Ordering, paging and the parallel flag are ignored.
+     * The table must not change until the stream is consumed.
+     *
+     * @param query the filters to apply
+     * @return the matching expenses
+     */
+    Stream<Expense> stream(ExpenseQuery query);
+
+    /**
+     * Describes how the total of a query would be computed
+     *
+     * @param query the query to plan
+     * @return the chosen plan
+     */
+    default QueryPlan planSum(ExpenseQuery query) {
+        return plan(query);
+    }
+
+    /**
+     * Adds up the amounts of the expenses that match the query
+     *
+     * @param query the filters to apply
+     * @return the total amount in minor units
+     */
+    long sumMinor(ExpenseQuery query);
+
+    /**
+     * Counts and adds up the expenses that match the query per group, in a single pass over them
+     *
+     * @param query the filters to apply
+     * @param dimensions the dimensions to group by
+     * @return the totals of each group
+     */
+    GroupedSummary group(ExpenseQuery query, Set<GroupedSummary.Dimension> dimensions);
+}
@@ -1,104 +1,628 @@
 package dev.shoangenes.expensetracker.service;
 
-import java.io.IOException;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import dev.shoangenes.expensetracker.model.Amounts;
 import dev.shoangenes.expensetracker.model.ExpenseQuery;
 import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
-import dev.shoangenes.expensetracker.model.LocalDateAdapter;
 import dev.shoangenes.expensetracker.model.Expense;
 import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+import dev.shoangenes.expensetracker.storage.AtomicFiles;
+import dev.shoangenes.expensetracker.storage.ExpenseStore;
+import dev.shoangenes.expensetracker.storage.SnapshotFormat;
 
-public class ExpenseTracker {
-    private final Path FILE_PATH = Path.of("expense_tracker.json");
-    private static final Gson gson = new GsonBuilder()
-            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-            .setPrettyPrinting()
-            .create();
-    private Map<Integer, Expense> expenses = new HashMap<>();
+/**
+ * Service that keeps a ledger of expenses, persisted by an {@link ExpenseStore}.
+ * <p>
+ * A tracker can be shared between threads. Queries run under a read lock, so any number of them run at
+ * once, and see the ledger as it was between two committed mutations; the expenses they return are never
+ * changed afterwards. Mutations are serialized by a separate writer lock and do their reading, validation
+ * and I/O while queries go on; they take the read-write lock only to publish their result in memory.
+ * A transaction keeps the writer lock from {@link #begin()} to its commit or rollback, so it belongs to the
+ * thread that opened it and other writers wait for it, but its changes stay private until it commits.
+ * IDs of new expenses come from a counter owned by the tracker, not from {@link Expense#getLastIdSaved()}.
+ */
+public class ExpenseTracker implements AutoCloseable {
+    /** Ledger used when no file is given. */
+    public static final Path DEFAULT_FILE_PATH = Path.of("expense_tracker.json");
+
+    /** Number of query results cached unless {@link #setQueryCacheCapacity(int)} says otherwise. */
+    public static final int DEFAULT_CACHE_CAPACITY = 256;
 
     /**
-     * Creates a new ExpenseTracker instance.
-     * <p>
-     * If the 'expenses.json' file is empty or missing, an empty expense collection is initialized
-     * Otherwise, all existing expenses are loaded from the file into memory
+     * Layouts of the in-memory copy of the ledger.
      */
+    public enum Engine {
+        /** One object per expense in a hash map, with category, date and amount indexes picked by a query planner. */
+        INDEXED(320),
+        /** Parallel primitive arrays scanned with tight loops; several times smaller, no indexes. */
+        COLUMNAR(96);
+
+        private final long bytesPerExpense;
+
+        Engine(long bytesPerExpense) {
+            this.bytesPerExpense = bytesPerExpense;
+        }
+
+        /**
+         * Gets the rough heap footprint of one expense with a short description, indexes included
+         *
+         * @return the estimated number of bytes
+         */
+        public long bytesPerExpense() {
+            return bytesPerExpense;
+        }
+    }
+
+    private final ExpenseStore store;
+
+    private final Engine engine;
+
+    /** Held for reading by queries and for writing while a mutation publishes its result in memory. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Held by mutations and by open transactions, so there is one writer at a time. */
+    private final ReentrantLock writer = new ReentrantLock();
+
+    /** Highest ID handed out or found in the ledger. */
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    /** In-memory copy of the ledger, empty when the store answers queries itself. */
+    private final ExpenseTable expenses;
+
+    /** Nesting depth of the open transaction, 0 when none is open; guarded by the writer lock. */
+    private int transactionDepth = 0;
+
+    /** Final state of every expense changed in the open transaction, null for deleted ones; guarded by the writer lock. */
+    private final Map<Integer, Expense> pendingWrites = new LinkedHashMap<>();
 
+    /** Version of the ledger, incremented by every mutation, whether made here or by another process. */
+    private volatile long version = 0;
+
+    /** Results of recent queries, valid while the version they were computed from is current; may be shared. */
+    private final QueryCache cache;
+
+    /** Runs asynchronous queries and completes asynchronous mutations, one virtual thread per task. */
+    private static final ExecutorService VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Orders the asynchronous mutations, started by the first one; guarded by the tracker. */
+    private WriteSequencer sequencer;
+
+    /** Set once the tracker starts closing, from then on asynchronous mutations are refused; guarded by the tracker. */
+    private boolean closing;
+
+    /** Key of a cached result: for which ledger, what was computed, from which query. */
+    private record CacheKey(ExpenseTracker ledger, String operation, ExpenseQuery.Key query,
+                            Set<GroupedSummary.Dimension> dimensions) {
+    }
+
+    /** Applies the mutations made by other users of the ledger to the in-memory copy. */
+    private final ExpenseStore.ChangeListener listener = new ExpenseStore.ChangeListener() {
+        @Override
+        public void onPut(Expense expense) {
+            applyExternal(expense.getId(), expense);
+        }
+
+        @Override
+        public void onRemove(int id) {
+            applyExternal(id, null);
+        }
+
+        @Override
+        public void onReload(Map<Integer, Expense> reloaded) {
+            publish(() -> expenses.reset(new HashMap<>(reloaded)));
+        }
+    };
+
+    /**
+     * Creates a new ExpenseTracker instance backed by the default ledger, {@link #DEFAULT_FILE_PATH}.
+     * <p>
+     * The backend is picked from the file name by {@link ExpenseStore#open(Path)}, which for
+     * 'expense_tracker.json' is the JSON snapshot with its journal
+     * If the ledger is empty or missing, an empty expense collection is initialized
+     *
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
     public ExpenseTracker() {
-        expenses = deserializeExpenses();
+        this(DEFAULT_FILE_PATH);
     }
 
     /**
-     * Reads all expenses from a JSON file
+     * Creates a new ExpenseTracker instance backed by the given ledger file.
      * <p>
-     * If the file does not exist, returns an empty map
-     * If the file exists but is empty, returns an empty map
-     * Otherwise, returns a map containing all stored expenses
+     * The backend is picked from the file name, see {@link ExpenseStore#open(Path)}
+     *
+     * @param filePath the ledger file
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    public ExpenseTracker(Path filePath) {
+        this(ExpenseStore.open(filePath));
+    }
+
+    /**
+     * Creates a new ExpenseTracker instance backed by the given ledger file, kept in memory with the given engine.
+     *
+     * @param filePath the ledger file
+     * @param engine the layout of the in-memory copy of the ledger
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    public ExpenseTracker(Path filePath, Engine engine) {
+        this(ExpenseStore.open(filePath), engine);
+    }
+
+    /**
+     * Creates a new ExpenseTracker instance backed by the given store.
+     * <p>
+     * If the store answers queries itself, nothing is loaded and every query is pushed down to it
+     * Otherwise, all existing expenses are loaded from the store into memory
+     *
+     * @param store the persistence backend of the ledger
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    public ExpenseTracker(ExpenseStore store) {
+        this(store, Engine.INDEXED);
+    }
+
+    /**
+     * Creates a new ExpenseTracker instance backed by the given store, kept in memory with the given engine.
+     * The engine is irrelevant for stores that answer queries themselves.
      *
-     * @return a map with all expenses, or an empty map if none are found
-     * @throws ExpenseStorageException if reading the file fails
+     * @param store the persistence backend of the ledger
+     * @param engine the layout of the in-memory copy of the ledger
+     * @throws ExpenseStorageException if reading the ledger fails
      */
-    private Map<Integer, Expense> deserializeExpenses() {
-        Map<Integer, Expense> storedExpenses = new HashMap<>();
+    public ExpenseTracker(ExpenseStore store, Engine engine) {
+        this(store, engine, new QueryCache(DEFAULT_CACHE_CAPACITY));
+    }
 
-        if (!Files.exists(FILE_PATH)) {
-            return storedExpenses;
+    /**
+     * Creates a new ExpenseTracker instance whose query results go to the given cache, e.g. one shared by many ledgers.
+     *
+     * @param store the persistence backend of the ledger
+     * @param engine the layout of the in-memory copy of the ledger
+     * @param cache the cache of query results
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    ExpenseTracker(ExpenseStore store, Engine engine, QueryCache cache) {
+        this.store = store;
+        this.engine = engine;
+        this.cache = cache;
+        this.expenses = new AggregatingExpenseTable(
+                engine == Engine.COLUMNAR ? new ColumnarExpenseTable() : new IndexedExpenseTable());
+        int max;
+        if (store.supportsQueries()) {
+            max = store.maxId();
+        } else {
+            Map<Integer, Expense> loaded = new HashMap<>();
+            max = store.load(loaded);
+            expenses.reset(loaded);
         }
+        lastId.set(max);
+    }
 
+    /**
+     * Gets the layout of the in-memory copy of the ledger
+     *
+     * @return the engine the tracker was opened with
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Estimates the heap used by the in-memory copy of the ledger, zero when the store answers queries itself
+     *
+     * @return the estimated number of bytes
+     */
+    public long estimatedMemory() {
+        return read(() -> expenses.size() * engine.bytesPerExpense());
+    }
+
+    /**
+     * Runs a query under the read lock
+     */
+    private <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a mutation under the writer lock; queries keep running meanwhile
+     */
+    private void write(Runnable work) {
+        writer.lock();
+        try {
+            work.run();
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    /**
+     * Makes a change to the in-memory copy visible to queries, under the write lock, and moves to a new version
+     */
+    private void publish(Runnable change) {
+        lock.writeLock().lock();
         try {
-            // Read Json content
-            String jsonContent = Files.readString(FILE_PATH);
-            Type type = new TypeToken<Map<Integer, Expense>>(){}.getType();
+            change.run();
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a committed state of an expense to the in-memory copy, if there is one
+     *
+     * @param id the ID of the changed expense
+     * @param expense the new state of the expense, null if it was deleted
+     */
+    private void apply(int id, Expense expense) {
+        if (store.supportsQueries()) {
+            return;
+        }
+        if (expense == null) {
+            expenses.remove(id);
+        } else {
+            expenses.put(expense);
+        }
+    }
+
+    /**
+     * Finds an expense by its ID, as changed by the open transaction, or else in memory or in the store
+     * if it answers queries
+     *
+     * @param id the ID of the expense
+     * @return the expense
+     * @throws NoSuchElementException if the expense doesn't exist
+     */
+    private Expense findExpense(int id) {
+        Optional<Expense> expense;
+        if (pendingWrites.containsKey(id)) {
+            expense = Optional.ofNullable(pendingWrites.get(id));
+        } else if (!store.supportsQueries()) {
+            expense = Optional.ofNullable(expenses.get(id));
+        } else {
+            expense = store.get(id);
+        }
+        return expense.orElseThrow(() -> new NoSuchElementException("No such expense with id: " + id));
+    }
+
+    /**
+     * Sends a new state of an expense to the store and then to the queries, or defers it to the commit of
+     * the open transaction
+     *
+     * @param id the ID of the changed expense
+     * @param expense the new state of the expense, null if it was deleted
+     * @throws ExpenseStorageException if writing to the store fails, then the change is not applied
+     */
+    private void persist(int id, Expense expense) {
+        if (transactionDepth > 0) {
+            pendingWrites.put(id, expense);
+            return;
+        }
+        if (expense == null) {
+            store.remove(id);
+        } else {
+            store.put(expense);
+        }
+        publish(() -> apply(id, expense));
+    }
+
+    /**
+     * Applies a mutation made by another user of the ledger. Expenses changed by the open transaction keep
+     * their pending state, which replaces the external one if the transaction commits
+     *
+     * @param id the ID of the changed expense
+     * @param expense the new state of the expense, null if it was deleted
+     */
+    private void applyExternal(int id, Expense expense) {
+        if (store.supportsQueries()) {
+            return;
+        }
+        publish(() -> apply(id, expense));
+    }
+
+    /**
+     * Runs a mutation while holding the lock of the ledger, after catching up with the changes other
+     * processes made, so they are not overwritten with a stale view
+     *
+     * @param work the mutation to run
+     * @throws ExpenseStorageException if the ledger cannot be locked or read
+     */
+    private void mutate(Runnable work) {
+        write(() -> store.withLock(() -> {
+            store.refresh(listener);
+            work.run();
+        }));
+    }
+
+    /**
+     * Creates an expense with an id that no other user of the ledger has taken
+     *
+     * @throws IllegalArgumentException if the business rules are violated (negative amount, empty description)
+     * @throws ExpenseStorageException if the id cannot be reserved
+     */
+    private Expense newExpense(String description, Double amount, ExpenseCategory category) {
+        return Expense.create(description, amount, category,
+                () -> lastId.accumulateAndGet(store.allocateId(lastId.get()), Math::max));
+    }
+
+    /**
+     * Applies the mutations other processes made to the ledger since it was loaded or last refreshed.
+     * Mutations do this on their own; call it before reading to see the latest state
+     *
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    public void refresh() {
+        write(() -> store.withLock(() -> store.refresh(listener)));
+    }
 
-            // Parse jsonContent to Map
-            storedExpenses = gson.fromJson(jsonContent, type);
+    /**
+     * Copies an expense, so later changes to the original do not affect the copy
+     */
+    private static Expense copyOf(Expense expense) {
+        return Expense.restoreMinor(expense.getId(), expense.getDescription(), expense.getAmountMinor(),
+                expense.getCreationDate(), expense.getCategory());
+    }
 
-            // Update lastSavedId
-            int max = storedExpenses.values().stream()
-                    .mapToInt(Expense::getId)
-                    .max()
-                    .orElse(0);
-            Expense.setLastIdSaved(max);
-        } catch (Exception e) {
-            throw new ExpenseStorageException("Error reading expenses from file: " + FILE_PATH, e);
+    /**
+     * Opens a transaction
+     * <p>
+     * Until {@link #commit()}, mutations are kept aside, seen by the mutations of the transaction but not by
+     * queries, and not persisted; the commit then persists all of them with a single write and publishes them
+     * at once. Transactions can be nested, only the outermost commit writes
+     * <p>
+     * The transaction holds the writer lock of the tracker until it is committed or rolled back, so it must be
+     * ended by the thread that opened it; meanwhile other threads wait to write, while queries from any thread
+     * keep running on the last committed state. The outermost transaction also holds the lock of the ledger and
+     * starts by catching up with the changes of other processes, so its commit cannot overwrite them
+     *
+     * @throws ExpenseStorageException if the ledger cannot be locked or read
+     */
+    public void begin() {
+        writer.lock();
+        if (transactionDepth == 0) {
+            try {
+                store.lock();
+                try {
+                    store.refresh(listener);
+                } catch (RuntimeException | Error e) {
+                    store.unlock();
+                    throw e;
+                }
+            } catch (RuntimeException | Error e) {
+                writer.unlock();
+                throw e;
+            }
         }
+        transactionDepth++;
+    }
 
-        return storedExpenses;
+    /**
+     * Checks that the calling thread opened the current transaction
+     *
+     * @throws IllegalStateException if no transaction is open in this thread
+     */
+    private void checkTransaction() {
+        if (!writer.isHeldByCurrentThread() || transactionDepth == 0) {
+            throw new IllegalStateException("No transaction in progress");
+        }
     }
 
     /**
-     * Serializes all expenses and saves them to a JSON file
+     * Commits the open transaction, persisting all of its mutations in one write once the outermost
+     * transaction commits, then making them visible to queries
      *
-     * @throws ExpenseStorageException if writing to the file fails
+     * @throws IllegalStateException if no transaction is open in this thread
+     * @throws ExpenseStorageException if writing to the store fails, the changes are then discarded
      */
-    private void serializeExpenses() {
+    public void commit() {
+        checkTransaction();
         try {
-            Files.writeString(FILE_PATH, gson.toJson(expenses));
-        } catch (IOException e) {
-            throw new ExpenseStorageException("Error writing expenses to file: " + FILE_PATH, e);
+            if (--transactionDepth > 0) {
+                return;
+            }
+
+            Map<Integer, Expense> committed = new LinkedHashMap<>(pendingWrites);
+            pendingWrites.clear();
+            List<Expense> puts = new ArrayList<>();
+            List<Integer> removedIds = new ArrayList<>();
+            committed.forEach((id, expense) -> {
+                if (expense == null) {
+                    removedIds.add(id);
+                } else {
+                    puts.add(expense);
+                }
+            });
+            try {
+                store.write(puts, removedIds);
+            } finally {
+                store.unlock();
+            }
+            publish(() -> committed.forEach(this::apply));
+        } finally {
+            writer.unlock();
         }
     }
 
+    /**
+     * Discards the open transaction, including any enclosing one; queries never saw its changes
+     *
+     * @throws IllegalStateException if no transaction is open in this thread
+     */
+    public void rollback() {
+        checkTransaction();
+        int holds = transactionDepth;
+        transactionDepth = 0;
+        pendingWrites.clear();
+        store.unlock();
+        for (int i = 0; i < holds; i++) {
+            writer.unlock();
+        }
+    }
+
+    /**
+     * Runs the given work in a transaction, committing it if the work completes
+     * and rolling it back if it throws
+     * <p>
+     * As with {@link #begin()}, the lock of the ledger is held from start to commit, so the mutations of other
+     * processes are read once and cannot interleave with the work. Queries are not held up by the work, they see
+     * its changes once it commits
+     *
+     * @param work the mutations to run
+     * @throws ExpenseStorageException if the ledger cannot be locked or writing to the store fails
+     */
+    public void inTransaction(Runnable work) {
+        begin();
+        try {
+            work.run();
+        } catch (RuntimeException | Error e) {
+            rollback();
+            throw e;
+        }
+        commit();
+    }
+
+    /**
+     * Runs a query on a virtual thread, so the caller does not wait for it
+     *
+     * @param query the query, e.g. {@code () -> tracker.listExpenses(query)}
+     * @return completes with the result of the query, or with its failure
+     */
+    public static <T> CompletableFuture<T> queryAsync(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, VIRTUAL_THREADS);
+    }
+
+    /**
+     * Queues a mutation to be run by the single writer of the ledger, after every mutation queued before it
+     * <p>
+     * Mutations queued while others run are made durable together with one {@link #flush()}, and their futures
+     * complete only after it. Callers must not wait for the future while they hold a transaction open,
+     * as the writer waits for that transaction to end.
+     *
+     * @param mutation the mutation, e.g. {@code () -> tracker.addExpense("Lunch", 12.5, ExpenseCategory.FOOD)}
+     * @return completes with the result of the mutation once it is durable, or with its failure
+     * @throws IllegalStateException if the tracker is closed
+     */
+    public <T> CompletableFuture<T> mutateAsync(Supplier<T> mutation) {
+        WriteSequencer writer;
+        synchronized (this) {
+            if (closing) {
+                throw new IllegalStateException("Ledger is closed");
+            }
+            if (sequencer == null) {
+                sequencer = new WriteSequencer("expense-writer-" + System.identityHashCode(this), this::flush,
+                        VIRTUAL_THREADS);
+            }
+            writer = sequencer;
+        }
+        return writer.submit(mutation);
+    }
+
+    /**
+     * Forces every persisted mutation to disk, see {@link ExpenseStore#flush()}
+     *
+     * @throws ExpenseStorageException if writing to the store fails
+     */
+    public void flush() {
+        store.flush();
+    }
+
+    /**
+     * Writes every expense to another ledger, in the format given by that ledger's name
+     * <p>
+     * Used to convert a ledger between the JSON, binary, H2 and partitioned formats
+     * Snapshot files are replaced atomically, other stores receive every expense in one batch
+     *
+     * @param target the ledger to write
+     * @return the number of expenses written
+     * @throws ExpenseStorageException if writing to the target fails
+     */
+    public int exportSnapshot(Path target) {
+        Collection<Expense> all = read(() -> store.supportsQueries()
+                ? store.scan(new ExpenseQuery())
+                : List.copyOf(expenses.values()));
+        if (ExpenseStore.isSnapshotFile(target)) {
+            SnapshotFormat format = SnapshotFormat.forPath(target);
+            AtomicFiles.replace(target, temp -> format.write(temp, all));
+        } else {
+            try (ExpenseStore targetStore = ExpenseStore.open(target)) {
+                targetStore.write(all, List.of());
+            }
+        }
+        return all.size();
+    }
+
     /**
      * Adds a new expense to the system
      *
      * @param description the expense's description
      * @param amount the expense's amount
      * @param category the expense's category
+     * @return the ID of the new expense
      * @throws IllegalArgumentException if the business rules are violated (negative amount, empty description)
-     * @throws ExpenseStorageException if writing to the file fails
+     * @throws ExpenseStorageException if writing to the store fails
      */
-    public void addExpense(String description, Double amount, ExpenseCategory category) {
-        Expense expense = new Expense(description, amount, category);
-        expenses.put(expense.getId(), expense);
-        serializeExpenses();
+    public int addExpense(String description, Double amount, ExpenseCategory category) {
+        int[] id = new int[1];
+        mutate(() -> {
+            Expense expense = newExpense(description, amount, category);
+            persist(expense.getId(), expense);
+            id[0] = expense.getId();
+        });
+        return id[0];
+    }
+
+    /**
+     * Adds a batch of expenses, e.g. rows of an import, reserving their IDs as one block and persisting them
+     * with a single write, or deferring them to the commit of the open transaction.
+     * The IDs of the given expenses are ignored; those without a creation date are created today.
+     *
+     * @param drafts the expenses to add
+     * @return the added expenses, with their IDs, in the given order
+     * @throws IllegalArgumentException if an expense violates the business rules, then none is added
+     * @throws ExpenseStorageException if the IDs cannot be reserved or writing to the store fails
+     */
+    public List<Expense> addAll(List<Expense> drafts) {
+        drafts.forEach(draft -> Expense.validate(draft.getDescription(), draft.getAmountMinor()));
+        List<Expense> added = new ArrayList<>(drafts.size());
+        if (drafts.isEmpty()) {
+            return added;
+        }
+        mutate(() -> {
+            int first = store.allocateIds(lastId.get(), drafts.size());
+            lastId.accumulateAndGet(first + drafts.size() - 1, Math::max);
+            LocalDate today = LocalDate.now();
+            for (Expense draft : drafts) {
+                Expense expense = Expense.restoreMinor(first + added.size(), draft.getDescription().trim(),
+                        draft.getAmountMinor(), draft.getCreationDate() == null ? today : draft.getCreationDate(),
+                        draft.getCategory());
+                added.add(expense);
+            }
+            if (transactionDepth == 0) {
+                store.write(added, List.of());
+                publish(() -> added.forEach(expense -> apply(expense.getId(), expense)));
+            } else {
+                added.forEach(expense -> pendingWrites.put(expense.getId(), expense));
+            }
+        });
+        return added;
     }
 
     /**
@@ -107,12 +631,15 @@ public class ExpenseTracker {
      * @param id the ID of the expense to update
      * @param description the new expense's description
      * @throws NoSuchElementException if the expense doesn't exist
-     * @throws ExpenseStorageException if writing to the file fails
+     * @throws ExpenseStorageException if writing to the store fails
      */
     public void updateExpense(int id, String description) {
-        Expense expense = Optional.ofNullable(expenses.get(id)).orElseThrow(() -> new NoSuchElementException("No such expense with id: " + id));
-        expense.updateDescription(description);
-        serializeExpenses();
+        mutate(() -> {
+            Expense previous = findExpense(id);
+            Expense expense = copyOf(previous);
+            expense.updateDescription(description);
+            persist(id, expense);
+        });
     }
 
     /**
@@ -120,24 +647,121 @@ public class ExpenseTracker {
      *
      * @param id the ID of the expense to delete
      * @throws NoSuchElementException if the expense doesn't exist
-     * @throws ExpenseStorageException if writing to the file fails
+     * @throws ExpenseStorageException if writing to the store fails
      */
     public void deleteExpense(int id) {
-        Optional.ofNullable(expenses.remove(id)).orElseThrow(() -> new NoSuchElementException("No such expense with id: " + id));
-        serializeExpenses();
+        mutate(() -> {
+            findExpense(id);
+            persist(id, null);
+        });
     }
 
     /**
      * Returns a list of expenses filtered and sorted according to the provided predicate and comparator.
+     * Paged queries only return the requested page, without sorting every match.
+     * Results are cached until the next mutation of the ledger.
      *
      * @param query a predicate to filter expenses
-     * @return a list of filtered and sorted expenses
+     * @return an unmodifiable list of filtered and sorted expenses
+     * @throws NoSuchElementException if the results are ordered by amount and the cursor expense doesn't exist
      */
     public List<Expense> listExpenses(ExpenseQuery query) {
-        return expenses.values().stream()
-                .filter(query.getFilter())
-                .sorted(query.getSorter())
-                .toList();
+        return read(() -> cache.get(new CacheKey(this, "list", query.key(), null), version, () -> List.copyOf(
+                store.supportsQueries() ? store.scan(query) : expenses.list(query))));
+    }
+
+    /**
+     * Streams the expenses that match the filters of a query one at a time, in storage order, without
+     * collecting or caching them, so exports of any size run in constant memory. Ordering and paging are ignored.
+     * <p>
+     * The stream holds the read lock until it is closed, so mutations wait for it before publishing their
+     * result. It must be closed, by the thread that opened it, for example with try-with-resources.
+     *
+     * @param query the filters to apply
+     * @return the matching expenses
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    public Stream<Expense> streamExpenses(ExpenseQuery query) {
+        lock.readLock().lock();
+        try {
+            Stream<Expense> matches = store.supportsQueries() ? store.stream(query) : expenses.stream(query);
+            return matches.onClose(lock.readLock()::unlock);
+        } catch (RuntimeException e) {
+            lock.readLock().unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Iterates over the expenses that match the filters of a query, see {@link #streamExpenses(ExpenseQuery)}.
+     * The read lock is released once the last expense has been returned; callers stopping early must
+     * drain the iterator or use the stream instead.
+     *
+     * @param query the filters to apply
+     * @return the matching expenses
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    public Iterator<Expense> iterateExpenses(ExpenseQuery query) {
+        Stream<Expense> matches = streamExpenses(query);
+        Iterator<Expense> iterator = matches.iterator();
+        return new Iterator<>() {
+            private boolean open = true;
+
+            @Override
+            public boolean hasNext() {
+                if (!open) {
+                    return false;
+                }
+                boolean more;
+                try {
+                    more = iterator.hasNext();
+                } catch (RuntimeException e) {
+                    open = false;
+                    matches.close();
+                    throw e;
+                }
+                if (!more) {
+                    open = false;
+                    matches.close();
+                }
+                return more;
+            }
+
+            @Override
+            public Expense next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return iterator.next();
+            }
+        };
+    }
+
+    /**
+     * Describes how a query would be answered, without running it
+     *
+     * @param query the query to plan
+     * @return the chosen plan
+     */
+    public QueryPlan explain(ExpenseQuery query) {
+        if (store.supportsQueries()) {
+            return new QueryPlan(QueryPlan.AccessPath.STORE, 0, 0, true, query);
+        }
+        return read(() -> expenses.plan(query));
+    }
+
+    /**
+     * Describes how the total of a query would be computed, without computing it.
+     * Sums over whole months or years without amount bounds are read from running totals.
+     *
+     * @param query the query to plan
+     * @return the chosen plan
+     */
+    public QueryPlan explainSummary(ExpenseQuery query) {
+        if (store.supportsQueries()) {
+            return new QueryPlan(QueryPlan.AccessPath.STORE, 0, 0, true, query);
+        }
+        return read(() -> expenses.planSum(query));
     }
 
     /**
@@ -147,9 +771,89 @@ public class ExpenseTracker {
      * @return the sum of the amounts of the filtered expenses
      */
     public double summaryExpenses(ExpenseQuery query) {
-        return expenses.values().stream()
-                .filter(query.getFilter())
-                .mapToDouble(Expense::getAmount)
-                .sum();
+        return Amounts.toUnits(summaryExpensesMinor(query));
+    }
+
+    /**
+     * Calculates the exact total of the amounts of all expenses that match the given filter, in minor units.
+     *
+     * @param query a predicate to filter which expenses to include in the sum
+     * @return the sum of the amounts of the filtered expenses in minor units
+     */
+    public long summaryExpensesMinor(ExpenseQuery query) {
+        return read(() -> cache.get(new CacheKey(this, "sum", query.key(), null), version,
+                () -> store.supportsQueries() ? store.sumMinor(query) : expenses.sumMinor(query)));
+    }
+
+    /**
+     * Calculates the number, total, smallest and largest amount of the expenses that match the given filter,
+     * per category, month and/or year, in a single pass over them. Paging is ignored.
+     *
+     * @param query a predicate to filter which expenses to include
+     * @param dimensions the dimensions to group by, none for a single group
+     * @return the totals of each group with at least one expense
+     */
+    public GroupedSummary summaryByGroup(ExpenseQuery query, Set<GroupedSummary.Dimension> dimensions) {
+        return read(() -> cache.get(new CacheKey(this, "group", query.key(), Set.copyOf(dimensions)), version,
+                () -> store.supportsQueries() ? store.group(query, dimensions) : expenses.group(query, dimensions)));
+    }
+
+    /**
+     * Gets the version of the ledger, incremented by every mutation: its own, those of transactions
+     * when they are committed, and those of other processes once refreshed
+     *
+     * @return the current version of the ledger
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Changes how many query results are cached, for every ledger sharing the cache, evicting the least recently used ones that no longer fit
+     *
+     * @param capacity the maximum number of cached results, 0 to disable the cache
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public void setQueryCacheCapacity(int capacity) {
+        cache.resize(capacity);
+    }
+
+    /**
+     * Gets the hit and miss counters of the query result cache
+     *
+     * @return the counters of the cache
+     */
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Closes the store, waiting for queued asynchronous mutations and pending writes such as a running snapshot
+     * to finish, and drops the cached results of the ledger.
+     *
+     * @throws ExpenseStorageException if pending writes fail
+     */
+    @Override
+    public void close() {
+        WriteSequencer writer;
+        synchronized (this) {
+            closing = true;
+            writer = sequencer;
+        }
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+            write(() -> {
+                lock.writeLock().lock();
+                try {
+                    store.close();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        } finally {
+            cache.removeIf(key -> key instanceof CacheKey cached && cached.ledger() == this);
+        }
     }
 }
@@ -0,0 +1,143 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+
+/**
+ * Table that keeps one {@link Expense} object per expense in a hash map, with secondary indexes
+ * by category, date and amount that the {@link QueryPlanner} chooses from.
+ * <p>
+ * Paged listings keep only the requested window of results. When the access path already yields the
+ * requested order, reading stops once the page is complete, and a cursor on the amount index starts
+ * the walk at the amount of the cursor expense.
+ */
+class IndexedExpenseTable implements ExpenseTable {
+    private Map<Integer, Expense> expenses = new HashMap<>();
+    private final ExpenseIndexes indexes = new ExpenseIndexes();
+    private final QueryPlanner planner = new QueryPlanner(indexes);
+
+    @Override
+    public int size() {
+        return expenses.size();
+    }
+
+    @Override
+    public Expense get(int id) {
+        return expenses.get(id);
+    }
+
+    @Override
+    public Expense put(Expense expense) {
+        Expense previous = expenses.put(expense.getId(), expense);
+        if (previous != null) {
+            indexes.remove(previous);
+        }
+        indexes.add(expense);
+        return previous;
+    }
+
+    @Override
+    public Expense remove(int id) {
+        Expense previous = expenses.remove(id);
+        if (previous != null) {
+            indexes.remove(previous);
+        }
+        return previous;
+    }
+
+    @Override
+    public void reset(Map<Integer, Expense> expenses) {
+        this.expenses = expenses;
+        indexes.clear();
+        expenses.values().forEach(indexes::add);
+    }
+
+    @Override
+    public Collection<Expense> values() {
+        return expenses.values();
+    }
+
+    @Override
+    public QueryPlan plan(ExpenseQuery query) {
+        return planner.plan(query, expenses.size());
+    }
+
+    @Override
+    public List<Expense> list(ExpenseQuery query) {
+        QueryPlan plan = plan(query);
+        Expense cursor = query.getAfterId() == null ? null : expenses.get(query.getAfterId());
+        Stream<Expense> rows = execute(plan, cursor)
+                .filter(query.getCursorFilter(id -> Optional.ofNullable(expenses.get(id))));
+        return query.select(rows, plan.presorted());
+    }
+
+    @Override
+    public Stream<Expense> stream(ExpenseQuery query) {
+        return execute(plan(query), null).sequential();
+    }
+
+    @Override
+    public long sumMinor(ExpenseQuery query) {
+        return execute(plan(query), null)
+                .mapToLong(Expense::getAmountMinor)
+                .sum();
+    }
+
+    @Override
+    public GroupedSummary group(ExpenseQuery query, Set<GroupedSummary.Dimension> dimensions) {
+        return execute(plan(query), null)
+                .collect(() -> new GroupedSummary.Accumulator(dimensions),
+                        GroupedSummary.Accumulator::add, GroupedSummary.Accumulator::merge)
+                .result();
+    }
+
+    /**
+     * Gets the expenses that match a query, reading them through the access path of its plan
+     *
+     * @param plan the plan of the query
+     * @param cursor the expense a listing starts after, null to read every match
+     * @return the matching expenses, in the requested order if the plan is presorted, split across
+     *     cores if the query is parallel and reads enough expenses
+     */
+    private Stream<Expense> execute(QueryPlan plan, Expense cursor) {
+        ExpenseQuery query = plan.query();
+        Stream<Expense> rows = switch (plan.accessPath()) {
+            case EMPTY -> Stream.empty();
+            case CATEGORY_INDEX -> indexes.categoryIds(query.getCategories()).map(expenses::get);
+            case DATE_RANGE -> indexes.dateIds(query.getFromDate(), query.getToDate()).map(expenses::get);
+            case AMOUNT_INDEX -> amountIds(query, cursor).map(expenses::get);
+            case TEXT_INDEX -> indexes.textIds(query.getText()).mapToObj(expenses::get);
+            case FULL_SCAN, COLUMN_SCAN, AGGREGATES, STORE -> expenses.values().stream();
+        };
+        if (query.isParallel() && plan.estimatedRows() >= PARALLEL_THRESHOLD) {
+            rows = rows.parallel();
+        }
+        return rows.filter(query.getFilter());
+    }
+
+    /**
+     * Walks the amount index over the amounts of a query, starting at the amount of the cursor if the
+     * results are ordered by amount
+     */
+    private Stream<Integer> amountIds(ExpenseQuery query, Expense cursor) {
+        Long min = query.getMinAmountMinor();
+        Long max = query.getMaxAmountMinor();
+        if (cursor != null && query.getSortKey() == ExpenseQuery.SortKey.AMOUNT) {
+            if (query.isAscending()) {
+                min = min == null ? cursor.getAmountMinor() : Math.max(min, cursor.getAmountMinor());
+            } else {
+                max = max == null ? cursor.getAmountMinor() : Math.min(max, cursor.getAmountMinor());
+            }
+        }
+        return indexes.amountIds(min, max, query.isAscending());
+    }
+}
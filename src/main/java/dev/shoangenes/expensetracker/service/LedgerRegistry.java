@@ -0,0 +1,354 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.storage.ExpenseStore;
+
+/**
+ * Hosts many independent ledgers in one JVM, each with its own {@link ExpenseTracker} and ID sequence.
+ * <p>
+ * Ledgers are opened on first use and stay open while they are used. Those not in use are closed again
+ * when the estimated memory of the open ledgers goes over the budget, least recently used first, or when
+ * they have been idle for longer than the idle timeout. Closing a ledger writes everything it still buffers,
+ * so reopening it later finds the same expenses.
+ * <p>
+ * Every ledger runs its group commits and journal compactions on one bounded executor owned by the registry,
+ * instead of starting threads of its own, and caches its query results in one cache shared by all of them.
+ * That cache is bounded by the estimated heap of its results too: they may use an eighth of the memory budget,
+ * on top of the open ledgers, before the least recently used ones are dropped.
+ * A tracker must only be used inside {@link #withLedger(Path, Function)} or {@link #useLedger(Path, Consumer)}:
+ * once they return, the ledger may be closed at any time.
+ */
+public class LedgerRegistry implements AutoCloseable {
+    /** Time after which an unused ledger is closed, unless the constructor says otherwise. */
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    /** Number of threads running the background work of all ledgers, unless the constructor says otherwise. */
+    public static final int DEFAULT_THREADS = 2;
+
+    /** Part of the memory budget the cached query results of all ledgers may use: one in this many bytes. */
+    static final int CACHE_BUDGET_DIVISOR = 8;
+
+    /** Heap counted for an open ledger on top of its expenses: store, journal, locks and planner state. */
+    static final long LEDGER_OVERHEAD = 16 * 1024;
+
+    private final ExpenseTracker.Engine engine;
+    private final long memoryBudget;
+    private final long idleNanos;
+    private final ScheduledThreadPoolExecutor background;
+    private final QueryCache cache;
+
+    /** Open ledgers by normalized path, least recently used first. */
+    private final LinkedHashMap<Path, Ledger> ledgers = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Ledgers evicted but still being closed, which must not be opened again until they are. */
+    private final Map<Path, Ledger> closing = new HashMap<>();
+
+    /** Sum of the estimated memory of the open ledgers. */
+    private long usedMemory;
+
+    private boolean closed;
+
+    /** First failure closing an evicted ledger, reported by {@link #close()}. */
+    private ExpenseStorageException failure;
+
+    /**
+     * An open ledger. The tracker is guarded by the ledger, the other fields by the registry.
+     */
+    private static final class Ledger {
+        final Path path;
+        final CountDownLatch closed = new CountDownLatch(1);
+        ExpenseTracker tracker;
+        int pins;
+        long lastUsed;
+        long memory;
+
+        Ledger(Path path) {
+            this.path = path;
+        }
+
+        void awaitClosed() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    closed.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Creates a registry with the default idle timeout and number of background threads
+     *
+     * @param engine the layout of the in-memory copy of every ledger
+     * @param memoryBudget the estimated heap, in bytes, the open ledgers may use before unused ones are closed
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public LedgerRegistry(ExpenseTracker.Engine engine, long memoryBudget) {
+        this(engine, memoryBudget, DEFAULT_IDLE_TIMEOUT, DEFAULT_THREADS);
+    }
+
+    /**
+     * Creates a registry
+     *
+     * @param engine the layout of the in-memory copy of every ledger
+     * @param memoryBudget the estimated heap, in bytes, the open ledgers may use before unused ones are closed
+     * @param idleTimeout the time after which an unused ledger is closed
+     * @param threads the number of threads running the background work of all ledgers
+     * @throws IllegalArgumentException if the budget is negative, the timeout is not positive or there are no threads
+     */
+    public LedgerRegistry(ExpenseTracker.Engine engine, long memoryBudget, Duration idleTimeout, int threads) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("Memory budget cannot be negative: " + memoryBudget);
+        }
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Idle timeout must be positive: " + idleTimeout);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one background thread is needed: " + threads);
+        }
+        this.engine = engine;
+        this.memoryBudget = memoryBudget;
+        this.idleNanos = idleTimeout.toNanos();
+        this.cache = new QueryCache(ExpenseTracker.DEFAULT_CACHE_CAPACITY, memoryBudget / CACHE_BUDGET_DIVISOR);
+
+        AtomicInteger count = new AtomicInteger();
+        this.background = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ledger-background-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        background.setRemoveOnCancelPolicy(true);
+        background.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        long period = Math.max(idleNanos / 2, TimeUnit.MILLISECONDS.toNanos(1));
+        background.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs a function on the tracker of a ledger, opening the ledger if it is not open
+     *
+     * @param path the ledger file
+     * @param function what to do with the tracker, which must not be kept after it returns
+     * @return the result of the function
+     * @throws ExpenseStorageException if the ledger cannot be opened
+     * @throws IllegalStateException if the registry is closed
+     */
+    public <T> T withLedger(Path path, Function<ExpenseTracker, T> function) {
+        Ledger ledger = pin(path.toAbsolutePath().normalize());
+        try {
+            return function.apply(ledger.tracker);
+        } finally {
+            unpin(ledger);
+        }
+    }
+
+    /**
+     * Runs an action on the tracker of a ledger, opening the ledger if it is not open
+     *
+     * @param path the ledger file
+     * @param action what to do with the tracker, which must not be kept after it returns
+     * @throws ExpenseStorageException if the ledger cannot be opened
+     * @throws IllegalStateException if the registry is closed
+     */
+    public void useLedger(Path path, Consumer<ExpenseTracker> action) {
+        withLedger(path, tracker -> {
+            action.accept(tracker);
+            return null;
+        });
+    }
+
+    private Ledger pin(Path path) {
+        Ledger ledger;
+        Ledger previous;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Ledger registry is closed");
+            }
+            ledger = ledgers.computeIfAbsent(path, Ledger::new);
+            ledger.pins++;
+            previous = closing.get(path);
+        }
+        try {
+            if (previous != null) {
+                previous.awaitClosed();
+            }
+            synchronized (ledger) {
+                if (ledger.tracker == null) {
+                    ledger.tracker = new ExpenseTracker(ExpenseStore.open(path, background), engine, cache);
+                }
+            }
+        } catch (RuntimeException e) {
+            unpin(ledger);
+            throw e;
+        }
+        return ledger;
+    }
+
+    private void unpin(Ledger ledger) {
+        long memory;
+        boolean opened;
+        synchronized (ledger) {
+            opened = ledger.tracker != null;
+            memory = opened ? LEDGER_OVERHEAD + ledger.tracker.estimatedMemory() : 0;
+        }
+        List<Ledger> evicted = new ArrayList<>();
+        synchronized (this) {
+            ledger.pins--;
+            ledger.lastUsed = System.nanoTime();
+            if (!opened && ledger.pins == 0) {
+                // Opening failed, nothing to close
+                ledgers.remove(ledger.path, ledger);
+            } else if (ledgers.get(ledger.path) == ledger) {
+                usedMemory += memory - ledger.memory;
+                ledger.memory = memory;
+            }
+            Iterator<Ledger> leastRecent = ledgers.values().iterator();
+            while (usedMemory > memoryBudget && leastRecent.hasNext()) {
+                Ledger candidate = leastRecent.next();
+                if (candidate.pins == 0) {
+                    leastRecent.remove();
+                    evict(candidate, evicted);
+                }
+            }
+        }
+        evicted.forEach(this::closeLedger);
+    }
+
+    /**
+     * Closes the ledgers that have not been used for longer than the idle timeout.
+     * Runs periodically in the background.
+     */
+    public void evictIdle() {
+        List<Ledger> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            Iterator<Ledger> leastRecent = ledgers.values().iterator();
+            while (leastRecent.hasNext()) {
+                Ledger candidate = leastRecent.next();
+                if (candidate.pins == 0 && now - candidate.lastUsed >= idleNanos) {
+                    leastRecent.remove();
+                    evict(candidate, evicted);
+                }
+            }
+        }
+        evicted.forEach(this::closeLedger);
+    }
+
+    /**
+     * Accounts for a ledger removed from the open ones. Called with the registry locked.
+     */
+    private void evict(Ledger ledger, List<Ledger> evicted) {
+        usedMemory -= ledger.memory;
+        closing.put(ledger.path, ledger);
+        evicted.add(ledger);
+    }
+
+    private void closeLedger(Ledger ledger) {
+        try {
+            synchronized (ledger) {
+                if (ledger.tracker != null) {
+                    ledger.tracker.close();
+                }
+            }
+        } catch (ExpenseStorageException e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                closing.remove(ledger.path, ledger);
+            }
+            ledger.closed.countDown();
+        }
+    }
+
+    /**
+     * Gets the ledgers that are open
+     *
+     * @return the normalized paths of the open ledgers
+     */
+    public synchronized Set<Path> openLedgers() {
+        return Set.copyOf(ledgers.keySet());
+    }
+
+    /**
+     * Gets the estimated memory of the open ledgers, as of the last time each was used
+     *
+     * @return the estimated number of bytes
+     */
+    public synchronized long usedMemory() {
+        return usedMemory;
+    }
+
+    /**
+     * Gets the estimated memory of the query results cached by the ledgers
+     *
+     * @return the estimated number of bytes
+     */
+    public long cachedMemory() {
+        return cache.bytes();
+    }
+
+    /**
+     * Gets the hit and miss counters of the query result cache shared by the ledgers
+     *
+     * @return the counters of the cache
+     */
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Closes every open ledger and stops the background threads.
+     * Must not be called while a ledger is in use.
+     *
+     * @throws ExpenseStorageException if closing a ledger failed, now or when it was evicted
+     */
+    @Override
+    public void close() {
+        List<Ledger> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            ledgers.values().forEach(ledger -> evict(ledger, evicted));
+            ledgers.clear();
+        }
+        evicted.forEach(this::closeLedger);
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
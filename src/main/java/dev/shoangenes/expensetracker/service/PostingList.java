@@ -0,0 +1,81 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * IDs in ascending order, in a growable array: the buckets of {@link ExpenseIndexes} and {@link DescriptionIndex}.
+ * IDs are mostly added in ascending order, which appends, so loading a ledger or an import costs no more
+ * than filling an array, without a boxed {@code Integer} or tree node per ID.
+ */
+final class PostingList {
+    private int[] ids = new int[4];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void add(int id) {
+        int at = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+        if (at >= 0 && at < size) {
+            return;
+        }
+        int insert = at >= 0 ? at : -at - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, insert, ids, insert + 1, size - insert);
+        ids[insert] = id;
+        size++;
+    }
+
+    boolean remove(int id) {
+        int at = Arrays.binarySearch(ids, 0, size, id);
+        if (at < 0) {
+            return false;
+        }
+        System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+        size--;
+        return true;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    IntStream stream() {
+        return Arrays.stream(ids, 0, size);
+    }
+
+    /**
+     * Keeps the given ascending IDs that are also in this list, merging the two sorted sequences,
+     * or looking each ID up when there are far fewer of them than in this list
+     */
+    int[] intersect(int[] others) {
+        int[] common = new int[Math.min(size, others.length)];
+        int count = 0;
+        if ((long) others.length * (32 - Integer.numberOfLeadingZeros(size)) < size) {
+            for (int id : others) {
+                if (Arrays.binarySearch(ids, 0, size, id) >= 0) {
+                    common[count++] = id;
+                }
+            }
+            return Arrays.copyOf(common, count);
+        }
+        int i = 0;
+        int j = 0;
+        while (i < size && j < others.length) {
+            if (ids[i] < others[j]) {
+                i++;
+            } else if (ids[i] > others[j]) {
+                j++;
+            } else {
+                common[count++] = ids[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, count);
+    }
+}
@@ -0,0 +1,174 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+
+/**
+ * Bounded cache of query results, evicting the least recently used entries when full.
+ * <p>
+ * The cache is bounded by its number of entries and, optionally, by the estimated heap of the results it
+ * holds: lists count a fixed size per expense, grouped summaries per group, totals a fixed size.
+ * <p>
+ * Each entry remembers the version of the ledger it was computed from. A lookup with another version
+ * is a miss and recomputes the entry, so mutations never have to find the entries they invalidate.
+ * <p>
+ * The cache is thread-safe. Results are computed outside its monitor, so concurrent misses do not wait
+ * for each other; two threads missing the same entry may both compute it.
+ */
+class QueryCache {
+    /** Estimated heap of an entry besides its result: key, query criteria and map entry. */
+    static final long ENTRY_BYTES = 256;
+
+    /** Estimated heap of an expense in a cached list, description included. */
+    static final long EXPENSE_BYTES = 128;
+
+    /** Estimated heap of a group of a cached grouped summary. */
+    static final long GROUP_BYTES = 96;
+
+    private final Map<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long maxBytes;
+    private int capacity;
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    private record Entry(long version, Object result, long bytes) {
+    }
+
+    /**
+     * Creates an empty cache bounded by its number of entries only
+     *
+     * @param capacity the maximum number of entries, 0 to disable caching
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    QueryCache(int capacity) {
+        this(capacity, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates an empty cache
+     *
+     * @param capacity the maximum number of entries, 0 to disable caching
+     * @param maxBytes the maximum estimated heap of the cached results
+     * @throws IllegalArgumentException if the capacity or the size are negative
+     */
+    QueryCache(int capacity, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        resize(capacity);
+    }
+
+    /**
+     * Estimates the heap used by a cached result
+     *
+     * @param result a list of expenses, a grouped summary or a total
+     * @return the estimated number of bytes, entry included
+     */
+    static long estimateBytes(Object result) {
+        if (result instanceof List<?> list) {
+            return ENTRY_BYTES + list.size() * EXPENSE_BYTES;
+        }
+        if (result instanceof GroupedSummary summary) {
+            return ENTRY_BYTES + summary.groups().size() * GROUP_BYTES;
+        }
+        return ENTRY_BYTES;
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache is within its bounds
+     */
+    private void trim() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > capacity || bytes > maxBytes) && eldest.hasNext()) {
+            bytes -= eldest.next().bytes();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Changes the maximum number of entries, evicting the least recently used ones that no longer fit
+     *
+     * @param capacity the maximum number of entries, 0 to disable caching
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    synchronized void resize(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Cache capacity cannot be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        trim();
+    }
+
+    /**
+     * Returns the cached result of a query, computing and caching it if it is missing or stale
+     *
+     * @param key the normalized query, including what is computed from it
+     * @param version the current version of the ledger
+     * @param compute computes the result
+     * @return the result for the given version
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(Object key, long version, Supplier<T> compute) {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version() == version) {
+                hits++;
+                return (T) entry.result();
+            }
+            misses++;
+        }
+        T result = compute.get();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            long size = estimateBytes(result);
+            if (capacity > 0 && size <= maxBytes && (entry == null || entry.version() < version)) {
+                Entry previous = entries.put(key, new Entry(version, result, size));
+                bytes += size - (previous == null ? 0 : previous.bytes());
+                trim();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the entries whose key matches, e.g. those of a ledger that was closed
+     *
+     * @param keys selects the keys to remove
+     */
+    synchronized void removeIf(Predicate<Object> keys) {
+        entries.entrySet().removeIf(entry -> {
+            if (!keys.test(entry.getKey())) {
+                return false;
+            }
+            bytes -= entry.getValue().bytes();
+            return true;
+        });
+    }
+
+    /**
+     * Gets the estimated heap used by the cached results
+     *
+     * @return the estimated number of bytes
+     */
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the counters of the cache
+     *
+     * @return the hits, misses, size and capacity
+     */
+    synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, entries.size(), capacity);
+    }
+}
@@ -0,0 +1,59 @@
+package dev.shoangenes.expensetracker.service;
+
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+
+/**
+ * How the tracker answers a query: the access path it reads expenses through and how many it expects to read.
+ *
+ * @param accessPath the index or scan the expenses are read from
+ * @param estimatedRows the number of expenses the access path is expected to read
+ * @param totalRows the number of expenses in the ledger
+ * @param presorted true if the access path already yields expenses in the requested order
+ * @param query the query being answered
+ */
+public record QueryPlan(AccessPath accessPath, long estimatedRows, long totalRows, boolean presorted,
+                        ExpenseQuery query) {
+    /**
+     * Ways of reading the candidate expenses of a query.
+     */
+    public enum AccessPath {
+        /** The criteria contradict each other, nothing is read. */
+        EMPTY,
+        /** Expenses of the requested categories, from the category index. */
+        CATEGORY_INDEX,
+        /** Expenses created in the requested dates, from the date index. */
+        DATE_RANGE,
+        /** Expenses in the requested amounts, from the amount index, in amount order. */
+        AMOUNT_INDEX,
+        /** Expenses whose description holds the searched text, from the description index, in ID order. */
+        TEXT_INDEX,
+        /** Every expense of the ledger. */
+        FULL_SCAN,
+        /** Every expense of the ledger, as a loop over primitive columns. */
+        COLUMN_SCAN,
+        /** Running totals by category and month, no expense is read. */
+        AGGREGATES,
+        /** The query is sent to a store that answers it itself. */
+        STORE
+    }
+
+    /**
+     * Describes the plan, e.g. {@code CATEGORY_INDEX: ~12 of 340 rows, filter, sort [category IN (FOOD) ORDER BY id]}
+     */
+    @Override
+    public String toString() {
+        if (accessPath == AccessPath.STORE) {
+            return accessPath + ": pushed down to the store [" + query + "]";
+        }
+        if (accessPath == AccessPath.AGGREGATES) {
+            return accessPath + ": ~" + estimatedRows + " running totals [" + query + "]";
+        }
+        Integer window = query.getWindow();
+        String order = window == null ? "" : ", stop after " + window;
+        if (!presorted) {
+            order = window == null ? ", sort" : ", top " + window;
+        }
+        String steps = accessPath == AccessPath.EMPTY ? "" : ", filter" + order;
+        return accessPath + ": ~" + estimatedRows + " of " + totalRows + " rows" + steps + " [" + query + "]";
+    }
+}
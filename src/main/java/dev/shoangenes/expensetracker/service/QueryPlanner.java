@@ -0,0 +1,95 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+
+/**
+ * Picks the access path of a query against the in-memory ledger.
+ * <p>
+ * Every index that applies to the criteria of the query is a candidate. The planner asks each one how many
+ * expenses it would read and keeps the path with the lowest cost: reading through an index costs a lookup
+ * per expense on top of the scan, and unless the path yields the requested order the results have to be
+ * sorted. The number of results is estimated by the most selective index. Counting stops as soon as a path
+ * is known to read more than the best one so far.
+ * <p>
+ * A limit makes ordered paths cheaper, since they stop once the page is read, and turns the sort of
+ * the other paths into a top-k selection.
+ */
+class QueryPlanner {
+    /** Cost of reading one expense through an index, relative to reading it in a full scan. */
+    private static final double INDEX_READ_COST = 2.0;
+
+    private final ExpenseIndexes indexes;
+
+    QueryPlanner(ExpenseIndexes indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * Plans a query
+     *
+     * @param query the query to answer
+     * @param totalRows the number of expenses in the ledger
+     * @return the cheapest plan
+     */
+    QueryPlan plan(ExpenseQuery query, long totalRows) {
+        if (query.matchesNothing()) {
+            return new QueryPlan(QueryPlan.AccessPath.EMPTY, 0, totalRows, true, query);
+        }
+
+        List<QueryPlan> plans = new ArrayList<>();
+        plans.add(new QueryPlan(QueryPlan.AccessPath.FULL_SCAN, totalRows, totalRows, false, query));
+        long fewest = totalRows;
+
+        if (!query.getCategories().isEmpty()) {
+            long rows = indexes.countCategories(query.getCategories());
+            plans.add(new QueryPlan(QueryPlan.AccessPath.CATEGORY_INDEX, rows, totalRows, false, query));
+            fewest = Math.min(fewest, rows);
+        }
+
+        if (query.getFromDate() != null || query.getToDate() != null) {
+            long rows = indexes.countDates(query.getFromDate(), query.getToDate(), fewest);
+            plans.add(new QueryPlan(QueryPlan.AccessPath.DATE_RANGE, rows, totalRows, false, query));
+            fewest = Math.min(fewest, rows);
+        }
+
+        if (query.getText() != null) {
+            long rows = indexes.countText(query.getText(), fewest);
+            boolean idOrder = query.getSortKey() == ExpenseQuery.SortKey.ID && query.isAscending();
+            plans.add(new QueryPlan(QueryPlan.AccessPath.TEXT_INDEX, rows, totalRows, idOrder, query));
+            fewest = Math.min(fewest, rows);
+        }
+
+        boolean amountOrder = query.getSortKey() == ExpenseQuery.SortKey.AMOUNT;
+        if (query.getMinAmountMinor() != null || query.getMaxAmountMinor() != null || amountOrder) {
+            long rows = indexes.countAmounts(query.getMinAmountMinor(), query.getMaxAmountMinor(), totalRows);
+            plans.add(new QueryPlan(QueryPlan.AccessPath.AMOUNT_INDEX, rows, totalRows, amountOrder, query));
+            fewest = Math.min(fewest, rows);
+        }
+
+        long results = fewest;
+        long kept = query.getWindow() == null ? results : Math.min(results, query.getWindow());
+        return plans.stream()
+                .min(Comparator.comparingDouble(plan -> cost(plan, results, kept)))
+                .orElseThrow();
+    }
+
+    /**
+     * Estimates the cost of a plan in units of expenses read by a full scan
+     *
+     * @param results the estimated number of expenses matching the query
+     * @param kept the estimated number of those needed to build the page
+     */
+    private static double cost(QueryPlan plan, long results, long kept) {
+        double rows = plan.estimatedRows();
+        if (plan.presorted() && results > 0) {
+            rows *= (double) kept / results;
+        }
+        double read = plan.accessPath() == QueryPlan.AccessPath.FULL_SCAN ? rows : rows * INDEX_READ_COST;
+        double sort = plan.presorted() || kept < 2 ? 0 : results * Math.log(kept) / Math.log(2);
+        return read + sort;
+    }
+}
@@ -0,0 +1,143 @@
+package dev.shoangenes.expensetracker.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Runs the mutations of one ledger on a single virtual thread, one at a time and in the order they were submitted.
+ * <p>
+ * Mutations that queue up while others run are taken together, up to {@value #MAX_GROUP} at a time, run back to
+ * back and made durable with one flush of the store. Their futures complete only after that flush, so a completed
+ * future means the mutation is on disk. Futures complete on other threads, never on the writer, so callbacks that
+ * submit further mutations cannot hold it up.
+ */
+final class WriteSequencer implements AutoCloseable {
+    /** Mutations run before one flush at most. */
+    static final int MAX_GROUP = 1024;
+
+    /** A submitted mutation; the task without work tells the writer to stop. */
+    private record Task<T>(Supplier<T> work, CompletableFuture<T> result) {
+        void complete(Object value, Throwable failure, Executor callbacks) {
+            if (failure != null) {
+                callbacks.execute(() -> result.completeExceptionally(failure));
+            } else {
+                @SuppressWarnings("unchecked")
+                T typed = (T) value;
+                callbacks.execute(() -> result.complete(typed));
+            }
+        }
+    }
+
+    private static final Task<Void> STOP = new Task<>(null, null);
+
+    private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+    private final Runnable flush;
+    private final Executor callbacks;
+    private final Thread writer;
+    private boolean closed;
+
+    /**
+     * Starts the writer thread
+     *
+     * @param name the name of the writer thread
+     * @param flush makes the mutations run so far durable
+     * @param callbacks runs the completion of the futures
+     */
+    WriteSequencer(String name, Runnable flush, Executor callbacks) {
+        this.flush = flush;
+        this.callbacks = callbacks;
+        this.writer = Thread.ofVirtual().name(name).start(this::run);
+    }
+
+    /**
+     * Queues a mutation behind the ones already submitted
+     *
+     * @param work the mutation
+     * @return completes with the result of the mutation once it is durable, or with its failure
+     * @throws IllegalStateException if the sequencer is closed
+     */
+    synchronized <T> CompletableFuture<T> submit(Supplier<T> work) {
+        if (closed) {
+            throw new IllegalStateException("Ledger is closed");
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        queue.add(new Task<>(work, result));
+        return result;
+    }
+
+    private void run() {
+        List<Task<?>> group = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                // Only close() stops the writer, so pending mutations are never dropped
+                continue;
+            }
+            queue.drainTo(group, MAX_GROUP - 1);
+
+            Object[] values = new Object[group.size()];
+            Throwable[] failures = new Throwable[group.size()];
+            boolean changed = false;
+            for (int i = 0; i < group.size(); i++) {
+                Task<?> task = group.get(i);
+                if (task == STOP) {
+                    stopping = true;
+                    continue;
+                }
+                try {
+                    values[i] = task.work().get();
+                    changed = true;
+                } catch (RuntimeException | Error e) {
+                    failures[i] = e;
+                }
+            }
+            Throwable flushFailure = null;
+            if (changed) {
+                try {
+                    flush.run();
+                } catch (RuntimeException e) {
+                    flushFailure = e;
+                }
+            }
+            for (int i = 0; i < group.size(); i++) {
+                Task<?> task = group.get(i);
+                if (task != STOP) {
+                    task.complete(values[i], failures[i] != null ? failures[i] : flushFailure, callbacks);
+                }
+            }
+            group.clear();
+        }
+    }
+
+    /**
+     * Stops accepting mutations and waits for the queued ones to be run and flushed
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(STOP);
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
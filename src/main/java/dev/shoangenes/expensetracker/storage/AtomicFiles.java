@@ -0,0 +1,104 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+
+/**
+ * Helpers to replace files without ever exposing a partially written version.
+ */
+public final class AtomicFiles {
+    private AtomicFiles() {}
+
+    /**
+     * Replaces the target file with the content produced by the writer.
+     * <p>
+     * The content is written to a temporary file in the same directory, flushed to disk and then
+     * atomically renamed over the target. If the process dies at any point, the target holds either
+     * its previous content or the new one, never a truncated mix. The new file keeps the permissions
+     * of the target, or gets the default permissions of new files if there is no target yet.
+     *
+     * @param target the file to replace
+     * @param writer writes the new content to the path it is given
+     * @throws ExpenseStorageException if the file cannot be written or replaced
+     */
+    public static void replace(Path target, Consumer<Path> writer) {
+        Path absolute = target.toAbsolutePath();
+        Path directory = absolute.getParent();
+        Path temp = null;
+        try {
+            temp = createTemp(absolute);
+            writer.accept(temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            syncDirectory(directory);
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error replacing file: " + target, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // Ignore cleanup errors, the temporary file is never read
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an empty file next to the target with the permissions of the target. Unlike
+     * {@link Files#createTempFile}, which makes the file readable by its owner only, a file without a
+     * target gets the default permissions, so replacing a file never changes who can read it.
+     */
+    private static Path createTemp(Path target) throws IOException {
+        Path temp;
+        while (true) {
+            temp = target.resolveSibling(target.getFileName() + "."
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+            try {
+                Files.createFile(temp);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // Taken by another writer, try another name
+            }
+        }
+        try {
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+        } catch (NoSuchFileException | UnsupportedOperationException e) {
+            // No target yet, or no POSIX permissions to keep
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * Flushes the directory entry so the rename itself survives a crash.
+     * Not every platform allows opening a directory, in which case this is a no-op.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Best effort, see above
+        }
+    }
+}
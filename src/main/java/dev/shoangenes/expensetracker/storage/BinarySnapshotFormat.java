@@ -0,0 +1,309 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Amounts;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+
+/**
+ * Compact binary snapshot that stores the ledger as fixed-width columns.
+ * <p>
+ * Layout, all values big-endian:
+ * <pre>
+ * header       magic (int), version (int), row count (int), heap size (int)
+ * ids          int[rows]
+ * amounts      long[rows]     minor units (version 2), double (version 1)
+ * dates        int[rows]      creation date as epoch day
+ * categories   byte[rows]     category ordinal, -1 for none
+ * offsets      int[rows + 1]  start of each description inside the heap
+ * heap         UTF-8 bytes of every description, back to back
+ * </pre>
+ * Files are read through a {@link MappedByteBuffer}, so opening a ledger costs a mapping
+ * and each value is a single positioned read instead of text parsing. Snapshots are written as
+ * version 2; version 1 files, which stored amounts as doubles, are still read.
+ */
+public class BinarySnapshotFormat implements SnapshotFormat {
+    /** "EXTB" in ASCII. */
+    private static final int MAGIC = 0x45585442;
+    private static final int VERSION = 2;
+    private static final int DOUBLE_AMOUNTS_VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    /** Buffer of each column spooled by {@link #write(Path, Stream)}. */
+    private static final int SPOOL_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Read-only view over the columns of a mapped snapshot.
+     */
+    public static class Columns {
+        private final MappedByteBuffer buffer;
+        private final int version;
+        private final int rows;
+        private final int idsStart;
+        private final int amountsStart;
+        private final int datesStart;
+        private final int categoriesStart;
+        private final int offsetsStart;
+        private final int heapStart;
+
+        private Columns(MappedByteBuffer buffer, int version, int rows) {
+            this.buffer = buffer;
+            this.version = version;
+            this.rows = rows;
+            this.idsStart = HEADER_BYTES;
+            this.amountsStart = idsStart + rows * Integer.BYTES;
+            this.datesStart = amountsStart + rows * Long.BYTES;
+            this.categoriesStart = datesStart + rows * Integer.BYTES;
+            this.offsetsStart = categoriesStart + rows;
+            this.heapStart = offsetsStart + (rows + 1) * Integer.BYTES;
+        }
+
+        /**
+         * Gets the number of rows in the snapshot
+         *
+         * @return the number of rows
+         */
+        public int size() {
+            return rows;
+        }
+
+        /** Gets the ID stored at the given row. */
+        public int id(int row) {
+            return buffer.getInt(idsStart + row * Integer.BYTES);
+        }
+
+        /** Gets the amount stored at the given row. */
+        public double amount(int row) {
+            return Amounts.toUnits(amountMinor(row));
+        }
+
+        /** Gets the amount in minor units stored at the given row. */
+        public long amountMinor(int row) {
+            int position = amountsStart + row * Long.BYTES;
+            return version == DOUBLE_AMOUNTS_VERSION ? Amounts.toMinor(buffer.getDouble(position)) : buffer.getLong(position);
+        }
+
+        /** Gets the creation date, as an epoch day, stored at the given row. */
+        public int epochDay(int row) {
+            return buffer.getInt(datesStart + row * Integer.BYTES);
+        }
+
+        /** Gets the category ordinal, or -1 if it has none, stored at the given row. */
+        public byte categoryOrdinal(int row) {
+            return buffer.get(categoriesStart + row);
+        }
+
+        /** Gets the description stored at the given row. */
+        public String description(int row) {
+            int start = buffer.getInt(offsetsStart + row * Integer.BYTES);
+            int end = buffer.getInt(offsetsStart + (row + 1) * Integer.BYTES);
+            byte[] bytes = new byte[end - start];
+            buffer.get(heapStart + start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Materializes the given row as an expense
+         *
+         * @param row the row index
+         * @return the expense stored at that row
+         */
+        public Expense expense(int row) {
+            byte category = categoryOrdinal(row);
+            return Expense.restoreMinor(
+                    id(row),
+                    description(row),
+                    amountMinor(row),
+                    LocalDate.ofEpochDay(epochDay(row)),
+                    category < 0 ? null : ExpenseCategory.values()[category]);
+        }
+    }
+
+    /**
+     * Maps a binary snapshot into memory and validates its header
+     *
+     * @param path the snapshot file
+     * @return a view over the columns of the file
+     * @throws ExpenseStorageException if the file cannot be mapped or is not a binary snapshot
+     */
+    public static Columns map(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ExpenseStorageException("Binary snapshot too large to map: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                throw new ExpenseStorageException("Not a binary expense snapshot: " + path);
+            }
+            int version = buffer.getInt(4);
+            if (version != VERSION && version != DOUBLE_AMOUNTS_VERSION) {
+                throw new ExpenseStorageException("Unsupported binary snapshot version " + version + ": " + path);
+            }
+            return new Columns(buffer, version, buffer.getInt(8));
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error reading expenses from file: " + path, e);
+        }
+    }
+
+    @Override
+    public int read(Path path, Map<Integer, Expense> expenses) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        Columns columns = map(path);
+        int maxId = 0;
+        for (int row = 0; row < columns.size(); row++) {
+            Expense expense = columns.expense(row);
+            expenses.put(expense.getId(), expense);
+            maxId = Math.max(maxId, expense.getId());
+        }
+        return maxId;
+    }
+
+    @Override
+    public void write(Path path, Collection<Expense> expenses) {
+        int rows = expenses.size();
+        byte[][] descriptions = new byte[rows][];
+        long heapBytes = 0;
+        int row = 0;
+        for (Expense expense : expenses) {
+            descriptions[row] = expense.getDescription().getBytes(StandardCharsets.UTF_8);
+            heapBytes += descriptions[row].length;
+            row++;
+        }
+
+        long fileBytes = HEADER_BYTES
+                + (long) rows * (Integer.BYTES + Long.BYTES + Integer.BYTES + 1)
+                + (long) (rows + 1) * Integer.BYTES
+                + heapBytes;
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new ExpenseStorageException("Ledger too large for a binary snapshot: " + path);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt((int) heapBytes);
+            expenses.forEach(e -> buffer.putInt(e.getId()));
+            expenses.forEach(e -> buffer.putLong(e.getAmountMinor()));
+            expenses.forEach(e -> buffer.putInt((int) e.getCreationDate().toEpochDay()));
+            expenses.forEach(e -> buffer.put(e.getCategory() == null ? -1 : (byte) e.getCategory().ordinal()));
+
+            int offset = 0;
+            for (byte[] description : descriptions) {
+                buffer.putInt(offset);
+                offset += description.length;
+            }
+            buffer.putInt(offset);
+            for (byte[] description : descriptions) {
+                buffer.put(description);
+            }
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error writing expenses to file: " + path, e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of expenses arriving one at a time, without holding them in memory.
+     * Each column is spooled to a temporary file next to the target, then the header and the columns
+     * are copied into the target in order.
+     *
+     * @param path the file to write
+     * @param expenses the expenses to write, consumed once
+     * @return the number of expenses written
+     * @throws ExpenseStorageException if writing fails or the snapshot would be too large
+     */
+    public int write(Path path, Stream<Expense> expenses) {
+        Path directory = path.toAbsolutePath().getParent();
+        List<Path> spools = new ArrayList<>();
+        try {
+            for (int column = 0; column < 6; column++) {
+                spools.add(Files.createTempFile(directory, path.getFileName().toString(), ".column" + column));
+            }
+            int rows = 0;
+            long heapBytes = 0;
+            try (DataOutputStream ids = spool(spools.get(0));
+                 DataOutputStream amounts = spool(spools.get(1));
+                 DataOutputStream dates = spool(spools.get(2));
+                 DataOutputStream categories = spool(spools.get(3));
+                 DataOutputStream offsets = spool(spools.get(4));
+                 DataOutputStream heap = spool(spools.get(5))) {
+                offsets.writeInt(0);
+                Iterator<Expense> iterator = expenses.iterator();
+                while (iterator.hasNext()) {
+                    Expense expense = iterator.next();
+                    byte[] description = expense.getDescription().getBytes(StandardCharsets.UTF_8);
+                    heapBytes += description.length;
+                    rows++;
+                    long fileBytes = HEADER_BYTES
+                            + (long) rows * (Integer.BYTES + Long.BYTES + Integer.BYTES + 1)
+                            + (long) (rows + 1) * Integer.BYTES
+                            + heapBytes;
+                    if (fileBytes > Integer.MAX_VALUE) {
+                        throw new ExpenseStorageException("Ledger too large for a binary snapshot: " + path);
+                    }
+                    ids.writeInt(expense.getId());
+                    amounts.writeLong(expense.getAmountMinor());
+                    dates.writeInt((int) expense.getCreationDate().toEpochDay());
+                    categories.writeByte(expense.getCategory() == null ? -1 : expense.getCategory().ordinal());
+                    heap.write(description);
+                    offsets.writeInt((int) heapBytes);
+                }
+            }
+
+            try (FileChannel target = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                        .putInt(MAGIC).putInt(VERSION).putInt(rows).putInt((int) heapBytes)
+                        .flip();
+                while (header.hasRemaining()) {
+                    target.write(header);
+                }
+                for (Path spool : spools) {
+                    try (FileChannel source = FileChannel.open(spool, StandardOpenOption.READ)) {
+                        long size = source.size();
+                        long copied = 0;
+                        while (copied < size) {
+                            copied += target.transferFrom(source, target.position() + copied, size - copied);
+                        }
+                        target.position(target.position() + size);
+                    }
+                }
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error writing expenses to file: " + path, e);
+        } finally {
+            for (Path spool : spools) {
+                try {
+                    Files.deleteIfExists(spool);
+                } catch (IOException ignored) {
+                    // Left behind in the ledger directory, harmless
+                }
+            }
+        }
+    }
+
+    private static DataOutputStream spool(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), SPOOL_BUFFER_SIZE));
+    }
+}
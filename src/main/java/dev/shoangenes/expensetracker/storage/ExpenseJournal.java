@@ -0,0 +1,662 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseAdapter;
+import dev.shoangenes.expensetracker.model.LocalDateAdapter;
+
+/**
+ * Append-only log of the mutations applied to the ledger since the last snapshot.
+ * <p>
+ * Each mutation is written as a single JSON line, so the cost of a change is proportional
+ * to the size of that change instead of the size of the whole ledger.
+ * Loading the ledger means reading the snapshot and replaying the journal on top of it.
+ * <p>
+ * Before being folded into a snapshot, the journal is rotated: its records move to a file named after
+ * the journal generation, e.g. 'ledger.json.journal.g3', while new mutations keep being appended to a fresh
+ * journal of the next generation.
+ * <p>
+ * Several processes can share a journal. Appends, rotations and reads of the files are done while holding
+ * the {@link LedgerLock} of the ledger, which also stores the current generation. A reader remembers the
+ * {@link Position} it read up to and later reads only the records appended since, see
+ * {@link #readSince(Position, ExpenseStore.ChangeListener)}, skipping those this journal wrote itself.
+ * <p>
+ * By default every append is written right away, and forced to disk on the next {@link #flush()}. With a
+ * {@link GroupCommitPolicy} records are buffered and written, then forced to disk, in batches.
+ */
+public class ExpenseJournal implements AutoCloseable {
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+            .registerTypeAdapter(Expense.class, new ExpenseAdapter())
+            .create();
+
+    /** Location of the journal file. */
+    private final Path path;
+
+    /** Lock shared with every other user of the ledger, also holding the journal generation. */
+    private final LedgerLock lock;
+
+    /** Names of rotated journal files, capturing their generation. */
+    private final Pattern rotatedName;
+
+    /** Group-commit settings, null when every append is written right away. */
+    private final GroupCommitPolicy groupCommit;
+
+    /** Parts of the journal files written by this journal and not read past yet, skipped when reading. */
+    private final List<Range> written = new ArrayList<>();
+
+    /** Records waiting for the next group commit. */
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final List<Entry> bufferedEntries = new ArrayList<>();
+
+    /** Writes the buffer once the oldest buffered record reaches the latency cap. */
+    private ScheduledExecutorService flusher;
+
+    /** Whether the flusher was created by this journal, and is stopped when it is closed. */
+    private final boolean ownsFlusher;
+    private ScheduledFuture<?> pendingFlush;
+
+    /** Whether records were written right away since the journal was last forced to disk. */
+    private boolean unsynced;
+
+    /** Failure of the last background flush, reported to the next caller. */
+    private volatile ExpenseStorageException failure;
+
+    /**
+     * Kind of mutation stored in a journal record.
+     */
+    private enum Operation {
+        PUT,
+        DELETE
+    }
+
+    /**
+     * A single journal record. PUT records carry the full expense, DELETE records only its id.
+     */
+    private record Entry(Operation op, Integer id, Expense expense) {}
+
+    /**
+     * Point of the journal a reader has read up to.
+     *
+     * @param generation the generation of the journal file that was being read
+     * @param offset the number of bytes of that file already read
+     */
+    public record Position(long generation, long offset) {}
+
+    /** Bytes of the journal file of a generation, from the start offset up to the end offset. */
+    private record Range(long generation, long start, long end) {}
+
+    /**
+     * Creates a journal backed by the given file. The file is created lazily on the first append.
+     *
+     * @param path the location of the journal file
+     */
+    public ExpenseJournal(Path path) {
+        this(path, null);
+    }
+
+    /**
+     * Creates a journal backed by the given file that batches its writes.
+     * The journal is locked through a file with the '.lock' suffix appended.
+     *
+     * @param path the location of the journal file
+     * @param groupCommit when to write buffered records, or null to write every append right away
+     */
+    public ExpenseJournal(Path path, GroupCommitPolicy groupCommit) {
+        this(path, groupCommit, new LedgerLock(path.resolveSibling(path.getFileName() + ".lock")));
+    }
+
+    /**
+     * Creates a journal backed by the given file that batches its writes and is guarded by the given lock.
+     *
+     * @param path the location of the journal file
+     * @param groupCommit when to write buffered records, or null to write every append right away
+     * @param lock the lock of the ledger
+     */
+    public ExpenseJournal(Path path, GroupCommitPolicy groupCommit, LedgerLock lock) {
+        this(path, groupCommit, lock, null);
+    }
+
+    /**
+     * Creates a journal that runs its group commits on the given executor, e.g. one shared by many ledgers.
+     *
+     * @param path the location of the journal file
+     * @param groupCommit when to write buffered records, or null to write every append right away
+     * @param lock the lock of the ledger
+     * @param flusher the executor of background flushes, left running on close; null to start a thread when needed
+     */
+    public ExpenseJournal(Path path, GroupCommitPolicy groupCommit, LedgerLock lock, ScheduledExecutorService flusher) {
+        this.path = path;
+        this.groupCommit = groupCommit;
+        this.lock = lock;
+        this.flusher = flusher;
+        this.ownsFlusher = flusher == null;
+        this.rotatedName = Pattern.compile(Pattern.quote(path.getFileName().toString()) + "\\.g(\\d+)");
+    }
+
+    /**
+     * Gets the lock guarding this journal
+     *
+     * @return the lock of the ledger
+     */
+    public LedgerLock lock() {
+        return lock;
+    }
+
+    /**
+     * Records that the given expense was added or modified.
+     *
+     * @param expense the new state of the expense
+     * @throws ExpenseStorageException if writing to the journal fails
+     */
+    public void appendPut(Expense expense) {
+        append(List.of(new Entry(Operation.PUT, expense.getId(), expense)));
+    }
+
+    /**
+     * Records that the expense with the given id was deleted.
+     *
+     * @param id the ID of the deleted expense
+     * @throws ExpenseStorageException if writing to the journal fails
+     */
+    public void appendDelete(int id) {
+        append(List.of(new Entry(Operation.DELETE, id, null)));
+    }
+
+    /**
+     * Records several mutations with a single write.
+     *
+     * @param puts the new state of added or modified expenses
+     * @param deletedIds the IDs of deleted expenses
+     * @throws ExpenseStorageException if writing to the journal fails
+     */
+    public void appendBatch(Collection<Expense> puts, Collection<Integer> deletedIds) {
+        List<Entry> entries = new ArrayList<>(puts.size() + deletedIds.size());
+        puts.forEach(expense -> entries.add(new Entry(Operation.PUT, expense.getId(), expense)));
+        deletedIds.forEach(id -> entries.add(new Entry(Operation.DELETE, id, null)));
+        append(entries);
+    }
+
+    private void append(List<Entry> entries) {
+        lock.lock();
+        try {
+            synchronized (this) {
+                rethrowFailure();
+                if (entries.isEmpty()) {
+                    return;
+                }
+
+                byte[] bytes = encode(entries);
+                if (groupCommit == null) {
+                    write(bytes, false);
+                    unsynced = true;
+                } else {
+                    buffer.writeBytes(bytes);
+                    bufferedEntries.addAll(entries);
+                    if (bufferedEntries.size() >= groupCommit.maxRecords()) {
+                        flush();
+                    } else if (pendingFlush == null) {
+                        pendingFlush = flusher().schedule(this::flushInBackground,
+                                groupCommit.maxLatency().toNanos(), TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static byte[] encode(List<Entry> entries) {
+        StringBuilder lines = new StringBuilder();
+        entries.forEach(entry -> {
+            // Appended in place rather than through a String per record
+            gson.toJson(entry, Entry.class, lines);
+            lines.append('\n');
+        });
+        return lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends to the journal under the ledger lock. A torn record left by an interrupted append
+     * is cut off first, so it does not merge with the new records.
+     */
+    private void write(byte[] bytes, boolean sync) {
+        lock.lock();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = channel.size();
+            if (end > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.read(last, end - 1);
+                if (last.get(0) != '\n') {
+                    end = completeLength(end);
+                    channel.truncate(end);
+                }
+            }
+            long start = end;
+            ByteBuffer content = ByteBuffer.wrap(bytes);
+            while (content.hasRemaining()) {
+                end += channel.write(content, end);
+            }
+            synchronized (this) {
+                written.add(new Range(lock.readState().generation(), start, end));
+            }
+            if (sync) {
+                force(channel);
+            }
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error writing to journal: " + path, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the length of the journal up to its last complete record.
+     */
+    private long completeLength(long size) {
+        long[] complete = {0};
+        read(path, 0, line -> {}, complete);
+        return Math.min(complete[0], size);
+    }
+
+    /**
+     * Forces a journal file to disk
+     *
+     * @param channel the open journal file
+     * @throws IOException if the file cannot be forced
+     */
+    protected void force(FileChannel channel) throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Forces the records written right away since the last flush to disk. Another process may have rotated
+     * them out of the journal meanwhile, so rotated files that are not folded yet are forced too.
+     */
+    private void forceWritten() {
+        List<Path> files = new ArrayList<>(rotatedFiles());
+        files.add(path);
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                force(channel);
+            } catch (NoSuchFileException e) {
+                // Already folded into the snapshot, which is forced when it is written
+            } catch (IOException e) {
+                throw new ExpenseStorageException("Error writing to journal: " + file, e);
+            }
+        }
+        unsynced = false;
+    }
+
+    /**
+     * Makes every record appended so far durable: buffered records are written and forced to disk, records
+     * written right away are forced to disk. Does nothing if there is no such record.
+     *
+     * @throws ExpenseStorageException if writing to the journal fails
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            synchronized (this) {
+                rethrowFailure();
+                if (pendingFlush != null) {
+                    pendingFlush.cancel(false);
+                    pendingFlush = null;
+                }
+                if (unsynced) {
+                    forceWritten();
+                }
+                if (bufferedEntries.isEmpty()) {
+                    return;
+                }
+                write(buffer.toByteArray(), true);
+                buffer.reset();
+                bufferedEntries.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (ExpenseStorageException e) {
+            failure = e;
+        }
+    }
+
+    private void rethrowFailure() {
+        ExpenseStorageException error = failure;
+        if (error != null) {
+            failure = null;
+            throw error;
+        }
+    }
+
+    private ScheduledExecutorService flusher() {
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "expense-journal-" + path.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return flusher;
+    }
+
+    /**
+     * Applies every record of the journal, in order, to the given map.
+     * Rotated records that were not folded into the snapshot yet are applied first, oldest generation first.
+     * <p>
+     * Replaying is idempotent, so a journal that was already folded into the snapshot can be replayed
+     * again safely. An unterminated last line is the result of an interrupted append and is ignored.
+     *
+     * @param expenses the map to apply the recorded mutations to
+     * @return the highest expense id found in the journal, or 0 if there is none
+     * @throws ExpenseStorageException if the journal cannot be read or is corrupted
+     */
+    public int replay(Map<Integer, Expense> expenses) {
+        return Math.max(replayRotated(rotatedFiles(), expenses), replay(path, expenses));
+    }
+
+    /**
+     * Applies only the given rotated records to the given map
+     *
+     * @param files the rotated files to apply, as returned by {@link #rotatedFiles()}
+     * @param expenses the map to apply the recorded mutations to
+     * @return the highest expense id found in the rotated records, or 0 if there is none
+     * @throws ExpenseStorageException if the rotated records cannot be read or are corrupted
+     */
+    public int replayRotated(List<Path> files, Map<Integer, Expense> expenses) {
+        int maxId = 0;
+        for (Path file : files) {
+            maxId = Math.max(maxId, replay(file, expenses));
+        }
+        return maxId;
+    }
+
+    private int replay(Path file, Map<Integer, Expense> expenses) {
+        int[] maxId = {0};
+        read(file, 0, entry -> {
+            apply(entry, expenses);
+            maxId[0] = Math.max(maxId[0], entry.id());
+        }, null);
+        return maxId[0];
+    }
+
+    private void apply(Entry entry, Map<Integer, Expense> expenses) {
+        switch (entry.op()) {
+            case PUT -> expenses.put(entry.expense().getId(), entry.expense());
+            case DELETE -> expenses.remove(entry.id());
+        }
+    }
+
+    private void apply(Entry entry, ExpenseStore.ChangeListener listener) {
+        switch (entry.op()) {
+            case PUT -> listener.onPut(entry.expense());
+            case DELETE -> listener.onRemove(entry.id());
+        }
+    }
+
+    private boolean read(Path file, long offset, Consumer<Entry> consumer, long[] end) {
+        return read(file, offset, (entry, at) -> consumer.accept(entry), end);
+    }
+
+    /**
+     * Reads the complete records of a file starting at the given offset.
+     *
+     * @param consumer receives each record with the offset it starts at
+     * @param end receives the offset right after the last complete record, may be null
+     * @return false if the file does not exist
+     */
+    private boolean read(Path file, long offset, ObjLongConsumer<Entry> consumer, long[] end) {
+        if (!Files.exists(file)) {
+            return false;
+        }
+
+        long position = offset;
+        try (InputStream input = Files.newInputStream(file)) {
+            input.skipNBytes(offset);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] != '\n') {
+                        continue;
+                    }
+                    line.write(chunk, start, i - start);
+                    String record = line.toString(StandardCharsets.UTF_8);
+                    if (!record.isBlank()) {
+                        consumer.accept(gson.fromJson(record, Entry.class), position);
+                    }
+                    position += line.size() + 1;
+                    line.reset();
+                    start = i + 1;
+                }
+                line.write(chunk, start, read - start);
+            }
+        } catch (IOException | JsonParseException e) {
+            throw new ExpenseStorageException("Error replaying journal: " + file, e);
+        }
+        if (end != null) {
+            end[0] = position;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the point of the journal reached once every record written so far is read.
+     * Must be called while holding the ledger lock.
+     *
+     * @return the current generation and size of the journal
+     * @throws ExpenseStorageException if the journal cannot be read
+     */
+    public Position position() {
+        long generation = lock.readState().generation();
+        try {
+            return new Position(generation, Files.exists(path) ? Files.size(path) : 0);
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error reading journal: " + path, e);
+        }
+    }
+
+    /**
+     * Sends the records appended since the given position to the listener, in order.
+     * Must be called while holding the ledger lock.
+     * <p>
+     * Records written by this journal are skipped, its user applied them already. If other records were read,
+     * the records buffered by this journal for the next group commit are sent again after them, since they
+     * will be written after those records.
+     *
+     * @param from the position the reader has read up to
+     * @param listener receives the mutations
+     * @return the new position of the reader, or null if records it has not read were already folded into
+     *         the snapshot and the whole ledger must be reloaded
+     * @throws ExpenseStorageException if the journal cannot be read or is corrupted
+     */
+    public synchronized Position readSince(Position from, ExpenseStore.ChangeListener listener) {
+        long generation = lock.readState().generation();
+        if (from.generation() > generation) {
+            return null;
+        }
+
+        long[] end = {from.offset()};
+        boolean[] changed = {false};
+        for (long g = from.generation(); g < generation; g++) {
+            if (!read(rotatedPath(g), end[0], others(g, listener, changed), null)) {
+                return null;
+            }
+            end[0] = 0;
+        }
+        try {
+            if (Files.exists(path) && Files.size(path) < end[0]) {
+                return null;
+            }
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error reading journal: " + path, e);
+        }
+        read(path, end[0], others(generation, listener, changed), end);
+
+        Position next = new Position(generation, end[0]);
+        written.removeIf(range -> range.generation() < next.generation()
+                || range.generation() == next.generation() && range.end() <= next.offset());
+        if (changed[0]) {
+            bufferedEntries.forEach(entry -> apply(entry, listener));
+        }
+        return next;
+    }
+
+    /**
+     * Sends the records of a journal generation to a listener, except those written by this journal
+     *
+     * @param changed set once a record is sent
+     */
+    private ObjLongConsumer<Entry> others(long generation, ExpenseStore.ChangeListener listener, boolean[] changed) {
+        return (entry, offset) -> {
+            for (Range range : written) {
+                if (range.generation() == generation && offset >= range.start() && offset < range.end()) {
+                    return;
+                }
+            }
+            apply(entry, listener);
+            changed[0] = true;
+        };
+    }
+
+    /**
+     * Gets the current size of the journal, not counting rotated records
+     *
+     * @return the size of the journal in bytes, including buffered records
+     * @throws ExpenseStorageException if the size of the journal cannot be read
+     */
+    public synchronized long size() {
+        try {
+            return (Files.exists(path) ? Files.size(path) : 0) + buffer.size();
+        } catch (NoSuchFileException e) {
+            // Rotated by another user of the ledger meanwhile
+            return buffer.size();
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error reading journal: " + path, e);
+        }
+    }
+
+    private Path rotatedPath(long generation) {
+        return path.resolveSibling(path.getFileName() + ".g" + generation);
+    }
+
+    /**
+     * Lists the rotated journal files that are not folded into the snapshot yet
+     *
+     * @return the rotated files, oldest generation first
+     * @throws ExpenseStorageException if the directory of the journal cannot be listed
+     */
+    public List<Path> rotatedFiles() {
+        Path directory = path.toAbsolutePath().getParent();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(file -> rotatedName.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .sorted(Comparator.comparingLong(matcher -> Long.parseLong(matcher.group(1))))
+                    .map(matcher -> path.resolveSibling(matcher.group()))
+                    .toList();
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error listing journal files: " + directory, e);
+        }
+    }
+
+    /**
+     * Moves the records of the journal aside so they can be folded into a snapshot,
+     * while new records go to an empty journal of the next generation.
+     * <p>
+     * Rotated records from earlier, interrupted compactions are kept and folded along with the new ones,
+     * oldest generation first, so records are never reordered.
+     *
+     * @return true if there are rotated records to fold, false if there is nothing to compact
+     * @throws ExpenseStorageException if the journal cannot be moved
+     */
+    public boolean rotate() {
+        lock.lock();
+        try {
+            flush();
+            if (Files.exists(path) && Files.size(path) > 0) {
+                LedgerLock.State state = lock.readState();
+                Files.move(path, rotatedPath(state.generation()));
+                lock.writeState(new LedgerLock.State(state.generation() + 1, state.maxId()));
+            }
+            return !rotatedFiles().isEmpty();
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error rotating journal: " + path, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the given rotated records. Must only be called once they are part of a snapshot.
+     * Takes the ledger lock, so no reader is between reading the old snapshot and the rotated records.
+     *
+     * @param files the rotated files that were folded
+     * @throws ExpenseStorageException if the rotated records cannot be deleted
+     */
+    public void discardRotated(List<Path> files) {
+        lock.lock();
+        try {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error clearing journal: " + path, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes buffered records and stops the background flusher, unless it was given to the journal.
+     *
+     * @throws ExpenseStorageException if writing to the journal fails
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            if (flusher != null && ownsFlusher) {
+                flusher.shutdownNow();
+            }
+        }
+    }
+}
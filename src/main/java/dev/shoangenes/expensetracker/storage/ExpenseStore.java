@@ -0,0 +1,354 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Stream;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Amounts;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+
+/**
+ * Persistence backend of a ledger.
+ * <p>
+ * Stores come in two flavours. Plain stores only persist mutations and hand the whole ledger to
+ * {@link #load(Map)}, after which it is queried in memory. Stores that {@link #supportsQueries()}
+ * answer lookups, scans and sums themselves, so the ledger never has to fit in memory.
+ * The query methods have default implementations built on {@link #load(Map)} so every store
+ * can serve them, if only slowly.
+ */
+public interface ExpenseStore extends AutoCloseable {
+    /** File extension of ledgers stored in an embedded H2 database. */
+    String H2_EXTENSION = ".h2";
+
+    /** Extension of ledger directories partitioned by month. */
+    String PARTITIONED_EXTENSION = ".parts";
+
+    /**
+     * Receives the mutations other users of a ledger made since it was loaded, see {@link #refresh(ChangeListener)}
+     */
+    interface ChangeListener {
+        /**
+         * Called when an expense was added or modified
+         *
+         * @param expense the new state of the expense
+         */
+        void onPut(Expense expense);
+
+        /**
+         * Called when an expense was deleted
+         *
+         * @param id the ID of the deleted expense
+         */
+        void onRemove(int id);
+
+        /**
+         * Called instead of individual changes when the whole ledger had to be read again
+         *
+         * @param expenses every expense of the ledger, keyed by id
+         */
+        void onReload(Map<Integer, Expense> expenses);
+    }
+
+    /**
+     * Reads every expense of the ledger into the given map
+     *
+     * @param expenses the map to fill, keyed by expense id
+     * @return the highest expense id found, or 0 if the ledger is empty
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    int load(Map<Integer, Expense> expenses);
+
+    /**
+     * Persists a new or modified expense
+     *
+     * @param expense the expense to store
+     * @throws ExpenseStorageException if writing the expense fails
+     */
+    void put(Expense expense);
+
+    /**
+     * Deletes the expense with the given id, if it is stored
+     *
+     * @param id the ID of the expense to delete
+     * @throws ExpenseStorageException if deleting the expense fails
+     */
+    void remove(int id);
+
+    /**
+     * Persists several new or modified expenses
+     *
+     * @param expenses the expenses to store
+     * @throws ExpenseStorageException if writing the expenses fails
+     */
+    default void putAll(Collection<Expense> expenses) {
+        expenses.forEach(this::put);
+    }
+
+    /**
+     * Deletes several expenses
+     *
+     * @param ids the IDs of the expenses to delete
+     * @throws ExpenseStorageException if deleting the expenses fails
+     */
+    default void removeAll(Collection<Integer> ids) {
+        ids.forEach(this::remove);
+    }
+
+    /**
+     * Persists a batch of mutations as one unit, with as few writes as the store allows
+     *
+     * @param puts the new or modified expenses to store
+     * @param removedIds the IDs of the expenses to delete
+     * @throws ExpenseStorageException if writing the batch fails
+     */
+    default void write(Collection<Expense> puts, Collection<Integer> removedIds) {
+        putAll(puts);
+        removeAll(removedIds);
+    }
+
+    /**
+     * Forces every mutation accepted so far to disk. By default does nothing, for stores whose writes
+     * are durable when they return
+     *
+     * @throws ExpenseStorageException if writing pending mutations fails
+     */
+    default void flush() {
+    }
+
+    /**
+     * Keeps other threads and processes from writing to the ledger until {@link #unlock()}, for work that
+     * cannot be wrapped in {@link #withLock(Runnable)}, such as a transaction opened and committed by separate
+     * calls. Calls nest, and must be matched by the same thread. Stores shared between processes hold a lock
+     * on the ledger; by default nothing is locked.
+     *
+     * @throws ExpenseStorageException if the ledger cannot be locked
+     */
+    default void lock() {
+    }
+
+    /**
+     * Releases the lock taken by {@link #lock()}
+     */
+    default void unlock() {
+    }
+
+    /**
+     * Runs the given work while no other thread or process writes to the ledger.
+     *
+     * @param work the reads and writes to run
+     * @throws ExpenseStorageException if the ledger cannot be locked
+     */
+    default void withLock(Runnable work) {
+        lock();
+        try {
+            work.run();
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Sends the mutations made by other users of the ledger since the last {@link #load(Map)} or refresh
+     * to the listener. Stores that are not shared, or that answer queries themselves, have nothing to send.
+     *
+     * @param listener receives the mutations
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    default void refresh(ChangeListener listener) {
+    }
+
+    /**
+     * Reserves an id for a new expense, above the given one and above every id reserved by other users
+     * of the ledger
+     *
+     * @param lastId the highest id known to the caller
+     * @return the reserved id
+     * @throws ExpenseStorageException if the ledger cannot be updated
+     */
+    default int allocateId(int lastId) {
+        return allocateIds(lastId, 1);
+    }
+
+    /**
+     * Reserves a block of consecutive ids for new expenses, above the given one and above every id reserved
+     * by other users of the ledger, e.g. for a bulk import
+     *
+     * @param lastId the highest id known to the caller
+     * @param count the number of ids to reserve
+     * @return the first reserved id, the block ends at the first id plus the count minus one
+     * @throws ExpenseStorageException if the ledger cannot be updated
+     */
+    default int allocateIds(int lastId, int count) {
+        return lastId + 1;
+    }
+
+    /**
+     * Tells whether this store answers queries itself instead of relying on an in-memory copy
+     *
+     * @return true if lookups, scans and sums should be sent to the store
+     */
+    default boolean supportsQueries() {
+        return false;
+    }
+
+    /**
+     * Looks up a single expense
+     *
+     * @param id the ID of the expense
+     * @return the expense, or empty if it is not stored
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    default Optional<Expense> get(int id) {
+        Map<Integer, Expense> expenses = new HashMap<>();
+        load(expenses);
+        return Optional.ofNullable(expenses.get(id));
+    }
+
+    /**
+     * Returns the stored expenses that match the query, in the order it requests, paged as it requests
+     *
+     * @param query the filters, ordering and paging to apply
+     * @return the matching expenses
+     * @throws ExpenseStorageException if reading the ledger fails
+     * @throws NoSuchElementException if the results are ordered by amount and the cursor expense doesn't exist
+     */
+    default List<Expense> scan(ExpenseQuery query) {
+        Map<Integer, Expense> expenses = new HashMap<>();
+        load(expenses);
+        Stream<Expense> matches = expenses.values().stream()
+                .filter(query.getFilter())
+                .filter(query.getCursorFilter(id -> Optional.ofNullable(expenses.get(id))));
+        return query.select(matches, false);
+    }
+
+    /**
+     * Streams the stored expenses that match the filters of the query, without ordering or paging them.
+     * Stores that answer queries themselves read them incrementally; the stream must be closed to release
+     * what it holds open.
+     *
+     * @param query the filters to apply
+     * @return the matching expenses
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    default Stream<Expense> stream(ExpenseQuery query) {
+        Map<Integer, Expense> expenses = new HashMap<>();
+        load(expenses);
+        return expenses.values().stream().filter(query.getFilter());
+    }
+
+    /**
+     * Adds up the amounts of the stored expenses that match the query
+     *
+     * @param query the filters to apply
+     * @return the total amount
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    default double sum(ExpenseQuery query) {
+        return Amounts.toUnits(sumMinor(query));
+    }
+
+    /**
+     * Adds up the exact amounts of the stored expenses that match the query, in minor units
+     *
+     * @param query the filters to apply
+     * @return the total amount in minor units
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    default long sumMinor(ExpenseQuery query) {
+        return scan(query).stream()
+                .mapToLong(Expense::getAmountMinor)
+                .sum();
+    }
+
+    /**
+     * Counts and adds up the stored expenses that match the query per group. Paging is ignored.
+     *
+     * @param query the filters to apply
+     * @param dimensions the dimensions to group by
+     * @return the totals of each group
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    default GroupedSummary group(ExpenseQuery query, Set<GroupedSummary.Dimension> dimensions) {
+        Map<Integer, Expense> expenses = new HashMap<>();
+        load(expenses);
+        GroupedSummary.Accumulator totals = new GroupedSummary.Accumulator(dimensions);
+        expenses.values().stream()
+                .filter(query.getFilter())
+                .forEach(totals::add);
+        return totals.result();
+    }
+
+    /**
+     * Returns the highest id in use
+     *
+     * @return the highest expense id, or 0 if the ledger is empty
+     * @throws ExpenseStorageException if reading the ledger fails
+     */
+    default int maxId() {
+        return load(new HashMap<>());
+    }
+
+    /**
+     * Releases the resources of the store, waiting for pending writes to finish
+     *
+     * @throws ExpenseStorageException if pending writes fail
+     */
+    @Override
+    void close();
+
+    /**
+     * Opens the store of a ledger, picking the backend from the file name.
+     * Files ending in {@value #H2_EXTENSION} are H2 databases, directories ending in
+     * {@value #PARTITIONED_EXTENSION} are partitioned by month, anything else is a snapshot file
+     * with a journal, see {@link SnapshotFormat#forPath(Path)}.
+     *
+     * @param path the ledger file
+     * @return the opened store
+     * @throws ExpenseStorageException if the store cannot be opened
+     */
+    static ExpenseStore open(Path path) {
+        return open(path, null);
+    }
+
+    /**
+     * Opens the store of a ledger like {@link #open(Path)}, running its background work on the given executor.
+     * Only snapshot files have background work: group commits and compactions of their journal.
+     *
+     * @param path the ledger file
+     * @param background the executor of background work, left running on close; null to start threads per store
+     * @return the opened store
+     * @throws ExpenseStorageException if the store cannot be opened
+     */
+    static ExpenseStore open(Path path, ScheduledExecutorService background) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(H2_EXTENSION)) {
+            return new H2ExpenseStore(path);
+        }
+        if (name.endsWith(PARTITIONED_EXTENSION)) {
+            return new PartitionedExpenseStore(path);
+        }
+        return new FileExpenseStore(path, null, background);
+    }
+
+    /**
+     * Tells whether the ledger at the given path is a single snapshot file, as opposed to a database
+     * or a partitioned directory
+     *
+     * @param path the ledger file
+     * @return true if {@link #open(Path)} would open a {@link FileExpenseStore}
+     */
+    static boolean isSnapshotFile(Path path) {
+        String name = path.getFileName().toString();
+        return !name.endsWith(H2_EXTENSION) && !name.endsWith(PARTITIONED_EXTENSION);
+    }
+}
@@ -0,0 +1,195 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Expense;
+
+/**
+ * Store that keeps the ledger in a single snapshot file plus an append-only journal.
+ * <p>
+ * Mutations are appended to the journal and folded into the snapshot in the background
+ * by a {@link SnapshotCompactor}. The snapshot format is picked from the file name.
+ * <p>
+ * The ledger can be shared by several processes. Each one holds the {@link LedgerLock} of the ledger,
+ * a file with the '.lock' suffix appended, only for the duration of a single read or write. The lock file
+ * also stamps the ledger with the journal generation and the highest id handed out, so a process can
+ * tell what it has not seen yet and {@link #refresh(ChangeListener) read only that}.
+ * <p>
+ * The ledger lock is the only lock the store takes, so callers may hold it around any call, see
+ * {@link #lock()}, without risking a deadlock.
+ */
+public class FileExpenseStore implements ExpenseStore {
+    private final Path snapshotPath;
+    private final SnapshotFormat format;
+    private final ExpenseJournal journal;
+    private final SnapshotCompactor compactor;
+    private final LedgerLock lock;
+
+    /** Point of the journal read up to by the last load or refresh, null before the first load; guarded by the ledger lock. */
+    private ExpenseJournal.Position position;
+
+    /**
+     * Opens the store of the given ledger file.
+     * The journal lives next to the ledger, in a file with the '.journal' suffix appended.
+     *
+     * @param snapshotPath the ledger file
+     * @throws ExpenseStorageException if the journal cannot be opened
+     */
+    public FileExpenseStore(Path snapshotPath) {
+        this(snapshotPath, null);
+    }
+
+    /**
+     * Opens the store of the given ledger file with its journal in group-commit mode.
+     *
+     * @param snapshotPath the ledger file
+     * @param groupCommit when to write buffered journal records, or null to write every mutation right away
+     * @throws ExpenseStorageException if the journal cannot be opened
+     */
+    public FileExpenseStore(Path snapshotPath, GroupCommitPolicy groupCommit) {
+        this(snapshotPath, groupCommit, null);
+    }
+
+    /**
+     * Opens the store of the given ledger file, running its group commits and compactions on the given executor.
+     * The executor is left running when the store is closed, so it can be shared by the stores of many ledgers.
+     *
+     * @param snapshotPath the ledger file
+     * @param groupCommit when to write buffered journal records, or null to write every mutation right away
+     * @param background the executor of background work, or null to start threads owned by the store
+     * @throws ExpenseStorageException if the journal cannot be opened
+     */
+    public FileExpenseStore(Path snapshotPath, GroupCommitPolicy groupCommit, ScheduledExecutorService background) {
+        this.snapshotPath = snapshotPath;
+        this.format = SnapshotFormat.forPath(snapshotPath);
+        this.lock = new LedgerLock(snapshotPath.resolveSibling(snapshotPath.getFileName() + ".lock"));
+        this.journal = new ExpenseJournal(snapshotPath.resolveSibling(snapshotPath.getFileName() + ".journal"),
+                groupCommit, lock, background);
+        this.compactor = new SnapshotCompactor(snapshotPath, format, journal, background);
+    }
+
+    /**
+     * Reads the snapshot and replays the journal on top of it.
+     * The snapshot is streamed, so loading needs little more memory than the resulting map.
+     *
+     * @return the highest id found or handed out by any user of the ledger
+     */
+    @Override
+    public int load(Map<Integer, Expense> expenses) {
+        lock.lock();
+        try {
+            int max = Math.max(format.read(snapshotPath, expenses), journal.replay(expenses));
+            position = journal.position();
+            LedgerLock.State state = lock.readState();
+            if (max > state.maxId()) {
+                lock.writeState(new LedgerLock.State(state.generation(), max));
+            }
+            return Math.max(max, state.maxId());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void lock() {
+        lock.lock();
+    }
+
+    @Override
+    public void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Reads the journal records appended since the last load or refresh. The whole ledger is only
+     * read again if some of those records were already folded into the snapshot.
+     */
+    @Override
+    public void refresh(ChangeListener listener) {
+        lock.lock();
+        try {
+            ExpenseJournal.Position next = position == null ? null : journal.readSince(position, listener);
+            if (next != null) {
+                position = next;
+            } else {
+                Map<Integer, Expense> expenses = new HashMap<>();
+                load(expenses);
+                listener.onReload(expenses);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int allocateIds(int lastId, int count) {
+        lock.lock();
+        try {
+            LedgerLock.State state = lock.readState();
+            int id = Math.max(lastId, state.maxId()) + 1;
+            lock.writeState(new LedgerLock.State(state.generation(), id + count - 1));
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Expense expense) {
+        write(List.of(expense), List.of());
+    }
+
+    @Override
+    public void remove(int id) {
+        write(List.of(), List.of(id));
+    }
+
+    @Override
+    public void putAll(Collection<Expense> expenses) {
+        write(expenses, List.of());
+    }
+
+    @Override
+    public void removeAll(Collection<Integer> ids) {
+        write(List.of(), ids);
+    }
+
+    /**
+     * Appends the whole batch to the journal with a single write.
+     * If nothing was appended by others since the last load or refresh, the batch is marked as read.
+     */
+    @Override
+    public void write(Collection<Expense> puts, Collection<Integer> removedIds) {
+        lock.lock();
+        try {
+            boolean current = position != null && position.equals(journal.position());
+            journal.appendBatch(puts, removedIds);
+            if (current) {
+                position = journal.position();
+            }
+        } finally {
+            lock.unlock();
+        }
+        compactor.onAppend();
+    }
+
+    @Override
+    public void flush() {
+        journal.flush();
+    }
+
+    @Override
+    public void close() {
+        try {
+            compactor.close();
+        } finally {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.time.Duration;
+
+/**
+ * Settings of the group-commit mode of a journal.
+ * <p>
+ * In group-commit mode appended records are buffered in memory and written, then flushed to disk,
+ * in a single write once {@code maxRecords} records are waiting or {@code maxLatency} has passed
+ * since the oldest of them was appended, whichever comes first.
+ *
+ * @param maxRecords number of buffered records that triggers a write
+ * @param maxLatency maximum time a record waits in the buffer
+ */
+public record GroupCommitPolicy(int maxRecords, Duration maxLatency) {
+    /**
+     * Validates the policy.
+     *
+     * @throws IllegalArgumentException if the record count or the latency are not positive
+     */
+    public GroupCommitPolicy {
+        if (maxRecords <= 0) {
+            throw new IllegalArgumentException("Group commit size must be positive");
+        }
+        if (maxLatency.isNegative() || maxLatency.isZero()) {
+            throw new IllegalArgumentException("Group commit latency must be positive");
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Amounts;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+
+/**
+ * Store that keeps the ledger in an embedded, file-based H2 database.
+ * <p>
+ * Category, creation date and amount are indexed, and queries are translated to SQL so filters
+ * and ordering run inside the database instead of over an in-memory copy of the ledger.
+ * <p>
+ * Amounts are stored in minor units in a BIGINT column, so sums are exact. Databases created when
+ * amounts were DOUBLE PRECISION are converted when opened.
+ */
+public class H2ExpenseStore implements ExpenseStore {
+    private static final String[] SCHEMA = {
+            """
+            CREATE TABLE IF NOT EXISTS expense (
+                id INT PRIMARY KEY,
+                description VARCHAR NOT NULL,
+                amount_minor BIGINT NOT NULL,
+                creation_date DATE NOT NULL,
+                category VARCHAR(16)
+            )""",
+            "CREATE INDEX IF NOT EXISTS expense_category ON expense(category)",
+            "CREATE INDEX IF NOT EXISTS expense_creation_date ON expense(creation_date)",
+            "CREATE INDEX IF NOT EXISTS expense_amount_minor ON expense(amount_minor)"
+    };
+    private static final String COLUMNS = "id, description, amount_minor, creation_date, category";
+
+    /** Rows fetched from the database at a time when streaming. */
+    private static final int FETCH_SIZE = 1000;
+
+    private final Path path;
+    private final Connection connection;
+
+    /**
+     * Opens, creating it if needed, the database of the given ledger.
+     *
+     * @param path the ledger file, H2 stores the data in a file with the '.mv.db' suffix appended
+     * @throws ExpenseStorageException if the database cannot be opened
+     */
+    public H2ExpenseStore(Path path) {
+        this.path = path;
+        try {
+            connection = DriverManager.getConnection("jdbc:h2:file:" + path.toAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(SCHEMA[0]);
+                migrateAmounts(statement);
+                for (int i = 1; i < SCHEMA.length; i++) {
+                    statement.execute(SCHEMA[i]);
+                }
+            }
+        } catch (SQLException e) {
+            throw new ExpenseStorageException("Error opening expense database: " + path, e);
+        }
+    }
+
+    /**
+     * Moves the amounts of a database created with a DOUBLE PRECISION 'amount' column to minor units.
+     * Each step can be repeated, so a migration interrupted halfway is finished on the next open.
+     */
+    private void migrateAmounts(Statement statement) throws SQLException {
+        try (ResultSet columns = connection.getMetaData().getColumns(null, null, "EXPENSE", "AMOUNT")) {
+            if (!columns.next()) {
+                return;
+            }
+        }
+        statement.execute("ALTER TABLE expense ADD COLUMN IF NOT EXISTS amount_minor BIGINT");
+        try (ResultSet rows = statement.executeQuery("SELECT id, amount FROM expense WHERE amount_minor IS NULL");
+             PreparedStatement update = connection.prepareStatement("UPDATE expense SET amount_minor = ? WHERE id = ?")) {
+            while (rows.next()) {
+                update.setLong(1, Amounts.toMinor(rows.getDouble("amount")));
+                update.setInt(2, rows.getInt("id"));
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+        statement.execute("ALTER TABLE expense ALTER COLUMN amount_minor SET NOT NULL");
+        statement.execute("DROP INDEX IF EXISTS expense_amount");
+        statement.execute("ALTER TABLE expense DROP COLUMN amount");
+    }
+
+    @Override
+    public boolean supportsQueries() {
+        return true;
+    }
+
+    @Override
+    public int load(Map<Integer, Expense> expenses) {
+        int maxId = 0;
+        for (Expense expense : scan(new ExpenseQuery())) {
+            expenses.put(expense.getId(), expense);
+            maxId = Math.max(maxId, expense.getId());
+        }
+        return maxId;
+    }
+
+    @Override
+    public void put(Expense expense) {
+        write(List.of(expense), List.of());
+    }
+
+    @Override
+    public void putAll(Collection<Expense> expenses) {
+        write(expenses, List.of());
+    }
+
+    @Override
+    public void remove(int id) {
+        write(List.of(), List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<Integer> ids) {
+        write(List.of(), ids);
+    }
+
+    /**
+     * Applies the whole batch in a single transaction, so it is either fully applied or not at all.
+     */
+    @Override
+    public synchronized void write(Collection<Expense> puts, Collection<Integer> removedIds) {
+        String merge = "MERGE INTO expense (" + COLUMNS + ") KEY (id) VALUES (?, ?, ?, ?, ?)";
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement putStatement = connection.prepareStatement(merge);
+                 PreparedStatement deleteStatement = connection.prepareStatement("DELETE FROM expense WHERE id = ?")) {
+                for (Expense expense : puts) {
+                    putStatement.setInt(1, expense.getId());
+                    putStatement.setString(2, expense.getDescription());
+                    putStatement.setLong(3, expense.getAmountMinor());
+                    putStatement.setObject(4, expense.getCreationDate());
+                    putStatement.setString(5, expense.getCategory() == null ? null : expense.getCategory().name());
+                    putStatement.addBatch();
+                }
+                for (int id : removedIds) {
+                    deleteStatement.setInt(1, id);
+                    deleteStatement.addBatch();
+                }
+                putStatement.executeBatch();
+                deleteStatement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new ExpenseStorageException("Error writing expenses to database: " + path, e);
+        }
+    }
+
+    /**
+     * Forces the committed transactions to disk, as H2 writes them to its file in the background.
+     */
+    @Override
+    public synchronized void flush() {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CHECKPOINT SYNC");
+        } catch (SQLException e) {
+            throw new ExpenseStorageException("Error flushing expense database: " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized Optional<Expense> get(int id) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + COLUMNS + " FROM expense WHERE id = ?")) {
+            statement.setInt(1, id);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? Optional.of(toExpense(rows)) : Optional.empty();
+            }
+        } catch (SQLException e) {
+            throw new ExpenseStorageException("Error reading expense from database: " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized List<Expense> scan(ExpenseQuery query) {
+        List<Object> parameters = new ArrayList<>();
+        String direction = query.isAscending() ? "" : " DESC";
+        String order = query.getSortKey() == ExpenseQuery.SortKey.ID ? "id" + direction : "amount_minor" + direction + ", id";
+        String sql = "SELECT " + COLUMNS + " FROM expense" + where(query, parameters, cursor(query)) + " ORDER BY " + order;
+        if (query.getLimit() != null) {
+            sql += " LIMIT " + query.getLimit();
+        }
+        if (query.getOffset() > 0) {
+            sql += " OFFSET " + query.getOffset();
+        }
+
+        List<Expense> expenses = new ArrayList<>();
+        try (PreparedStatement statement = prepare(sql, parameters);
+             ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                expenses.add(toExpense(rows));
+            }
+        } catch (SQLException e) {
+            throw new ExpenseStorageException("Error querying expense database: " + path, e);
+        }
+        return expenses;
+    }
+
+    /**
+     * Streams the matching rows through a database cursor, fetching {@link #FETCH_SIZE} rows at a time.
+     * The cursor stays open until the stream is closed.
+     */
+    @Override
+    public synchronized Stream<Expense> stream(ExpenseQuery query) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        addCriteria(query, conditions, parameters);
+        String sql = "SELECT " + COLUMNS + " FROM expense"
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions)) + " ORDER BY id";
+        PreparedStatement statement = null;
+        try {
+            statement = prepare(sql, parameters);
+            statement.setFetchSize(FETCH_SIZE);
+            ResultSet rows = statement.executeQuery();
+            PreparedStatement opened = statement;
+            return StreamSupport.stream(new Spliterators.AbstractSpliterator<Expense>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Expense> action) {
+                    Expense next;
+                    synchronized (H2ExpenseStore.this) {
+                        try {
+                            if (!rows.next()) {
+                                return false;
+                            }
+                            next = toExpense(rows);
+                        } catch (SQLException e) {
+                            throw new ExpenseStorageException("Error querying expense database: " + path, e);
+                        }
+                    }
+                    action.accept(next);
+                    return true;
+                }
+            }, false).onClose(() -> {
+                synchronized (H2ExpenseStore.this) {
+                    try {
+                        opened.close();
+                    } catch (SQLException e) {
+                        throw new ExpenseStorageException("Error querying expense database: " + path, e);
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new ExpenseStorageException("Error querying expense database: " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized long sumMinor(ExpenseQuery query) {
+        List<Object> parameters = new ArrayList<>();
+        String sql = "SELECT COALESCE(SUM(amount_minor), 0) FROM expense" + where(query, parameters);
+        try (PreparedStatement statement = prepare(sql, parameters);
+             ResultSet rows = statement.executeQuery()) {
+            rows.next();
+            return rows.getLong(1);
+        } catch (SQLException e) {
+            throw new ExpenseStorageException("Error querying expense database: " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized GroupedSummary group(ExpenseQuery query, Set<GroupedSummary.Dimension> dimensions) {
+        boolean byCategory = dimensions.contains(GroupedSummary.Dimension.CATEGORY);
+        boolean byMonth = dimensions.contains(GroupedSummary.Dimension.MONTH);
+        boolean byYear = byMonth || dimensions.contains(GroupedSummary.Dimension.YEAR);
+        List<String> keys = new ArrayList<>();
+        if (byCategory) {
+            keys.add("category");
+        }
+        if (byYear) {
+            keys.add("EXTRACT(YEAR FROM creation_date)");
+        }
+        if (byMonth) {
+            keys.add("EXTRACT(MONTH FROM creation_date)");
+        }
+        List<Object> parameters = new ArrayList<>();
+        List<String> columns = new ArrayList<>(keys);
+        columns.addAll(List.of("COUNT(*)", "SUM(amount_minor)", "MIN(amount_minor)", "MAX(amount_minor)"));
+        String sql = "SELECT " + String.join(", ", columns) + " FROM expense" + where(query, parameters)
+                + (keys.isEmpty() ? "" : " GROUP BY " + String.join(", ", keys));
+        GroupedSummary.Accumulator totals = new GroupedSummary.Accumulator(dimensions);
+        try (PreparedStatement statement = prepare(sql, parameters);
+             ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                int column = 1;
+                String category = byCategory ? rows.getString(column++) : null;
+                int year = byYear ? rows.getInt(column++) : 0;
+                int month = byMonth ? rows.getInt(column++) : 1;
+                totals.add(category == null ? null : ExpenseCategory.valueOf(category), byYear ? LocalDate.of(year, month, 1) : null,
+                        rows.getLong(column), rows.getLong(column + 1), rows.getLong(column + 2), rows.getLong(column + 3));
+            }
+        } catch (SQLException e) {
+            throw new ExpenseStorageException("Error querying expense database: " + path, e);
+        }
+        return totals.result();
+    }
+
+    @Override
+    public synchronized int maxId() {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM expense")) {
+            rows.next();
+            return rows.getInt(1);
+        } catch (SQLException e) {
+            throw new ExpenseStorageException("Error querying expense database: " + path, e);
+        }
+    }
+
+    /**
+     * Looks up the expense a paged query starts after, when its position depends on more than the ID.
+     *
+     * @return the cursor expense, or null if the query has no cursor or is ordered by ID
+     * @throws NoSuchElementException if the cursor expense doesn't exist
+     */
+    private Expense cursor(ExpenseQuery query) {
+        if (query.getAfterId() == null || query.getSortKey() == ExpenseQuery.SortKey.ID) {
+            return null;
+        }
+        int id = query.getAfterId();
+        return get(id).orElseThrow(() -> new NoSuchElementException("No such expense with id: " + id));
+    }
+
+    /**
+     * Translates the criteria of the query into a WHERE clause, collecting its parameters.
+     */
+    private static String where(ExpenseQuery query, List<Object> parameters) {
+        return where(query, parameters, null);
+    }
+
+    /**
+     * Translates the criteria and the cursor of the query into a WHERE clause, collecting its parameters.
+     * Results ordered by amount continue after the amount of the cursor, ties broken by ascending ID.
+     */
+    private static String where(ExpenseQuery query, List<Object> parameters, Expense cursor) {
+        List<String> conditions = new ArrayList<>();
+        if (query.getAfterId() != null && query.getSortKey() == ExpenseQuery.SortKey.ID) {
+            conditions.add(query.isAscending() ? "id > ?" : "id < ?");
+            parameters.add(query.getAfterId());
+        }
+        if (cursor != null) {
+            conditions.add("(amount_minor " + (query.isAscending() ? ">" : "<") + " ? OR (amount_minor = ? AND id > ?))");
+            parameters.add(cursor.getAmountMinor());
+            parameters.add(cursor.getAmountMinor());
+            parameters.add(cursor.getId());
+        }
+        addCriteria(query, conditions, parameters);
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * Translates the criteria of the query, without its paging, into conditions, collecting their parameters.
+     */
+    private static void addCriteria(ExpenseQuery query, List<String> conditions, List<Object> parameters) {
+        if (!query.getCategories().isEmpty()) {
+            conditions.add("category IN (" + String.join(", ", query.getCategories().stream().map(c -> "?").toList()) + ")");
+            query.getCategories().forEach(category -> parameters.add(category.name()));
+        }
+        if (query.getMinAmountMinor() != null) {
+            conditions.add("amount_minor >= ?");
+            parameters.add(query.getMinAmountMinor());
+        }
+        if (query.getMaxAmountMinor() != null) {
+            conditions.add("amount_minor <= ?");
+            parameters.add(query.getMaxAmountMinor());
+        }
+        if (query.getFromDate() != null) {
+            conditions.add("creation_date >= ?");
+            parameters.add(query.getFromDate());
+        }
+        if (query.getToDate() != null) {
+            conditions.add("creation_date <= ?");
+            parameters.add(query.getToDate());
+        }
+        if (query.getText() != null) {
+            conditions.add("LOCATE(?, LOWER(description)) > 0");
+            parameters.add(query.getText());
+        }
+    }
+
+    private PreparedStatement prepare(String sql, List<Object> parameters) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+        return statement;
+    }
+
+    private static Expense toExpense(ResultSet rows) throws SQLException {
+        String category = rows.getString("category");
+        return Expense.restoreMinor(
+                rows.getInt("id"),
+                rows.getString("description"),
+                rows.getLong("amount_minor"),
+                rows.getObject("creation_date", LocalDate.class),
+                category == null ? null : ExpenseCategory.valueOf(category));
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new ExpenseStorageException("Error closing expense database: " + path, e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseAdapter;
+import dev.shoangenes.expensetracker.model.LocalDateAdapter;
+
+/**
+ * Reads and writes ledger snapshots as a pretty-printed JSON object keyed by expense id.
+ * <p>
+ * Both directions are streamed: expenses are decoded one at a time from a buffered channel and
+ * encoded straight to the file, so neither the JSON text nor a Gson tree of the whole ledger is
+ * ever held in memory.
+ */
+public class JsonSnapshotFormat implements SnapshotFormat {
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+            .registerTypeAdapter(Expense.class, new ExpenseAdapter())
+            .create();
+
+    @Override
+    public int read(Path path, Map<Integer, Expense> expenses) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        int maxId = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             JsonReader reader = new JsonReader(new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8)))) {
+            if (channel.size() == 0 || reader.peek() == JsonToken.NULL) {
+                return 0;
+            }
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.nextName();
+                Expense expense = gson.fromJson(reader, Expense.class);
+                expenses.put(expense.getId(), expense);
+                maxId = Math.max(maxId, expense.getId());
+            }
+            reader.endObject();
+        } catch (Exception e) {
+            throw new ExpenseStorageException("Error reading expenses from file: " + path, e);
+        }
+        return maxId;
+    }
+
+    @Override
+    public void write(Path path, Collection<Expense> expenses) {
+        try (JsonWriter writer = new JsonWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            writer.setIndent("  ");
+            writer.beginObject();
+            for (Expense expense : expenses) {
+                writer.name(String.valueOf(expense.getId()));
+                gson.toJson(expense, Expense.class, writer);
+            }
+            writer.endObject();
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error writing expenses to file: " + path, e);
+        }
+    }
+}
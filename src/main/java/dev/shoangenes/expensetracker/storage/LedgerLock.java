@@ -0,0 +1,230 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+
+/**
+ * Exclusive lock on a ledger, shared by every thread and every process that opens it.
+ * <p>
+ * The lock is a {@link FileLock} on a small lock file, combined with a JVM-wide {@link ReentrantLock}
+ * per file because file locks are held on behalf of the whole JVM. It is reentrant and meant for short
+ * critical sections: the file is opened and locked by the outermost {@link #lock()} and released by the
+ * matching {@link #unlock()}. The JVM-wide state of a file only exists while some thread holds or waits for
+ * its lock, so a process opening many ledgers over time does not keep one per ledger.
+ * <p>
+ * While held, the lock file also stores the {@link State} of the ledger shared between processes.
+ */
+public class LedgerLock {
+    /** Lock state shared by every instance that locks the same file in this JVM, while it is in use. */
+    private static final Map<Path, Shared> SHARED = new ConcurrentHashMap<>();
+
+    private static class Shared {
+        final ReentrantLock lock = new ReentrantLock();
+        FileChannel channel;
+        FileLock fileLock;
+        /** Number of lock calls not matched by an unlock yet, guarded by the map entry. */
+        int users;
+    }
+
+    /**
+     * Ledger state stored in the lock file.
+     *
+     * @param generation number of the journal file currently appended to, incremented on every rotation
+     * @param maxId highest expense id handed out by any process
+     */
+    public record State(long generation, int maxId) {}
+
+    private static final int STATE_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private final Path key;
+
+    /**
+     * Creates a lock backed by the given file. The file is created on first use.
+     *
+     * @param path the lock file
+     */
+    public LedgerLock(Path path) {
+        this.path = path;
+        this.key = path.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Checks whether some thread of this JVM holds or waits for the lock of a file.
+     *
+     * @param path the lock file
+     * @return true if the lock of the file is in use
+     */
+    public static boolean inUse(Path path) {
+        return SHARED.containsKey(path.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Gets the shared state of the file, creating it if needed, and counts the caller as one more user
+     */
+    private Shared join() {
+        return SHARED.compute(key, (path, shared) -> {
+            Shared joined = shared == null ? new Shared() : shared;
+            joined.users++;
+            return joined;
+        });
+    }
+
+    /**
+     * Counts the caller as one user less, dropping the shared state of the file once nobody uses it
+     */
+    private void leave() {
+        SHARED.computeIfPresent(key, (path, shared) -> --shared.users == 0 ? null : shared);
+    }
+
+    /**
+     * Gets the shared state of the file, held by the caller
+     */
+    private Shared held() {
+        Shared shared = SHARED.get(key);
+        if (shared == null || !shared.lock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Ledger lock not held: " + path);
+        }
+        return shared;
+    }
+
+    /**
+     * Acquires the lock, waiting for other threads and processes to release it.
+     *
+     * @throws ExpenseStorageException if the lock file cannot be locked
+     */
+    public void lock() {
+        Shared shared = join();
+        shared.lock.lock();
+        if (shared.lock.getHoldCount() == 1) {
+            try {
+                shared.channel = open();
+                shared.fileLock = shared.channel.lock();
+            } catch (IOException | RuntimeException e) {
+                release(shared);
+                shared.lock.unlock();
+                leave();
+                throw new ExpenseStorageException("Error locking ledger: " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Acquires the lock only if no other thread or process holds it.
+     *
+     * @return true if the lock was acquired
+     * @throws ExpenseStorageException if the lock file cannot be opened
+     */
+    public boolean tryLock() {
+        Shared shared = join();
+        if (!shared.lock.tryLock()) {
+            leave();
+            return false;
+        }
+        if (shared.lock.getHoldCount() == 1) {
+            try {
+                shared.channel = open();
+                shared.fileLock = shared.channel.tryLock();
+            } catch (IOException | RuntimeException e) {
+                release(shared);
+                shared.lock.unlock();
+                leave();
+                throw new ExpenseStorageException("Error locking ledger: " + path, e);
+            }
+            if (shared.fileLock == null) {
+                release(shared);
+                shared.lock.unlock();
+                leave();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the lock.
+     *
+     * @throws IllegalMonitorStateException if the current thread does not hold the lock
+     */
+    public void unlock() {
+        Shared shared = SHARED.get(key);
+        if (shared == null) {
+            throw new IllegalMonitorStateException("Ledger lock not held: " + path);
+        }
+        if (shared.lock.getHoldCount() == 1) {
+            release(shared);
+        }
+        shared.lock.unlock();
+        leave();
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void release(Shared shared) {
+        try {
+            if (shared.fileLock != null) {
+                shared.fileLock.release();
+            }
+            if (shared.channel != null) {
+                shared.channel.close();
+            }
+        } catch (IOException e) {
+            // Closing the channel releases the lock in any case
+        } finally {
+            shared.fileLock = null;
+            shared.channel = null;
+        }
+    }
+
+    /**
+     * Reads the ledger state. Must be called while holding the lock.
+     *
+     * @return the stored state, or generation 0 and max id 0 for a new ledger
+     * @throws ExpenseStorageException if the lock file cannot be read
+     */
+    public State readState() {
+        Shared shared = held();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(STATE_BYTES);
+            while (buffer.hasRemaining() && shared.channel.read(buffer, buffer.position()) > 0) {
+                // Keep reading until the whole state is in
+            }
+            if (buffer.hasRemaining()) {
+                return new State(0, 0);
+            }
+            buffer.flip();
+            return new State(buffer.getLong(), buffer.getInt());
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error reading ledger state: " + path, e);
+        }
+    }
+
+    /**
+     * Stores the ledger state. Must be called while holding the lock.
+     *
+     * @param state the new state
+     * @throws ExpenseStorageException if the lock file cannot be written
+     */
+    public void writeState(State state) {
+        Shared shared = held();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(STATE_BYTES).putLong(state.generation()).putInt(state.maxId()).flip();
+            while (buffer.hasRemaining()) {
+                shared.channel.write(buffer, buffer.position());
+            }
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error writing ledger state: " + path, e);
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+
+/**
+ * Store that splits the ledger into one segment per month of creation, described by a small manifest.
+ * <p>
+ * Layout of the ledger directory:
+ * <pre>
+ * manifest.json          generation, highest id and, per month, segment file, row count and id range
+ * 2026-03.g42.json       expenses created in March 2026, in the JSON snapshot format
+ * </pre>
+ * Queries filtered by month or year only open the matching segments, and a mutation only rewrites
+ * the segment of the month it affects. Segments are never modified in place: a new version is written
+ * under a new name and the manifest is atomically switched to it, so a crash leaves either the old or the
+ * new version visible. Unreferenced segments are removed on open.
+ * <p>
+ * The ledger can be shared by several processes. Each one holds the {@link LedgerLock} of the ledger,
+ * a file with the '.lock' suffix appended to the directory name, for the duration of a single read or write,
+ * and reads the manifest again when the generation stamped on the lock shows another process changed it.
+ * Ids are reserved through the lock as well, so processes never hand out the same one.
+ * <p>
+ * Opened segments are kept in memory for the lifetime of the store, until another process replaces them.
+ * Reads never wait for the ledger lock: while another thread or process holds it, for a write or a whole
+ * transaction, they answer from the last manifest read, the state before that write.
+ */
+public class PartitionedExpenseStore implements ExpenseStore {
+    private static final String MANIFEST = "manifest.json";
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private final Path directory;
+    private final JsonSnapshotFormat format = new JsonSnapshotFormat();
+    private final LedgerLock lock;
+
+    /** Last manifest read or written; guarded by this store, like everything below. */
+    private Manifest manifest;
+
+    /** Highest id reserved by any user of the ledger when the lock state was last read. */
+    private int reservedId;
+
+    /** Segments opened so far, keyed by month. */
+    private final Map<YearMonth, Map<Integer, Expense>> segments = new HashMap<>();
+
+    /**
+     * Content of the manifest file.
+     */
+    private static class Manifest {
+        long generation = 0;
+        int maxId = 0;
+        TreeMap<String, Partition> partitions = new TreeMap<>();
+
+        Manifest copy() {
+            Manifest copy = new Manifest();
+            copy.generation = generation;
+            copy.maxId = maxId;
+            copy.partitions = new TreeMap<>(partitions);
+            return copy;
+        }
+    }
+
+    /**
+     * Manifest entry of one month.
+     *
+     * @param file name of the segment file inside the ledger directory
+     * @param count number of expenses in the segment
+     * @param minId lowest expense id in the segment
+     * @param maxId highest expense id in the segment
+     */
+    private record Partition(String file, int count, int minId, int maxId) {
+        boolean mayContain(int id) {
+            return id >= minId && id <= maxId;
+        }
+    }
+
+    /**
+     * Opens, creating it if needed, the partitioned ledger in the given directory.
+     *
+     * @param directory the ledger directory
+     * @throws ExpenseStorageException if the directory or its manifest cannot be read
+     */
+    public PartitionedExpenseStore(Path directory) {
+        this.directory = directory;
+        this.lock = new LedgerLock(directory.resolveSibling(directory.getFileName() + ".lock"));
+        try {
+            Files.createDirectories(directory);
+            lock.lock();
+            try {
+                manifest = readManifest();
+                LedgerLock.State state = lock.readState();
+                reservedId = state.maxId();
+                if (state.generation() != manifest.generation) {
+                    lock.writeState(new LedgerLock.State(manifest.generation, Math.max(state.maxId(), manifest.maxId)));
+                }
+                removeUnreferencedSegments();
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new ExpenseStorageException("Error opening partitioned ledger: " + directory, e);
+        }
+    }
+
+    private Manifest readManifest() throws IOException {
+        Path manifestPath = directory.resolve(MANIFEST);
+        return Files.exists(manifestPath)
+                ? gson.fromJson(Files.readString(manifestPath, StandardCharsets.UTF_8), Manifest.class)
+                : new Manifest();
+    }
+
+    /**
+     * Reads the manifest again if another process wrote it since, forgetting the segments it replaced.
+     * Must be called while holding the ledger lock and this store.
+     */
+    private void sync() {
+        LedgerLock.State state = lock.readState();
+        reservedId = Math.max(reservedId, state.maxId());
+        if (state.generation() == manifest.generation) {
+            return;
+        }
+        Manifest current;
+        try {
+            current = readManifest();
+        } catch (IOException | RuntimeException e) {
+            throw new ExpenseStorageException("Error reading manifest: " + directory, e);
+        }
+        segments.keySet().removeIf(month -> !Objects.equals(
+                manifest.partitions.get(month.toString()), current.partitions.get(month.toString())));
+        manifest = current;
+    }
+
+    /**
+     * Deletes segment versions left behind by an interrupted or completed rewrite. Segments are only written
+     * and linked into the manifest under the ledger lock, so with the lock held no other process has one
+     * in progress.
+     */
+    private void removeUnreferencedSegments() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        manifest.partitions.values().forEach(partition -> referenced.add(partition.file()));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.g*.json")) {
+            for (Path file : files) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsQueries() {
+        return true;
+    }
+
+    @Override
+    public int load(Map<Integer, Expense> expenses) {
+        return read(() -> {
+            for (String month : manifest.partitions.keySet()) {
+                expenses.putAll(segment(YearMonth.parse(month)));
+            }
+            return Math.max(manifest.maxId, reservedId);
+        });
+    }
+
+    /**
+     * Runs the given work under the ledger lock, on an up-to-date manifest
+     */
+    private <T> T locked(Supplier<T> work) {
+        lock.lock();
+        try {
+            synchronized (this) {
+                sync();
+                return work.get();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the given read, on an up-to-date manifest unless another thread or process holds the ledger lock.
+     * The lock is only tried, after this store is taken, so a read cannot deadlock with a writer that takes
+     * them in the opposite order.
+     */
+    private <T> T read(Supplier<T> work) {
+        synchronized (this) {
+            if (lock.tryLock()) {
+                try {
+                    sync();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return work.get();
+        }
+    }
+
+    @Override
+    public void lock() {
+        lock.lock();
+    }
+
+    @Override
+    public void unlock() {
+        lock.unlock();
+    }
+
+    @Override
+    public int allocateIds(int lastId, int count) {
+        return locked(() -> {
+            LedgerLock.State state = lock.readState();
+            int id = Math.max(lastId, Math.max(state.maxId(), manifest.maxId)) + 1;
+            lock.writeState(new LedgerLock.State(state.generation(), id + count - 1));
+            reservedId = id + count - 1;
+            return id;
+        });
+    }
+
+    /**
+     * Returns the expenses of the given month, reading its segment on first use
+     */
+    private Map<Integer, Expense> segment(YearMonth month) {
+        return segments.computeIfAbsent(month, key -> {
+            Map<Integer, Expense> expenses = new HashMap<>();
+            Partition partition = manifest.partitions.get(key.toString());
+            if (partition != null) {
+                format.read(directory.resolve(partition.file()), expenses);
+            }
+            return expenses;
+        });
+    }
+
+    /**
+     * Returns the months whose segments may hold expenses matching the query
+     */
+    private List<YearMonth> monthsFor(ExpenseQuery query) {
+        List<YearMonth> months = new ArrayList<>();
+        for (String key : manifest.partitions.keySet()) {
+            YearMonth month = YearMonth.parse(key);
+            boolean matches = (query.getFromDate() == null || !month.atEndOfMonth().isBefore(query.getFromDate()))
+                    && (query.getToDate() == null || !month.atDay(1).isAfter(query.getToDate()));
+            if (matches) {
+                months.add(month);
+            }
+        }
+        return months;
+    }
+
+    @Override
+    public void put(Expense expense) {
+        write(List.of(expense), List.of());
+    }
+
+    @Override
+    public void putAll(Collection<Expense> expenses) {
+        write(expenses, List.of());
+    }
+
+    @Override
+    public void remove(int id) {
+        write(List.of(), List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<Integer> ids) {
+        write(List.of(), ids);
+    }
+
+    /**
+     * Applies the batch to copies of the affected segments, rewrites each of them once, then switches the
+     * manifest to the new versions in a single atomic write. The copies replace the segments in memory only
+     * once the manifest is written; if anything fails before, the new segment files are deleted and the store
+     * keeps its previous state.
+     */
+    @Override
+    public void write(Collection<Expense> puts, Collection<Integer> removedIds) {
+        locked(() -> {
+            writeLocked(puts, removedIds);
+            return null;
+        });
+    }
+
+    private void writeLocked(Collection<Expense> puts, Collection<Integer> removedIds) {
+        Map<YearMonth, Map<Integer, Expense>> staged = new HashMap<>();
+        for (Expense expense : puts) {
+            YearMonth month = YearMonth.from(expense.getCreationDate());
+            staged.computeIfAbsent(month, key -> new HashMap<>(segment(key))).put(expense.getId(), expense);
+        }
+        for (int id : removedIds) {
+            locate(id, staged).ifPresent(month ->
+                    staged.computeIfAbsent(month, key -> new HashMap<>(segment(key))).remove(id));
+        }
+        if (staged.isEmpty()) {
+            return;
+        }
+
+        Manifest next = manifest.copy();
+        next.generation = manifest.generation + 1;
+        List<String> replaced = new ArrayList<>();
+        List<String> written = new ArrayList<>();
+        try {
+            for (Map.Entry<YearMonth, Map<Integer, Expense>> entry : staged.entrySet()) {
+                YearMonth month = entry.getKey();
+                Map<Integer, Expense> expenses = entry.getValue();
+                Partition previous = next.partitions.remove(month.toString());
+                if (previous != null) {
+                    replaced.add(previous.file());
+                }
+                if (expenses.isEmpty()) {
+                    continue;
+                }
+
+                String file = month + ".g" + next.generation + ".json";
+                written.add(file);
+                AtomicFiles.replace(directory.resolve(file), temp -> format.write(temp, expenses.values()));
+                int minId = expenses.keySet().stream().mapToInt(Integer::intValue).min().orElse(0);
+                int maxId = expenses.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+                next.partitions.put(month.toString(), new Partition(file, expenses.size(), minId, maxId));
+                next.maxId = Math.max(next.maxId, maxId);
+            }
+            writeManifest(next);
+        } catch (RuntimeException e) {
+            deleteQuietly(written);
+            throw e;
+        }
+
+        manifest = next;
+        segments.putAll(staged);
+        LedgerLock.State state = lock.readState();
+        lock.writeState(new LedgerLock.State(next.generation, Math.max(state.maxId(), next.maxId)));
+        deleteQuietly(replaced);
+    }
+
+    private void deleteQuietly(List<String> files) {
+        for (String file : files) {
+            try {
+                Files.deleteIfExists(directory.resolve(file));
+            } catch (IOException e) {
+                // Ignore cleanup errors, unreferenced segments are removed on the next open
+            }
+        }
+    }
+
+    private void writeManifest(Manifest manifest) {
+        String json = gson.toJson(manifest);
+        AtomicFiles.replace(directory.resolve(MANIFEST), temp -> {
+            try {
+                Files.writeString(temp, json, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new ExpenseStorageException("Error writing manifest: " + directory, e);
+            }
+        });
+    }
+
+    /**
+     * Finds the month holding the expense with the given id, looking first at the staged segments of a write,
+     * then opening only segments whose id range covers it
+     */
+    private Optional<YearMonth> locate(int id, Map<YearMonth, Map<Integer, Expense>> staged) {
+        for (Map.Entry<YearMonth, Map<Integer, Expense>> entry : staged.entrySet()) {
+            if (entry.getValue().containsKey(id)) {
+                return Optional.of(entry.getKey());
+            }
+        }
+        for (Map.Entry<String, Partition> entry : manifest.partitions.entrySet()) {
+            YearMonth month = YearMonth.parse(entry.getKey());
+            if (!staged.containsKey(month) && entry.getValue().mayContain(id) && segment(month).containsKey(id)) {
+                return Optional.of(month);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Expense> get(int id) {
+        return read(() -> locate(id, Map.of()).map(month -> segment(month).get(id)));
+    }
+
+    @Override
+    public List<Expense> scan(ExpenseQuery query) {
+        return read(() -> {
+            Predicate<Expense> cursor = query.getCursorFilter(this::get);
+            return query.select(monthsFor(query).stream()
+                    .flatMap(month -> segment(month).values().stream())
+                    .filter(query.getFilter())
+                    .filter(cursor), false);
+        });
+    }
+
+    /**
+     * Streams the matching expenses one month at a time, so at most one more segment is read per step.
+     */
+    @Override
+    public Stream<Expense> stream(ExpenseQuery query) {
+        Predicate<Expense> filter = query.getFilter();
+        List<YearMonth> months = read(() -> monthsFor(query));
+        return months.stream()
+                .flatMap(month -> read(() -> List.copyOf(segment(month).values())).stream().filter(filter));
+    }
+
+    @Override
+    public long sumMinor(ExpenseQuery query) {
+        return read(() -> {
+            long total = 0;
+            for (YearMonth month : monthsFor(query)) {
+                total += segment(month).values().stream()
+                        .filter(query.getFilter())
+                        .mapToLong(Expense::getAmountMinor)
+                        .sum();
+            }
+            return total;
+        });
+    }
+
+    @Override
+    public GroupedSummary group(ExpenseQuery query, Set<GroupedSummary.Dimension> dimensions) {
+        return read(() -> {
+            GroupedSummary.Accumulator totals = new GroupedSummary.Accumulator(dimensions);
+            for (YearMonth month : monthsFor(query)) {
+                segment(month).values().stream()
+                        .filter(query.getFilter())
+                        .forEach(totals::add);
+            }
+            return totals.result();
+        });
+    }
+
+    /**
+     * Returns the highest id stored or reserved by any user of the ledger
+     */
+    @Override
+    public int maxId() {
+        return read(() -> Math.max(manifest.maxId, reservedId));
+    }
+
+    /**
+     * Returns the months that have a segment
+     *
+     * @return the months in the manifest, oldest first
+     */
+    public List<YearMonth> months() {
+        return read(() -> manifest.partitions.keySet().stream().map(YearMonth::parse).toList());
+    }
+
+    /**
+     * Returns the months whose segments have been read so far
+     *
+     * @return the opened months
+     */
+    public Set<YearMonth> openedMonths() {
+        return read(() -> Set.copyOf(segments.keySet()));
+    }
+
+    @Override
+    public void close() {
+    }
+}
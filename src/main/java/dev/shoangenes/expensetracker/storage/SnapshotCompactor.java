@@ -0,0 +1,286 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Expense;
+
+/**
+ * Folds the journal back into the snapshot on a background thread.
+ * <p>
+ * A compaction rotates the journal, merges the previous snapshot with the rotated records and
+ * atomically replaces the snapshot with the result. It only reads files, never the in-memory ledger,
+ * so mutations keep appending to the fresh journal while it runs.
+ * <p>
+ * A compaction starts as soon as the journal grows past the size threshold, and at the latest
+ * {@code maxStaleness} after the first mutation that is not part of the snapshot. A process that closes
+ * before that point, e.g. a single CLI command, folds the journal on close if the snapshot is older than
+ * {@code maxStaleness}, so short-lived processes keep the journal small too without each rewriting the snapshot.
+ * <p>
+ * The background thread is created by the compactor, or taken from an executor shared with other
+ * ledgers, which it then leaves running when closed.
+ * <p>
+ * When several processes share the ledger, only one of them compacts at a time, guarded by a
+ * lock file with the '.compact.lock' suffix. The ledger lock is only held to rotate the journal
+ * and to delete the folded records, never while the snapshot is written.
+ */
+public class SnapshotCompactor implements AutoCloseable {
+    /** Default journal size, in bytes, above which a compaction starts right away. */
+    public static final long DEFAULT_THRESHOLD = 1024 * 1024;
+
+    /** Default maximum time a mutation stays only in the journal. */
+    public static final Duration DEFAULT_MAX_STALENESS = Duration.ofSeconds(30);
+
+    private final Path snapshotPath;
+    private final SnapshotFormat format;
+    private final ExpenseJournal journal;
+    private final long threshold;
+    private final Duration maxStaleness;
+    private final ScheduledExecutorService executor;
+
+    /** Whether the executor was created by this compactor, and is shut down when it is closed. */
+    private final boolean ownsExecutor;
+
+    /** Set once closed, when the executor may keep running for other ledgers. */
+    private boolean closed;
+
+    /** Held while a compaction runs, so closing can wait for it. */
+    private final Object compacting = new Object();
+
+    /** Keeps other processes from compacting the same ledger at the same time. */
+    private final LedgerLock compactionLock;
+
+    /** Pending or running compaction, null when none is scheduled. */
+    private ScheduledFuture<?> scheduled;
+    private boolean immediate;
+
+    /** Failure of the last background compaction, reported by {@link #compactNow()} and {@link #close()}. */
+    private volatile ExpenseStorageException failure;
+
+    /**
+     * Creates a compactor with the default threshold and staleness.
+     *
+     * @param snapshotPath the snapshot file
+     * @param format the format of the snapshot
+     * @param journal the journal of the ledger
+     */
+    public SnapshotCompactor(Path snapshotPath, SnapshotFormat format, ExpenseJournal journal) {
+        this(snapshotPath, format, journal, DEFAULT_THRESHOLD, DEFAULT_MAX_STALENESS);
+    }
+
+    /**
+     * Creates a compactor.
+     *
+     * @param snapshotPath the snapshot file
+     * @param format the format of the snapshot
+     * @param journal the journal of the ledger
+     * @param threshold journal size, in bytes, above which a compaction starts right away
+     * @param maxStaleness maximum time a mutation stays only in the journal
+     */
+    public SnapshotCompactor(Path snapshotPath, SnapshotFormat format, ExpenseJournal journal,
+                             long threshold, Duration maxStaleness) {
+        this(snapshotPath, format, journal, threshold, maxStaleness, null);
+    }
+
+    /**
+     * Creates a compactor with the default threshold and staleness that runs on the given executor.
+     *
+     * @param snapshotPath the snapshot file
+     * @param format the format of the snapshot
+     * @param journal the journal of the ledger
+     * @param executor the executor of compactions, left running on close; null to start a dedicated thread
+     */
+    public SnapshotCompactor(Path snapshotPath, SnapshotFormat format, ExpenseJournal journal,
+                             ScheduledExecutorService executor) {
+        this(snapshotPath, format, journal, DEFAULT_THRESHOLD, DEFAULT_MAX_STALENESS, executor);
+    }
+
+    /**
+     * Creates a compactor.
+     *
+     * @param snapshotPath the snapshot file
+     * @param format the format of the snapshot
+     * @param journal the journal of the ledger
+     * @param threshold journal size, in bytes, above which a compaction starts right away
+     * @param maxStaleness maximum time a mutation stays only in the journal
+     * @param executor the executor of compactions, left running on close; null to start a dedicated thread
+     */
+    public SnapshotCompactor(Path snapshotPath, SnapshotFormat format, ExpenseJournal journal,
+                             long threshold, Duration maxStaleness, ScheduledExecutorService executor) {
+        this.snapshotPath = snapshotPath;
+        this.format = format;
+        this.journal = journal;
+        this.threshold = threshold;
+        this.maxStaleness = maxStaleness;
+        this.compactionLock = new LedgerLock(snapshotPath.resolveSibling(snapshotPath.getFileName() + ".compact.lock"));
+
+        this.ownsExecutor = executor == null;
+        if (executor != null) {
+            this.executor = executor;
+            return;
+        }
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "expense-compactor-" + snapshotPath.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = pool;
+    }
+
+    private boolean isStopped() {
+        return closed || executor.isShutdown();
+    }
+
+    /**
+     * Notifies the compactor that a record was appended to the journal.
+     * Never blocks on I/O: the compaction itself always runs on the background thread.
+     */
+    public synchronized void onAppend() {
+        if (isStopped()) {
+            return;
+        }
+
+        if (journal.size() > threshold) {
+            if (scheduled == null || (!immediate && scheduled.cancel(false))) {
+                scheduled = executor.schedule(this::compact, 0, TimeUnit.MILLISECONDS);
+                immediate = true;
+            }
+        } else if (scheduled == null) {
+            scheduled = executor.schedule(this::compact, maxStaleness.toMillis(), TimeUnit.MILLISECONDS);
+            immediate = false;
+        }
+    }
+
+    /**
+     * Runs a compaction on the background thread and waits for it to finish.
+     *
+     * @throws ExpenseStorageException if the compaction fails
+     */
+    public void compactNow() {
+        Future<?> task;
+        synchronized (this) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            task = executor.submit(this::compact);
+        }
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            throw new ExpenseStorageException("Error compacting journal into: " + snapshotPath, e);
+        }
+        rethrowFailure();
+    }
+
+    private void rethrowFailure() {
+        ExpenseStorageException error = failure;
+        if (error != null) {
+            failure = null;
+            throw error;
+        }
+    }
+
+    private void compact() {
+        synchronized (this) {
+            scheduled = null;
+        }
+        synchronized (compacting) {
+            try {
+                if (compactionLock.tryLock()) {
+                    try {
+                        fold();
+                    } finally {
+                        compactionLock.unlock();
+                    }
+                }
+            } catch (ExpenseStorageException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new ExpenseStorageException("Error compacting journal into: " + snapshotPath, e);
+            }
+        }
+
+        synchronized (this) {
+            if (journal.size() > 0 && scheduled == null && !isStopped()) {
+                scheduled = executor.schedule(this::compact, maxStaleness.toMillis(), TimeUnit.MILLISECONDS);
+                immediate = false;
+            }
+        }
+    }
+
+    private void fold() {
+        if (journal.rotate()) {
+            List<Path> rotated = journal.rotatedFiles();
+            Map<Integer, Expense> merged = new HashMap<>();
+            format.read(snapshotPath, merged);
+            journal.replayRotated(rotated, merged);
+            AtomicFiles.replace(snapshotPath, temp -> format.write(temp, merged.values()));
+            journal.discardRotated(rotated);
+        }
+    }
+
+    /**
+     * Whether the snapshot was last written more than {@code maxStaleness} ago, or not written yet,
+     * so records waiting in the journal may have outlived it
+     */
+    private boolean isSnapshotStale() {
+        try {
+            return Files.getLastModifiedTime(snapshotPath).toInstant().plus(maxStaleness).isBefore(Instant.now());
+        } catch (NoSuchFileException e) {
+            return true;
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error reading snapshot: " + snapshotPath, e);
+        }
+    }
+
+    /**
+     * Stops the background thread, or leaves a shared executor running, waiting for a running compaction to finish.
+     * Pending compactions are dropped, unless the snapshot is stale: then the journal is folded before returning.
+     * Otherwise its records stay in the journal and are replayed on the next load.
+     *
+     * @throws ExpenseStorageException if the last compaction failed
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            synchronized (this) {
+                closed = true;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                    scheduled = null;
+                }
+            }
+            synchronized (compacting) {
+                // Waits for a compaction that already started
+            }
+        }
+        if ((journal.size() > 0 || !journal.rotatedFiles().isEmpty()) && isSnapshotStale()) {
+            compact();
+        }
+        rethrowFailure();
+    }
+}
@@ -0,0 +1,48 @@
+package dev.shoangenes.expensetracker.storage;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Expense;
+
+/**
+ * On-disk representation of a full ledger snapshot.
+ */
+public interface SnapshotFormat {
+    /** File extension of the binary columnar format. */
+    String BINARY_EXTENSION = ".bin";
+
+    /**
+     * Reads every expense of the snapshot into the given map
+     *
+     * @param path the snapshot file
+     * @param expenses the map to fill, keyed by expense id
+     * @return the highest expense id found, or 0 if the snapshot is missing or empty
+     * @throws ExpenseStorageException if the snapshot cannot be read or parsed
+     */
+    int read(Path path, Map<Integer, Expense> expenses);
+
+    /**
+     * Writes the given expenses as the new content of the snapshot
+     *
+     * @param path the snapshot file
+     * @param expenses the expenses to write
+     * @throws ExpenseStorageException if writing the snapshot fails
+     */
+    void write(Path path, Collection<Expense> expenses);
+
+    /**
+     * Picks the format of a snapshot from its file name.
+     * Files ending in {@value #BINARY_EXTENSION} use the binary columnar format, anything else is JSON.
+     *
+     * @param path the snapshot file
+     * @return the format to read and write the file with
+     */
+    static SnapshotFormat forPath(Path path) {
+        return path.getFileName().toString().endsWith(BINARY_EXTENSION)
+                ? new BinarySnapshotFormat()
+                : new JsonSnapshotFormat();
+    }
+}
@@ -0,0 +1,193 @@
+package dev.shoangenes.expensetrackercli;
+
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.OptionalInt;
+
+/**
+ * Forwards a command line to the {@link LedgerDaemon} serving its ledger, see {@link LedgerDaemon} for the protocol.
+ * <p>
+ * Only the global options before the subcommand are looked at, to find the ledger; everything else is parsed by the
+ * daemon. Command lines the daemon cannot answer for this process, such as help, version and {@code serve}, are
+ * never forwarded, and the daemon declines those asking for another engine than its own.
+ */
+public final class DaemonClient {
+    private DaemonClient() {
+    }
+
+    /**
+     * Runs a command line in the daemon of its ledger, with the console of this process.
+     *
+     * @param args the command line arguments
+     * @return the exit code of the command, empty if no daemon is serving the ledger and it must run in this process
+     */
+    public static OptionalInt forward(String[] args) {
+        return forward(args, Path.of("").toAbsolutePath(), System.in, System.out, System.err);
+    }
+
+    /**
+     * Runs a command line in the daemon of its ledger.
+     *
+     * @param args the command line arguments
+     * @param workingDirectory the directory relative paths are resolved against
+     * @param stdin the input the command reads
+     * @param stdout receives the output of the command
+     * @param stderr receives the errors of the command
+     * @return the exit code of the command, empty if no daemon is serving the ledger, or it declined the command,
+     *         and it must run in this process
+     */
+    public static OptionalInt forward(String[] args, Path workingDirectory, InputStream stdin, PrintStream stdout,
+                                      PrintStream stderr) {
+        Path ledger = ledgerOf(args);
+        if (ledger == null) {
+            return OptionalInt.empty();
+        }
+        Path socket = LedgerDaemon.socketFor(workingDirectory.resolve(ledger));
+        if (!Files.exists(socket)) {
+            return OptionalInt.empty();
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            // A daemon that stopped without removing its socket
+            return OptionalInt.empty();
+        }
+        try (channel;
+             DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeInt(LedgerDaemon.PROTOCOL);
+            out.writeUTF(workingDirectory.toString());
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            return relay(in, out, stdin, stdout, stderr);
+        } catch (IOException e) {
+            // The command may have run already, so running it again here could apply it twice
+            stderr.println("Lost connection to the daemon serving " + ledger + ": " + e.getMessage());
+            return OptionalInt.of(1);
+        }
+    }
+
+    /**
+     * Copies the frames of the daemon to the console and answers its reads until the command exits.
+     *
+     * @return the exit code of the command, empty if the daemon declined to run it
+     */
+    private static OptionalInt relay(DataInputStream in, DataOutputStream out, InputStream stdin, PrintStream stdout,
+                             PrintStream stderr) throws IOException {
+        byte[] buffer = new byte[LedgerDaemon.FRAME_SIZE];
+        try {
+            while (true) {
+                byte type = in.readByte();
+                switch (type) {
+                    case LedgerDaemon.EXIT -> {
+                        return OptionalInt.of(in.readInt());
+                    }
+                    case LedgerDaemon.DECLINE -> {
+                        return OptionalInt.empty();
+                    }
+                    case LedgerDaemon.OUT, LedgerDaemon.ERR -> {
+                        int length = in.readInt();
+                        byte[] bytes = length <= buffer.length ? buffer : new byte[length];
+                        in.readFully(bytes, 0, length);
+                        PrintStream target = type == LedgerDaemon.OUT ? stdout : stderr;
+                        target.write(bytes, 0, length);
+                        target.flush();
+                    }
+                    case LedgerDaemon.READ -> {
+                        int wanted = Math.min(in.readInt(), buffer.length);
+                        int count = stdin.read(buffer, 0, wanted);
+                        out.writeInt(count);
+                        if (count > 0) {
+                            out.write(buffer, 0, count);
+                        }
+                        out.flush();
+                    }
+                    default -> throw new IOException("Unexpected frame type: " + type);
+                }
+            }
+        } finally {
+            stdout.flush();
+            stderr.flush();
+        }
+    }
+
+    /**
+     * Finds the ledger a command line works on.
+     *
+     * @return the ledger, or null if the command line is not forwarded
+     */
+    static Path ledgerOf(String[] args) {
+        Path ledger = ExpenseTracker.DEFAULT_FILE_PATH;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-l") || arg.equals("--ledger")) {
+                if (++i == args.length) {
+                    return null;
+                }
+                ledger = Path.of(args[i]);
+            } else if (arg.startsWith("--ledger=")) {
+                ledger = Path.of(arg.substring("--ledger=".length()));
+            } else if (arg.startsWith("-l") && !arg.startsWith("--")) {
+                ledger = Path.of(arg.substring(2));
+            } else if (arg.equals("--engine")) {
+                i++;
+            } else if (arg.startsWith("--engine=")) {
+                continue;
+            } else if (arg.startsWith("-") || arg.equals("serve")) {
+                // Help, version or an unknown option, answered by the parser of this process
+                return null;
+            } else {
+                return ledger;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the engine a command line asks for.
+     *
+     * @return the engine, or null if the command line names none, or one that does not exist
+     */
+    static ExpenseTracker.Engine engineOf(String[] args) {
+        String name = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--engine")) {
+                if (++i == args.length) {
+                    return null;
+                }
+                name = args[i];
+            } else if (arg.startsWith("--engine=")) {
+                name = arg.substring("--engine=".length());
+            } else if (arg.equals("-l") || arg.equals("--ledger")) {
+                i++;
+            } else if (!arg.startsWith("-")) {
+                break;
+            }
+        }
+        if (name == null) {
+            return null;
+        }
+        try {
+            return ExpenseTracker.Engine.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
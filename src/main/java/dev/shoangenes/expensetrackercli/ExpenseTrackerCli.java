@@ -3,39 +3,181 @@ package dev.shoangenes.expensetrackercli;
 import dev.shoangenes.expensetracker.service.ExpenseTracker;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import dev.shoangenes.expensetrackercli.commands.*;
 
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.OptionalInt;
+
 @Command(name = "expense-tracker", mixinStandardHelpOptions = true, version = "1.0",
         description = "A simple expense tracker CLI application.",
         subcommands = {
             AddCommand.class,
+            BatchCommand.class,
+            ConvertCommand.class,
             DeleteCommand.class,
+            ExportCommand.class,
+            ImportCommand.class,
             ListCommand.class,
+            ServeCommand.class,
             SummaryCommand.class,
             UpdateCommand.class
         })
 public class ExpenseTrackerCli implements Runnable {
-    private final ExpenseTracker expenseTracker = new ExpenseTracker();
+    @Option(names = {"-l", "--ledger"}, description = "Ledger file: '.bin' binary, '.h2' H2 database, '.parts' partitioned by month, JSON otherwise (default: ${DEFAULT-VALUE})")
+    private Path ledger = ExpenseTracker.DEFAULT_FILE_PATH;
+
+    @Option(names = {"--engine"}, description = "In-memory layout of the ledger: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private ExpenseTracker.Engine engine = ExpenseTracker.Engine.INDEXED;
+
+    private ExpenseTracker expenseTracker;
+
+    /** Whether the tracker is opened and closed by this CLI, false when a daemon lends its own. */
+    private boolean ownsTracker = true;
+
+    /** Directory relative paths are resolved against, null for the current directory. */
+    private Path workingDirectory;
+
+    private InputStream in = System.in;
+    private PrintStream out = System.out;
+    private PrintStream err = System.err;
+
+    /**
+     * Creates a CLI that opens the ledger itself and talks to the console.
+     */
+    public ExpenseTrackerCli() {
+    }
+
+    /**
+     * Creates a CLI that runs a request forwarded by a client on the tracker of a daemon.
+     *
+     * @param expenseTracker the warm tracker of the daemon, left open
+     * @param workingDirectory the directory of the client, relative paths are resolved against it
+     * @param in the standard input of the client
+     * @param out the standard output of the client
+     * @param err the standard error of the client
+     */
+    ExpenseTrackerCli(ExpenseTracker expenseTracker, Path workingDirectory, InputStream in, PrintStream out,
+                      PrintStream err) {
+        this.expenseTracker = expenseTracker;
+        this.ownsTracker = false;
+        this.workingDirectory = workingDirectory;
+        this.in = in;
+        this.out = out;
+        this.err = err;
+    }
 
     /**
      * Gets the ExpenseTracker instance used by this CLI application.
+     * The ledger is loaded on first use, once the options have been parsed.
      *
      * @return the ExpenseTracker instance
      */
     public ExpenseTracker getExpenseTracker() {
+        if (expenseTracker == null) {
+            expenseTracker = new ExpenseTracker(ledger, engine);
+        }
         return expenseTracker;
     }
 
+    /**
+     * Gets the ledger file given on the command line.
+     *
+     * @return the ledger file, resolved like other paths
+     */
+    public Path getLedger() {
+        return resolve(ledger);
+    }
+
+    /**
+     * Resolves a path given on the command line against the directory the command was issued from.
+     *
+     * @param path the path as given
+     * @return the path to open
+     */
+    public Path resolve(Path path) {
+        return workingDirectory == null ? path : workingDirectory.resolve(path);
+    }
+
+    /**
+     * Gets the standard input of the command.
+     *
+     * @return the input stream
+     */
+    public InputStream in() {
+        return in;
+    }
+
+    /**
+     * Gets the standard output of the command.
+     *
+     * @return the output stream
+     */
+    public PrintStream out() {
+        return out;
+    }
+
+    /**
+     * Gets the standard error of the command.
+     *
+     * @return the error stream
+     */
+    public PrintStream err() {
+        return err;
+    }
+
     /**
      * Default run method that provides a message when no subcommand is specified.
      */
     @Override
     public void run() {
-        System.out.println("Use a subcommand: add, delete, list...");
+        out.println("Use a subcommand: add, delete, list...");
+    }
+
+    /**
+     * Releases the ExpenseTracker, if it was loaded by this CLI, waiting for background persistence to finish.
+     */
+    public void close() {
+        if (expenseTracker != null && ownsTracker) {
+            ExpenseTracker loaded = expenseTracker;
+            expenseTracker = null;
+            loaded.close();
+        }
+    }
+
+    /**
+     * Parses the arguments and runs the subcommand they name.
+     *
+     * @param cli the CLI receiving the options
+     * @param args the command line arguments
+     * @return the exit code
+     */
+    static int execute(ExpenseTrackerCli cli, String... args) {
+        return new CommandLine(cli)
+                .setCaseInsensitiveEnumValuesAllowed(true)
+                .setOut(new PrintWriter(cli.out, true))
+                .setErr(new PrintWriter(cli.err, true))
+                .execute(args);
     }
 
+    /**
+     * Runs a command, in the daemon serving the ledger if one is running, in this process otherwise.
+     */
     public static void main(String[] args) {
-        int exitCode = new CommandLine(new ExpenseTrackerCli()).execute(args);
+        OptionalInt forwarded = DaemonClient.forward(args);
+        if (forwarded.isPresent()) {
+            System.exit(forwarded.getAsInt());
+        }
+        ExpenseTrackerCli cli = new ExpenseTrackerCli();
+        int exitCode = execute(cli, args);
+        try {
+            cli.close();
+        } catch (Exception e) {
+            System.err.println("Error saving ledger snapshot: " + e.getMessage());
+        }
         System.exit(exitCode);
     }
 }
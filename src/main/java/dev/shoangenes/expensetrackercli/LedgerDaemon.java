@@ -0,0 +1,349 @@
+package dev.shoangenes.expensetrackercli;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one ledger loaded and runs the commands of CLI processes on it, so they skip loading the ledger.
+ * <p>
+ * The daemon listens on a Unix-domain socket next to the ledger, see {@link #socketFor(Path)}, that only its owner
+ * can connect to: the socket is bound in a private directory and moved into place once restricted. Each connection
+ * carries one command line: the client sends its working directory and arguments, the daemon runs them on its tracker
+ * and streams back standard output and error, pulls standard input from the client as the command reads it, and ends
+ * with the exit code. Connections are served concurrently on virtual threads; the tracker serializes their changes
+ * as it does for threads of one process. A command line asking for another engine than the one of the tracker is
+ * declined, and the client runs it itself.
+ * <p>
+ * Messages from the client: the header {@value #PROTOCOL}, the working directory, the argument count and the
+ * arguments, then one reply per {@link #READ} frame: a byte count followed by the bytes, or -1 at end of input.
+ * Frames from the daemon start with their type: {@link #OUT} and {@link #ERR} are followed by a byte count and the
+ * bytes, {@link #READ} by the most bytes wanted, and {@link #EXIT} by the exit code, which ends the connection.
+ * {@link #DECLINE} ends the connection before the command runs.
+ */
+public class LedgerDaemon implements AutoCloseable {
+    /** Protocol version sent first by clients. */
+    static final int PROTOCOL = 0x45540002;
+
+    static final byte EXIT = 0;
+    static final byte OUT = 1;
+    static final byte ERR = 2;
+    static final byte READ = 3;
+    static final byte DECLINE = 4;
+
+    /** Size of the output buffered before it is sent as one frame. */
+    static final int FRAME_SIZE = 64 * 1024;
+
+    private final ExpenseTracker expenseTracker;
+    private final Path socket;
+    private final ServerSocketChannel server;
+    private final Set<Thread> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    /**
+     * Starts serving a tracker.
+     *
+     * @param expenseTracker the tracker the commands run on, left open when the daemon closes
+     * @param socket the socket file to listen on
+     * @throws IllegalStateException if another daemon is serving on the socket
+     * @throws ExpenseStorageException if the socket cannot be opened
+     */
+    public LedgerDaemon(ExpenseTracker expenseTracker, Path socket) {
+        this.expenseTracker = expenseTracker;
+        this.socket = socket.toAbsolutePath().normalize();
+        try {
+            removeStaleSocket(this.socket);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } catch (IOException e) {
+            throw new ExpenseStorageException("Error opening socket: " + this.socket, e);
+        }
+        try {
+            bindPrivately(server, this.socket);
+        } catch (IOException | RuntimeException e) {
+            try {
+                server.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            if (e instanceof FileAlreadyExistsException) {
+                throw new IllegalStateException("A daemon is already serving on " + this.socket, e);
+            }
+            throw e instanceof RuntimeException runtime ? runtime
+                    : new ExpenseStorageException("Error opening socket: " + this.socket, e);
+        }
+        acceptor = Thread.ofVirtual().name("ledger-daemon").start(this::accept);
+    }
+
+    /**
+     * Gets the socket the daemon of a ledger listens on by default: the ledger file name followed by '.sock'.
+     *
+     * @param ledger the ledger file
+     * @return the socket file
+     */
+    public static Path socketFor(Path ledger) {
+        Path absolute = ledger.toAbsolutePath().normalize();
+        return absolute.resolveSibling(absolute.getFileName() + ".sock");
+    }
+
+    /**
+     * Gets the socket file the daemon listens on.
+     *
+     * @return the socket file
+     */
+    public Path getSocket() {
+        return socket;
+    }
+
+    /**
+     * Binds the server to the socket file so that other users can never connect to it: the socket is bound in a new
+     * directory only the owner can enter, restricted to the owner, and only then moved to its file.
+     *
+     * @throws FileAlreadyExistsException if another daemon created the socket file meanwhile
+     */
+    private static void bindPrivately(ServerSocketChannel server, Path socket) throws IOException {
+        Path directory;
+        try {
+            directory = Files.createTempDirectory(socket.getParent(), ".daemon",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            // Without POSIX permissions the directory of the ledger limits who can reach the socket
+            server.bind(UnixDomainSocketAddress.of(socket));
+            return;
+        }
+        Path bound = directory.resolve("socket");
+        try {
+            server.bind(UnixDomainSocketAddress.of(bound));
+            Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+            Files.move(bound, socket);
+        } finally {
+            Files.deleteIfExists(bound);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Deletes a socket file left behind by a daemon that is no longer running.
+     *
+     * @throws IllegalStateException if a daemon answers on the socket
+     */
+    private static void removeStaleSocket(Path socket) throws IOException {
+        if (!Files.exists(socket)) {
+            return;
+        }
+        try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            throw new IllegalStateException("A daemon is already serving on " + socket);
+        } catch (ConnectException e) {
+            Files.deleteIfExists(socket);
+        }
+    }
+
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (!server.isOpen()) {
+                    return;
+                }
+                continue;
+            }
+            Thread connection = Thread.ofVirtual().name("ledger-daemon-client").unstarted(() -> {
+                try {
+                    serve(channel);
+                } finally {
+                    connections.remove(Thread.currentThread());
+                }
+            });
+            connections.add(connection);
+            connection.start();
+        }
+    }
+
+    /**
+     * Runs the command line of one connection; a client that goes away ends it early.
+     */
+    private void serve(SocketChannel channel) {
+        try (channel;
+             DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            if (in.readInt() != PROTOCOL) {
+                return;
+            }
+            Path workingDirectory = Path.of(in.readUTF());
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+            ExpenseTracker.Engine engine = DaemonClient.engineOf(args);
+            if (engine != null && engine != expenseTracker.getEngine()) {
+                out.writeByte(DECLINE);
+                out.flush();
+                return;
+            }
+
+            PrintStream stdout = new PrintStream(new BufferedOutputStream(new FrameStream(out, OUT), FRAME_SIZE),
+                    false, StandardCharsets.UTF_8);
+            PrintStream stderr = new PrintStream(new BufferedOutputStream(new FrameStream(out, ERR), FRAME_SIZE),
+                    false, StandardCharsets.UTF_8);
+            int exitCode;
+            try {
+                // Commands see what other processes wrote to the ledger, as a fresh load would
+                expenseTracker.refresh();
+                ExpenseTrackerCli cli = new ExpenseTrackerCli(expenseTracker, workingDirectory,
+                        new ClientInput(in, out), stdout, stderr);
+                exitCode = ExpenseTrackerCli.execute(cli, args);
+            } catch (RuntimeException e) {
+                stderr.println("Error: " + e.getMessage());
+                exitCode = 1;
+            }
+            stdout.flush();
+            stderr.flush();
+            synchronized (out) {
+                out.writeByte(EXIT);
+                out.writeInt(exitCode);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client disconnected, nothing is left to answer
+        }
+    }
+
+    /**
+     * Stops accepting connections, waits for the running commands to finish and deletes the socket file.
+     * The tracker is left open.
+     */
+    @Override
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Closing only fails if the socket is already gone
+        }
+        boolean interrupted = false;
+        Set<Thread> threads = new LinkedHashSet<>();
+        threads.add(acceptor);
+        threads.addAll(connections);
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        try {
+            Files.deleteIfExists(socket);
+        } catch (IOException e) {
+            // A stale socket is removed by the next daemon
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Sends what a command writes to one of its output streams as frames of that type. */
+    private static class FrameStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(length);
+                out.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+    /** Standard input of the client, asked for only when the command reads it. */
+    private static class ClientInput extends InputStream {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private boolean ended;
+
+        ClientInput(DataInputStream in, DataOutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (ended) {
+                return -1;
+            }
+            synchronized (out) {
+                out.writeByte(READ);
+                out.writeInt(length);
+                out.flush();
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                ended = true;
+                return -1;
+            }
+            in.readFully(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public void close() {
+            // The connection outlives the command, the client stops being asked once it ends
+        }
+    }
+}
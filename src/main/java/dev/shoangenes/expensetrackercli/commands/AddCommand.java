@@ -3,6 +3,7 @@ package dev.shoangenes.expensetrackercli.commands;
 import dev.shoangenes.expensetracker.command.AddExpenseCommand;
 import dev.shoangenes.expensetracker.command.Command;
 import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
 import dev.shoangenes.expensetrackercli.ExpenseTrackerCli;
 import picocli.CommandLine;
 import picocli.CommandLine.Option;
@@ -26,6 +27,16 @@ public class AddCommand implements Runnable {
     private ExpenseCategory category;
 
 
+    /**
+     * Creates the command adding the expense described by the parsed options.
+     *
+     * @param expenseTracker the tracker to add the expense to
+     * @return the command
+     */
+    AddExpenseCommand toCommand(ExpenseTracker expenseTracker) {
+        return new AddExpenseCommand(expenseTracker, description, amount, category);
+    }
+
     /**
      * Executes the command to add a new expense.
      * It creates an instance of AddExpenseCommand with the provided parameters
@@ -35,15 +46,11 @@ public class AddCommand implements Runnable {
     @Override
     public void run() {
         try {
-            Command<Void> command = new AddExpenseCommand(
-                    parent.getExpenseTracker(),
-                    description,
-                    amount,
-                    category);
-            command.execute();
-            System.out.println("Expense added successfully.");
+            Command<Integer> command = toCommand(parent.getExpenseTracker());
+            int id = command.execute();
+            parent.out().println("Expense added successfully (ID: " + id + ").");
         } catch (Exception e) {
-            System.err.println("Error adding expense: " + e.getMessage());
+            parent.err().println("Error adding expense: " + e.getMessage());
         }
     }
 }
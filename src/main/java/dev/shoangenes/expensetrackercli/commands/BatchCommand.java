@@ -0,0 +1,146 @@
+package dev.shoangenes.expensetrackercli.commands;
+
+import dev.shoangenes.expensetracker.command.CommandBatch;
+import dev.shoangenes.expensetracker.command.MutationCommand;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetrackercli.ExpenseTrackerCli;
+import picocli.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command to run a file of add, update and delete commands as one batch: every command is parsed and validated
+ * first, then all of them are applied under one lock and saved with a single write, or none is.
+ * Each line holds one command with the same options as on the command line, e.g.
+ * {@code add -d "Lunch, team" -a 12.50 -c FOOD}. Blank lines and lines starting with '#' are skipped.
+ */
+@CommandLine.Command(name = "batch", description = "Run a file of add, update and delete commands, one per line, in a single write")
+public class BatchCommand implements Runnable {
+    @CommandLine.ParentCommand
+    private ExpenseTrackerCli parent;
+
+    @CommandLine.Option(names = {"-f", "--file"}, required = true, description = "File of commands, '-' for standard input")
+    private String file;
+
+    private final AddCommand add = new AddCommand();
+    private final UpdateCommand update = new UpdateCommand();
+    private final DeleteCommand delete = new DeleteCommand();
+
+    /**
+     * Executes the commands of the file and prints the ID of every added expense.
+     */
+    @Override
+    public void run() {
+        try {
+            CommandBatch batch = parse(parent.getExpenseTracker());
+            List<Object> results = batch.execute();
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) instanceof Integer id) {
+                    parent.out().println("Command " + (i + 1) + ": expense added (ID: " + id + ")");
+                }
+            }
+            parent.out().println("Applied " + results.size() + " commands");
+        } catch (Exception e) {
+            parent.err().println("Error running batch, nothing was applied: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the commands of the file into a batch.
+     *
+     * @throws IllegalArgumentException if a line is not a valid command
+     */
+    private CommandBatch parse(ExpenseTracker expenseTracker) throws IOException {
+        CommandLine addParser = parser(add);
+        CommandLine updateParser = parser(update);
+        CommandLine deleteParser = parser(delete);
+        CommandBatch batch = new CommandBatch(expenseTracker);
+        try (BufferedReader in = file.equals("-")
+                ? new BufferedReader(new InputStreamReader(parent.in(), StandardCharsets.UTF_8))
+                : Files.newBufferedReader(parent.resolve(Path.of(file)))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                List<String> words = split(line.strip());
+                if (words.isEmpty() || words.get(0).startsWith("#")) {
+                    continue;
+                }
+                String[] options = words.subList(1, words.size()).toArray(String[]::new);
+                try {
+                    MutationCommand<?> command = switch (words.get(0)) {
+                        case "add" -> {
+                            addParser.parseArgs(options);
+                            yield add.toCommand(expenseTracker);
+                        }
+                        case "update" -> {
+                            updateParser.parseArgs(options);
+                            yield update.toCommand(expenseTracker);
+                        }
+                        case "delete" -> {
+                            deleteParser.parseArgs(options);
+                            yield delete.toCommand(expenseTracker);
+                        }
+                        default -> throw new IllegalArgumentException("Unknown command: " + words.get(0));
+                    };
+                    batch.add(command);
+                } catch (CommandLine.ParameterException | IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return batch;
+    }
+
+    private static CommandLine parser(Object command) {
+        return new CommandLine(command).setCaseInsensitiveEnumValuesAllowed(true);
+    }
+
+    /**
+     * Splits a line into words at spaces, keeping quoted words together, without the quotes
+     *
+     * @throws IllegalArgumentException if a quote is not closed
+     */
+    private static List<String> split(String line) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    word.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inWord = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inWord) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                    inWord = false;
+                }
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException("Unclosed quote: " + line);
+        }
+        if (inWord) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+}
@@ -0,0 +1,31 @@
+package dev.shoangenes.expensetrackercli.commands;
+
+import dev.shoangenes.expensetracker.command.Command;
+import dev.shoangenes.expensetracker.command.ConvertLedgerCommand;
+import dev.shoangenes.expensetrackercli.ExpenseTrackerCli;
+import picocli.CommandLine;
+
+import java.nio.file.Path;
+
+@CommandLine.Command(name = "convert", description = "Convert the ledger to another format: JSON, binary (.bin), H2 (.h2) or partitioned by month (.parts)")
+public class ConvertCommand implements Runnable {
+    @CommandLine.ParentCommand
+    private ExpenseTrackerCli parent;
+
+    @CommandLine.Option(names = {"-o", "--output"}, description = "Ledger to write, its extension picks the format", required = true)
+    private Path output;
+
+    /**
+     * Executes the command to write the current ledger to the output file.
+     */
+    @Override
+    public void run() {
+        try {
+            Command<Integer> command = new ConvertLedgerCommand(parent.getExpenseTracker(), parent.resolve(output));
+            int count = command.execute();
+            parent.out().println("Converted " + count + " expenses to " + output);
+        } catch (Exception e) {
+            parent.err().println("Error converting ledger: " + e.getMessage());
+        }
+    }
+}
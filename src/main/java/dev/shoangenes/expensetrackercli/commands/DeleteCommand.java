@@ -2,6 +2,7 @@ package dev.shoangenes.expensetrackercli.commands;
 
 import dev.shoangenes.expensetracker.command.Command;
 import dev.shoangenes.expensetracker.command.DeleteExpenseCommand;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
 import dev.shoangenes.expensetrackercli.ExpenseTrackerCli;
 import picocli.CommandLine;
 
@@ -13,17 +14,27 @@ public class DeleteCommand implements Runnable {
     @CommandLine.Option(names = {"-i", "--id"}, description = "Expense's id",  required = true)
     private Integer id;
 
+    /**
+     * Creates the command deleting the expense named by the parsed options.
+     *
+     * @param expenseTracker the tracker holding the expense
+     * @return the command
+     */
+    DeleteExpenseCommand toCommand(ExpenseTracker expenseTracker) {
+        return new DeleteExpenseCommand(expenseTracker, id);
+    }
+
     /**
      * Executes the command to delete an expense by its id
      */
     @Override
     public void run() {
         try {
-            Command<Void> command = new DeleteExpenseCommand(parent.getExpenseTracker(), id);
+            Command<Void> command = toCommand(parent.getExpenseTracker());
             command.execute();
-            System.out.println("Successfully deleted expense by ID: " + id);
+            parent.out().println("Successfully deleted expense by ID: " + id);
         } catch (Exception e) {
-            System.out.println("Error deleting expense by ID: " + e.getMessage());
+            parent.out().println("Error deleting expense by ID: " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,77 @@
+package dev.shoangenes.expensetrackercli.commands;
+
+import dev.shoangenes.expensetracker.command.Command;
+import dev.shoangenes.expensetracker.command.ExportExpensesCommand;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseExporter;
+import dev.shoangenes.expensetrackercli.ExpenseTrackerCli;
+import picocli.CommandLine;
+
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Command to write the expenses matching the filters to a CSV, JSON Lines or binary file, or to standard output.
+ * Expenses are streamed from the ledger, so exports of any size run in constant memory.
+ */
+@CommandLine.Command(name = "export", description = "Export expenses to a CSV, JSON Lines (.jsonl) or binary (.bin) file")
+public class ExportCommand implements Runnable {
+    @CommandLine.ParentCommand
+    private ExpenseTrackerCli parent;
+
+    @CommandLine.Option(names = {"-o", "--output"}, required = true, description = "File to write, '-' for standard output")
+    private String output;
+
+    @CommandLine.Option(names = {"-f", "--format"}, description = "Layout of the output: ${COMPLETION-CANDIDATES} (default: from the file extension, CSV on standard output)")
+    private ExpenseExporter.Format format;
+
+    @CommandLine.Option(names = {"-c", "--category"}, description = "Filter by category")
+    private List<ExpenseCategory> categoryList;
+
+    @CommandLine.Option(names = {"-m", "--min"}, description = "Minimum amount")
+    private Double minAmount;
+
+    @CommandLine.Option(names = {"-M", "--max"}, description = "Maximum amount")
+    private Double maxAmount;
+
+    @CommandLine.Option(names = {"-ym", "yearMonth"}, description = "Filter by year month")
+    YearMonth yearMonth;
+
+    @CommandLine.Option(names = {"-y", "--year"}, description = "Filter by year")
+    Year year;
+
+    @CommandLine.Option(names = {"--search", "--contains"}, description = "Filter by text in the description, ignoring case")
+    String search;
+
+    /**
+     * Executes the command to export the expenses and reports how many were written.
+     * The report goes to standard error when the expenses go to standard output.
+     */
+    @Override
+    public void run() {
+        try {
+            ExpenseQuery query = ExpenseQuery.makeQuery(categoryList, minAmount, yearMonth, year, null)
+                    .amountBetween(null, maxAmount)
+                    .containing(search);
+            Command<Long> command;
+            if (output.equals("-")) {
+                command = new ExportExpensesCommand(parent.getExpenseTracker(), query,
+                        format != null ? format : ExpenseExporter.Format.CSV, Channels.newChannel(parent.out()));
+                long count = command.execute();
+                parent.out().flush();
+                parent.err().println("Exported " + count + " expenses");
+            } else {
+                Path target = Path.of(output);
+                command = new ExportExpensesCommand(parent.getExpenseTracker(), query,
+                        format != null ? format : ExpenseExporter.Format.forPath(target), parent.resolve(target));
+                parent.out().println("Exported " + command.execute() + " expenses to " + target);
+            }
+        } catch (Exception e) {
+            parent.err().println("Error exporting expenses: " + e.getMessage());
+        }
+    }
+}
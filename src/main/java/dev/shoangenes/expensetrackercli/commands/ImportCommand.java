@@ -0,0 +1,51 @@
+package dev.shoangenes.expensetrackercli.commands;
+
+import dev.shoangenes.expensetracker.command.Command;
+import dev.shoangenes.expensetracker.command.ImportExpensesCommand;
+import dev.shoangenes.expensetracker.service.ExpenseImporter;
+import dev.shoangenes.expensetrackercli.ExpenseTrackerCli;
+import picocli.CommandLine;
+
+import java.nio.file.Path;
+
+/**
+ * Command to load expenses in bulk from a CSV or JSON Lines file.
+ * Rows that cannot be imported are written to a reject file instead of stopping the import.
+ */
+@CommandLine.Command(name = "import", description = "Import expenses from a CSV file with a header (description,amount,category,date) or a JSON Lines file (.jsonl)")
+public class ImportCommand implements Runnable {
+    @CommandLine.ParentCommand
+    private ExpenseTrackerCli parent;
+
+    @CommandLine.Parameters(index = "0", description = "File to import")
+    private Path source;
+
+    @CommandLine.Option(names = {"-f", "--format"}, description = "Layout of the rows: ${COMPLETION-CANDIDATES} (default: from the file extension)")
+    private ExpenseImporter.Format format;
+
+    @CommandLine.Option(names = {"-r", "--rejects"}, description = "File receiving the rejected rows (default: the imported file with '.rejects' appended)")
+    private Path rejects;
+
+    @CommandLine.Option(names = {"--checkpoint"}, description = "Rows added between two commits, 0 to commit once at the end (default: ${DEFAULT-VALUE})")
+    private int checkpoint = ExpenseImporter.DEFAULT_CHECKPOINT;
+
+    /**
+     * Executes the command to import the file and reports how many rows were imported and rejected.
+     */
+    @Override
+    public void run() {
+        try {
+            Path rejectsFile = rejects != null ? rejects : source.resolveSibling(source.getFileName() + ".rejects");
+            Command<ExpenseImporter.Result> command = new ImportExpensesCommand(parent.getExpenseTracker(),
+                    parent.resolve(source), format != null ? format : ExpenseImporter.Format.forPath(source),
+                    parent.resolve(rejectsFile), checkpoint);
+            ExpenseImporter.Result result = command.execute();
+            parent.out().println("Imported " + result.imported() + " expenses from " + source);
+            if (result.rejected() > 0) {
+                parent.out().println("Rejected " + result.rejected() + " rows, see " + rejectsFile);
+            }
+        } catch (Exception e) {
+            parent.err().println("Error importing expenses: " + e.getMessage());
+        }
+    }
+}
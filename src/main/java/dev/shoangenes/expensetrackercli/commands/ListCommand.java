@@ -7,6 +7,7 @@ import dev.shoangenes.expensetracker.model.ExpenseQuery;
 import dev.shoangenes.expensetrackercli.ExpenseTrackerCli;
 import picocli.CommandLine;
 import dev.shoangenes.expensetracker.command.Command;
+import dev.shoangenes.expensetracker.command.ExplainQueryCommand;
 
 import java.time.Year;
 import java.time.YearMonth;
@@ -23,15 +24,36 @@ public class ListCommand implements Runnable {
     @CommandLine.Option(names = {"-m", "--min"}, description = "Minimum amount")
     private Double minAmount;
 
+    @CommandLine.Option(names = {"-M", "--max"}, description = "Maximum amount")
+    private Double maxAmount;
+
     @CommandLine.Option(names = {"-ym", "yearMonth"}, description = "Filter by year month")
     YearMonth yearMonth;
 
     @CommandLine.Option(names = {"-y", "--year"}, description = "Filter by year")
     Year year;
 
+    @CommandLine.Option(names = {"--search", "--contains"}, description = "Filter by text in the description, ignoring case")
+    String search;
+
+    @CommandLine.Option(names = {"--explain"}, description = "Print how the query is answered before the result")
+    boolean explain;
+
+    @CommandLine.Option(names = {"--parallel"}, description = "Split scans of large ledgers across all cores")
+    boolean parallel;
+
     @CommandLine.Option(names = {"-sa", "-sortByAmount"}, description = "Sort by amount, ascending or descending")
     Boolean ascending;
 
+    @CommandLine.Option(names = {"-n", "--limit"}, description = "Maximum number of expenses to list")
+    Integer limit;
+
+    @CommandLine.Option(names = {"-o", "--offset"}, description = "Number of expenses to skip")
+    int offset;
+
+    @CommandLine.Option(names = {"--after-id"}, description = "List the expenses that come after this one, e.g. the last ID of the previous page")
+    Integer afterId;
+
     /**
      * Executes the command to list expenses based on the provided filters.
      * If no expenses are found, it prints a message indicating that.
@@ -39,15 +61,23 @@ public class ListCommand implements Runnable {
      */
     @Override
     public void run() {
-        ExpenseQuery query = ExpenseQuery.makeQuery(categoryList, minAmount, yearMonth, year, ascending);
+        ExpenseQuery query = ExpenseQuery.makeQuery(categoryList, minAmount, yearMonth, year, ascending)
+                .amountBetween(null, maxAmount)
+                .containing(search)
+                .parallel(parallel)
+                .after(afterId)
+                .page(offset, limit);
+        if (explain) {
+            parent.out().println("Plan: " + new ExplainQueryCommand(parent.getExpenseTracker(), query).execute());
+        }
         Command<List<Expense>> command = new ListExpensesCommand(parent.getExpenseTracker(), query);
         List<Expense> result = command.execute();;
         if (result.isEmpty()) {
-            System.out.println("No expenses found");
+            parent.out().println("No expenses found");
         } else {
-            System.out.printf("%-3s %-10s %-12s %s%n", "ID", "Date", "Description", "Amount");
-            System.out.println("--------------------------------");
-            result.forEach(System.out::println);
+            parent.out().printf("%-3s %-10s %-12s %s%n", "ID", "Date", "Description", "Amount");
+            parent.out().println("--------------------------------");
+            result.forEach(parent.out()::println);
         }
     }
 }
@@ -0,0 +1,44 @@
+package dev.shoangenes.expensetrackercli.commands;
+
+import dev.shoangenes.expensetrackercli.ExpenseTrackerCli;
+import dev.shoangenes.expensetrackercli.LedgerDaemon;
+import picocli.CommandLine;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Command to keep the ledger loaded and serve the commands of other CLI processes until interrupted.
+ * While it runs, commands on the same ledger are forwarded to it instead of loading the ledger themselves.
+ */
+@CommandLine.Command(name = "serve", description = "Keep the ledger loaded and run the commands of other processes on it until interrupted")
+public class ServeCommand implements Runnable {
+    @CommandLine.ParentCommand
+    private ExpenseTrackerCli parent;
+
+    /**
+     * Executes the command to load the ledger and serve it until the process is stopped.
+     */
+    @Override
+    public void run() {
+        LedgerDaemon daemon;
+        try {
+            daemon = new LedgerDaemon(parent.getExpenseTracker(), LedgerDaemon.socketFor(parent.getLedger()));
+        } catch (Exception e) {
+            parent.err().println("Error starting daemon: " + e.getMessage());
+            return;
+        }
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            daemon.close();
+            parent.close();
+            stopped.countDown();
+        }));
+        parent.out().println("Serving " + parent.getLedger() + " on " + daemon.getSocket());
+        parent.out().flush();
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package dev.shoangenes.expensetrackercli.commands;
 
 import dev.shoangenes.expensetracker.command.Command;
+import dev.shoangenes.expensetracker.command.ExplainQueryCommand;
+import dev.shoangenes.expensetracker.command.GroupedSummaryCommand;
 import dev.shoangenes.expensetracker.command.SummaryExpensesCommand;
 import dev.shoangenes.expensetracker.model.ExpenseCategory;
 import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
 import dev.shoangenes.expensetrackercli.ExpenseTrackerCli;
 import picocli.CommandLine;
 
 import java.time.Year;
 import java.time.YearMonth;
+import java.util.EnumSet;
 import java.util.List;
 
 @CommandLine.Command(name = "summary", description = "Summary expenses with optional filters")
@@ -22,12 +26,27 @@ public class SummaryCommand implements Runnable {
     @CommandLine.Option(names = {"-m", "--min"}, description = "Minimum amount")
     private Double minAmount;
 
+    @CommandLine.Option(names = {"-M", "--max"}, description = "Maximum amount")
+    private Double maxAmount;
+
     @CommandLine.Option(names = {"-ym", "yearMonth"}, description = "Filter by year month")
     YearMonth yearMonth;
 
     @CommandLine.Option(names = {"-y", "--year"}, description = "Filter by year")
     Year year;
 
+    @CommandLine.Option(names = {"--search", "--contains"}, description = "Filter by text in the description, ignoring case")
+    String search;
+
+    @CommandLine.Option(names = {"--explain"}, description = "Print how the query is answered before the result")
+    boolean explain;
+
+    @CommandLine.Option(names = {"--parallel"}, description = "Split scans of large ledgers across all cores")
+    boolean parallel;
+
+    @CommandLine.Option(names = {"--group-by"}, split = ",",
+            description = "Totals per group instead of one total: ${COMPLETION-CANDIDATES}, comma separated")
+    List<GroupedSummary.Dimension> groupBy;
 
     /**
      * Executes the summary command to calculate the total expenses based on the provided filters.
@@ -35,10 +54,35 @@ public class SummaryCommand implements Runnable {
      */
     @Override
     public void run() {
-        ExpenseQuery query = ExpenseQuery.makeQuery(categoryList, minAmount, yearMonth, year, null);
+        ExpenseQuery query = ExpenseQuery.makeQuery(categoryList, minAmount, yearMonth, year, null)
+                .amountBetween(null, maxAmount)
+                .containing(search)
+                .parallel(parallel);
+        if (explain) {
+            parent.out().println("Plan: " + new ExplainQueryCommand(parent.getExpenseTracker(), query, groupBy == null).execute());
+        }
+        if (groupBy != null) {
+            printGroups(new GroupedSummaryCommand(parent.getExpenseTracker(), query, EnumSet.copyOf(groupBy)).execute());
+            return;
+        }
         Command<Double> command = new SummaryExpensesCommand(parent.getExpenseTracker(), query);
         Double result = command.execute();
-        System.out.println("Successfully executed summary expense command: " + result);
+        parent.out().println("Successfully executed summary expense command: " + result);
     }
 
+    private void printGroups(GroupedSummary summary) {
+        if (summary.groups().isEmpty()) {
+            parent.out().println("No expenses found");
+            return;
+        }
+        parent.out().printf("%-16s %-7s %6s %12s %10s %10s%n", "Category", "Period", "Count", "Total", "Min", "Max");
+        parent.out().println("-------------------------------------------------------------------");
+        for (GroupedSummary.Group group : summary.groups()) {
+            Object period = group.month() != null ? group.month() : group.year();
+            parent.out().printf("%-16s %-7s %6d %12.2f %10.2f %10.2f%n",
+                    group.category() == null ? "-" : group.category(),
+                    period == null ? "-" : period,
+                    group.count(), group.sum(), group.min(), group.max());
+        }
+    }
 }
@@ -2,6 +2,7 @@ package dev.shoangenes.expensetrackercli.commands;
 
 import dev.shoangenes.expensetracker.command.Command;
 import dev.shoangenes.expensetracker.command.UpdateExpenseCommand;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
 import dev.shoangenes.expensetrackercli.ExpenseTrackerCli;
 import picocli.CommandLine;
 
@@ -16,6 +17,16 @@ public class UpdateCommand implements Runnable {
     @CommandLine.Option(names = {"-d", "--description"}, description = "Expense's description", required = true)
     private String description;
 
+    /**
+     * Creates the command updating the expense named by the parsed options.
+     *
+     * @param expenseTracker the tracker holding the expense
+     * @return the command
+     */
+    UpdateExpenseCommand toCommand(ExpenseTracker expenseTracker) {
+        return new UpdateExpenseCommand(expenseTracker, id, description);
+    }
+
     /**
      * Executes the command to update an expense in the expense tracker.
      * This method is called when the command is run.
@@ -23,11 +34,11 @@ public class UpdateCommand implements Runnable {
     @Override
     public void run() {
         try {
-            Command<Void> command = new UpdateExpenseCommand(parent.getExpenseTracker(), id, description);
+            Command<Void> command = toCommand(parent.getExpenseTracker());
             command.execute();
-            System.out.println("Expense updated successfully (ID: " + id + ")");
+            parent.out().println("Expense updated successfully (ID: " + id + ")");
         } catch (Exception e) {
-            System.err.println("Error, cannot update expense tracker: " + e.getMessage());
+            parent.err().println("Error, cannot update expense tracker: " + e.getMessage());
         }
     }
 }
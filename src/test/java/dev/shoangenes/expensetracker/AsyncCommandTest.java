@@ -0,0 +1,147 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.command.AddExpenseCommand;
+import dev.shoangenes.expensetracker.command.DeleteExpenseCommand;
+import dev.shoangenes.expensetracker.command.ListExpensesCommand;
+import dev.shoangenes.expensetracker.command.UpdateExpenseCommand;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.storage.FileExpenseStore;
+import dev.shoangenes.expensetracker.storage.GroupCommitPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class AsyncCommandTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMutationsRunInSubmissionOrder() {
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            CompletableFuture<Integer> added = new AddExpenseCommand(tracker, "Lunch", 12.5, ExpenseCategory.FOOD).executeAsync();
+            CompletableFuture<Void> updated = new UpdateExpenseCommand(tracker, 1, "Team lunch").executeAsync();
+            CompletableFuture<Integer> second = new AddExpenseCommand(tracker, "Bus", 2.0, ExpenseCategory.TRANSPORT).executeAsync();
+            CompletableFuture<Void> deleted = new DeleteExpenseCommand(tracker, 2).executeAsync();
+
+            CompletableFuture.allOf(added, updated, second, deleted).join();
+
+            assertThat(added.join()).isEqualTo(1);
+            assertThat(second.join()).isEqualTo(2);
+            assertThat(new ListExpensesCommand(tracker, new ExpenseQuery()).executeAsync().join())
+                    .extracting(Expense::getId, Expense::getDescription)
+                    .containsExactly(tuple(1, "Team lunch"));
+        }
+    }
+
+    @Test
+    void testFailedMutationsDoNotStopTheOnesBehindThem() {
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            CompletableFuture<Void> missing = new DeleteExpenseCommand(tracker, 7).executeAsync();
+            CompletableFuture<Integer> added = new AddExpenseCommand(tracker, "Lunch", 12.5, ExpenseCategory.FOOD).executeAsync();
+
+            assertThatThrownBy(missing::join)
+                    .isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(NoSuchElementException.class);
+            assertThat(added.join()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void testConcurrentCallersAreAcknowledgedOnceDurable() throws Exception {
+        Path ledger = tempDir.resolve("ledger.json");
+        GroupCommitPolicy groupCommit = new GroupCommitPolicy(1_000_000, Duration.ofHours(1));
+        try (ExpenseTracker tracker = new ExpenseTracker(new FileExpenseStore(ledger, groupCommit))) {
+            List<CompletableFuture<Integer>> ids = new ArrayList<>();
+            List<Thread> callers = new ArrayList<>();
+            for (int c = 0; c < 8; c++) {
+                callers.add(Thread.ofVirtual().start(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        CompletableFuture<Integer> id = tracker.mutateAsync(
+                                () -> tracker.addExpense("Expense", 1.0, ExpenseCategory.FOOD));
+                        synchronized (ids) {
+                            ids.add(id);
+                        }
+                    }
+                }));
+            }
+            for (Thread caller : callers) {
+                caller.join();
+            }
+            CompletableFuture.allOf(ids.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+
+            assertThat(ids).extracting(CompletableFuture::join)
+                    .containsExactlyInAnyOrderElementsOf(IntStream.rangeClosed(1, 400).boxed().toList());
+            // Acknowledged writes were flushed although the group commit would still be buffering them
+            try (ExpenseTracker reader = new ExpenseTracker(ledger)) {
+                assertThat(reader.listExpenses(new ExpenseQuery())).hasSize(400);
+            }
+        }
+    }
+
+    @Test
+    void testQueuedMutationsShareOneFlush() throws InterruptedException {
+        AtomicInteger flushes = new AtomicInteger();
+        Path ledger = tempDir.resolve("ledger.json");
+        GroupCommitPolicy groupCommit = new GroupCommitPolicy(1_000_000, Duration.ofHours(1));
+        try (ExpenseTracker tracker = new ExpenseTracker(new FileExpenseStore(ledger, groupCommit) {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+                super.flush();
+            }
+        })) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<Boolean> blocker = tracker.mutateAsync(() -> {
+                started.countDown();
+                try {
+                    return release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            started.await(10, TimeUnit.SECONDS);
+            List<CompletableFuture<Integer>> queued = IntStream.range(0, 100)
+                    .mapToObj(i -> tracker.mutateAsync(() -> tracker.addExpense("Expense " + i, 1.0, ExpenseCategory.FOOD)))
+                    .toList();
+            release.countDown();
+
+            assertThat(blocker.join()).isTrue();
+            CompletableFuture.allOf(queued.toArray(CompletableFuture[]::new)).join();
+            assertThat(flushes.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void testCloseWaitsForQueuedMutationsAndRefusesNewOnes() {
+        Path ledger = tempDir.resolve("ledger.json");
+        ExpenseTracker tracker = new ExpenseTracker(ledger);
+        List<CompletableFuture<Integer>> queued = IntStream.range(0, 20)
+                .mapToObj(i -> new AddExpenseCommand(tracker, "Expense " + i, 1.0, ExpenseCategory.FOOD).executeAsync())
+                .toList();
+        tracker.close();
+
+        assertThat(CompletableFuture.allOf(queued.toArray(CompletableFuture[]::new))).succeedsWithin(Duration.ofSeconds(10));
+        assertThatThrownBy(() -> new DeleteExpenseCommand(tracker, 1).executeAsync())
+                .isInstanceOf(IllegalStateException.class);
+        try (ExpenseTracker reopened = new ExpenseTracker(ledger)) {
+            assertThat(reopened.listExpenses(new ExpenseQuery())).hasSize(20);
+        }
+    }
+}
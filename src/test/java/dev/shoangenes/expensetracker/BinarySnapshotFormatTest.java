@@ -0,0 +1,117 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.storage.BinarySnapshotFormat;
+import dev.shoangenes.expensetracker.storage.SnapshotFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class BinarySnapshotFormatTest {
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        Expense.setLastIdSaved(0);
+    }
+
+    @Test
+    void testRoundTrip() {
+        Path file = tempDir.resolve("ledger.bin");
+        List<Expense> expenses = List.of(
+                Expense.restore(3, "Café con leche", 4.5, LocalDate.of(2025, 1, 31), ExpenseCategory.FOOD),
+                Expense.restore(9, "Bus", 2.75, LocalDate.of(2026, 3, 1), ExpenseCategory.TRANSPORT)
+        );
+
+        new BinarySnapshotFormat().write(file, expenses);
+        Map<Integer, Expense> loaded = new HashMap<>();
+        int maxId = new BinarySnapshotFormat().read(file, loaded);
+
+        assertThat(maxId).isEqualTo(9);
+        assertThat(loaded).containsOnlyKeys(3, 9);
+        assertThat(loaded.get(3).getDescription()).isEqualTo("Café con leche");
+        assertThat(loaded.get(3).getCreationDate()).isEqualTo(LocalDate.of(2025, 1, 31));
+        assertThat(loaded.get(9).getAmount()).isEqualTo(2.75);
+        assertThat(loaded.get(9).getCategory()).isEqualTo(ExpenseCategory.TRANSPORT);
+    }
+
+    @Test
+    void testColumnsAccess() {
+        Path file = tempDir.resolve("ledger.bin");
+        new BinarySnapshotFormat().write(file, List.of(
+                Expense.restore(1, "Rent", 500.0, LocalDate.of(2025, 5, 1), ExpenseCategory.HOME)));
+
+        BinarySnapshotFormat.Columns columns = BinarySnapshotFormat.map(file);
+
+        assertThat(columns.size()).isEqualTo(1);
+        assertThat(columns.id(0)).isEqualTo(1);
+        assertThat(columns.categoryOrdinal(0)).isEqualTo((byte) ExpenseCategory.HOME.ordinal());
+        assertThat(columns.epochDay(0)).isEqualTo((int) LocalDate.of(2025, 5, 1).toEpochDay());
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Path file = tempDir.resolve("ledger.bin");
+        Files.writeString(file, "{ \"not\": \"binary\" }");
+
+        assertThatThrownBy(() -> BinarySnapshotFormat.map(file))
+                .isInstanceOf(ExpenseStorageException.class);
+    }
+
+    @Test
+    void testFormatForPath() {
+        assertThat(SnapshotFormat.forPath(Path.of("ledger.bin"))).isInstanceOf(BinarySnapshotFormat.class);
+        assertThat(SnapshotFormat.forPath(Path.of("ledger.json"))).isNotInstanceOf(BinarySnapshotFormat.class);
+    }
+
+    @Test
+    void testConvertLedgerBetweenFormats() {
+        ExpenseTracker json = new ExpenseTracker(tempDir.resolve("ledger.json"));
+        json.addExpense("Lunch", 12.0, ExpenseCategory.FOOD);
+        json.addExpense("Movie", 9.5, ExpenseCategory.ENTERTAINMENT);
+
+        assertThat(json.exportSnapshot(tempDir.resolve("ledger.bin"))).isEqualTo(2);
+
+        ExpenseTracker binary = new ExpenseTracker(tempDir.resolve("ledger.bin"));
+        assertThat(binary.listExpenses(new ExpenseQuery())).extracting(Expense::getDescription)
+                .containsExactly("Lunch", "Movie");
+        assertThat(binary.summaryExpenses(new ExpenseQuery())).isEqualTo(21.5);
+    }
+
+    @Test
+    void testReadsVersionOneWithDoubleAmounts() throws IOException {
+        Path file = tempDir.resolve("ledger.bin");
+        byte[] description = "Coffee".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(4 * Integer.BYTES + Integer.BYTES + Double.BYTES + Integer.BYTES + 1
+                + 2 * Integer.BYTES + description.length);
+        buffer.putInt(0x45585442).putInt(1).putInt(1).putInt(description.length);
+        buffer.putInt(7).putDouble(0.29).putInt((int) LocalDate.of(2025, 8, 14).toEpochDay()).put((byte) ExpenseCategory.FOOD.ordinal());
+        buffer.putInt(0).putInt(description.length).put(description);
+        Files.write(file, buffer.array());
+
+        Map<Integer, Expense> loaded = new HashMap<>();
+        assertThat(new BinarySnapshotFormat().read(file, loaded)).isEqualTo(7);
+        assertThat(loaded.get(7).getAmountMinor()).isEqualTo(29);
+        assertThat(loaded.get(7).getDescription()).isEqualTo("Coffee");
+
+        new BinarySnapshotFormat().write(file, loaded.values());
+        assertThat(BinarySnapshotFormat.map(file).amountMinor(0)).isEqualTo(29);
+    }
+}
@@ -0,0 +1,109 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.service.QueryPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ColumnarEngineTest {
+    @TempDir
+    Path tempDir;
+
+    private ExpenseTracker indexed;
+    private ExpenseTracker columnar;
+
+    @BeforeEach
+    void setUp() {
+        List<Expense> expenses = Ledgers.random(42, 500).uncategorized(50).expenses();
+        indexed = new ExpenseTracker(Ledgers.write(tempDir.resolve("indexed.json"), expenses), ExpenseTracker.Engine.INDEXED);
+        columnar = new ExpenseTracker(Ledgers.write(tempDir.resolve("columnar.json"), expenses), ExpenseTracker.Engine.COLUMNAR);
+    }
+
+    private static String row(Expense expense) {
+        return expense.getId() + " " + expense.getDescription() + " " + expense.getAmount() + " "
+                + expense.getCreationDate() + " " + expense.getCategory();
+    }
+
+    @AfterEach
+    void tearDown() {
+        indexed.close();
+        columnar.close();
+    }
+
+    private List<ExpenseQuery> queries() {
+        return List.of(
+                new ExpenseQuery(),
+                ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD, ExpenseCategory.MISC), null, null, null, null),
+                ExpenseQuery.makeQuery(null, 12.34, YearMonth.of(2024, 3), null, true),
+                ExpenseQuery.makeQuery(List.of(ExpenseCategory.TRANSPORT), null, null, Year.of(2025), false),
+                new ExpenseQuery().amountBetween(0.07, 50.0),
+                new ExpenseQuery().amountBetween(50.0, 10.0));
+    }
+
+    private void assertSameAnswers() {
+        for (ExpenseQuery query : queries()) {
+            assertThat(columnar.listExpenses(query)).extracting(ColumnarEngineTest::row)
+                    .containsExactlyElementsOf(indexed.listExpenses(query).stream().map(ColumnarEngineTest::row).toList());
+            assertThat(columnar.summaryExpenses(query)).isCloseTo(indexed.summaryExpenses(query), within(1e-6));
+        }
+    }
+
+    @Test
+    void testAnswersMatchIndexedEngine() {
+        assertSameAnswers();
+        assertThat(columnar.explain(new ExpenseQuery()).accessPath()).isEqualTo(QueryPlan.AccessPath.COLUMN_SCAN);
+    }
+
+    @Test
+    void testLargeIdsDoNotGrowTheIdArray() {
+        List<Expense> expenses = List.of(
+                Expense.restore(1, "First", 1.0, LocalDate.of(2024, 1, 1), ExpenseCategory.FOOD),
+                Expense.restore(1_500_000_000, "Legacy", 2.0, LocalDate.of(2024, 1, 2), ExpenseCategory.MISC),
+                Expense.restore(3, "Third", 3.0, LocalDate.of(2024, 1, 3), ExpenseCategory.FOOD));
+        try (ExpenseTracker tracker = new ExpenseTracker(Ledgers.write(tempDir.resolve("sparse.json"), expenses),
+                ExpenseTracker.Engine.COLUMNAR)) {
+            int added = tracker.addExpense("After legacy", 4.0, ExpenseCategory.MISC);
+            assertThat(added).isEqualTo(1_500_000_001);
+
+            tracker.updateExpense(1_500_000_000, "Legacy renamed");
+            tracker.deleteExpense(1);
+            for (int i = 0; i < 100; i++) {
+                tracker.addExpense("Filler " + i, 1.0, ExpenseCategory.HOME);
+            }
+            tracker.deleteExpense(3);
+
+            assertThat(tracker.listExpenses(new ExpenseQuery().containing("renamed"))).extracting(Expense::getId)
+                    .containsExactly(1_500_000_000);
+            assertThat(tracker.listExpenses(new ExpenseQuery())).hasSize(102)
+                    .extracting(Expense::getId).contains(1_500_000_000, 1_500_000_001).doesNotContain(1, 3);
+        }
+    }
+
+    @Test
+    void testMutationsKeepColumnsConsistent() {
+        for (ExpenseTracker tracker : List.of(indexed, columnar)) {
+            tracker.deleteExpense(1);
+            tracker.deleteExpense(250);
+            tracker.updateExpense(500, "Renamed");
+            tracker.inTransaction(() -> tracker.deleteExpense(2));
+        }
+        assertSameAnswers();
+        assertThat(columnar.listExpenses(new ExpenseQuery())).extracting(Expense::getId)
+                .doesNotContain(1, 2, 250)
+                .hasSize(497);
+        assertThat(columnar.listExpenses(new ExpenseQuery()).getLast().getDescription()).isEqualTo("Renamed");
+    }
+}
@@ -0,0 +1,133 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.command.AddExpenseCommand;
+import dev.shoangenes.expensetracker.command.CommandBatch;
+import dev.shoangenes.expensetracker.command.DeleteExpenseCommand;
+import dev.shoangenes.expensetracker.command.UpdateExpenseCommand;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.storage.ExpenseStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class CommandBatchTest {
+    @TempDir
+    Path tempDir;
+
+    /** In-memory store counting the calls that reach it. */
+    private static class CountingStore implements ExpenseStore {
+        final Map<Integer, Expense> expenses = new HashMap<>();
+        int writes;
+        int puts;
+
+        @Override
+        public int load(Map<Integer, Expense> into) {
+            into.putAll(expenses);
+            return expenses.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+        }
+
+        @Override
+        public void put(Expense expense) {
+            puts++;
+            expenses.put(expense.getId(), expense);
+        }
+
+        @Override
+        public void remove(int id) {
+            expenses.remove(id);
+        }
+
+        @Override
+        public void write(Collection<Expense> puts, Collection<Integer> removedIds) {
+            writes++;
+            puts.forEach(expense -> expenses.put(expense.getId(), expense));
+            removedIds.forEach(expenses::remove);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    void testBatchIsAppliedInOrderWithOneWrite() {
+        CountingStore store = new CountingStore();
+        try (ExpenseTracker tracker = new ExpenseTracker(store)) {
+            tracker.addExpense("Existing", 5.0, ExpenseCategory.MISC);
+            store.writes = 0;
+            store.puts = 0;
+
+            List<Object> results = new CommandBatch(tracker)
+                    .add(new AddExpenseCommand(tracker, "Lunch", 12.5, ExpenseCategory.FOOD))
+                    .add(new AddExpenseCommand(tracker, "Bus", 2.0, ExpenseCategory.TRANSPORT))
+                    .add(new UpdateExpenseCommand(tracker, 2, "Team lunch"))
+                    .add(new DeleteExpenseCommand(tracker, 1))
+                    .execute();
+
+            assertThat(results).containsExactly(2, 3, null, null);
+            assertThat(store.writes).isEqualTo(1);
+            assertThat(store.puts).isZero();
+            assertThat(store.expenses.values()).extracting(Expense::getId, Expense::getDescription)
+                    .containsExactlyInAnyOrder(tuple(2, "Team lunch"), tuple(3, "Bus"));
+        }
+    }
+
+    @Test
+    void testInvalidCommandsRejectTheWholeBatchBeforeAnythingRuns() {
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            CommandBatch batch = new CommandBatch(tracker)
+                    .add(new AddExpenseCommand(tracker, "Lunch", 12.5, ExpenseCategory.FOOD))
+                    .add(new AddExpenseCommand(tracker, "Refund", -3.0, ExpenseCategory.FOOD));
+
+            assertThatThrownBy(batch::execute)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Command 2: Amount must be positive");
+            assertThatThrownBy(() -> new CommandBatch(tracker).add(new UpdateExpenseCommand(tracker, 1, " ")).execute())
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Command 1");
+            assertThat(tracker.listExpenses(new ExpenseQuery())).isEmpty();
+        }
+    }
+
+    @Test
+    void testFailingCommandRollsBackTheCommandsBeforeIt() {
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            tracker.addExpense("Existing", 5.0, ExpenseCategory.MISC);
+            CommandBatch batch = new CommandBatch(tracker)
+                    .add(new DeleteExpenseCommand(tracker, 1))
+                    .add(new AddExpenseCommand(tracker, "Lunch", 12.5, ExpenseCategory.FOOD))
+                    .add(new UpdateExpenseCommand(tracker, 1, "Deleted above"));
+
+            assertThatThrownBy(batch::execute)
+                    .isInstanceOf(NoSuchElementException.class)
+                    .hasMessage("Command 3: No such expense with id: 1");
+            assertThat(tracker.listExpenses(new ExpenseQuery()))
+                    .extracting(Expense::getId, Expense::getDescription)
+                    .containsExactly(tuple(1, "Existing"));
+        }
+        try (ExpenseTracker reopened = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            assertThat(reopened.listExpenses(new ExpenseQuery())).extracting(Expense::getId).containsExactly(1);
+        }
+    }
+
+    @Test
+    void testCommandsOfAnotherLedgerAreRefused() {
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("first.json"));
+             ExpenseTracker other = new ExpenseTracker(tempDir.resolve("second.json"))) {
+            assertThatThrownBy(() -> new CommandBatch(tracker).add(new DeleteExpenseCommand(other, 1)))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThat(new CommandBatch(tracker).execute()).isEmpty();
+        }
+    }
+}
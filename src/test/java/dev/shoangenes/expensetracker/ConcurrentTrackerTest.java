@@ -0,0 +1,155 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ConcurrentTrackerTest {
+    private static final int WRITERS = 4;
+    private static final int ADDS_PER_WRITER = 150;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testConcurrentWritersGetDistinctIdsAndReadersSeeConsistentSnapshots() throws Exception {
+        for (ExpenseTracker.Engine engine : ExpenseTracker.Engine.values()) {
+            try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve(engine + ".json"), engine)) {
+                ExecutorService pool = Executors.newFixedThreadPool(WRITERS + 2);
+                CountDownLatch start = new CountDownLatch(1);
+                AtomicBoolean writing = new AtomicBoolean(true);
+                List<Future<?>> writers = new ArrayList<>();
+                for (int w = 0; w < WRITERS; w++) {
+                    writers.add(pool.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < ADDS_PER_WRITER; i++) {
+                            tracker.addExpense("Expense " + i, 1.0, ExpenseCategory.FOOD);
+                        }
+                        return null;
+                    }));
+                }
+                List<Future<Integer>> readers = new ArrayList<>();
+                for (int r = 0; r < 2; r++) {
+                    readers.add(pool.submit(() -> {
+                        start.await();
+                        int reads = 0;
+                        while (writing.get()) {
+                            // Ids are handed out and inserted in the same critical section, so every snapshot is 1..n
+                            List<Integer> ids = tracker.listExpenses(new ExpenseQuery()).stream().map(Expense::getId).toList();
+                            assertThat(ids).containsExactlyElementsOf(IntStream.rangeClosed(1, ids.size()).boxed().toList());
+                            GroupedSummary.Group total = tracker.summaryByGroup(new ExpenseQuery(), Set.of()).groups()
+                                    .stream().findFirst().orElse(null);
+                            if (total != null) {
+                                assertThat(total.sumMinor()).isEqualTo(total.count() * 100);
+                            }
+                            reads++;
+                        }
+                        return reads;
+                    }));
+                }
+
+                start.countDown();
+                for (Future<?> writer : writers) {
+                    writer.get(60, TimeUnit.SECONDS);
+                }
+                writing.set(false);
+                for (Future<Integer> reader : readers) {
+                    assertThat(reader.get(60, TimeUnit.SECONDS)).isPositive();
+                }
+                pool.shutdown();
+
+                int expected = WRITERS * ADDS_PER_WRITER;
+                assertThat(tracker.listExpenses(new ExpenseQuery())).extracting(Expense::getId)
+                        .containsExactlyElementsOf(IntStream.rangeClosed(1, expected).boxed().toList());
+                assertThat(tracker.summaryExpenses(new ExpenseQuery())).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void testReturnedExpensesAreNotChangedByLaterUpdates() {
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            tracker.addExpense("Lunch", 10.0, ExpenseCategory.FOOD);
+            Expense before = tracker.listExpenses(new ExpenseQuery()).get(0);
+
+            tracker.updateExpense(before.getId(), "Dinner");
+
+            assertThat(before.getDescription()).isEqualTo("Lunch");
+            assertThat(tracker.listExpenses(new ExpenseQuery()).get(0).getDescription()).isEqualTo("Dinner");
+        }
+    }
+
+    @Test
+    void testTrackersAllocateIdsIndependentlyOfTheStaticCounter() {
+        Expense.setLastIdSaved(1000);
+        try (ExpenseTracker first = new ExpenseTracker(tempDir.resolve("first.json"));
+             ExpenseTracker second = new ExpenseTracker(tempDir.resolve("second.json"))) {
+            first.addExpense("A", 1.0, ExpenseCategory.MISC);
+            second.addExpense("B", 1.0, ExpenseCategory.MISC);
+            first.addExpense("C", 1.0, ExpenseCategory.MISC);
+
+            assertThat(first.listExpenses(new ExpenseQuery())).extracting(Expense::getId).containsExactly(1, 2);
+            assertThat(second.listExpenses(new ExpenseQuery())).extracting(Expense::getId).containsExactly(1);
+            assertThat(Expense.getLastIdSaved()).isEqualTo(1000);
+        }
+    }
+
+    @Test
+    void testQueriesSeeCommittedStateWhileATransactionIsOpen() throws Exception {
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            tracker.addExpense("Committed", 5.0, ExpenseCategory.MISC);
+            ExecutorService other = Executors.newSingleThreadExecutor();
+
+            tracker.begin();
+            tracker.addExpense("Pending", 7.0, ExpenseCategory.MISC);
+            tracker.updateExpense(1, "Renamed");
+            Future<List<Expense>> read = other.submit(() -> tracker.listExpenses(new ExpenseQuery()));
+            assertThat(read.get(10, TimeUnit.SECONDS)).extracting(Expense::getDescription).containsExactly("Committed");
+            assertThat(other.submit(() -> tracker.summaryExpenses(new ExpenseQuery())).get(10, TimeUnit.SECONDS))
+                    .isEqualTo(5.0);
+
+            tracker.commit();
+            assertThat(other.submit(() -> tracker.listExpenses(new ExpenseQuery())).get(10, TimeUnit.SECONDS))
+                    .extracting(Expense::getDescription).containsExactly("Renamed", "Pending");
+            other.shutdown();
+        }
+    }
+
+    @Test
+    void testTransactionsBelongToTheThreadThatOpenedThem() throws Exception {
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            tracker.begin();
+            tracker.addExpense("Pending", 5.0, ExpenseCategory.MISC);
+
+            ExecutorService other = Executors.newSingleThreadExecutor();
+            Future<?> commit = other.submit(tracker::commit);
+            assertThatThrownBy(() -> commit.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+
+            Future<Integer> write = other.submit(() -> tracker.addExpense("Waiting", 1.0, ExpenseCategory.MISC));
+            assertThatThrownBy(() -> write.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+            tracker.commit();
+            assertThat(write.get(10, TimeUnit.SECONDS)).isEqualTo(2);
+            other.shutdown();
+        }
+    }
+}
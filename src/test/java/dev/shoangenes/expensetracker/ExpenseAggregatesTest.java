@@ -0,0 +1,106 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.service.QueryPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ExpenseAggregatesTest {
+    @TempDir
+    Path tempDir;
+
+    private Path ledger;
+    private ExpenseTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        ledger = Ledgers.write(tempDir.resolve("ledger.json"), Ledgers.random(7, 400).uncategorized(40).expenses());
+        tracker = new ExpenseTracker(ledger);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.close();
+    }
+
+    private List<ExpenseQuery> aggregatedQueries() {
+        return List.of(
+                new ExpenseQuery(),
+                ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD, ExpenseCategory.MISC), null, null, null, null),
+                ExpenseQuery.makeQuery(null, null, YearMonth.of(2024, 3), null, null),
+                ExpenseQuery.makeQuery(List.of(ExpenseCategory.TRANSPORT), null, null, Year.of(2025), null),
+                new ExpenseQuery().createdBetween(LocalDate.of(2024, 11, 1), LocalDate.of(2025, 2, 28)),
+                new ExpenseQuery().createdBetween(null, LocalDate.of(2024, 12, 31)));
+    }
+
+    /** Total of a query computed expense by expense. */
+    private double scanned(ExpenseQuery query) {
+        return tracker.listExpenses(query).stream().mapToDouble(Expense::getAmount).sum();
+    }
+
+    private void assertTotalsMatchScan() {
+        for (ExpenseQuery query : aggregatedQueries()) {
+            assertThat(tracker.explainSummary(query).accessPath()).isEqualTo(QueryPlan.AccessPath.AGGREGATES);
+            assertThat(tracker.summaryExpenses(query)).isCloseTo(scanned(query), within(1e-6));
+        }
+    }
+
+    @Test
+    void testWholeMonthQueriesAreAnsweredFromTotals() {
+        assertTotalsMatchScan();
+        assertThat(tracker.explainSummary(new ExpenseQuery()).toString())
+                .isEqualTo("AGGREGATES: ~8 running totals [all ORDER BY id]");
+    }
+
+    @Test
+    void testOtherQueriesFallBackToScan() {
+        List<ExpenseQuery> queries = List.of(
+                ExpenseQuery.makeQuery(null, 50.0, YearMonth.of(2024, 3), null, null),
+                new ExpenseQuery().amountBetween(null, 10.0),
+                new ExpenseQuery().createdBetween(LocalDate.of(2024, 3, 15), LocalDate.of(2024, 4, 30)));
+        for (ExpenseQuery query : queries) {
+            assertThat(tracker.explainSummary(query).accessPath()).isNotEqualTo(QueryPlan.AccessPath.AGGREGATES);
+            assertThat(tracker.summaryExpenses(query)).isCloseTo(scanned(query), within(1e-6));
+        }
+    }
+
+    @Test
+    void testTotalsFollowMutations() {
+        tracker.addExpense("Lunch", 12.5, ExpenseCategory.FOOD);
+        tracker.deleteExpense(1);
+        tracker.deleteExpense(40);
+        tracker.updateExpense(2, "Renamed");
+        assertTotalsMatchScan();
+
+        tracker.begin();
+        tracker.deleteExpense(3);
+        tracker.addExpense("Taxi", 30.0, ExpenseCategory.TRANSPORT);
+        assertTotalsMatchScan();
+        tracker.rollback();
+        assertTotalsMatchScan();
+    }
+
+    @Test
+    void testTotalsFollowOtherWriters() {
+        try (ExpenseTracker other = new ExpenseTracker(ledger)) {
+            other.deleteExpense(5);
+            other.addExpense("Books", 80.0, ExpenseCategory.EDUCATION);
+        }
+        tracker.refresh();
+        assertTotalsMatchScan();
+        assertThat(tracker.listExpenses(new ExpenseQuery())).extracting(Expense::getId).doesNotContain(5);
+    }
+}
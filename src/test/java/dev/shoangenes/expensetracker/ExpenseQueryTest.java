@@ -166,4 +166,10 @@ public class ExpenseQueryTest {
             assertThat(result.get(i).getId()).isGreaterThan(result.get(i-1).getId());
         }
     }
+
+    @Test
+    void testParallelModeIsShownInTheQuery() {
+        assertThat(new ExpenseQuery().parallel(true).isParallel()).isTrue();
+        assertThat(new ExpenseQuery().parallel(true).toString()).isEqualTo("all ORDER BY id PARALLEL");
+    }
 }
@@ -15,6 +15,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -29,6 +31,8 @@ public class ExpenseTrackerTest {
 
         try {
             Files.deleteIfExists(Path.of("expense_tracker.json"));
+            Files.deleteIfExists(Path.of("expense_tracker.json.journal"));
+            Files.deleteIfExists(Path.of("expense_tracker.json.lock"));
         } catch (IOException e) {
             // Ignore cleanup errors
         }
@@ -45,6 +49,8 @@ public class ExpenseTrackerTest {
     static void tearDown() throws IOException {
         try {
             Files.deleteIfExists(Path.of("expense_tracker.json"));
+            Files.deleteIfExists(Path.of("expense_tracker.json.journal"));
+            Files.deleteIfExists(Path.of("expense_tracker.json.lock"));
         } catch (IOException e) {
             // Ignore cleanup errors
         }
@@ -174,4 +180,91 @@ public class ExpenseTrackerTest {
         assertThatThrownBy(() -> testExpenses.updateExpense(999, "Descripción nueva"))
                 .isInstanceOf(NoSuchElementException.class);
     }
+
+    @Test
+    void testMutationsSurviveReload() {
+        testExpenses.updateExpense(2, "Bus");
+        testExpenses.deleteExpense(3);
+
+        ExpenseTracker reloaded = new ExpenseTracker();
+        List<Expense> expenses = reloaded.listExpenses(new ExpenseQuery());
+
+        assertThat(expenses).extracting(Expense::getId).containsExactly(1, 2, 4, 5);
+        assertThat(expenses.get(1).toString()).contains("Bus");
+        assertThat(reloaded.summaryExpenses(new ExpenseQuery())).isEqualTo(12.0 + 5.75 + 20.0 + 30.0);
+    }
+
+    @Test
+    void testTransactionCommit() {
+        testExpenses.inTransaction(() -> {
+            testExpenses.addExpense("Cena", 15.0, ExpenseCategory.FOOD);
+            testExpenses.updateExpense(6, "Cena tarde");
+            testExpenses.deleteExpense(1);
+        });
+
+        List<Expense> expenses = new ExpenseTracker().listExpenses(new ExpenseQuery());
+        assertThat(expenses).extracting(Expense::getId).containsExactly(2, 3, 4, 5, 6);
+        assertThat(expenses.getLast().getDescription()).isEqualTo("Cena tarde");
+    }
+
+    @Test
+    void testTransactionRollback() {
+        assertThatThrownBy(() -> testExpenses.inTransaction(() -> {
+            testExpenses.addExpense("Cena", 15.0, ExpenseCategory.FOOD);
+            testExpenses.updateExpense(2, "Taxi");
+            testExpenses.deleteExpense(1);
+            testExpenses.deleteExpense(99);
+        })).isInstanceOf(NoSuchElementException.class);
+
+        List<Expense> expenses = testExpenses.listExpenses(new ExpenseQuery());
+        assertThat(expenses).extracting(Expense::getId).containsExactly(1, 2, 3, 4, 5);
+        assertThat(expenses.get(1).getDescription()).isEqualTo("Transporte");
+        assertThat(new ExpenseTracker().listExpenses(new ExpenseQuery())).hasSize(5);
+    }
+
+    @Test
+    void testCommitWithoutTransaction() {
+        assertThatThrownBy(() -> testExpenses.commit()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testIndexedQueriesFollowMutations() {
+        YearMonth thisMonth = YearMonth.now();
+        ExpenseQuery foodThisMonth = ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD), null, thisMonth, null, null);
+
+        testExpenses.deleteExpense(1);
+        testExpenses.addExpense("Cena", 15.0, ExpenseCategory.FOOD);
+        assertThat(testExpenses.listExpenses(foodThisMonth)).extracting(Expense::getId).containsExactly(3, 6);
+
+        assertThatThrownBy(() -> testExpenses.inTransaction(() -> {
+            testExpenses.deleteExpense(3);
+            testExpenses.addExpense("Almuerzo", 9.0, ExpenseCategory.FOOD);
+            testExpenses.deleteExpense(99);
+        })).isInstanceOf(NoSuchElementException.class);
+        assertThat(testExpenses.summaryExpenses(foodThisMonth)).isEqualTo(2.50 + 15.0);
+    }
+
+    @Test
+    void testDisjointDateFiltersMatchNothing() {
+        YearMonth thisMonth = YearMonth.now();
+        Year otherYear = Year.of(thisMonth.getYear() - 1);
+
+        assertThat(testExpenses.listExpenses(ExpenseQuery.makeQuery(null, null, thisMonth, otherYear, null))).isEmpty();
+        assertThat(testExpenses.listExpenses(ExpenseQuery.makeQuery(null, null, null, Year.from(thisMonth), null)))
+                .hasSize(5);
+    }
+
+    @Test
+    void testSummariesAreExactInMinorUnits() {
+        for (int i = 0; i < 10; i++) {
+            testExpenses.addExpense("Chicle", 0.1, ExpenseCategory.MISC);
+        }
+        ExpenseQuery misc = ExpenseQuery.makeQuery(List.of(ExpenseCategory.MISC), null, null, null, null);
+
+        assertThat(testExpenses.summaryExpensesMinor(misc)).isEqualTo(100);
+        assertThat(testExpenses.summaryExpenses(misc)).isEqualTo(1.0);
+        assertThat(testExpenses.summaryExpensesMinor(new ExpenseQuery().amountBetween(0.05, 0.1))).isEqualTo(100);
+        assertThatThrownBy(() -> testExpenses.addExpense("Nada", 0.004, ExpenseCategory.MISC))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
 }
@@ -0,0 +1,174 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseExporter;
+import dev.shoangenes.expensetracker.service.ExpenseImporter;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.storage.BinarySnapshotFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ExportTest {
+    @TempDir
+    Path tempDir;
+
+    private static void addSamples(ExpenseTracker tracker) {
+        tracker.addExpense("Lunch", 12.5, ExpenseCategory.FOOD);
+        tracker.addExpense("Bus, \"downtown\"", 2.0, ExpenseCategory.TRANSPORT);
+        tracker.addExpense("Rent", 700.0, ExpenseCategory.HOME);
+        tracker.addExpense("Gift", 0.05, null);
+    }
+
+    private static List<Object> rows(ExpenseTracker tracker) {
+        return tracker.listExpenses(new ExpenseQuery()).stream()
+                .map(e -> List.of(e.getDescription(), e.getAmountMinor(), e.getCreationDate(), String.valueOf(e.getCategory())))
+                .map(Object.class::cast)
+                .toList();
+    }
+
+    @Test
+    void testCsvAndJsonLinesExportsCanBeImportedBack() {
+        for (ExpenseExporter.Format format : List.of(ExpenseExporter.Format.CSV, ExpenseExporter.Format.JSONL)) {
+            Path source = tempDir.resolve(format + ".json");
+            Path export = tempDir.resolve(format == ExpenseExporter.Format.CSV ? "export.csv" : "export.jsonl");
+            try (ExpenseTracker tracker = new ExpenseTracker(source);
+                 ExpenseTracker copy = new ExpenseTracker(tempDir.resolve(format + "-copy.json"))) {
+                addSamples(tracker);
+
+                assertThat(new ExpenseExporter(tracker).export(new ExpenseQuery(), ExpenseExporter.Format.forPath(export), export))
+                        .isEqualTo(4);
+                ExpenseImporter.Result result = new ExpenseImporter(copy)
+                        .importFile(export, ExpenseImporter.Format.forPath(export), tempDir.resolve("rejects"));
+
+                assertThat(result).isEqualTo(new ExpenseImporter.Result(4, 0));
+                assertThat(rows(copy)).containsExactlyInAnyOrderElementsOf(rows(tracker));
+            }
+        }
+    }
+
+    @Test
+    void testCsvDescriptionsWithLineBreaksCanBeImportedBack() throws IOException {
+        Path export = tempDir.resolve("export.csv");
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"));
+             ExpenseTracker copy = new ExpenseTracker(tempDir.resolve("copy.json"))) {
+            tracker.addExpense("Dinner\nwith \"Ann\",\n\nand Bob", 40.0, ExpenseCategory.FOOD);
+            tracker.addExpense("Bus", 2.0, ExpenseCategory.TRANSPORT);
+            tracker.addExpense("Quote \"\nat the end\"", 3.0, null);
+
+            new ExpenseExporter(tracker).export(new ExpenseQuery(), ExpenseExporter.Format.CSV, export);
+            assertThat(Files.readAllLines(export)).hasSize(8);
+            ExpenseImporter.Result result = new ExpenseImporter(copy)
+                    .importFile(export, ExpenseImporter.Format.CSV, tempDir.resolve("rejects"));
+
+            assertThat(result).isEqualTo(new ExpenseImporter.Result(3, 0));
+            assertThat(rows(copy)).containsExactlyInAnyOrderElementsOf(rows(tracker));
+        }
+    }
+
+    @Test
+    void testCsvExportFormatsAmountsAndQuotesFields() throws IOException {
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            addSamples(tracker);
+            LocalDate today = LocalDate.now();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            long written = new ExpenseExporter(tracker).export(new ExpenseQuery().inCategories(List.of(ExpenseCategory.TRANSPORT, ExpenseCategory.FOOD)),
+                    ExpenseExporter.Format.CSV, Channels.newChannel(out));
+
+            assertThat(written).isEqualTo(2);
+            assertThat(out.toString(StandardCharsets.UTF_8).lines().toList()).containsExactlyInAnyOrder(
+                    "id,date,category,description,amount",
+                    "1," + today + ",FOOD,Lunch,12.50",
+                    "2," + today + ",TRANSPORT,\"Bus, \"\"downtown\"\"\",2.00");
+            assertThatThrownBy(() -> new ExpenseExporter(tracker).export(new ExpenseQuery(), ExpenseExporter.Format.BINARY, Channels.newChannel(out)))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testBinaryExportIsAReadableSnapshot() {
+        for (String ledger : List.of("ledger.json", "ledger.h2", "ledger.parts")) {
+            Path export = tempDir.resolve(ledger + ".bin");
+            try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve(ledger))) {
+                addSamples(tracker);
+
+                long written = new ExpenseExporter(tracker)
+                        .export(new ExpenseQuery().amountBetween(1.0, null), ExpenseExporter.Format.forPath(export), export);
+
+                assertThat(written).isEqualTo(3);
+                Map<Integer, Expense> read = new HashMap<>();
+                assertThat(new BinarySnapshotFormat().read(export, read)).isEqualTo(3);
+                assertThat(read.values()).extracting(Expense::getDescription, Expense::getAmountMinor)
+                        .containsExactlyInAnyOrder(tuple("Lunch", 1250L), tuple("Bus, \"downtown\"", 200L), tuple("Rent", 70000L));
+            }
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).noneMatch(file -> file.getFileName().toString().contains(".column"));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    void testStreamsApplyFiltersOnEveryEngineAndStore() {
+        List<ExpenseTracker> trackers = List.of(
+                new ExpenseTracker(tempDir.resolve("indexed.json"), ExpenseTracker.Engine.INDEXED),
+                new ExpenseTracker(tempDir.resolve("columnar.json"), ExpenseTracker.Engine.COLUMNAR),
+                new ExpenseTracker(tempDir.resolve("ledger.h2")),
+                new ExpenseTracker(tempDir.resolve("ledger.parts")));
+        for (ExpenseTracker tracker : trackers) {
+            try (tracker) {
+                addSamples(tracker);
+                ExpenseQuery query = new ExpenseQuery().amountBetween(1.0, 100.0).containing("U").page(0, 1);
+
+                try (Stream<Expense> matches = tracker.streamExpenses(query)) {
+                    assertThat(matches).extracting(Expense::getDescription)
+                            .containsExactlyInAnyOrder("Lunch", "Bus, \"downtown\"");
+                }
+                Iterator<Expense> all = tracker.iterateExpenses(new ExpenseQuery());
+                assertThat(all).toIterable().hasSize(4);
+                tracker.addExpense("After", 1.0, ExpenseCategory.MISC);
+            }
+        }
+    }
+
+    @Test
+    void testOpenStreamsHoldOffMutationsUntilClosed() throws Exception {
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            addSamples(tracker);
+            ExecutorService other = Executors.newSingleThreadExecutor();
+
+            Future<?> add;
+            try (Stream<Expense> matches = tracker.streamExpenses(new ExpenseQuery())) {
+                add = other.submit(() -> tracker.addExpense("Late", 1.0, ExpenseCategory.MISC));
+                assertThatThrownBy(() -> add.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+                assertThat(matches.count()).isEqualTo(4);
+            }
+            add.get(10, TimeUnit.SECONDS);
+            other.shutdown();
+            assertThat(tracker.listExpenses(new ExpenseQuery())).hasSize(5);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.storage.ExpenseJournal;
+import dev.shoangenes.expensetracker.storage.ExpenseStore;
+import dev.shoangenes.expensetracker.storage.FileExpenseStore;
+import dev.shoangenes.expensetracker.storage.GroupCommitPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class FileExpenseStoreTest {
+    @TempDir
+    Path tempDir;
+
+    private Expense expense(int id) {
+        return Expense.restore(id, "Expense " + id, id, LocalDate.of(2025, 1, 1), ExpenseCategory.MISC);
+    }
+
+    private long journalLines() throws IOException {
+        Path journal = tempDir.resolve("ledger.json.journal");
+        return Files.exists(journal) ? Files.readAllLines(journal).size() : 0;
+    }
+
+    @Test
+    void testBatchIsOneUnit() {
+        Path ledger = tempDir.resolve("ledger.json");
+        try (FileExpenseStore store = new FileExpenseStore(ledger)) {
+            store.write(List.of(expense(1), expense(2), expense(3)), List.of());
+            store.write(List.of(expense(4)), List.of(2));
+        }
+
+        Map<Integer, Expense> loaded = new HashMap<>();
+        try (FileExpenseStore store = new FileExpenseStore(ledger)) {
+            assertThat(store.load(loaded)).isEqualTo(4);
+        }
+        assertThat(loaded).containsOnlyKeys(1, 3, 4);
+    }
+
+    @Test
+    void testGroupCommitWritesWhenBatchIsFull() throws IOException {
+        GroupCommitPolicy policy = new GroupCommitPolicy(3, Duration.ofHours(1));
+        try (FileExpenseStore store = new FileExpenseStore(tempDir.resolve("ledger.json"), policy)) {
+            store.put(expense(1));
+            store.put(expense(2));
+            assertThat(journalLines()).isZero();
+
+            store.remove(1);
+            assertThat(journalLines()).isEqualTo(3);
+
+            store.put(expense(3));
+            store.flush();
+            assertThat(journalLines()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void testGroupCommitWritesAfterLatencyCap() throws Exception {
+        GroupCommitPolicy policy = new GroupCommitPolicy(1000, Duration.ofMillis(20));
+        try (FileExpenseStore store = new FileExpenseStore(tempDir.resolve("ledger.json"), policy)) {
+            store.put(expense(1));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (journalLines() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(journalLines()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void testCloseWritesBufferedRecords() throws IOException {
+        GroupCommitPolicy policy = new GroupCommitPolicy(1000, Duration.ofHours(1));
+        try (FileExpenseStore store = new FileExpenseStore(tempDir.resolve("ledger.json"), policy)) {
+            store.put(expense(1));
+        }
+
+        Map<Integer, Expense> loaded = new HashMap<>();
+        try (FileExpenseStore store = new FileExpenseStore(tempDir.resolve("ledger.json"))) {
+            store.load(loaded);
+        }
+        assertThat(loaded).containsOnlyKeys(1);
+    }
+
+    /** Records the changes a refresh reports. */
+    private static ExpenseStore.ChangeListener recorder(List<String> changes) {
+        return new ExpenseStore.ChangeListener() {
+            @Override
+            public void onPut(Expense expense) {
+                changes.add("put " + expense.getId());
+            }
+
+            @Override
+            public void onRemove(int id) {
+                changes.add("remove " + id);
+            }
+
+            @Override
+            public void onReload(Map<Integer, Expense> expenses) {
+                changes.add("reload");
+            }
+        };
+    }
+
+    @Test
+    void testRefreshSkipsRecordsOfTheSameStore() {
+        GroupCommitPolicy policy = new GroupCommitPolicy(1000, Duration.ofHours(1));
+        Path ledger = tempDir.resolve("ledger.json");
+        List<String> changes = new ArrayList<>();
+        try (FileExpenseStore store = new FileExpenseStore(ledger, policy);
+             FileExpenseStore other = new FileExpenseStore(ledger)) {
+            store.load(new HashMap<>());
+            other.load(new HashMap<>());
+
+            store.put(expense(1));
+            store.flush();
+            store.refresh(recorder(changes));
+            assertThat(changes).isEmpty();
+
+            store.put(expense(2));
+            other.remove(1);
+            store.flush();
+            other.put(expense(3));
+            store.refresh(recorder(changes));
+            assertThat(changes).containsExactly("remove 1", "put 3");
+        }
+    }
+
+    @Test
+    void testStoreCallsInsideTheLedgerLockDoNotDeadlock() {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try (FileExpenseStore store = new FileExpenseStore(tempDir.resolve("ledger.json"))) {
+                store.load(new HashMap<>());
+                Thread writer = new Thread(() -> store.put(expense(1)));
+                store.withLock(() -> {
+                    writer.start();
+                    // The writer waits for the ledger lock held here
+                    while (writer.getState() != Thread.State.WAITING) {
+                        Thread.onSpinWait();
+                    }
+                    store.refresh(recorder(new ArrayList<>()));
+                });
+                writer.join();
+            }
+        });
+        Map<Integer, Expense> loaded = new HashMap<>();
+        try (FileExpenseStore store = new FileExpenseStore(tempDir.resolve("ledger.json"))) {
+            store.load(loaded);
+        }
+        assertThat(loaded).containsOnlyKeys(1);
+    }
+
+    @Test
+    void testFlushForcesRecordsWrittenRightAway() throws IOException {
+        int[] forces = {0};
+        try (ExpenseJournal journal = new ExpenseJournal(tempDir.resolve("ledger.json.journal")) {
+            @Override
+            protected void force(FileChannel channel) throws IOException {
+                forces[0]++;
+                super.force(channel);
+            }
+        }) {
+            journal.flush();
+            assertThat(forces[0]).isZero();
+
+            journal.appendPut(expense(1));
+            journal.appendDelete(1);
+            assertThat(journalLines()).isEqualTo(2);
+            assertThat(forces[0]).isZero();
+
+            journal.flush();
+            assertThat(forces[0]).isEqualTo(1);
+            journal.flush();
+            assertThat(forces[0]).isEqualTo(1);
+
+            journal.appendPut(expense(2));
+        }
+        // Closing flushes what is left
+        assertThat(forces[0]).isEqualTo(2);
+    }
+
+    @Test
+    void testInvalidPolicy() {
+        assertThatThrownBy(() -> new GroupCommitPolicy(0, Duration.ofMillis(5)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GroupCommitPolicy(10, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,171 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+import dev.shoangenes.expensetracker.model.GroupedSummary.Dimension;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class GroupedSummaryTest {
+    @TempDir
+    Path tempDir;
+
+    private final List<Expense> expenses = new ArrayList<>();
+    private final List<ExpenseTracker> trackers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        expenses.addAll(Ledgers.random(5, 400).dates(LocalDate.of(2023, 11, 1), 150).amountsMinor(1, 10_000)
+                .uncategorized(10).expenses());
+        trackers.addAll(Ledgers.openOnEveryBackend(tempDir, expenses));
+    }
+
+    @AfterEach
+    void tearDown() {
+        trackers.forEach(ExpenseTracker::close);
+    }
+
+    private static List<ExpenseQuery> queries() {
+        return List.of(
+                new ExpenseQuery(),
+                ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD, ExpenseCategory.HOME), null, null, null, null),
+                ExpenseQuery.makeQuery(null, 25.0, null, Year.of(2024), null),
+                ExpenseQuery.makeQuery(null, null, YearMonth.of(2023, 12), null, null).amountBetween(null, 60.0),
+                new ExpenseQuery().page(0, 3));
+    }
+
+    private static List<Set<Dimension>> groupings() {
+        return List.of(
+                EnumSet.noneOf(Dimension.class),
+                EnumSet.of(Dimension.CATEGORY),
+                EnumSet.of(Dimension.MONTH),
+                EnumSet.of(Dimension.YEAR),
+                EnumSet.of(Dimension.CATEGORY, Dimension.MONTH),
+                EnumSet.allOf(Dimension.class));
+    }
+
+    /**
+     * Groups the matching expenses one map entry per group, the way the summary is specified
+     */
+    private List<GroupedSummary.Group> bruteForce(ExpenseQuery query, Set<Dimension> dimensions) {
+        Comparator<GroupedSummary.Group> order = Comparator
+                .comparing(GroupedSummary.Group::year, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(GroupedSummary.Group::month, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(GroupedSummary.Group::category, Comparator.nullsLast(Comparator.naturalOrder()));
+        Map<List<Object>, List<Expense>> groups = new TreeMap<>(Comparator.comparing(key -> groupOf(key, 0, 0, 0, 0), order));
+        for (Expense expense : expenses) {
+            if (query.getFilter().test(expense)) {
+                YearMonth month = YearMonth.from(expense.getCreationDate());
+                List<Object> key = new ArrayList<>();
+                key.add(dimensions.contains(Dimension.CATEGORY) ? expense.getCategory() : null);
+                key.add(dimensions.contains(Dimension.MONTH) ? month : null);
+                key.add(dimensions.contains(Dimension.MONTH) || dimensions.contains(Dimension.YEAR) ? Year.of(month.getYear()) : null);
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(expense);
+            }
+        }
+        return groups.entrySet().stream()
+                .map(entry -> groupOf(entry.getKey(), entry.getValue().size(),
+                        entry.getValue().stream().mapToLong(Expense::getAmountMinor).sum(),
+                        entry.getValue().stream().mapToLong(Expense::getAmountMinor).min().orElseThrow(),
+                        entry.getValue().stream().mapToLong(Expense::getAmountMinor).max().orElseThrow()))
+                .toList();
+    }
+
+    private static GroupedSummary.Group groupOf(List<Object> key, long count, long sum, long min, long max) {
+        return new GroupedSummary.Group((ExpenseCategory) key.get(0), (YearMonth) key.get(1), (Year) key.get(2), count, sum, min, max);
+    }
+
+    @Test
+    void testEveryStoreAndEngineMatchesBruteForce() {
+        for (ExpenseTracker tracker : trackers) {
+            for (ExpenseQuery query : queries()) {
+                for (Set<Dimension> dimensions : groupings()) {
+                    assertThat(tracker.summaryByGroup(query, dimensions).groups())
+                            .as("%s grouped by %s", query, dimensions)
+                            .containsExactlyElementsOf(bruteForce(query, dimensions));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testGroupTotalsAddUpToTheSummary() {
+        for (ExpenseTracker tracker : trackers) {
+            ExpenseQuery query = ExpenseQuery.makeQuery(null, 10.0, null, null, null);
+            GroupedSummary summary = tracker.summaryByGroup(query, EnumSet.of(Dimension.CATEGORY, Dimension.MONTH));
+            assertThat(summary.groups().stream().mapToLong(GroupedSummary.Group::sumMinor).sum())
+                    .isEqualTo(tracker.summaryExpensesMinor(query));
+            assertThat(summary.dimensions()).containsExactlyInAnyOrder(Dimension.CATEGORY, Dimension.MONTH);
+        }
+    }
+
+    @Test
+    void testParallelGroupingMatchesSequential() {
+        ExpenseTracker tracker = trackers.get(trackers.size() - 1);
+        Set<Dimension> dimensions = EnumSet.of(Dimension.CATEGORY, Dimension.YEAR);
+        assertThat(tracker.summaryByGroup(new ExpenseQuery().parallel(true), dimensions))
+                .isEqualTo(tracker.summaryByGroup(new ExpenseQuery(), dimensions));
+    }
+
+    @Test
+    void testAccumulatorGrowsBothWaysAndKeepsUndatedExpensesLast() {
+        GroupedSummary.Accumulator totals = new GroupedSummary.Accumulator(EnumSet.of(Dimension.MONTH));
+        totals.add(ExpenseCategory.FOOD, LocalDate.of(2024, 3, 5), 300);
+        totals.add(ExpenseCategory.HOME, LocalDate.of(2023, 12, 31), 100);
+        totals.add(null, null, 50);
+        totals.add(ExpenseCategory.MISC, LocalDate.of(2024, 3, 1), 200);
+
+        GroupedSummary.Accumulator later = new GroupedSummary.Accumulator(EnumSet.of(Dimension.MONTH));
+        later.add(ExpenseCategory.FOOD, LocalDate.of(2025, 1, 1), 700);
+        later.add(ExpenseCategory.FOOD, null, 25);
+
+        assertThat(totals.merge(later).result().groups())
+                .extracting(GroupedSummary.Group::month, GroupedSummary.Group::count, GroupedSummary.Group::sumMinor,
+                        GroupedSummary.Group::minMinor, GroupedSummary.Group::maxMinor)
+                .containsExactly(
+                        tuple(YearMonth.of(2023, 12), 1L, 100L, 100L, 100L),
+                        tuple(YearMonth.of(2024, 3), 2L, 500L, 200L, 300L),
+                        tuple(YearMonth.of(2025, 1), 1L, 700L, 700L, 700L),
+                        tuple(null, 2L, 75L, 25L, 50L));
+        assertThatThrownBy(() -> totals.merge(new GroupedSummary.Accumulator(EnumSet.of(Dimension.YEAR))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testNoMatchesGiveNoGroups() {
+        for (ExpenseTracker tracker : trackers) {
+            ExpenseQuery query = ExpenseQuery.makeQuery(null, null, null, Year.of(1999), null);
+            assertThat(tracker.summaryByGroup(query, EnumSet.of(Dimension.CATEGORY)).groups()).isEmpty();
+            assertThat(tracker.summaryByGroup(query, Set.of()).groups()).isEmpty();
+        }
+    }
+
+    @Test
+    void testGroupsWithoutCategoryComeLast() {
+        ExpenseTracker tracker = trackers.get(0);
+        List<GroupedSummary.Group> groups = tracker.summaryByGroup(new ExpenseQuery(), EnumSet.of(Dimension.CATEGORY)).groups();
+        assertThat(groups.get(groups.size() - 1).category()).isNull();
+        assertThat(groups.stream().map(GroupedSummary.Group::category).filter(Objects::nonNull).toList())
+                .isSorted();
+    }
+}
@@ -0,0 +1,116 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.storage.ExpenseStore;
+import dev.shoangenes.expensetracker.storage.H2ExpenseStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class H2ExpenseStoreTest {
+    @TempDir
+    Path tempDir;
+
+    private H2ExpenseStore store;
+
+    @BeforeEach
+    void setUp() {
+        Expense.setLastIdSaved(0);
+        store = new H2ExpenseStore(tempDir.resolve("ledger.h2"));
+        store.putAll(List.of(
+                Expense.restore(1, "Lunch", 12.0, LocalDate.of(2025, 1, 10), ExpenseCategory.FOOD),
+                Expense.restore(2, "Bus", 2.5, LocalDate.of(2025, 1, 11), ExpenseCategory.TRANSPORT),
+                Expense.restore(3, "Dinner", 30.0, LocalDate.of(2025, 2, 3), ExpenseCategory.FOOD),
+                Expense.restore(4, "Course", 80.0, LocalDate.of(2026, 2, 3), ExpenseCategory.EDUCATION)
+        ));
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testScanPushesDownFilters() {
+        ExpenseQuery query = ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD), 10.0, null, Year.of(2025), false);
+
+        assertThat(store.scan(query)).extracting(Expense::getId).containsExactly(3, 1);
+        assertThat(store.sum(query)).isEqualTo(42.0);
+    }
+
+    @Test
+    void testScanByMonth() {
+        ExpenseQuery query = ExpenseQuery.makeQuery(null, null, YearMonth.of(2025, 1), null, null);
+
+        assertThat(store.scan(query)).extracting(Expense::getId).containsExactly(1, 2);
+        assertThat(store.sum(new ExpenseQuery())).isEqualTo(124.5);
+    }
+
+    @Test
+    void testGetPutAndRemove() {
+        Expense bus = store.get(2).orElseThrow();
+        bus.updateDescription("Night bus");
+        store.put(bus);
+        store.remove(1);
+
+        assertThat(store.get(1)).isEmpty();
+        assertThat(store.get(2).orElseThrow().getDescription()).isEqualTo("Night bus");
+        assertThat(store.maxId()).isEqualTo(4);
+    }
+
+    @Test
+    void testTrackerOverDatabase() {
+        store.close();
+        Path ledger = tempDir.resolve("ledger.h2");
+
+        try (ExpenseTracker tracker = new ExpenseTracker(ledger)) {
+            tracker.addExpense("Coffee", 4.0, ExpenseCategory.FOOD);
+            tracker.deleteExpense(2);
+        }
+
+        try (ExpenseTracker tracker = new ExpenseTracker(ExpenseStore.open(ledger))) {
+            assertThat(tracker.listExpenses(new ExpenseQuery())).extracting(Expense::getId).containsExactly(1, 3, 4, 5);
+            assertThat(tracker.summaryExpenses(ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD), null, null, null, null)))
+                    .isEqualTo(46.0);
+        }
+        store = new H2ExpenseStore(ledger);
+    }
+
+    @Test
+    void testMigratesDoubleAmounts() throws SQLException {
+        Path legacy = tempDir.resolve("legacy.h2");
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:file:" + legacy.toAbsolutePath());
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE expense (id INT PRIMARY KEY, description VARCHAR NOT NULL, "
+                    + "amount DOUBLE PRECISION NOT NULL, creation_date DATE NOT NULL, category VARCHAR(16))");
+            statement.execute("CREATE INDEX expense_amount ON expense(amount)");
+            statement.execute("INSERT INTO expense VALUES (1, 'Coffee', 0.29, DATE '2025-01-10', 'FOOD'), "
+                    + "(2, 'Bus', 0.1, DATE '2025-01-11', 'TRANSPORT')");
+        }
+
+        try (H2ExpenseStore migrated = new H2ExpenseStore(legacy)) {
+            assertThat(migrated.get(1)).get().extracting(Expense::getAmountMinor).isEqualTo(29L);
+            assertThat(migrated.sumMinor(new ExpenseQuery())).isEqualTo(39);
+            assertThat(migrated.scan(new ExpenseQuery().amountBetween(0.2, null))).extracting(Expense::getId).containsExactly(1);
+        }
+        try (H2ExpenseStore reopened = new H2ExpenseStore(legacy)) {
+            assertThat(reopened.sumMinor(new ExpenseQuery())).isEqualTo(39);
+        }
+    }
+}
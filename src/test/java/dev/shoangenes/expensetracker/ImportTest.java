@@ -0,0 +1,158 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.command.ListExpensesCommand;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseImporter;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ImportTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCsvRowsAreImportedAndBadRowsRejected() throws IOException {
+        Path source = tempDir.resolve("history.csv");
+        Files.writeString(source, """
+                date,category,description,amount,note
+                2024-01-05,FOOD,Lunch,12.50,ignored
+                2024-01-06,Transportation,"Bus, downtown",2,
+                2024-01-07,HOME,"Rent ""January""\",700.00
+
+                2024-01-08,FOOD,Broken,abc
+                not-a-date,FOOD,Dinner,20
+                2024-01-09,FOOD,,5
+                2024-01-10,FOOD,Refund,-3
+                ,,No date,1.005
+                """);
+        Path rejects = tempDir.resolve("history.rejects");
+
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            ExpenseImporter.Result result = new ExpenseImporter(tracker).importFile(source, ExpenseImporter.Format.CSV, rejects);
+
+            assertThat(result).isEqualTo(new ExpenseImporter.Result(4, 4));
+            assertThat(tracker.listExpenses(new ExpenseQuery()))
+                    .extracting(Expense::getId, Expense::getDescription, Expense::getAmountMinor, Expense::getCreationDate, Expense::getCategory)
+                    .containsExactly(
+                            tuple(1, "Lunch", 1250L, LocalDate.of(2024, 1, 5), ExpenseCategory.FOOD),
+                            tuple(2, "Bus, downtown", 200L, LocalDate.of(2024, 1, 6), ExpenseCategory.TRANSPORT),
+                            tuple(3, "Rent \"January\"", 70000L, LocalDate.of(2024, 1, 7), ExpenseCategory.HOME),
+                            tuple(4, "No date", 101L, LocalDate.now(), null));
+        }
+        assertThat(Files.readAllLines(rejects))
+                .extracting(line -> line.split("\t")[0])
+                .containsExactly("6", "7", "8", "9");
+        assertThat(Files.readAllLines(rejects).get(3)).contains("Amount must be positive").endsWith("2024-01-10,FOOD,Refund,-3");
+    }
+
+    @Test
+    void testJsonLinesAreImported() throws IOException {
+        Path source = tempDir.resolve("history.jsonl");
+        Files.writeString(source, """
+                {"description":"Coffee","amount":"3.20","category":"FOOD","date":"2024-02-01"}
+                {"description":"Book","amountMinor":1599,"category":"Education","creationDate":"2024-02-02","id":99}
+                {"description":"Broken",
+                {"description":"Taxi","amount":15}
+                """);
+
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            tracker.addExpense("Existing", 1.0, ExpenseCategory.MISC);
+            ExpenseImporter.Result result = new ExpenseImporter(tracker)
+                    .importFile(source, ExpenseImporter.Format.forPath(source), tempDir.resolve("rejects"));
+
+            assertThat(result).isEqualTo(new ExpenseImporter.Result(3, 1));
+            assertThat(tracker.listExpenses(new ExpenseQuery()))
+                    .extracting(Expense::getId, Expense::getDescription, Expense::getAmountMinor, Expense::getCategory)
+                    .containsExactly(
+                            tuple(1, "Existing", 100L, ExpenseCategory.MISC),
+                            tuple(2, "Coffee", 320L, ExpenseCategory.FOOD),
+                            tuple(3, "Book", 1599L, ExpenseCategory.EDUCATION),
+                            tuple(4, "Taxi", 1500L, null));
+        }
+    }
+
+    @Test
+    void testImportedExpensesWithoutCategoryCanBeListed() throws IOException {
+        Path source = tempDir.resolve("uncategorized.csv");
+        Files.writeString(source, """
+                description,amount
+                Lunch,12.50
+                Bus,2
+                """);
+
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            ExpenseImporter.Result result = new ExpenseImporter(tracker)
+                    .importFile(source, ExpenseImporter.Format.CSV, tempDir.resolve("rejects"));
+            assertThat(result).isEqualTo(new ExpenseImporter.Result(2, 0));
+
+            List<Expense> listed = new ListExpensesCommand(tracker, new ExpenseQuery()).execute();
+            assertThat(listed).extracting(Expense::getCategory).containsOnlyNulls();
+            assertThat(listed).extracting(Expense::toString)
+                    .satisfiesExactly(
+                            line -> assertThat(line).contains(" -  ").contains("Lunch"),
+                            line -> assertThat(line).contains(" -  ").contains("Bus"));
+        }
+    }
+
+    @Test
+    void testLargeImportsArePersistedAtCheckpoints() throws IOException {
+        Path source = tempDir.resolve("large.csv");
+        int rows = 50_000;
+        try (BufferedWriter out = Files.newBufferedWriter(source)) {
+            out.write("description,amount,category,date\n");
+            for (int i = 0; i < rows; i++) {
+                out.write("Expense " + i + "," + (1 + i % 100) + ".25,FOOD,2024-03-" + String.format("%02d", 1 + i % 28) + "\n");
+            }
+        }
+
+        for (String ledger : List.of("ledger.json", "ledger.h2")) {
+            try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve(ledger))) {
+                ExpenseImporter.Result result = new ExpenseImporter(tracker)
+                        .importFile(source, ExpenseImporter.Format.CSV, tempDir.resolve("rejects"), 10_000);
+                assertThat(result).isEqualTo(new ExpenseImporter.Result(rows, 0));
+            }
+            try (ExpenseTracker reopened = new ExpenseTracker(tempDir.resolve(ledger))) {
+                long expected = IntStream.range(0, rows).mapToLong(i -> (1 + i % 100) * 100L + 25).sum();
+                assertThat(reopened.summaryExpensesMinor(new ExpenseQuery())).isEqualTo(expected);
+                assertThat(reopened.listExpenses(new ExpenseQuery().page(rows - 1, 1)))
+                        .extracting(Expense::getId, Expense::getDescription)
+                        .containsExactly(tuple(rows, "Expense " + (rows - 1)));
+            }
+        }
+        assertThat(tempDir.resolve("rejects")).doesNotExist();
+    }
+
+    @Test
+    void testFailedImportsRollBackToTheLastCheckpoint() throws IOException {
+        Path source = tempDir.resolve("headless.csv");
+        Files.writeString(source, "Lunch,12.50\n");
+
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            ExpenseImporter importer = new ExpenseImporter(tracker);
+            assertThatThrownBy(() -> importer.importFile(source, ExpenseImporter.Format.CSV, tempDir.resolve("rejects")))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("header");
+            assertThatThrownBy(() -> importer.importFile(tempDir.resolve("missing.csv"), ExpenseImporter.Format.CSV, tempDir.resolve("rejects")))
+                    .hasMessageContaining("missing.csv");
+            assertThatThrownBy(() -> importer.importFile(source, ExpenseImporter.Format.CSV, tempDir.resolve("rejects"), -1))
+                    .isInstanceOf(IllegalArgumentException.class);
+
+            assertThat(tracker.listExpenses(new ExpenseQuery())).isEmpty();
+            tracker.addExpense("Still usable", 1.0, ExpenseCategory.MISC);
+            assertThat(tracker.listExpenses(new ExpenseQuery())).extracting(Expense::getId).containsExactly(1);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.storage.JsonSnapshotFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class JsonSnapshotFormatTest {
+    @TempDir
+    Path tempDir;
+
+    private final JsonSnapshotFormat format = new JsonSnapshotFormat();
+
+    @BeforeEach
+    void setUp() {
+        Expense.setLastIdSaved(0);
+    }
+
+    @Test
+    void testRoundTrip() {
+        Path file = tempDir.resolve("ledger.json");
+        List<Expense> expenses = List.of(
+                new Expense("Lunch", 12.0, ExpenseCategory.FOOD),
+                new Expense("Bus", 2.75, ExpenseCategory.TRANSPORT),
+                new Expense("Book", 20.0, ExpenseCategory.EDUCATION)
+        );
+
+        format.write(file, expenses);
+        Map<Integer, Expense> loaded = new HashMap<>();
+        int maxId = format.read(file, loaded);
+
+        assertThat(maxId).isEqualTo(3);
+        assertThat(loaded).containsOnlyKeys(1, 2, 3);
+        assertThat(loaded.get(2).getAmount()).isEqualTo(2.75);
+        assertThat(loaded.get(2).getCategory()).isEqualTo(ExpenseCategory.TRANSPORT);
+        assertThat(loaded.get(3).toString()).isEqualTo(expenses.get(2).toString());
+    }
+
+    @Test
+    void testReadsLegacyPrettyPrintedFile() throws IOException {
+        Path file = tempDir.resolve("ledger.json");
+        Files.writeString(file, """
+                {
+                  "7": {
+                    "id": 7,
+                    "description": "Coffee",
+                    "amount": 4.5,
+                    "creationDate": "2025-08-14",
+                    "category": "FOOD"
+                  }
+                }""");
+
+        Map<Integer, Expense> loaded = new HashMap<>();
+
+        assertThat(format.read(file, loaded)).isEqualTo(7);
+        assertThat(loaded.get(7).getAmount()).isEqualTo(4.5);
+        assertThat(loaded.get(7).getCreationDate()).hasToString("2025-08-14");
+    }
+
+    @Test
+    void testMissingOrEmptyFile() throws IOException {
+        Path file = tempDir.resolve("ledger.json");
+        Map<Integer, Expense> loaded = new HashMap<>();
+
+        assertThat(format.read(file, loaded)).isZero();
+        Files.createFile(file);
+        assertThat(format.read(file, loaded)).isZero();
+        assertThat(loaded).isEmpty();
+    }
+
+    @Test
+    void testWritesMinorUnitsAndMigratesDecimalAmounts() throws IOException {
+        Path file = tempDir.resolve("ledger.json");
+        Files.writeString(file, """
+                {
+                  "1": {"id": 1, "description": "Coffee", "amount": 0.29, "creationDate": "2025-08-14", "category": "FOOD"},
+                  "2": {"id": 2, "description": "Gum", "amount": 1.005, "creationDate": "2025-08-14"}
+                }""");
+
+        Map<Integer, Expense> loaded = new HashMap<>();
+        format.read(file, loaded);
+        assertThat(loaded.get(1).getAmountMinor()).isEqualTo(29);
+        assertThat(loaded.get(2).getAmountMinor()).isEqualTo(101);
+        assertThat(loaded.get(2).getCategory()).isNull();
+
+        format.write(file, loaded.values());
+        assertThat(Files.readString(file)).contains("\"amountMinor\": 29").doesNotContain("\"amount\":");
+        Map<Integer, Expense> reloaded = new HashMap<>();
+        format.read(file, reloaded);
+        assertThat(reloaded.get(1).getAmountMinor()).isEqualTo(29);
+    }
+}
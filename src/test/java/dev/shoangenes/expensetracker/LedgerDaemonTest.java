@@ -0,0 +1,154 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetrackercli.DaemonClient;
+import dev.shoangenes.expensetrackercli.LedgerDaemon;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.OptionalInt;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class LedgerDaemonTest {
+    @TempDir
+    Path tempDir;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private OptionalInt forward(String input, String... args) {
+        InputStream in = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+        return DaemonClient.forward(args, tempDir, in, new PrintStream(out, true, StandardCharsets.UTF_8),
+                new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testCommandsRunOnTheTrackerOfTheDaemon() {
+        Path ledger = tempDir.resolve("ledger.json");
+        try (ExpenseTracker tracker = new ExpenseTracker(ledger);
+             LedgerDaemon daemon = new LedgerDaemon(tracker, LedgerDaemon.socketFor(ledger))) {
+            assertThat(daemon.getSocket()).isEqualTo(tempDir.resolve("ledger.json.sock").toAbsolutePath());
+
+            assertThat(forward("", "-l", "ledger.json", "add", "-d", "Lunch", "-a", "12.5", "-c", "FOOD")).hasValue(0);
+            assertThat(out.toString(StandardCharsets.UTF_8)).contains("Expense added successfully (ID: 1)");
+            assertThat(tracker.listExpenses(new ExpenseQuery())).hasSize(1);
+
+            out.reset();
+            assertThat(forward("", "--ledger=ledger.json", "list", "-c", "FOOD")).hasValue(0);
+            assertThat(out.toString(StandardCharsets.UTF_8)).contains("Lunch");
+        }
+        assertThat(tempDir.resolve("ledger.json.sock")).doesNotExist();
+    }
+
+    @Test
+    void testOnlyTheOwnerCanReachTheSocket() throws Exception {
+        Path ledger = tempDir.resolve("ledger.json");
+        try (ExpenseTracker tracker = new ExpenseTracker(ledger);
+             LedgerDaemon daemon = new LedgerDaemon(tracker, LedgerDaemon.socketFor(ledger))) {
+            assumeTrue(daemon.getSocket().getFileSystem().supportedFileAttributeViews().contains("posix"));
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(daemon.getSocket())))
+                    .isEqualTo("rw-------");
+            // The private directory the socket was bound in is gone
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertThat(files.map(path -> path.getFileName().toString()))
+                        .noneMatch(name -> name.startsWith(".daemon"));
+            }
+        }
+    }
+
+    @Test
+    void testCommandsForAnotherEngineRunInProcess() {
+        Path ledger = tempDir.resolve("ledger.json");
+        try (ExpenseTracker tracker = new ExpenseTracker(ledger, ExpenseTracker.Engine.INDEXED);
+             LedgerDaemon ignored = new LedgerDaemon(tracker, LedgerDaemon.socketFor(ledger))) {
+            assertThat(forward("", "--engine", "columnar", "-l", "ledger.json", "list")).isEmpty();
+            assertThat(forward("", "-l", "ledger.json", "--engine=COLUMNAR", "list")).isEmpty();
+            assertThat(out.toString(StandardCharsets.UTF_8)).isEmpty();
+
+            assertThat(forward("", "--engine=indexed", "-l", "ledger.json", "list")).hasValue(0);
+            assertThat(forward("", "-l", "ledger.json", "list")).hasValue(0);
+        }
+    }
+
+    @Test
+    void testStandardInputAndRelativePathsComeFromTheClient() throws Exception {
+        Path ledger = tempDir.resolve("ledger.json");
+        try (ExpenseTracker tracker = new ExpenseTracker(ledger);
+             LedgerDaemon ignored = new LedgerDaemon(tracker, LedgerDaemon.socketFor(ledger))) {
+            String commands = "add -d \"Bus, late\" -a 2 -c TRANSPORT\nadd -d Coffee -a 3 -c FOOD\n";
+            assertThat(forward(commands, "-l", "ledger.json", "batch", "-f", "-")).hasValue(0);
+            assertThat(out.toString(StandardCharsets.UTF_8)).contains("Applied 2 commands");
+
+            assertThat(forward("", "-l", "ledger.json", "export", "-o", "out.csv")).hasValue(0);
+            assertThat(Files.readAllLines(tempDir.resolve("out.csv"))).hasSize(3);
+
+            assertThat(forward("", "-l", "ledger.json", "update", "-i", "9", "-d", "Missing")).isPresent();
+            assertThat(err.toString(StandardCharsets.UTF_8)).contains("No such expense with id: 9");
+        }
+    }
+
+    @Test
+    void testDaemonSeesChangesMadeByOtherProcesses() {
+        Path ledger = tempDir.resolve("ledger.json");
+        try (ExpenseTracker tracker = new ExpenseTracker(ledger);
+             LedgerDaemon ignored = new LedgerDaemon(tracker, LedgerDaemon.socketFor(ledger))) {
+            tracker.listExpenses(new ExpenseQuery());
+            try (ExpenseTracker other = new ExpenseTracker(ledger)) {
+                other.addExpense("Written elsewhere", 4.0, ExpenseCategory.MISC);
+            }
+
+            assertThat(forward("", "-l", "ledger.json", "list")).hasValue(0);
+            assertThat(out.toString(StandardCharsets.UTF_8)).contains("Written e");
+        }
+    }
+
+    @Test
+    void testCommandsRunInProcessWithoutADaemon() throws Exception {
+        assertThat(forward("", "-l", "ledger.json", "list")).isEmpty();
+
+        // A socket left behind by a daemon that died is ignored, then replaced by the next daemon
+        Path ledger = tempDir.resolve("ledger.json");
+        try (ExpenseTracker tracker = new ExpenseTracker(ledger)) {
+            Path socket = LedgerDaemon.socketFor(ledger);
+            try (ServerSocketChannel crashed = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+                crashed.bind(UnixDomainSocketAddress.of(socket));
+            }
+            assertThat(socket).exists();
+            assertThat(forward("", "-l", "ledger.json", "list")).isEmpty();
+
+            try (LedgerDaemon daemon = new LedgerDaemon(tracker, socket)) {
+                assertThat(forward("", "-l", "ledger.json", "list")).hasValue(0);
+                assertThatThrownBy(() -> new LedgerDaemon(tracker, socket))
+                        .isInstanceOf(IllegalStateException.class);
+            }
+        }
+    }
+
+    @Test
+    void testHelpAndServeAreNeverForwarded() {
+        Path ledger = tempDir.resolve("expense_tracker.json");
+        try (ExpenseTracker tracker = new ExpenseTracker(ledger);
+             LedgerDaemon ignored = new LedgerDaemon(tracker, LedgerDaemon.socketFor(ledger))) {
+            assertThat(forward("", "list")).hasValue(0);
+            assertThat(forward("", "--help")).isEmpty();
+            assertThat(forward("", "serve")).isEmpty();
+            assertThat(forward("")).isEmpty();
+        }
+    }
+}
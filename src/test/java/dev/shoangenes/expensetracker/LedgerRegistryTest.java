@@ -0,0 +1,168 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.service.LedgerRegistry;
+import dev.shoangenes.expensetracker.storage.LedgerLock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class LedgerRegistryTest {
+    @TempDir
+    Path tempDir;
+
+    private static List<Integer> ids(ExpenseTracker tracker) {
+        return tracker.listExpenses(new ExpenseQuery()).stream().map(Expense::getId).toList();
+    }
+
+    private static double total(ExpenseTracker tracker) {
+        return tracker.summaryExpenses(new ExpenseQuery());
+    }
+
+    @Test
+    void testLedgersAreOpenedLazilyWithIndependentIds() {
+        try (LedgerRegistry registry = new LedgerRegistry(ExpenseTracker.Engine.INDEXED, Long.MAX_VALUE)) {
+            Path first = tempDir.resolve("first.json");
+            Path second = tempDir.resolve("second.json");
+            assertThat(registry.openLedgers()).isEmpty();
+
+            registry.useLedger(first, tracker -> tracker.addExpense("A", 1.0, ExpenseCategory.MISC));
+            registry.useLedger(second, tracker -> tracker.addExpense("B", 2.0, ExpenseCategory.MISC));
+            registry.useLedger(first, tracker -> tracker.addExpense("C", 3.0, ExpenseCategory.MISC));
+
+            assertThat(registry.<List<Integer>>withLedger(first, LedgerRegistryTest::ids)).containsExactly(1, 2);
+            assertThat(registry.<List<Integer>>withLedger(second, LedgerRegistryTest::ids)).containsExactly(1);
+            assertThat(registry.openLedgers()).containsExactlyInAnyOrder(first, second);
+            assertThat(registry.usedMemory()).isPositive();
+        }
+    }
+
+    @Test
+    void testLeastRecentlyUsedLedgersAreClosedOverTheBudgetAndKeepTheirData() {
+        long oneLedger = 16 * 1024 + 10 * ExpenseTracker.Engine.INDEXED.bytesPerExpense();
+        try (LedgerRegistry registry = new LedgerRegistry(ExpenseTracker.Engine.INDEXED, 2 * oneLedger)) {
+            for (int ledger = 0; ledger < 5; ledger++) {
+                registry.useLedger(tempDir.resolve("ledger" + ledger + ".json"), tracker -> {
+                    for (int i = 0; i < 10; i++) {
+                        tracker.addExpense("Expense " + i, 1.0, ExpenseCategory.FOOD);
+                    }
+                });
+            }
+
+            assertThat(registry.openLedgers())
+                    .containsExactlyInAnyOrder(tempDir.resolve("ledger3.json"), tempDir.resolve("ledger4.json"));
+            assertThat(registry.usedMemory()).isLessThanOrEqualTo(2 * oneLedger);
+            assertThat(registry.<Double>withLedger(tempDir.resolve("ledger0.json"), LedgerRegistryTest::total))
+                    .isEqualTo(10.0);
+            assertThat(registry.openLedgers()).contains(tempDir.resolve("ledger0.json")).hasSize(2);
+        }
+    }
+
+    @Test
+    void testIdleLedgersAreClosedInTheBackground() throws InterruptedException {
+        try (LedgerRegistry registry = new LedgerRegistry(ExpenseTracker.Engine.COLUMNAR, Long.MAX_VALUE,
+                Duration.ofMillis(50), 1)) {
+            Path ledger = tempDir.resolve("ledger.json");
+            registry.useLedger(ledger, tracker -> tracker.addExpense("Lunch", 12.5, ExpenseCategory.FOOD));
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!registry.openLedgers().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(registry.openLedgers()).isEmpty();
+            assertThat(registry.usedMemory()).isZero();
+            assertThat(registry.<List<Integer>>withLedger(ledger, LedgerRegistryTest::ids)).containsExactly(1);
+        }
+    }
+
+    @Test
+    void testManyLedgersShareTheBackgroundThreads() {
+        try (LedgerRegistry registry = new LedgerRegistry(ExpenseTracker.Engine.INDEXED, Long.MAX_VALUE,
+                Duration.ofMinutes(1), 2)) {
+            for (int ledger = 0; ledger < 200; ledger++) {
+                registry.useLedger(tempDir.resolve("tenant" + ledger + ".json"),
+                        tracker -> tracker.addExpense("Bus", 2.0, ExpenseCategory.TRANSPORT));
+            }
+
+            Set<Thread> threads = Thread.getAllStackTraces().keySet();
+            assertThat(threads).noneMatch(thread -> thread.getName().startsWith("expense-compactor-tenant"));
+            assertThat(threads).filteredOn(thread -> thread.getName().startsWith("ledger-background-")).hasSizeLessThanOrEqualTo(2);
+            assertThat(registry.openLedgers()).hasSize(200);
+        }
+        try (ExpenseTracker tracker = new ExpenseTracker(tempDir.resolve("tenant199.json"))) {
+            assertThat(tracker.summaryExpenses(new ExpenseQuery())).isEqualTo(2.0);
+        }
+    }
+
+    @Test
+    void testLedgersShareOneQueryCache() {
+        try (LedgerRegistry registry = new LedgerRegistry(ExpenseTracker.Engine.INDEXED, Long.MAX_VALUE)) {
+            registry.useLedger(tempDir.resolve("first.json"), tracker -> tracker.addExpense("A", 1.0, ExpenseCategory.MISC));
+            registry.useLedger(tempDir.resolve("second.json"), tracker -> tracker.addExpense("B", 2.0, ExpenseCategory.MISC));
+
+            assertThat(registry.<Double>withLedger(tempDir.resolve("first.json"), LedgerRegistryTest::total))
+                    .isEqualTo(1.0);
+            assertThat(registry.<Double>withLedger(tempDir.resolve("second.json"), LedgerRegistryTest::total))
+                    .isEqualTo(2.0);
+            assertThat(registry.getCacheStats().size()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void testCachedResultsStayWithinAnEighthOfTheBudget() {
+        long budget = 1024 * 1024;
+        try (LedgerRegistry registry = new LedgerRegistry(ExpenseTracker.Engine.INDEXED, budget)) {
+            Path ledger = Ledgers.write(tempDir.resolve("ledger.json"), Ledgers.random(7, 2_000).expenses());
+            for (int days = 1; days <= 100; days++) {
+                ExpenseQuery query = new ExpenseQuery().createdBetween(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 1).plusDays(days));
+                assertThat(registry.<List<Expense>>withLedger(ledger, tracker -> tracker.listExpenses(query))).isNotEmpty();
+                assertThat(registry.cachedMemory()).isLessThanOrEqualTo(budget / 8);
+            }
+            assertThat(registry.getCacheStats().size()).isLessThan(100);
+        }
+    }
+
+    @Test
+    void testLockFilesAreForgottenOnceUnlocked() {
+        Path ledger = tempDir.resolve("ledger.json");
+        try (LedgerRegistry registry = new LedgerRegistry(ExpenseTracker.Engine.INDEXED, Long.MAX_VALUE)) {
+            registry.useLedger(ledger, tracker -> tracker.addExpense("A", 1.0, ExpenseCategory.MISC));
+            assertThat(tempDir.resolve("ledger.json.lock")).exists();
+            assertThat(LedgerLock.inUse(tempDir.resolve("ledger.json.lock"))).isFalse();
+        }
+
+        LedgerLock lock = new LedgerLock(tempDir.resolve("other.lock"));
+        lock.lock();
+        lock.lock();
+        assertThat(LedgerLock.inUse(tempDir.resolve("other.lock"))).isTrue();
+        lock.unlock();
+        assertThat(LedgerLock.inUse(tempDir.resolve("other.lock"))).isTrue();
+        lock.unlock();
+        assertThat(LedgerLock.inUse(tempDir.resolve("other.lock"))).isFalse();
+        assertThat(lock.tryLock()).isTrue();
+        lock.unlock();
+        assertThat(LedgerLock.inUse(tempDir.resolve("other.lock"))).isFalse();
+        assertThatThrownBy(lock::readState).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testClosedRegistryRejectsUse() {
+        LedgerRegistry registry = new LedgerRegistry(ExpenseTracker.Engine.INDEXED, Long.MAX_VALUE);
+        registry.close();
+
+        assertThatThrownBy(() -> registry.useLedger(tempDir.resolve("ledger.json"), tracker -> { }))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new LedgerRegistry(ExpenseTracker.Engine.INDEXED, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
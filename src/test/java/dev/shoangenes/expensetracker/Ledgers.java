@@ -0,0 +1,127 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.storage.ExpenseStore;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random ledgers for the tests that compare query answers, the same for a given seed on every run.
+ * <p>
+ * Expenses get IDs 1 to the number of rows, described as "Expense &lt;id&gt;", with a random amount, creation
+ * date and category; each setting below narrows one of them.
+ */
+final class Ledgers {
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+
+    private final long seed;
+    private final int rows;
+    private LocalDate firstDate = LocalDate.of(2024, 1, 1);
+    private int days = 730;
+    private long minCents = 1;
+    private long maxCents = 20_000;
+    private long stepCents = 1;
+    private int uncategorizedOneIn = 0;
+    private List<String> words = List.of();
+
+    private Ledgers(long seed, int rows) {
+        this.seed = seed;
+        this.rows = rows;
+    }
+
+    /**
+     * Starts a ledger of amounts from 0.01 to 200.00 created over 2024 and 2025, every one with a category.
+     *
+     * @param seed the seed of the random values
+     * @param rows the number of expenses
+     */
+    static Ledgers random(long seed, int rows) {
+        return new Ledgers(seed, rows);
+    }
+
+    /** Creates the expenses on one of the given number of days starting at the given date. */
+    Ledgers dates(LocalDate first, int days) {
+        this.firstDate = first;
+        this.days = days;
+        return this;
+    }
+
+    /** Picks amounts between the given bounds in minor units, multiples of the step above the lower bound. */
+    Ledgers amountsMinor(long min, long max, long step) {
+        this.minCents = min;
+        this.maxCents = max;
+        this.stepCents = step;
+        return this;
+    }
+
+    Ledgers amountsMinor(long min, long max) {
+        return amountsMinor(min, max, 1);
+    }
+
+    /** Leaves about one expense in the given number without a category. */
+    Ledgers uncategorized(int oneIn) {
+        this.uncategorizedOneIn = oneIn;
+        return this;
+    }
+
+    /** Describes the expenses with two of the given words, half of them followed by a number. */
+    Ledgers words(List<String> words) {
+        this.words = words;
+        return this;
+    }
+
+    /**
+     * Generates the expenses.
+     *
+     * @return the expenses, by ID
+     */
+    List<Expense> expenses() {
+        Random random = new Random(seed);
+        int amounts = (int) ((maxCents - minCents) / stepCents) + 1;
+        List<Expense> expenses = new ArrayList<>(rows);
+        for (int id = 1; id <= rows; id++) {
+            long cents = minCents + random.nextInt(amounts) * stepCents;
+            LocalDate date = firstDate.plusDays(random.nextInt(days));
+            ExpenseCategory category = uncategorizedOneIn > 0 && random.nextInt(uncategorizedOneIn) == 0
+                    ? null : CATEGORIES[random.nextInt(CATEGORIES.length)];
+            String description = words.isEmpty() ? "Expense " + id
+                    : words.get(random.nextInt(words.size())) + " " + words.get(random.nextInt(words.size()))
+                            + (random.nextBoolean() ? "-" + random.nextInt(100) : "");
+            expenses.add(Expense.restoreMinor(id, description, cents, date, category));
+        }
+        return expenses;
+    }
+
+    /**
+     * Writes expenses to a new ledger, in the format given by its name.
+     *
+     * @return the ledger
+     */
+    static Path write(Path ledger, List<Expense> expenses) {
+        try (ExpenseStore store = ExpenseStore.open(ledger)) {
+            store.write(expenses, List.of());
+        }
+        return ledger;
+    }
+
+    /**
+     * Writes expenses to a JSON, an H2 and a partitioned ledger in a directory and opens a tracker on each,
+     * plus a columnar one on the JSON ledger.
+     *
+     * @return the trackers, to be closed by the caller
+     */
+    static List<ExpenseTracker> openOnEveryBackend(Path directory, List<Expense> expenses) {
+        List<ExpenseTracker> trackers = new ArrayList<>();
+        for (String name : List.of("ledger.json", "ledger.h2", "ledger.parts")) {
+            trackers.add(new ExpenseTracker(write(directory.resolve(name), expenses)));
+        }
+        trackers.add(new ExpenseTracker(directory.resolve("ledger.json"), ExpenseTracker.Engine.COLUMNAR));
+        return trackers;
+    }
+}
@@ -0,0 +1,114 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.service.QueryPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PaginationTest {
+    @TempDir
+    Path tempDir;
+
+    private final List<ExpenseTracker> trackers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Few distinct amounts, so ties have to be broken by ID
+        List<Expense> expenses = Ledgers.random(11, 300).dates(LocalDate.of(2024, 1, 1), 365)
+                .amountsMinor(250, 10_000, 250).expenses();
+        trackers.addAll(Ledgers.openOnEveryBackend(tempDir, expenses));
+    }
+
+    @AfterEach
+    void tearDown() {
+        trackers.forEach(ExpenseTracker::close);
+    }
+
+    private static List<Supplier<ExpenseQuery>> queries() {
+        return List.of(
+                ExpenseQuery::new,
+                () -> new ExpenseQuery().sortBy(ExpenseQuery.SortKey.ID, false),
+                () -> ExpenseQuery.makeQuery(null, null, null, null, false),
+                () -> ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD), 20.0, null, null, true),
+                () -> ExpenseQuery.makeQuery(null, null, YearMonth.of(2024, 6), null, false));
+    }
+
+    @Test
+    void testPagesAreSlicesOfTheFullListing() {
+        for (ExpenseTracker tracker : trackers) {
+            for (Supplier<ExpenseQuery> query : queries()) {
+                List<Expense> all = tracker.listExpenses(query.get());
+                for (int offset : List.of(0, 3, 25, 1000)) {
+                    for (int limit : List.of(0, 1, 10, 500)) {
+                        List<Expense> expected = all.subList(Math.min(offset, all.size()), Math.min(offset + limit, all.size()));
+                        assertThat(tracker.listExpenses(query.get().page(offset, limit)))
+                                .extracting(Expense::getId)
+                                .containsExactlyElementsOf(expected.stream().map(Expense::getId).toList());
+                    }
+                }
+                assertThat(tracker.listExpenses(query.get().page(7, null))).hasSize(Math.max(0, all.size() - 7));
+            }
+        }
+    }
+
+    @Test
+    void testKeysetPagesWalkTheFullListing() {
+        for (ExpenseTracker tracker : trackers) {
+            for (Supplier<ExpenseQuery> query : queries()) {
+                List<Integer> walked = new ArrayList<>();
+                Integer cursor = null;
+                while (true) {
+                    List<Expense> page = tracker.listExpenses(query.get().after(cursor).page(0, 17));
+                    if (page.isEmpty()) {
+                        break;
+                    }
+                    page.forEach(expense -> walked.add(expense.getId()));
+                    cursor = page.getLast().getId();
+                }
+                assertThat(walked).containsExactlyElementsOf(
+                        tracker.listExpenses(query.get()).stream().map(Expense::getId).toList());
+            }
+        }
+    }
+
+    @Test
+    void testAmountCursorMustExist() {
+        for (ExpenseTracker tracker : trackers) {
+            assertThatThrownBy(() -> tracker.listExpenses(ExpenseQuery.makeQuery(null, null, null, null, true).after(999)))
+                    .isInstanceOf(NoSuchElementException.class);
+            assertThat(tracker.listExpenses(new ExpenseQuery().after(299))).extracting(Expense::getId).containsExactly(300);
+        }
+    }
+
+    @Test
+    void testNegativePagesAreRejected() {
+        assertThatThrownBy(() -> new ExpenseQuery().page(-1, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ExpenseQuery().page(0, -1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testLimitedPlansStopEarlyOrKeepTopK() {
+        ExpenseTracker indexed = trackers.getFirst();
+        QueryPlan largest = indexed.explain(ExpenseQuery.makeQuery(null, null, null, null, false).page(0, 20));
+        assertThat(largest.accessPath()).isEqualTo(QueryPlan.AccessPath.AMOUNT_INDEX);
+        assertThat(largest.toString()).contains("stop after 20").endsWith("ORDER BY amount DESC LIMIT 20]");
+
+        QueryPlan byId = indexed.explain(new ExpenseQuery().page(40, 20));
+        assertThat(byId.toString()).isEqualTo("FULL_SCAN: ~300 of 300 rows, filter, top 60 [all ORDER BY id LIMIT 20 OFFSET 40]");
+    }
+}
@@ -0,0 +1,72 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ParallelQueryTest {
+    private static final int ROWS = 100_000;
+
+    @TempDir
+    static Path tempDir;
+
+    private static final List<ExpenseTracker> trackers = new ArrayList<>();
+
+    @BeforeAll
+    static void setUp() {
+        Path ledger = Ledgers.write(tempDir.resolve("ledger.bin"), Ledgers.random(3, ROWS)
+                .dates(LocalDate.of(2023, 1, 1), 1095).amountsMinor(1, 100_000).expenses());
+        trackers.add(new ExpenseTracker(ledger, ExpenseTracker.Engine.INDEXED));
+        trackers.add(new ExpenseTracker(ledger, ExpenseTracker.Engine.COLUMNAR));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        trackers.forEach(ExpenseTracker::close);
+    }
+
+    private static List<Supplier<ExpenseQuery>> queries() {
+        return List.of(
+                () -> new ExpenseQuery().amountBetween(0.01, null),
+                () -> ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD, ExpenseCategory.HOME), 100.0, null, null, false),
+                () -> new ExpenseQuery().createdBetween(LocalDate.of(2024, 2, 10), LocalDate.of(2025, 3, 3)),
+                () -> ExpenseQuery.makeQuery(null, null, YearMonth.of(2024, 7), null, true).page(5, 50),
+                () -> new ExpenseQuery().amountBetween(null, 500.0).sortBy(ExpenseQuery.SortKey.ID, false).page(0, 100));
+    }
+
+    @Test
+    void testParallelAnswersEqualSequentialOnes() {
+        for (ExpenseTracker tracker : trackers) {
+            for (Supplier<ExpenseQuery> query : queries()) {
+                List<Integer> sequential = tracker.listExpenses(query.get()).stream().map(Expense::getId).toList();
+                assertThat(tracker.listExpenses(query.get().parallel(true)))
+                        .extracting(Expense::getId)
+                        .containsExactlyElementsOf(sequential);
+                assertThat(tracker.summaryExpenses(query.get().parallel(true)))
+                        .isEqualTo(tracker.summaryExpenses(query.get()));
+            }
+        }
+    }
+
+    @Test
+    void testEnginesAgreeOnParallelTotals() {
+        for (Supplier<ExpenseQuery> query : queries()) {
+            assertThat(trackers.get(1).summaryExpenses(query.get().parallel(true)))
+                    .isEqualTo(trackers.get(0).summaryExpenses(query.get().parallel(true)));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.exception.ExpenseStorageException;
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.storage.PartitionedExpenseStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PartitionedExpenseStoreTest {
+    @TempDir
+    Path tempDir;
+
+    private Path ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = tempDir.resolve("ledger.parts");
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            store.putAll(List.of(
+                    Expense.restore(1, "Lunch", 12.0, LocalDate.of(2025, 3, 2), ExpenseCategory.FOOD),
+                    Expense.restore(2, "Bus", 2.5, LocalDate.of(2025, 3, 9), ExpenseCategory.TRANSPORT),
+                    Expense.restore(3, "Rent", 500.0, LocalDate.of(2025, 4, 1), ExpenseCategory.HOME),
+                    Expense.restore(4, "Course", 80.0, LocalDate.of(2026, 3, 5), ExpenseCategory.EDUCATION)
+            ));
+        }
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(ledger)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    @Test
+    void testOneSegmentPerMonth() throws IOException {
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            assertThat(store.months()).containsExactly(YearMonth.of(2025, 3), YearMonth.of(2025, 4), YearMonth.of(2026, 3));
+            assertThat(store.maxId()).isEqualTo(4);
+        }
+        assertThat(files()).hasSize(4).contains("manifest.json");
+    }
+
+    @Test
+    void testMonthQueryOnlyOpensMatchingSegment() {
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            ExpenseQuery query = ExpenseQuery.makeQuery(null, null, YearMonth.of(2025, 3), null, null);
+
+            assertThat(store.scan(query)).extracting(Expense::getId).containsExactly(1, 2);
+            assertThat(store.openedMonths()).containsExactly(YearMonth.of(2025, 3));
+        }
+    }
+
+    @Test
+    void testYearQueryOnlyOpensMatchingSegments() {
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            ExpenseQuery query = ExpenseQuery.makeQuery(null, null, null, Year.of(2025), null);
+
+            assertThat(store.sum(query)).isEqualTo(514.5);
+            assertThat(store.openedMonths()).containsExactlyInAnyOrder(YearMonth.of(2025, 3), YearMonth.of(2025, 4));
+        }
+    }
+
+    @Test
+    void testMutationRewritesOnlyItsSegment() throws IOException {
+        List<String> before = files();
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            Expense rent = store.get(3).orElseThrow();
+            rent.updateDescription("April rent");
+            store.put(rent);
+            store.remove(2);
+        }
+        List<String> after = files();
+
+        assertThat(after).contains("2025-03.g3.json", "2025-04.g2.json", "2026-03.g1.json");
+        assertThat(after).doesNotContain("2025-03.g1.json", "2025-04.g1.json");
+        assertThat(before).contains("2026-03.g1.json");
+
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            assertThat(store.scan(new ExpenseQuery())).extracting(Expense::getId).containsExactly(1, 3, 4);
+            assertThat(store.get(3).orElseThrow().getDescription()).isEqualTo("April rent");
+        }
+    }
+
+    @Test
+    void testDeletingLastExpenseDropsSegment() {
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            store.remove(3);
+            assertThat(store.months()).doesNotContain(YearMonth.of(2025, 4));
+        }
+    }
+
+    @Test
+    void testFailedWriteKeepsTheMonth() throws IOException {
+        Path blocker = ledger.resolve("2025-04.g2.json");
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            // A directory in the way of the next version of the April segment makes its write fail
+            Files.createDirectories(blocker);
+            Files.writeString(blocker.resolve("file"), "");
+            assertThatThrownBy(() -> store.put(
+                    Expense.restore(3, "April rent", 500.0, LocalDate.of(2025, 4, 1), ExpenseCategory.HOME)))
+                    .isInstanceOf(ExpenseStorageException.class);
+
+            assertThat(store.months()).contains(YearMonth.of(2025, 4));
+            assertThat(store.get(3).orElseThrow().getDescription()).isEqualTo("Rent");
+            store.put(Expense.restore(5, "Taxi", 20.0, LocalDate.of(2025, 5, 3), ExpenseCategory.TRANSPORT));
+        }
+        Files.delete(blocker.resolve("file"));
+        Files.delete(blocker);
+
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            assertThat(store.scan(new ExpenseQuery())).extracting(Expense::getId).containsExactly(1, 2, 3, 4, 5);
+            assertThat(store.get(3).orElseThrow().getDescription()).isEqualTo("Rent");
+        }
+    }
+
+    @Test
+    void testStoresOfTheSameLedgerShareIdsAndSegments() {
+        try (PartitionedExpenseStore first = new PartitionedExpenseStore(ledger);
+             PartitionedExpenseStore second = new PartitionedExpenseStore(ledger)) {
+            int firstId = first.allocateId(first.maxId());
+            int secondId = second.allocateId(second.maxId());
+            assertThat(firstId).isEqualTo(5);
+            assertThat(secondId).isEqualTo(6);
+
+            first.put(Expense.restore(firstId, "Taxi", 20.0, LocalDate.of(2025, 5, 3), ExpenseCategory.TRANSPORT));
+            // Opening the ledger again must not delete the segment written by the first store
+            new PartitionedExpenseStore(ledger).close();
+            second.put(Expense.restore(secondId, "Book", 15.0, LocalDate.of(2025, 6, 1), ExpenseCategory.EDUCATION));
+            second.remove(1);
+
+            assertThat(first.scan(new ExpenseQuery())).extracting(Expense::getId).containsExactly(2, 3, 4, 5, 6);
+            assertThat(first.months()).contains(YearMonth.of(2025, 5), YearMonth.of(2025, 6));
+            assertThat(first.allocateId(first.maxId())).isEqualTo(7);
+        }
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            assertThat(store.scan(new ExpenseQuery())).extracting(Expense::getId).containsExactly(2, 3, 4, 5, 6);
+        }
+    }
+
+    @Test
+    void testReadsDoNotWaitForTheLedgerLock() throws Exception {
+        try (PartitionedExpenseStore store = new PartitionedExpenseStore(ledger)) {
+            store.lock();
+            try {
+                CompletableFuture<List<Expense>> read = CompletableFuture.supplyAsync(() -> store.scan(new ExpenseQuery()));
+                assertThat(read.get(10, TimeUnit.SECONDS)).extracting(Expense::getId).containsExactly(1, 2, 3, 4);
+                assertThat(CompletableFuture.supplyAsync(store::maxId).get(10, TimeUnit.SECONDS)).isEqualTo(4);
+            } finally {
+                store.unlock();
+            }
+        }
+    }
+
+    @Test
+    void testUnreferencedSegmentsAreRemovedOnOpen() throws IOException {
+        Files.writeString(ledger.resolve("2025-05.g9.json"), "{}");
+
+        new PartitionedExpenseStore(ledger).close();
+
+        assertThat(files()).doesNotContain("2025-05.g9.json");
+    }
+}
@@ -0,0 +1,144 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.model.GroupedSummary;
+import dev.shoangenes.expensetracker.service.CacheStats;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class QueryCacheTest {
+    @TempDir
+    Path tempDir;
+
+    private ExpenseTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new ExpenseTracker(tempDir.resolve("ledger.json"));
+        tracker.addExpense("Lunch", 12.5, ExpenseCategory.FOOD);
+        tracker.addExpense("Bus", 2.0, ExpenseCategory.TRANSPORT);
+        tracker.addExpense("Rent", 700.0, ExpenseCategory.HOME);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.close();
+    }
+
+    private static ExpenseQuery food() {
+        return ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD), null, null, null, null);
+    }
+
+    @Test
+    void testRepeatedQueriesAreAnsweredFromTheCache() {
+        List<Expense> first = tracker.listExpenses(food());
+        List<Expense> second = tracker.listExpenses(food());
+
+        assertThat(second).isSameAs(first);
+        assertThat(tracker.getCacheStats()).isEqualTo(new CacheStats(1, 1, 1, ExpenseTracker.DEFAULT_CACHE_CAPACITY));
+        assertThat(tracker.getCacheStats().hitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testEquivalentQueriesShareAnEntry() {
+        tracker.listExpenses(ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD, ExpenseCategory.HOME), null, null, null, null));
+        tracker.listExpenses(new ExpenseQuery()
+                .inCategories(List.of(ExpenseCategory.HOME, ExpenseCategory.FOOD))
+                .parallel(true));
+
+        assertThat(tracker.getCacheStats().hits()).isEqualTo(1);
+    }
+
+    @Test
+    void testListsSumsAndGroupsAreCachedSeparately() {
+        tracker.listExpenses(food());
+        tracker.summaryExpenses(food());
+        tracker.summaryByGroup(food(), EnumSet.of(GroupedSummary.Dimension.CATEGORY));
+        tracker.summaryByGroup(food(), EnumSet.of(GroupedSummary.Dimension.MONTH));
+
+        assertThat(tracker.getCacheStats().misses()).isEqualTo(4);
+        assertThat(tracker.summaryExpenses(food())).isEqualTo(12.5);
+        assertThat(tracker.getCacheStats().hits()).isEqualTo(1);
+    }
+
+    @Test
+    void testMutationsInvalidateCachedResults() {
+        long version = tracker.getVersion();
+        assertThat(tracker.summaryExpenses(new ExpenseQuery())).isEqualTo(714.5);
+
+        tracker.addExpense("Dinner", 20.0, ExpenseCategory.FOOD);
+        assertThat(tracker.getVersion()).isGreaterThan(version);
+        assertThat(tracker.summaryExpenses(new ExpenseQuery())).isEqualTo(734.5);
+
+        tracker.deleteExpense(tracker.listExpenses(food()).get(0).getId());
+        assertThat(tracker.listExpenses(food())).extracting(Expense::getDescription).containsExactly("Dinner");
+
+        int id = tracker.listExpenses(food()).get(0).getId();
+        tracker.updateExpense(id, "Late dinner");
+        assertThat(tracker.listExpenses(food())).extracting(Expense::getDescription).containsExactly("Late dinner");
+    }
+
+    @Test
+    void testCommitInvalidatesCachedResults() {
+        tracker.begin();
+        tracker.addExpense("Snack", 3.0, ExpenseCategory.FOOD);
+        assertThat(tracker.listExpenses(food())).hasSize(1);
+        tracker.rollback();
+        assertThat(tracker.listExpenses(food())).hasSize(1);
+
+        tracker.begin();
+        tracker.addExpense("Snack", 3.0, ExpenseCategory.FOOD);
+        assertThat(tracker.listExpenses(food())).hasSize(1);
+        tracker.commit();
+        assertThat(tracker.listExpenses(food())).hasSize(2);
+    }
+
+    @Test
+    void testChangesOfOtherProcessesInvalidateCachedResultsOnRefresh() {
+        assertThat(tracker.listExpenses(food())).hasSize(1);
+        try (ExpenseTracker other = new ExpenseTracker(tempDir.resolve("ledger.json"))) {
+            other.addExpense("Coffee", 3.0, ExpenseCategory.FOOD);
+        }
+
+        assertThat(tracker.listExpenses(food())).hasSize(1);
+        tracker.refresh();
+        assertThat(tracker.listExpenses(food())).hasSize(2);
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvicted() {
+        tracker.setQueryCacheCapacity(2);
+        ExpenseQuery all = new ExpenseQuery();
+        ExpenseQuery byAmount = new ExpenseQuery().sortBy(ExpenseQuery.SortKey.AMOUNT, false);
+
+        tracker.listExpenses(food());
+        tracker.listExpenses(all);
+        tracker.listExpenses(food());
+        tracker.listExpenses(byAmount);
+        tracker.listExpenses(food());
+        tracker.listExpenses(all);
+
+        assertThat(tracker.getCacheStats()).isEqualTo(new CacheStats(2, 4, 2, 2));
+    }
+
+    @Test
+    void testZeroCapacityDisablesTheCache() {
+        tracker.setQueryCacheCapacity(0);
+        tracker.listExpenses(food());
+        tracker.listExpenses(food());
+
+        assertThat(tracker.getCacheStats()).isEqualTo(new CacheStats(0, 2, 0, 0));
+        assertThatThrownBy(() -> tracker.setQueryCacheCapacity(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,110 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.service.QueryPlan;
+import dev.shoangenes.expensetracker.storage.FileExpenseStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class QueryPlannerTest {
+    @TempDir
+    Path tempDir;
+
+    private ExpenseTracker tracker;
+    private final List<Expense> all = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // 600 expenses over 2025, a single one in EDUCATION, amounts 1..100
+        ExpenseCategory[] categories = {ExpenseCategory.FOOD, ExpenseCategory.TRANSPORT, ExpenseCategory.MISC};
+        for (int id = 1; id <= 600; id++) {
+            ExpenseCategory category = id == 300 ? ExpenseCategory.EDUCATION : categories[id % categories.length];
+            all.add(Expense.restore(id, "Expense " + id, id % 100 + 1, LocalDate.of(2025, 1, 1).plusDays(id % 365), category));
+        }
+        Path ledger = tempDir.resolve("ledger.json");
+        try (FileExpenseStore store = new FileExpenseStore(ledger)) {
+            store.putAll(all);
+        }
+        tracker = new ExpenseTracker(ledger);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.close();
+    }
+
+    private void assertAnswers(ExpenseQuery query) {
+        List<Expense> expected = all.stream().filter(query.getFilter()).sorted(query.getSorter()).toList();
+        assertThat(tracker.listExpenses(query)).extracting(Expense::getId)
+                .containsExactlyElementsOf(expected.stream().map(Expense::getId).toList());
+    }
+
+    @Test
+    void testSelectiveCategoryUsesCategoryIndex() {
+        ExpenseQuery query = ExpenseQuery.makeQuery(List.of(ExpenseCategory.EDUCATION), null, null, null, null);
+
+        QueryPlan plan = tracker.explain(query);
+        assertThat(plan.accessPath()).isEqualTo(QueryPlan.AccessPath.CATEGORY_INDEX);
+        assertThat(plan.estimatedRows()).isEqualTo(1);
+        assertAnswers(query);
+    }
+
+    @Test
+    void testNarrowMonthUsesDateRange() {
+        ExpenseQuery query = ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD), null, YearMonth.of(2025, 2), null, null);
+
+        assertThat(tracker.explain(query).accessPath()).isEqualTo(QueryPlan.AccessPath.DATE_RANGE);
+        assertAnswers(query);
+    }
+
+    @Test
+    void testAmountOrderUsesPresortedAmountIndex() {
+        ExpenseQuery query = ExpenseQuery.makeQuery(null, 95.0, null, null, false);
+
+        QueryPlan plan = tracker.explain(query);
+        assertThat(plan.accessPath()).isEqualTo(QueryPlan.AccessPath.AMOUNT_INDEX);
+        assertThat(plan.presorted()).isTrue();
+        assertAnswers(query);
+        assertAnswers(ExpenseQuery.makeQuery(null, null, null, null, true).amountBetween(10.0, 20.0));
+    }
+
+    @Test
+    void testUnselectiveQueryScans() {
+        ExpenseQuery query = ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD, ExpenseCategory.MISC), null, null, null, null);
+
+        assertThat(tracker.explain(query).accessPath()).isEqualTo(QueryPlan.AccessPath.FULL_SCAN);
+        assertAnswers(query);
+        assertThat(tracker.summaryExpenses(query))
+                .isEqualTo(all.stream().filter(query.getFilter()).mapToDouble(Expense::getAmount).sum());
+    }
+
+    @Test
+    void testContradictoryCriteriaReadNothing() {
+        ExpenseQuery query = new ExpenseQuery().amountBetween(50.0, 10.0);
+
+        assertThat(tracker.explain(query).accessPath()).isEqualTo(QueryPlan.AccessPath.EMPTY);
+        assertThat(tracker.listExpenses(query)).isEmpty();
+    }
+
+    @Test
+    void testExplainDescribesCriteria() {
+        ExpenseQuery query = ExpenseQuery.makeQuery(List.of(ExpenseCategory.EDUCATION), 5.0, YearMonth.of(2025, 2), null, false);
+
+        assertThat(tracker.explain(query).toString())
+                .startsWith("CATEGORY_INDEX: ~1 of 600 rows, filter, sort")
+                .contains("category IN (EDUCATION) AND amount >= 5.0 AND date >= 2025-02-01 AND date <= 2025-02-28 ORDER BY amount DESC");
+    }
+}
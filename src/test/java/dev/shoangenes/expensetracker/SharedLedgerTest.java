@@ -0,0 +1,149 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.storage.ExpenseJournal;
+import dev.shoangenes.expensetracker.storage.LedgerLock;
+import dev.shoangenes.expensetracker.storage.SnapshotCompactor;
+import dev.shoangenes.expensetracker.storage.SnapshotFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class SharedLedgerTest {
+    @TempDir
+    Path tempDir;
+
+    private Path ledger;
+
+    @BeforeEach
+    void setUp() {
+        Expense.setLastIdSaved(0);
+        ledger = tempDir.resolve("ledger.json");
+    }
+
+    private List<Integer> ids(ExpenseTracker tracker) {
+        return tracker.listExpenses(new ExpenseQuery()).stream().map(Expense::getId).toList();
+    }
+
+    @Test
+    void testWritersDoNotReuseIds() {
+        try (ExpenseTracker first = new ExpenseTracker(ledger);
+             ExpenseTracker second = new ExpenseTracker(ledger)) {
+            first.addExpense("Lunch", 12.0, ExpenseCategory.FOOD);
+            // Another process starts from its own, stale, id counter
+            Expense.setLastIdSaved(0);
+            second.addExpense("Taxi", 8.5, ExpenseCategory.TRANSPORT);
+
+            assertThat(ids(second)).containsExactly(1, 2);
+        }
+    }
+
+    @Test
+    void testMutationsSeeChangesOfOtherWriters() {
+        try (ExpenseTracker first = new ExpenseTracker(ledger);
+             ExpenseTracker second = new ExpenseTracker(ledger)) {
+            first.addExpense("Lunch", 12.0, ExpenseCategory.FOOD);
+            first.addExpense("Taxi", 8.5, ExpenseCategory.TRANSPORT);
+            second.updateExpense(1, "Brunch");
+            first.deleteExpense(2);
+
+            first.refresh();
+            second.refresh();
+            assertThat(ids(first)).containsExactly(1);
+            assertThat(ids(second)).containsExactly(1);
+            assertThat(first.listExpenses(new ExpenseQuery()).get(0).getDescription()).isEqualTo("Brunch");
+        }
+
+        try (ExpenseTracker reloaded = new ExpenseTracker(ledger)) {
+            assertThat(ids(reloaded)).containsExactly(1);
+        }
+    }
+
+    @Test
+    void testRefreshReloadsAfterCompaction() {
+        try (ExpenseTracker tracker = new ExpenseTracker(ledger);
+             ExpenseTracker other = new ExpenseTracker(ledger)) {
+            other.addExpense("Lunch", 12.0, ExpenseCategory.FOOD);
+
+            // The records were folded into the snapshot before this tracker read them
+            ExpenseJournal journal = new ExpenseJournal(tempDir.resolve("ledger.json.journal"), null,
+                    new LedgerLock(tempDir.resolve("ledger.json.lock")));
+            try (SnapshotCompactor compactor = new SnapshotCompactor(ledger, SnapshotFormat.forPath(ledger), journal)) {
+                compactor.compactNow();
+            }
+            assertThat(journal.rotatedFiles()).isEmpty();
+
+            tracker.refresh();
+            assertThat(ids(tracker)).containsExactly(1);
+        }
+    }
+
+    @Test
+    void testOpenTransactionsHoldOffOtherWriters() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ExpenseTracker first = new ExpenseTracker(ledger);
+             ExpenseTracker second = new ExpenseTracker(ledger)) {
+            first.addExpense("Lunch", 12.0, ExpenseCategory.FOOD);
+            first.addExpense("Taxi", 8.5, ExpenseCategory.TRANSPORT);
+            second.refresh();
+
+            first.begin();
+            first.updateExpense(1, "Brunch");
+            // Another process deletes the expense while the transaction is open
+            Future<?> deleted = executor.submit(() -> second.deleteExpense(1));
+            assertThatThrownBy(() -> deleted.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+            first.commit();
+            deleted.get(10, TimeUnit.SECONDS);
+
+            first.refresh();
+            assertThat(ids(first)).containsExactly(2);
+        } finally {
+            executor.shutdown();
+        }
+        try (ExpenseTracker reloaded = new ExpenseTracker(ledger)) {
+            assertThat(ids(reloaded)).containsExactly(2);
+        }
+    }
+
+    @Test
+    void testConcurrentWritersLoseNothing() throws Exception {
+        int writers = 4;
+        int perWriter = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                done.add(executor.submit(() -> {
+                    try (ExpenseTracker tracker = new ExpenseTracker(ledger)) {
+                        for (int i = 0; i < perWriter; i++) {
+                            tracker.addExpense("Expense " + i, 1.0, ExpenseCategory.MISC);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        try (ExpenseTracker reloaded = new ExpenseTracker(ledger)) {
+            assertThat(ids(reloaded)).hasSize(writers * perWriter).doesNotHaveDuplicates();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.storage.ExpenseJournal;
+import dev.shoangenes.expensetracker.storage.JsonSnapshotFormat;
+import dev.shoangenes.expensetracker.storage.SnapshotCompactor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class SnapshotCompactorTest {
+    @TempDir
+    Path tempDir;
+
+    private Path snapshot;
+    private Path journalPath;
+    private final JsonSnapshotFormat format = new JsonSnapshotFormat();
+
+    @BeforeEach
+    void setUp() {
+        snapshot = tempDir.resolve("ledger.json");
+        journalPath = tempDir.resolve("ledger.json.journal");
+    }
+
+    private Expense expense(int id, String description) {
+        return Expense.restore(id, description, id * 10.0, LocalDate.of(2025, 1, id), ExpenseCategory.FOOD);
+    }
+
+    @Test
+    void testCompactionFoldsJournalIntoSnapshot() throws IOException {
+        format.write(snapshot, List.of(expense(1, "Lunch"), expense(2, "Dinner")));
+        ExpenseJournal journal = new ExpenseJournal(journalPath);
+        journal.appendDelete(1);
+        journal.appendPut(expense(3, "Breakfast"));
+
+        try (SnapshotCompactor compactor = new SnapshotCompactor(snapshot, format, journal)) {
+            compactor.compactNow();
+        }
+
+        Map<Integer, Expense> loaded = new HashMap<>();
+        format.read(snapshot, loaded);
+        assertThat(loaded).containsOnlyKeys(2, 3);
+        assertThat(journal.size()).isZero();
+        assertThat(Files.exists(journalPath)).isFalse();
+        try (var files = Files.list(tempDir)) {
+            assertThat(files.filter(file -> !file.toString().endsWith(".lock"))).containsExactly(snapshot);
+        }
+    }
+
+    @Test
+    void testThresholdTriggersBackgroundCompaction() {
+        ExpenseJournal journal = new ExpenseJournal(journalPath);
+        try (SnapshotCompactor compactor = new SnapshotCompactor(snapshot, format, journal, 1, Duration.ofHours(1))) {
+            journal.appendPut(expense(1, "Lunch"));
+            compactor.onAppend();
+        }
+
+        Map<Integer, Expense> loaded = new HashMap<>();
+        format.read(snapshot, loaded);
+        assertThat(loaded).containsOnlyKeys(1);
+    }
+
+    @Test
+    void testStaleJournalIsFoldedOnClose() {
+        ExpenseJournal journal = new ExpenseJournal(journalPath);
+        journal.appendPut(expense(1, "Lunch"));
+        new SnapshotCompactor(snapshot, format, journal).close();
+
+        Map<Integer, Expense> loaded = new HashMap<>();
+        format.read(snapshot, loaded);
+        assertThat(loaded).containsOnlyKeys(1);
+        assertThat(journalPath).doesNotExist();
+
+        // A snapshot written within the staleness bound is left for a later compaction
+        journal.appendPut(expense(2, "Dinner"));
+        new SnapshotCompactor(snapshot, format, journal).close();
+        assertThat(journal.size()).isPositive();
+
+        try (SnapshotCompactor compactor = new SnapshotCompactor(snapshot, format, journal, SnapshotCompactor.DEFAULT_THRESHOLD, Duration.ZERO)) {
+            compactor.onAppend();
+        }
+        loaded.clear();
+        format.read(snapshot, loaded);
+        assertThat(loaded).containsOnlyKeys(1, 2);
+    }
+
+    @Test
+    void testCompactionKeepsSnapshotPermissions() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        format.write(snapshot, List.of(expense(1, "Lunch")));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(snapshot, permissions);
+        ExpenseJournal journal = new ExpenseJournal(journalPath);
+        journal.appendPut(expense(2, "Dinner"));
+
+        try (SnapshotCompactor compactor = new SnapshotCompactor(snapshot, format, journal)) {
+            compactor.compactNow();
+        }
+
+        assertThat(journal.size()).isZero();
+        assertThat(Files.getPosixFilePermissions(snapshot)).isEqualTo(permissions);
+    }
+
+    @Test
+    void testInterruptedCompactionIsReplayedInOrder() throws IOException {
+        format.write(snapshot, List.of(expense(1, "Lunch")));
+        ExpenseJournal journal = new ExpenseJournal(journalPath);
+        journal.appendPut(expense(2, "Dinner"));
+        assertThat(journal.rotate()).isTrue();
+        journal.appendDelete(2);
+
+        Map<Integer, Expense> loaded = new HashMap<>();
+        format.read(snapshot, loaded);
+        new ExpenseJournal(journalPath).replay(loaded);
+
+        assertThat(loaded).containsOnlyKeys(1);
+        assertThat(Files.exists(tempDir.resolve("ledger.json.journal.g0"))).isTrue();
+    }
+
+    @Test
+    void testTornLastRecordIsIgnored() throws IOException {
+        ExpenseJournal journal = new ExpenseJournal(journalPath);
+        journal.appendPut(expense(1, "Lunch"));
+        Files.writeString(journalPath, Files.readString(journalPath) + "{\"op\":\"PUT\",\"id\":2,\"exp");
+
+        Map<Integer, Expense> loaded = new HashMap<>();
+        int maxId = new ExpenseJournal(journalPath).replay(loaded);
+
+        assertThat(maxId).isEqualTo(1);
+        assertThat(loaded).containsOnlyKeys(1);
+    }
+}
@@ -0,0 +1,130 @@
+package dev.shoangenes.expensetracker;
+
+import dev.shoangenes.expensetracker.model.Expense;
+import dev.shoangenes.expensetracker.model.ExpenseCategory;
+import dev.shoangenes.expensetracker.model.ExpenseQuery;
+import dev.shoangenes.expensetracker.service.ExpenseTracker;
+import dev.shoangenes.expensetracker.service.QueryPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TextSearchTest {
+    private static final List<String> WORDS = List.of(
+            "Lunch", "coffee", "Bus", "ticket", "rent", "Groceries", "movie", "pharmacy", "book", "taxi", "Café", "x");
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Expense> expenses = new ArrayList<>();
+    private final List<ExpenseTracker> trackers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        expenses.addAll(Ledgers.random(3, 500).dates(LocalDate.of(2024, 1, 1), 120).amountsMinor(100, 5099)
+                .words(WORDS).expenses());
+        trackers.addAll(Ledgers.openOnEveryBackend(tempDir, expenses));
+    }
+
+    @AfterEach
+    void tearDown() {
+        trackers.forEach(ExpenseTracker::close);
+    }
+
+    private List<Integer> bruteForce(ExpenseQuery query) {
+        return expenses.stream().filter(query.getFilter()).map(Expense::getId).toList();
+    }
+
+    private static List<Integer> ids(List<Expense> expenses) {
+        return expenses.stream().map(Expense::getId).toList();
+    }
+
+    @Test
+    void testSearchesMatchASubstringCheckOnEveryStoreAndEngine() {
+        List<String> texts = List.of("coffee", "COFFEE", "offe", "bus tick", "ch co", "-4", "café", "é", "x", "e", "zzz", " ", "taxi taxi");
+        for (ExpenseTracker tracker : trackers) {
+            for (String text : texts) {
+                ExpenseQuery query = new ExpenseQuery().containing(text);
+                assertThat(ids(tracker.listExpenses(query)))
+                        .as("%s", query)
+                        .containsExactlyElementsOf(bruteForce(query));
+                assertThat(tracker.summaryExpensesMinor(new ExpenseQuery().containing(text)))
+                        .isEqualTo(expenses.stream().filter(query.getFilter()).mapToLong(Expense::getAmountMinor).sum());
+            }
+        }
+    }
+
+    @Test
+    void testSearchesCombineWithOtherFilters() {
+        for (ExpenseTracker tracker : trackers) {
+            ExpenseQuery query = ExpenseQuery.makeQuery(List.of(ExpenseCategory.FOOD), 10.0, YearMonth.of(2024, 2), null, false)
+                    .containing("lunch");
+            assertThat(ids(tracker.listExpenses(query)))
+                    .containsExactlyElementsOf(bruteForce(query).stream()
+                            .map(id -> expenses.get(id - 1))
+                            .sorted(query.getSorter())
+                            .map(Expense::getId)
+                            .toList());
+        }
+    }
+
+    @Test
+    void testSelectiveSearchesUseTheDescriptionIndex() {
+        ExpenseTracker tracker = trackers.get(0);
+        QueryPlan plan = tracker.explain(new ExpenseQuery().containing("pharmacy"));
+
+        assertThat(plan.accessPath()).isEqualTo(QueryPlan.AccessPath.TEXT_INDEX);
+        assertThat(plan.presorted()).isTrue();
+        assertThat(plan.estimatedRows()).isLessThan(plan.totalRows());
+        assertThat(tracker.explainSummary(new ExpenseQuery().containing("pharmacy")).accessPath())
+                .isEqualTo(QueryPlan.AccessPath.TEXT_INDEX);
+    }
+
+    @Test
+    void testShortSearchesReadOnlyTheirPostings() {
+        ExpenseTracker tracker = trackers.get(0);
+        for (String text : List.of("x", "é", "-4", "xi", " b")) {
+            ExpenseQuery query = new ExpenseQuery().containing(text);
+            QueryPlan plan = tracker.explain(query);
+
+            assertThat(plan.accessPath()).as("%s", query).isEqualTo(QueryPlan.AccessPath.TEXT_INDEX);
+            assertThat(plan.estimatedRows()).as("%s", query).isEqualTo(bruteForce(query).size());
+        }
+    }
+
+    @Test
+    void testIndexFollowsAddUpdateAndDelete() {
+        for (ExpenseTracker tracker : List.of(trackers.get(0), trackers.get(3))) {
+            ExpenseQuery query = new ExpenseQuery().containing("Quokka");
+            assertThat(tracker.listExpenses(query)).isEmpty();
+
+            tracker.addExpense("Quokka food", 5.0, ExpenseCategory.MISC);
+            List<Expense> added = tracker.listExpenses(new ExpenseQuery().containing("quokka"));
+            assertThat(added).extracting(Expense::getDescription).containsExactly("Quokka food");
+
+            int id = added.get(0).getId();
+            tracker.updateExpense(id, "Wombat food");
+            assertThat(tracker.listExpenses(new ExpenseQuery().containing("quokka"))).isEmpty();
+            assertThat(ids(tracker.listExpenses(new ExpenseQuery().containing("wombat")))).containsExactly(id);
+
+            tracker.deleteExpense(id);
+            assertThat(tracker.listExpenses(new ExpenseQuery().containing("wombat"))).isEmpty();
+        }
+    }
+
+    @Test
+    void testBlankTextMatchesEveryDescription() {
+        assertThat(new ExpenseQuery().containing("  ").getText()).isNull();
+        assertThat(new ExpenseQuery().containing(" Bus ").getText()).isEqualTo("bus");
+        assertThat(new ExpenseQuery().containing("Bus").toString()).isEqualTo("description CONTAINS 'bus' ORDER BY id");
+    }
+}